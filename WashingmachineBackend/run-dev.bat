@@ -1 +1,2 @@
+java -jar ./target/vaskemaskine-1.0-SNAPSHOT.jar db migrate configuration-dev.yaml
 java -jar ./target/vaskemaskine-1.0-SNAPSHOT.jar server configuration-dev.yaml
\ No newline at end of file
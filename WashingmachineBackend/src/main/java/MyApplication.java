@@ -1,67 +1,245 @@
+import auth.AuthenticationCacheInvalidator;
+import auth.CookieAuthDynamicFeature;
 import auth.CookieCredentialAuthFilter;
+import auth.CredentialStore;
+import auth.HashingExecutor;
 import auth.MyAuthenticator;
-import com.codahale.metrics.MetricRegistry;
+import auth.PasswordHasher;
+import auth.RandomSessionTokens;
+import auth.SessionCache;
+import auth.SessionUserValueFactoryProvider;
+import auth.SessionTokens;
+import auth.SignedSessionTokens;
+import auth.TokenRevocations;
+import core.BookingCoherence;
+import core.BookingDayLocks;
+import core.BookingEventBroadcaster;
+import core.BookingMonthCache;
+import core.BookingMonthVersions;
+import core.BookingPolicyReloader;
+import core.BookingRevisionLog;
 import core.BookingService;
 import core.BookingServiceImpl;
+import core.BookingValidator;
+import core.MachineTimelines;
+import core.UsernameIndex;
 import api.UserDTO;
+import db.BackfillUsageCommand;
 import db.BookingDAO;
+import db.BookingPartitions;
+import db.BookingRevisionDAO;
+import db.CoherenceChannel;
+import db.CsvStreamer;
+import db.DbCommand;
+import db.JsonStreamer;
+import db.MachineDAO;
+import db.SchemaMigrations;
+import db.TokenRevocationDAO;
+import db.UnitOfWork;
+import db.UnitOfWorkApplicationListener;
 import db.UserDAO;
 import db.UserTokenDAO;
+import filters.ConditionalGetFilter;
 import filters.NoCacheFilter;
 import io.dropwizard.Application;
-import io.dropwizard.auth.AuthDynamicFeature;
-import io.dropwizard.auth.AuthValueFactoryProvider;
-import io.dropwizard.auth.CachingAuthenticator;
+import io.dropwizard.cli.CheckCommand;
+import io.dropwizard.cli.ServerCommand;
+import io.dropwizard.configuration.YamlConfigurationFactory;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.jdbi.DBIFactory;
+import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.skife.jdbi.v2.DBI;
 import resources.AuthResource;
 import resources.BookingResource;
+import resources.BookingRevisionResource;
+import resources.BookingStreamResource;
+import resources.MachineResource;
 import resources.UsageResource;
 import resources.UserResource;
 import filters.CSRFFilter;
 
+import java.io.File;
+import java.sql.DriverManager;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 public class MyApplication extends Application<MyConfiguration> {
+    private String configurationPath;
 
     public static void main(String[] args) throws Exception {
         new MyApplication().run(args);
     }
 
+    // The server is given its own command, as the configuration file it was started with is watched for changes
+    // of the booking policy
+    @Override
+    protected void addDefaultCommands(Bootstrap<MyConfiguration> bootstrap) {
+        bootstrap.addCommand(new ServerCommand<MyConfiguration>(this) {
+            @Override
+            protected void run(Bootstrap<MyConfiguration> bootstrap, Namespace namespace,
+                               MyConfiguration configuration) throws Exception {
+                configurationPath = namespace.getString("file");
+                super.run(bootstrap, namespace, configuration);
+            }
+        });
+        bootstrap.addCommand(new CheckCommand<>(this));
+    }
+
+    @Override
+    public void initialize(Bootstrap<MyConfiguration> bootstrap) {
+        bootstrap.addCommand(new DbCommand<>(MyConfiguration::getDataSourceFactory, MyConfiguration.class));
+        bootstrap.addCommand(new BackfillUsageCommand<>(MyConfiguration::getDataSourceFactory, MyConfiguration.class));
+    }
+
     public void run(MyConfiguration config, Environment environment) throws Exception {
         final DBIFactory factory = new DBIFactory();
         final DBI jdbi = factory.build(environment, config.getDataSourceFactory(), "postgresql");
-        final BookingDAO bookingDAO = jdbi.onDemand(BookingDAO.class);
-        final UserDAO userDAO = jdbi.onDemand(UserDAO.class);
-        final UserTokenDAO userTokenDAO = jdbi.onDemand(UserTokenDAO.class);
-        final BookingService bookingService = new BookingServiceImpl(bookingDAO);
-
-        // Sets up tables if they don't exist
-        userDAO.createRoleTable();
-        userDAO.createUsersTable();
-        bookingDAO.createBookingTable();
-        userTokenDAO.createUserTokenTable();
-
-
-        // Authorization with caching
-        CachingAuthenticator<String, UserDTO> cachingAuthenticator = new CachingAuthenticator<>(
-                new MetricRegistry(),
-                new MyAuthenticator(userTokenDAO, userDAO, config.getTokenLifetime()),
-                config.getAuthenticationCachePolicy()
-        );
-        environment.jersey().register(new AuthDynamicFeature(
+
+        // Every request shares one handle and transaction across all DAOs
+        final UnitOfWork unitOfWork = new UnitOfWork(jdbi, environment.metrics());
+        environment.jersey().register(new UnitOfWorkApplicationListener(unitOfWork));
+        final BookingDAO bookingDAO = unitOfWork.attach(BookingDAO.class);
+        final UserDAO userDAO = unitOfWork.attach(UserDAO.class);
+        final UserTokenDAO userTokenDAO = unitOfWork.attach(UserTokenDAO.class);
+        final BookingRevisionDAO bookingRevisionDAO = unitOfWork.attach(BookingRevisionDAO.class);
+        final MachineDAO machineDAO = unitOfWork.attach(MachineDAO.class);
+
+        // In-process caches of all nodes are kept coherent over a connection of its own, outside the pool
+        final DataSourceFactory database = config.getDataSourceFactory();
+        final CoherenceChannel coherenceChannel = new CoherenceChannel(
+                () -> DriverManager.getConnection(database.getUrl(), database.getUser(), database.getPassword()),
+                CoherenceChannel.DEFAULT_POLL_INTERVAL_MILLIS, environment.metrics());
+        environment.lifecycle().manage(coherenceChannel);
+
+        // The schema is changed by the db migrate command only
+        new SchemaMigrations(jdbi).verify();
+        // Bookings are partitioned by month, the coming months are created ahead and old months archived daily
+        final BookingPartitions bookingPartitions = new BookingPartitions(jdbi,
+                config.getBookingMonthsCreatedAhead(), config.getBookingMonthsKept());
+        bookingPartitions.maintain();
+        environment.lifecycle().scheduledExecutorService("booking-partitions").build()
+                .scheduleAtFixedRate(bookingPartitions::maintain, 1, 1, TimeUnit.DAYS);
+
+        // Overlap checks are answered from memory, from a timeline per machine kept current by the writes in
+        // BookingResource. Machines added to the table are picked up at the next start
+        final MachineTimelines machineTimelines = new MachineTimelines(machineDAO.getMachines());
+        machineTimelines.putAll(bookingDAO.getAllBookingIntervals());
+        final BookingValidator bookingValidator = new BookingValidator(machineTimelines,
+                config.getBookingPolicy().build());
+        final BookingService bookingService = new BookingServiceImpl(machineTimelines, bookingValidator,
+                unitOfWork::afterCommit);
+
+        // Opening hours are compiled to bitmaps of slots and compiled again when the configuration file is changed
+        final File configurationFile = configurationPath == null ? null : new File(configurationPath);
+        if (configurationFile != null && configurationFile.isFile()) {
+            final YamlConfigurationFactory<MyConfiguration> configurationFactory = new YamlConfigurationFactory<>(
+                    MyConfiguration.class, environment.getValidator(), environment.getObjectMapper(), "dw");
+            environment.lifecycle().scheduledExecutorService("booking-policy-reload").build()
+                    .scheduleWithFixedDelay(new BookingPolicyReloader(configurationFile,
+                                    () -> configurationFactory.build(configurationFile).getBookingPolicy(), bookingValidator),
+                            BookingPolicyReloader.DEFAULT_POLL_INTERVAL_SECONDS,
+                            BookingPolicyReloader.DEFAULT_POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+
+        // Booking reads are served from a cache of whole months, invalidated once a write has been committed.
+        // The versions must be bumped before the cache is invalidated
+        final BookingMonthVersions bookingMonthVersions = new BookingMonthVersions();
+        final BookingMonthCache bookingMonthCache = new BookingMonthCache(bookingDAO, bookingMonthVersions,
+                config.getBookingCachePolicy(), environment.metrics());
+        bookingService.addBookingChangeListener(bookingMonthVersions);
+        bookingService.addBookingChangeListener(bookingMonthCache);
+        bookingService.addBookingChangeListener(new BookingCoherence(coherenceChannel, bookingDAO, machineTimelines,
+                bookingMonthVersions, bookingMonthCache));
+
+        // Live calendars get the same changes pushed over Server-Sent Events
+        final BookingEventBroadcaster bookingEventBroadcaster = new BookingEventBroadcaster(
+                environment.lifecycle().executorService("booking-events-%d").minThreads(4).maxThreads(4).build(),
+                BookingEventBroadcaster.DEFAULT_BUFFER_SIZE, environment.metrics());
+        bookingService.addBookingChangeListener(bookingEventBroadcaster);
+        final ScheduledExecutorService bookingEventsMaintenance = environment.lifecycle()
+                .scheduledExecutorService("booking-events-maintenance").build();
+        bookingEventsMaintenance.scheduleAtFixedRate(bookingEventBroadcaster::sendHeartbeats,
+                BookingEventBroadcaster.HEARTBEAT_INTERVAL_SECONDS, BookingEventBroadcaster.HEARTBEAT_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+        bookingEventsMaintenance.scheduleWithFixedDelay(bookingEventBroadcaster::evictStalledSubscribers, 1, 1,
+                TimeUnit.SECONDS);
+        environment.jersey().register(SseFeature.class);
+
+        // Every committed write is appended to the revision history in batches, last as it may wait for the write
+        final BookingRevisionLog bookingRevisionLog = new BookingRevisionLog(bookingRevisionDAO,
+                config.getRevisionLogDurability(), config.getRevisionLogQueueSize(), environment.metrics());
+        environment.lifecycle().manage(bookingRevisionLog);
+        bookingService.addBookingChangeListener(bookingRevisionLog);
+
+        // Authorization from a cache of sessions, extended token lifetimes are written in batches
+        final SessionCache sessionCache = new SessionCache(userTokenDAO, config.getAuthenticationCachePolicy(),
+                environment.metrics());
+        environment.lifecycle().manage(sessionCache);
+        environment.lifecycle().scheduledExecutorService("session-refreshes").build()
+                .scheduleWithFixedDelay(sessionCache::flushRefreshes, SessionCache.DEFAULT_FLUSH_INTERVAL_SECONDS,
+                        SessionCache.DEFAULT_FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        final SessionTokens sessionTokens;
+        final Authenticator<String, UserDTO> authenticator;
+        if (config.getTokenMode() == SessionTokens.Mode.SIGNED) {
+            // Signed tokens are verified in memory, only sign-outs are kept track of
+            final TokenRevocationDAO tokenRevocationDAO = unitOfWork.attach(TokenRevocationDAO.class);
+            final TokenRevocations tokenRevocations = new TokenRevocations(tokenRevocationDAO, coherenceChannel,
+                    TimeUnit.DAYS.toMillis(config.getTokenLifetime()));
+            tokenRevocations.load();
+            final SignedSessionTokens signedSessionTokens = new SignedSessionTokens(config.getTokenSigningKeys(),
+                    tokenRevocations, userTokenDAO);
+            sessionTokens = signedSessionTokens;
+            authenticator = signedSessionTokens;
+        } else {
+            sessionTokens = new RandomSessionTokens();
+            authenticator = new MyAuthenticator(sessionCache, config.getTokenLifetime());
+        }
+        // Reads that work signed out too take an @Auth Optional<UserDTO>, resolved through the same authenticator
+        environment.jersey().register(new CookieAuthDynamicFeature(
+                new CookieCredentialAuthFilter.Builder<UserDTO>()
+                        .setAuthenticator(authenticator)
+                        .buildAuthFilter(),
                 new CookieCredentialAuthFilter.Builder<UserDTO>()
-                        .setAuthenticator(cachingAuthenticator)
+                        .setOptional(true)
+                        .setAuthenticator(authenticator)
                         .buildAuthFilter()));
-        environment.jersey().register(new AuthValueFactoryProvider.Binder<>(UserDTO.class));
+        environment.jersey().register(new SessionUserValueFactoryProvider.Binder());
+        final AuthenticationCacheInvalidator authenticationCacheInvalidator = new AuthenticationCacheInvalidator(
+                sessionCache, coherenceChannel, unitOfWork::afterCommit);
+
+        // Passwords are hashed on threads of their own, sign-ins beyond its queue are turned away with 503
+        final HashingExecutor hashingExecutor = new HashingExecutor(config.getPasswordHashingThreads(),
+                config.getPasswordHashingQueueSize(), environment.metrics());
+        environment.lifecycle().manage(hashingExecutor);
+        final CredentialStore credentialStore = new CredentialStore(userDAO,
+                new PasswordHasher(config.getPasswordHashIterations()), hashingExecutor, environment.metrics());
+
+        // Username availability is answered from memory
+        final UsernameIndex usernameIndex = new UsernameIndex(userDAO, coherenceChannel, unitOfWork::afterCommit,
+                environment.metrics());
+        usernameIndex.load();
 
         // Filters
         environment.jersey().register(new CSRFFilter(config.getTargetsOrigin()));
         environment.jersey().register(new NoCacheFilter());
+        environment.jersey().register(new ConditionalGetFilter(bookingMonthVersions));
 
         // Resources
-        environment.jersey().register(new BookingResource(bookingDAO, userTokenDAO, bookingService));
-        environment.jersey().register(new UserResource(userDAO, userTokenDAO));
-        environment.jersey().register(new AuthResource(userTokenDAO, userDAO, config.getTokenLifetime(), config.getDomain()));
-        environment.jersey().register(new UsageResource(bookingDAO, userTokenDAO));
+        final JsonStreamer jsonStreamer = new JsonStreamer(unitOfWork, environment.getObjectMapper());
+        // Day locks are released once the request's transaction has committed and the timelines are updated
+        environment.jersey().register(new BookingResource(bookingDAO, bookingService,
+                new BookingDayLocks(unitOfWork::afterCompletion), bookingMonthCache, jsonStreamer));
+        environment.jersey().register(new BookingStreamResource(bookingEventBroadcaster));
+        environment.jersey().register(new MachineResource(machineTimelines));
+        environment.jersey().register(new BookingRevisionResource(bookingRevisionDAO));
+        environment.jersey().register(new UserResource(userDAO, credentialStore, usernameIndex));
+        environment.jersey().register(new AuthResource(userTokenDAO,
+                credentialStore, config.getTokenLifetime(), config.getDomain(),
+                authenticationCacheInvalidator, sessionTokens));
+        environment.jersey().register(new UsageResource(bookingDAO, jsonStreamer, new CsvStreamer(unitOfWork)));
     }
 }
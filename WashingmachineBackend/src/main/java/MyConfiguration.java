@@ -1,17 +1,29 @@
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.cache.CacheBuilderSpec;
+import auth.HashingExecutor;
+import auth.PasswordHasher;
+import auth.SessionTokens;
+import core.BookingPolicyFactory;
+import core.BookingRevisionLog;
+import db.BookingPartitions;
 import io.dropwizard.Configuration;
 import io.dropwizard.db.DataSourceFactory;
 import org.hibernate.validator.constraints.NotEmpty;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MyConfiguration extends Configuration {
     @NotEmpty
     private String authenticationCachePolicy;
 
+    @NotEmpty
+    private String bookingCachePolicy = "maximumSize=24";
+
     @NotEmpty
     private List<String> targetsOrigin;
 
@@ -21,6 +33,37 @@ public class MyConfiguration extends Configuration {
     @NotEmpty
     private String domain;
 
+    @NotNull
+    private SessionTokens.Mode tokenMode = SessionTokens.Mode.DATABASE;
+
+    @NotNull
+    private LinkedHashMap<String, String> tokenSigningKeys = new LinkedHashMap<>();
+
+    @NotNull
+    private BookingRevisionLog.Durability revisionLogDurability = BookingRevisionLog.Durability.ASYNC;
+
+    @Min(1)
+    private int revisionLogQueueSize = BookingRevisionLog.DEFAULT_QUEUE_SIZE;
+
+    @Min(1)
+    private int bookingMonthsCreatedAhead = BookingPartitions.DEFAULT_MONTHS_AHEAD;
+
+    @Min(0)
+    private int bookingMonthsKept = BookingPartitions.DEFAULT_MONTHS_KEPT;
+
+    @Min(1000)
+    private int passwordHashIterations = PasswordHasher.DEFAULT_ITERATIONS;
+
+    @Min(1)
+    private int passwordHashingThreads = HashingExecutor.DEFAULT_THREADS;
+
+    @Min(1)
+    private int passwordHashingQueueSize = HashingExecutor.DEFAULT_QUEUE_SIZE;
+
+    @Valid
+    @NotNull
+    private BookingPolicyFactory bookingPolicy = new BookingPolicyFactory();
+
     @Valid
     @NotNull
     private DataSourceFactory database = new DataSourceFactory();
@@ -40,6 +83,61 @@ public class MyConfiguration extends Configuration {
         return CacheBuilderSpec.parse(authenticationCachePolicy);
     }
 
+    @JsonProperty
+    public CacheBuilderSpec getBookingCachePolicy() {
+        return CacheBuilderSpec.parse(bookingCachePolicy);
+    }
+
+    @JsonProperty
+    public BookingPolicyFactory getBookingPolicy() {
+        return bookingPolicy;
+    }
+
+    @JsonProperty
+    public SessionTokens.Mode getTokenMode() {
+        return tokenMode;
+    }
+
+    @JsonProperty
+    public Map<String, String> getTokenSigningKeys() {
+        return tokenSigningKeys;
+    }
+
+    @JsonProperty
+    public BookingRevisionLog.Durability getRevisionLogDurability() {
+        return revisionLogDurability;
+    }
+
+    @JsonProperty
+    public int getRevisionLogQueueSize() {
+        return revisionLogQueueSize;
+    }
+
+    @JsonProperty
+    public int getBookingMonthsCreatedAhead() {
+        return bookingMonthsCreatedAhead;
+    }
+
+    @JsonProperty
+    public int getBookingMonthsKept() {
+        return bookingMonthsKept;
+    }
+
+    @JsonProperty
+    public int getPasswordHashIterations() {
+        return passwordHashIterations;
+    }
+
+    @JsonProperty
+    public int getPasswordHashingThreads() {
+        return passwordHashingThreads;
+    }
+
+    @JsonProperty
+    public int getPasswordHashingQueueSize() {
+        return passwordHashingQueueSize;
+    }
+
     @JsonProperty
     public int getTokenLifetime() {
         return tokenLifetime;
@@ -0,0 +1,25 @@
+package api;
+
+public class BillingDTO {
+    private String apartment;
+    private int sumOfWashingMachineUses;
+    private int sumOfTumbleDryUses;
+
+    public BillingDTO(String apartment, int sumOfWashingMachineUses, int sumOfTumbleDryUses) {
+        this.apartment = apartment;
+        this.sumOfWashingMachineUses = sumOfWashingMachineUses;
+        this.sumOfTumbleDryUses = sumOfTumbleDryUses;
+    }
+
+    public String getApartment() {
+        return apartment;
+    }
+
+    public int getSumOfWashingMachineUses() {
+        return sumOfWashingMachineUses;
+    }
+
+    public int getSumOfTumbleDryUses() {
+        return sumOfTumbleDryUses;
+    }
+}
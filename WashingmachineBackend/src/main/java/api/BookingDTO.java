@@ -6,6 +6,7 @@ import java.util.Date;
 
 public class BookingDTO {
     private int id;
+    private int machineId;
     private Date startTime;
     private Date endTime;
     private String owner;
@@ -14,12 +15,27 @@ public class BookingDTO {
     private int numberOfTumbleDryUses;
     private int numberOfWashingMachineUses;
 
+    /**
+     * A booking of the first machine
+     */
     public BookingDTO(Date startTime, Date endTime, String owner, int numberOfWashingMachineUses, int numberOfTumbleDryUses) {
-        this(-1, startTime, endTime, owner, "", "", numberOfWashingMachineUses, numberOfTumbleDryUses);
+        this(MachineDTO.FIRST_MACHINE_ID, startTime, endTime, owner, numberOfWashingMachineUses, numberOfTumbleDryUses);
     }
 
+    public BookingDTO(int machineId, Date startTime, Date endTime, String owner, int numberOfWashingMachineUses, int numberOfTumbleDryUses) {
+        this(-1, machineId, startTime, endTime, owner, "", "", numberOfWashingMachineUses, numberOfTumbleDryUses);
+    }
+
+    /**
+     * A booking of the first machine
+     */
     public BookingDTO(int id, Date startTime, Date endTime, String owner, String apartment, String realName, int numberOfWashingMachineUses, int numberOfTumbleDryUses) {
+        this(id, MachineDTO.FIRST_MACHINE_ID, startTime, endTime, owner, apartment, realName, numberOfWashingMachineUses, numberOfTumbleDryUses);
+    }
+
+    public BookingDTO(int id, int machineId, Date startTime, Date endTime, String owner, String apartment, String realName, int numberOfWashingMachineUses, int numberOfTumbleDryUses) {
         this.id = id;
+        this.machineId = machineId;
         this.startTime = startTime;
         this.endTime = endTime;
         this.owner = owner;
@@ -59,6 +75,11 @@ public class BookingDTO {
         return id;
     }
 
+    @JsonProperty
+    public int getMachineId() {
+        return machineId;
+    }
+
     public String getApartment() {
         return apartment;
     }
@@ -0,0 +1,51 @@
+package api;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The opening hours of each day as a hex string of slots, digit k holds slots 4k to 4k + 3 with slot 4k + j in bit j
+ */
+public class BookingPolicyDTO {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private int slotMinutes;
+
+    private int minimumMinutes;
+
+    private Map<String, String> days = new LinkedHashMap<>();
+
+    public BookingPolicyDTO(int slotMinutes, int minimumMinutes) {
+        this.slotMinutes = slotMinutes;
+        this.minimumMinutes = minimumMinutes;
+    }
+
+    /**
+     * @param date  the local date as 2017-12-24
+     * @param slots the slots of the day, slot n is bit n % 64 of word n / 64
+     */
+    public void addDay(String date, long[] slots, int slotsPerDay) {
+        char[] hex = new char[(slotsPerDay + 3) / 4];
+        for (int digit = 0; digit < hex.length; digit++) {
+            hex[digit] = HEX_DIGITS[(int) (slots[digit >>> 4] >>> ((digit & 15) * 4)) & 0xF];
+        }
+        days.put(date, new String(hex));
+    }
+
+    @JsonProperty
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    @JsonProperty
+    public int getMinimumMinutes() {
+        return minimumMinutes;
+    }
+
+    @JsonProperty
+    public Map<String, String> getDays() {
+        return days;
+    }
+}
@@ -0,0 +1,17 @@
+package api;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class BookingRejectionDTO extends SuccessDTO {
+    private String reason;
+
+    public BookingRejectionDTO(String error, String reason) {
+        super(error, false);
+        this.reason = reason;
+    }
+
+    @JsonProperty
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,90 @@
+package api;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Date;
+
+/**
+ * The state of a booking after one of its writes, as kept in bookings_rev
+ */
+public class BookingRevisionDTO {
+    public static final String CREATED = "CREATED";
+    public static final String EDITED = "EDITED";
+    public static final String DELETED = "DELETED";
+
+    private long revision;
+    private int bookingId;
+    private Date startTime;
+    private Date endTime;
+    private String owner;
+    private int numberOfWashingMachineUses;
+    private int numberOfTumbleDryUses;
+    private String updateType;
+    private Date changedAt;
+
+    public BookingRevisionDTO(BookingDTO bookingDTO, String updateType, Date changedAt) {
+        this(-1, bookingDTO.getId(), bookingDTO.getStartTime(), bookingDTO.getEndTime(), bookingDTO.getOwner(),
+                bookingDTO.getNumberOfWashingMachineUses(), bookingDTO.getNumberOfTumbleDryUses(), updateType, changedAt);
+    }
+
+    public BookingRevisionDTO(long revision, int bookingId, Date startTime, Date endTime, String owner,
+                              int numberOfWashingMachineUses, int numberOfTumbleDryUses, String updateType, Date changedAt) {
+        this.revision = revision;
+        this.bookingId = bookingId;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.owner = owner;
+        this.numberOfWashingMachineUses = numberOfWashingMachineUses;
+        this.numberOfTumbleDryUses = numberOfTumbleDryUses;
+        this.updateType = updateType;
+        this.changedAt = changedAt;
+    }
+
+    /**
+     * @return increasing with every revision written, pass the last one seen to page on
+     */
+    @JsonProperty
+    public long getRevision() {
+        return revision;
+    }
+
+    @JsonProperty
+    public int getBookingId() {
+        return bookingId;
+    }
+
+    @JsonProperty
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    @JsonProperty
+    public Date getEndTime() {
+        return endTime;
+    }
+
+    @JsonProperty
+    public String getOwner() {
+        return owner;
+    }
+
+    @JsonProperty
+    public int getNumberOfWashingMachineUses() {
+        return numberOfWashingMachineUses;
+    }
+
+    @JsonProperty
+    public int getNumberOfTumbleDryUses() {
+        return numberOfTumbleDryUses;
+    }
+
+    @JsonProperty
+    public String getUpdateType() {
+        return updateType;
+    }
+
+    @JsonProperty
+    public Date getChangedAt() {
+        return changedAt;
+    }
+}
@@ -0,0 +1,37 @@
+package api;
+
+/**
+ * Everything signing in needs, read in one query: the stored hash and salt, the user and their current token if any
+ */
+public class CredentialsDTO {
+    private final UserDTO user;
+    private final String passwordHash;
+    private final String salt;
+    private final UserTokenDTO userToken;
+
+    public CredentialsDTO(UserDTO user, String passwordHash, String salt, UserTokenDTO userToken) {
+        this.user = user;
+        this.passwordHash = passwordHash;
+        this.salt = salt;
+        this.userToken = userToken;
+    }
+
+    public UserDTO getUser() {
+        return user;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public String getSalt() {
+        return salt;
+    }
+
+    /**
+     * @return the current token, or null if the user has none
+     */
+    public UserTokenDTO getUserToken() {
+        return userToken;
+    }
+}
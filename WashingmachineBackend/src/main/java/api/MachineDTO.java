@@ -0,0 +1,35 @@
+package api;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class MachineDTO {
+    /**
+     * The machine every booking was on before there were several
+     */
+    public static final int FIRST_MACHINE_ID = 1;
+
+    private int id;
+    private String name;
+    private MachineKind kind;
+
+    public MachineDTO(int id, String name, MachineKind kind) {
+        this.id = id;
+        this.name = name;
+        this.kind = kind;
+    }
+
+    @JsonProperty
+    public int getId() {
+        return id;
+    }
+
+    @JsonProperty
+    public String getName() {
+        return name;
+    }
+
+    @JsonProperty
+    public MachineKind getKind() {
+        return kind;
+    }
+}
@@ -0,0 +1,27 @@
+package api;
+
+/**
+ * What a machine can be booked for, stored by name in machines.kind
+ */
+public enum MachineKind {
+    WASHER(true, false),
+    DRYER(false, true),
+    // Washes and tumble dries, as the machine every booking was on before there were several
+    WASHER_DRYER(true, true);
+
+    private final boolean washes;
+    private final boolean tumbleDries;
+
+    MachineKind(boolean washes, boolean tumbleDries) {
+        this.washes = washes;
+        this.tumbleDries = tumbleDries;
+    }
+
+    public boolean washes() {
+        return washes;
+    }
+
+    public boolean tumbleDries() {
+        return tumbleDries;
+    }
+}
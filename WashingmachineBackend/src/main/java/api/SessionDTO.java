@@ -0,0 +1,22 @@
+package api;
+
+/**
+ * A token together with the user it belongs to, as read in one query when authenticating
+ */
+public class SessionDTO {
+    private final UserTokenDTO userToken;
+    private final UserDTO user;
+
+    public SessionDTO(UserTokenDTO userToken, UserDTO user) {
+        this.userToken = userToken;
+        this.user = user;
+    }
+
+    public UserTokenDTO getUserToken() {
+        return userToken;
+    }
+
+    public UserDTO getUser() {
+        return user;
+    }
+}
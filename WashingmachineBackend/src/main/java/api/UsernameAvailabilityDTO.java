@@ -0,0 +1,19 @@
+package api;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class UsernameAvailabilityDTO extends SuccessDTO {
+    private List<String> suggestions;
+
+    public UsernameAvailabilityDTO(String error, boolean success, List<String> suggestions) {
+        super(error, success);
+        this.suggestions = suggestions;
+    }
+
+    @JsonProperty
+    public List<String> getSuggestions() {
+        return suggestions;
+    }
+}
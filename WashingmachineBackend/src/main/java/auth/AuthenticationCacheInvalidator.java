@@ -0,0 +1,36 @@
+package auth;
+
+import db.CoherenceChannel;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Drops revoked tokens from the authentication cache of this node and, through the {@link CoherenceChannel}, of every
+ * other node.
+ */
+public class AuthenticationCacheInvalidator {
+    private final SessionCache sessionCache;
+    private final CoherenceChannel coherenceChannel;
+    private final Executor invalidationExecutor;
+
+    /**
+     * @param invalidationExecutor runs the invalidations, e.g. once the revocation is committed so a concurrent
+     *                             request cannot cache the old state again
+     */
+    public AuthenticationCacheInvalidator(SessionCache sessionCache, CoherenceChannel coherenceChannel,
+                                          Executor invalidationExecutor) {
+        this.sessionCache = sessionCache;
+        this.coherenceChannel = coherenceChannel;
+        this.invalidationExecutor = invalidationExecutor;
+        coherenceChannel.subscribe(CoherenceChannel.TOKEN, tokenHash ->
+                sessionCache.invalidateAll(token -> CoherenceChannel.hashToken(token).equals(tokenHash)));
+        coherenceChannel.onResync(sessionCache::invalidateAll);
+    }
+
+    public void tokenRevoked(String token) {
+        invalidationExecutor.execute(() -> {
+            sessionCache.invalidate(token);
+            coherenceChannel.publish(CoherenceChannel.TOKEN, CoherenceChannel.hashToken(token));
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package auth;
+
+import io.dropwizard.auth.Auth;
+
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Optional;
+
+/**
+ * Like {@link io.dropwizard.auth.AuthDynamicFeature}, but methods taking an {@code @Auth Optional<UserDTO>} get a filter
+ * that lets signed out requests through, so they are authenticated from the same cache as everything else.
+ */
+public class CookieAuthDynamicFeature implements DynamicFeature {
+    private final ContainerRequestFilter requiredAuthFilter;
+    private final ContainerRequestFilter optionalAuthFilter;
+
+    public CookieAuthDynamicFeature(ContainerRequestFilter requiredAuthFilter, ContainerRequestFilter optionalAuthFilter) {
+        this.requiredAuthFilter = requiredAuthFilter;
+        this.optionalAuthFilter = optionalAuthFilter;
+    }
+
+    @Override
+    public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+        Method method = resourceInfo.getResourceMethod();
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterAnnotations.length; i++) {
+            for (Annotation annotation : parameterAnnotations[i]) {
+                if (annotation instanceof Auth) {
+                    context.register(parameterTypes[i] == Optional.class ? optionalAuthFilter : requiredAuthFilter);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package auth;
 
 import io.dropwizard.auth.AuthFilter;
-import io.dropwizard.auth.oauth.OAuthCredentialAuthFilter;
 
+import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.core.Cookie;
@@ -11,14 +11,33 @@ import java.security.Principal;
 import java.util.Map;
 
 public class CookieCredentialAuthFilter<P extends Principal> extends AuthFilter<String, P> {
+    public static final String COOKIE_NAME = "userAccessToken";
+
+    private final boolean optional;
+
     public CookieCredentialAuthFilter() {
+        this(false);
+    }
 
+    /**
+     * @param optional let requests without a valid session through as signed out rather than rejecting them
+     */
+    public CookieCredentialAuthFilter(boolean optional) {
+        this.optional = optional;
     }
 
     @Override
     public void filter(ContainerRequestContext containerRequestContext) throws IOException {
+        if (optional) {
+            Cookie cookie = containerRequestContext.getCookies().get(COOKIE_NAME);
+            if (cookie != null) {
+                tryAuthenticate(containerRequestContext, cookie.getValue());
+            }
+            return;
+        }
+
         for (Map.Entry<String, Cookie> credential : containerRequestContext.getCookies().entrySet()) {
-            if(this.authenticate(containerRequestContext, credential.getValue().getValue(), "BASIC")) {
+            if(tryAuthenticate(containerRequestContext, credential.getValue().getValue())) {
                 return;
             }
         }
@@ -27,12 +46,28 @@ public class CookieCredentialAuthFilter<P extends Principal> extends AuthFilter<
 
     }
 
+    // AuthFilter turns the AuthenticationException of an unknown, expired or signed out token into a 500
+    private boolean tryAuthenticate(ContainerRequestContext containerRequestContext, String token) {
+        try {
+            return this.authenticate(containerRequestContext, token, "BASIC");
+        } catch (InternalServerErrorException e) {
+            return false;
+        }
+    }
+
     public static class Builder<P extends Principal> extends AuthFilterBuilder<String, P, CookieCredentialAuthFilter<P>> {
+        private boolean optional;
+
         public Builder() {
         }
 
+        public Builder<P> setOptional(boolean optional) {
+            this.optional = optional;
+            return this;
+        }
+
         protected CookieCredentialAuthFilter<P> newInstance() {
-            return new CookieCredentialAuthFilter();
+            return new CookieCredentialAuthFilter<>(optional);
         }
     }
 }
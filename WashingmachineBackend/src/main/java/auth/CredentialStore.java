@@ -0,0 +1,76 @@
+package auth;
+
+import api.CredentialsDTO;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import db.UserDAO;
+
+/**
+ * Checks a password against the credentials read in one query, see {@link UserDAO#getCredentials(String)}.
+ * Hashes are compared in constant time, and unknown users are hashed too so they take as long as a wrong password.
+ *
+ * Only the hashing runs on the {@link HashingExecutor}, queries stay on the request thread and its unit of work.
+ * Hashes older than the {@link PasswordHasher} settings are replaced once the password has been verified.
+ */
+public class CredentialStore {
+    private static final String UNKNOWN_USER_SALT = "unknown";
+
+    private final UserDAO userDAO;
+    private final PasswordHasher passwordHasher;
+    private final HashingExecutor hashingExecutor;
+    private final String unknownUserHash;
+    private final Timer signIns;
+    private final Meter rejected;
+    private final Meter upgraded;
+
+    public CredentialStore(UserDAO userDAO, PasswordHasher passwordHasher, HashingExecutor hashingExecutor,
+                           MetricRegistry metricRegistry) {
+        this.userDAO = userDAO;
+        this.passwordHasher = passwordHasher;
+        this.hashingExecutor = hashingExecutor;
+        this.unknownUserHash = passwordHasher.hash(UNKNOWN_USER_SALT, UNKNOWN_USER_SALT);
+        this.signIns = metricRegistry.timer(MetricRegistry.name(CredentialStore.class, "sign-ins"));
+        this.rejected = metricRegistry.meter(MetricRegistry.name(CredentialStore.class, "rejected"));
+        this.upgraded = metricRegistry.meter(MetricRegistry.name(CredentialStore.class, "upgraded-hashes"));
+    }
+
+    /**
+     * @return the credentials of the user if the password is correct, otherwise null
+     * @throws exceptions.TooBusyException if too many passwords are being hashed
+     */
+    public CredentialsDTO authenticate(String username, String password) {
+        try (Timer.Context ignored = signIns.time()) {
+            CredentialsDTO credentials = userDAO.getCredentials(username);
+            String salt = credentials != null ? credentials.getSalt() : UNKNOWN_USER_SALT;
+            String storedHash = credentials != null ? credentials.getPasswordHash() : unknownUserHash;
+            boolean upgrade = passwordHasher.needsUpgrade(storedHash);
+            String[] upgradedHash = new String[1];
+            boolean verified = hashingExecutor.run(() -> {
+                if (!passwordHasher.verify(password, salt, storedHash)) {
+                    return false;
+                }
+                if (upgrade) {
+                    upgradedHash[0] = passwordHasher.hash(password, salt);
+                }
+                return true;
+            });
+            if (credentials == null || !verified) {
+                rejected.mark();
+                return null;
+            }
+            if (upgradedHash[0] != null) {
+                userDAO.updatePassword(credentials.getUser().getName(), upgradedHash[0]);
+                upgraded.mark();
+            }
+            return credentials;
+        }
+    }
+
+    /**
+     * @return the hash to store for a new password
+     */
+    public String hashNewPassword(String password, String salt) {
+        return hashingExecutor.run(() -> passwordHasher.hash(password, salt));
+    }
+}
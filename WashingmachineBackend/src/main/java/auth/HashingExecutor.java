@@ -0,0 +1,98 @@
+package auth;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import exceptions.TooBusyException;
+import io.dropwizard.lifecycle.Managed;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs password hashing on a few threads of its own, so a storm of sign-ins cannot take every request thread and
+ * starve booking traffic. Once the bounded queue is full further work is rejected right away with 503 and a
+ * Retry-After estimated from how long hashing has been taking.
+ */
+public class HashingExecutor implements Managed {
+    public static final int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final Timer hashes;
+    private final Meter rejected;
+
+    public HashingExecutor(int threads, int queueSize, MetricRegistry metricRegistry) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.threads = threads;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.hashes = metricRegistry.timer(MetricRegistry.name(HashingExecutor.class, "hashes"));
+        this.rejected = metricRegistry.meter(MetricRegistry.name(HashingExecutor.class, "rejected"));
+        metricRegistry.register(MetricRegistry.name(HashingExecutor.class, "queue-depth"), (Gauge<Integer>) () -> executor.getQueue().size());
+    }
+
+    /**
+     * Runs the hashing and waits for its result
+     *
+     * @throws TooBusyException if too much hashing is queued already
+     */
+    public <T> T run(Callable<T> hashing) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                try (Timer.Context ignored = hashes.time()) {
+                    return hashing.call();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw new TooBusyException("Too many sign-ins right now, try again shortly", retryAfterSeconds());
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * @return the time to work through the queue at the recent hashing speed, at least a second
+     */
+    private long retryAfterSeconds() {
+        double meanNanos = hashes.getSnapshot().getMean();
+        double queuedNanos = meanNanos * (executor.getQueue().size() + threads) / threads;
+        return Math.max(1, (long) Math.ceil(queuedNanos / TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
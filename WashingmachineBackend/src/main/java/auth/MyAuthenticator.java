@@ -1,9 +1,8 @@
 package auth;
 
+import api.SessionDTO;
 import api.UserDTO;
 import api.UserTokenDTO;
-import db.UserDAO;
-import db.UserTokenDAO;
 import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.auth.Authenticator;
 
@@ -12,24 +11,31 @@ import java.util.Calendar;
 import java.util.Optional;
 
 public class MyAuthenticator implements Authenticator<String, UserDTO> {
-    private UserTokenDAO userTokenDAO;
-    private UserDAO userDAO;
+    private SessionCache sessionCache;
     private int tokenLifetime;
 
-    public MyAuthenticator(UserTokenDAO userTokenDAO, UserDAO userDAO, int tokenLifetime) {
-        this.userTokenDAO = userTokenDAO;
-        this.userDAO = userDAO;
+    public MyAuthenticator(SessionCache sessionCache, int tokenLifetime) {
+        this.sessionCache = sessionCache;
         this.tokenLifetime = tokenLifetime;
     }
 
     public Optional<UserDTO> authenticate(String token) throws AuthenticationException {
-        UserTokenDTO userTokenDTO = userTokenDAO.getUserTokenFromToken(token);
+        SessionDTO sessionDTO = sessionCache.get(token);
         Calendar calendar = Calendar.getInstance();
-        if (userTokenDTO == null) {
+        if (sessionDTO == null) {
             throw new AuthenticationException("Session key not present or invalid");
         }
 
+        // The cached lifetime may have been extended by another node since
+        if (calendar.getTime().after(sessionDTO.getUserToken().getLifetimeEnds())) {
+            sessionDTO = sessionCache.reload(token);
+            if (sessionDTO == null) {
+                throw new AuthenticationException("Session key not present or invalid");
+            }
+        }
+
         // If token has expired or is invalid throw exception
+        UserTokenDTO userTokenDTO = sessionDTO.getUserToken();
         if (calendar.getTime().after(userTokenDTO.getLifetimeEnds()) || userTokenDTO.getStatus().equals(UserTokenDTO.Status.INVALID)) {
             throw new AuthenticationException("Token is invalid");
         }
@@ -38,9 +44,9 @@ public class MyAuthenticator implements Authenticator<String, UserDTO> {
         calendar.add(Calendar.DAY_OF_YEAR, 1);
         if (calendar.getTime().after(userTokenDTO.getLifetimeEnds())) {
             calendar.add(Calendar.DAY_OF_YEAR, tokenLifetime - 1);
-            userTokenDAO.setNewTimeForToken(userTokenDTO.getToken(), calendar.getTime());
+            sessionCache.extend(sessionDTO, calendar.getTime());
         }
 
-        return Optional.of(userDAO.getUser(userTokenDTO.getUsername()));
+        return Optional.of(sessionDTO.getUser());
     }
 }
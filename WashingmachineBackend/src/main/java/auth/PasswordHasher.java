@@ -0,0 +1,76 @@
+package auth;
+
+import core.Util;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Hashes passwords with PBKDF2-HMAC-SHA256. Stored hashes say how they were made, "pbkdf2-sha256$iterations$hash",
+ * so hashes of older versions or fewer iterations still verify and are replaced at the next sign-in. Hashes without
+ * a version are the plain SHA-256 of {@link Util#getHashedAndSaltedPassword(String, String)}.
+ *
+ * Hashing is deliberately slow, run it on the {@link HashingExecutor} rather than on request threads.
+ */
+public class PasswordHasher {
+    public static final int DEFAULT_ITERATIONS = 310000;
+
+    private static final String PBKDF2_SHA256 = "pbkdf2-sha256";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int HASH_BITS = 256;
+
+    private final int iterations;
+
+    public PasswordHasher(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public String hash(String password, String salt) {
+        return PBKDF2_SHA256 + "$" + iterations + "$" + Base64.getEncoder().encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    /**
+     * Compares in constant time for hashes of the same version
+     */
+    public boolean verify(String password, String salt, String storedHash) {
+        String[] parts = storedHash.split("\\$");
+        byte[] expected;
+        byte[] actual;
+        if (parts.length == 1) {
+            expected = storedHash.getBytes(StandardCharsets.US_ASCII);
+            actual = Util.getHashedAndSaltedPassword(password, salt).getBytes(StandardCharsets.US_ASCII);
+        } else if (parts.length == 3 && parts[0].equals(PBKDF2_SHA256)) {
+            try {
+                expected = Base64.getDecoder().decode(parts[2]);
+                actual = pbkdf2(password, salt, Integer.parseInt(parts[1]));
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        } else {
+            return false;
+        }
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * @return whether the hash was not made by {@link #hash(String, String)} as configured now
+     */
+    public boolean needsUpgrade(String storedHash) {
+        return !storedHash.startsWith(PBKDF2_SHA256 + "$" + iterations + "$");
+    }
+
+    private static byte[] pbkdf2(String password, String salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt.getBytes(StandardCharsets.UTF_8), iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
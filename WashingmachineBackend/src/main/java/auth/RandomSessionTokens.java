@@ -0,0 +1,27 @@
+package auth;
+
+import api.UserDTO;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Date;
+
+public class RandomSessionTokens implements SessionTokens {
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Override
+    public String create(UserDTO userDTO, Date lifetimeEnds) {
+        // Generate 128-bit random token
+        byte[] bytes = new byte[17];
+        secureRandom.nextBytes(bytes);
+        bytes[0] = 0;
+        return new BigInteger(bytes).toString();
+    }
+
+    /**
+     * The token stays valid until it runs out, signing out only clears the cookie
+     */
+    @Override
+    public void signedOut(String token) {
+    }
+}
@@ -0,0 +1,148 @@
+package auth;
+
+import api.SessionDTO;
+import api.UserTokenDTO;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import db.UserTokenDAO;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Caches the session of every token, loaded with its user in one query, so authenticating a cached token runs no
+ * query at all.
+ *
+ * Extended lifetimes are applied to the cached session right away and written to user_tokens in one batch by
+ * {@link #flushRefreshes()}, which runs periodically and when the application stops. Refreshes not yet flushed are
+ * lost on a crash, which only shortens those tokens to the lifetime they had before.
+ */
+public class SessionCache implements Managed {
+    public static final int DEFAULT_FLUSH_INTERVAL_SECONDS = 30;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionCache.class);
+
+    private final UserTokenDAO userTokenDAO;
+    private final Cache<String, SessionDTO> cache;
+    private final Map<String, Date> pendingRefreshes = new ConcurrentHashMap<>();
+    private final Meter hits;
+    private final Meter misses;
+    private final Timer loads;
+    private final Timer flushes;
+
+    public SessionCache(UserTokenDAO userTokenDAO, CacheBuilderSpec cacheBuilderSpec, MetricRegistry metricRegistry) {
+        this.userTokenDAO = userTokenDAO;
+        this.cache = CacheBuilder.from(cacheBuilderSpec).recordStats().build();
+        this.hits = metricRegistry.meter(MetricRegistry.name(SessionCache.class, "hits"));
+        this.misses = metricRegistry.meter(MetricRegistry.name(SessionCache.class, "misses"));
+        this.loads = metricRegistry.timer(MetricRegistry.name(SessionCache.class, "loads"));
+        this.flushes = metricRegistry.timer(MetricRegistry.name(SessionCache.class, "refresh-flushes"));
+        metricRegistry.register(MetricRegistry.name(SessionCache.class, "evictions"), (Gauge<Long>) () -> cache.stats().evictionCount());
+        metricRegistry.register(MetricRegistry.name(SessionCache.class, "size"), (Gauge<Long>) cache::size);
+        metricRegistry.register(MetricRegistry.name(SessionCache.class, "pending-refreshes"), (Gauge<Integer>) pendingRefreshes::size);
+    }
+
+    /**
+     * @return the cached session of the token, loaded if not cached, or null if there is no such token
+     */
+    public SessionDTO get(String token) {
+        SessionDTO session = cache.getIfPresent(token);
+        if (session != null) {
+            hits.mark();
+            return session;
+        }
+        misses.mark();
+        return load(token);
+    }
+
+    /**
+     * Loads the session even if cached, e.g. as another node may have extended the lifetime of the cached session
+     */
+    public SessionDTO reload(String token) {
+        cache.invalidate(token);
+        misses.mark();
+        return load(token);
+    }
+
+    /**
+     * Extends the lifetime of the cached session now and of the stored token on the next flush
+     */
+    public void extend(SessionDTO session, Date lifetimeEnds) {
+        UserTokenDTO userToken = session.getUserToken();
+        cache.put(userToken.getToken(), new SessionDTO(
+                new UserTokenDTO(userToken.getUsername(), userToken.getToken(), lifetimeEnds, userToken.getStatus()),
+                session.getUser()));
+        pendingRefreshes.put(userToken.getToken(), lifetimeEnds);
+    }
+
+    public void invalidate(String token) {
+        cache.invalidate(token);
+        pendingRefreshes.remove(token);
+    }
+
+    public void invalidateAll(Predicate<String> tokens) {
+        cache.asMap().keySet().removeIf(tokens);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Writes the extended lifetimes in one batch, logging rather than throwing for running on a schedule. Lifetimes
+     * that could not be written are retried on the next flush.
+     */
+    public void flushRefreshes() {
+        if (pendingRefreshes.isEmpty()) {
+            return;
+        }
+        List<String> tokens = new ArrayList<>();
+        List<Date> lifetimes = new ArrayList<>();
+        for (Map.Entry<String, Date> refresh : pendingRefreshes.entrySet()) {
+            tokens.add(refresh.getKey());
+            lifetimes.add(refresh.getValue());
+        }
+        try (Timer.Context ignored = flushes.time()) {
+            userTokenDAO.setNewTimesForTokens(tokens, lifetimes);
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not write {} refreshed token lifetimes", tokens.size(), e);
+            return;
+        }
+        // Lifetimes extended again while writing stay pending
+        for (int i = 0; i < tokens.size(); i++) {
+            pendingRefreshes.remove(tokens.get(i), lifetimes.get(i));
+        }
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+        flushRefreshes();
+    }
+
+    private SessionDTO load(String token) {
+        SessionDTO session;
+        try (Timer.Context ignored = loads.time()) {
+            session = userTokenDAO.getSessionFromToken(token);
+        }
+        if (session != null) {
+            cache.put(token, session);
+        }
+        return session;
+    }
+}
@@ -0,0 +1,25 @@
+package auth;
+
+import api.UserDTO;
+
+import java.util.Date;
+
+/**
+ * Issues the tokens handed out at sign-in and ends them at sign-out
+ */
+public interface SessionTokens {
+    enum Mode {
+        /**
+         * Random tokens, resolved through user_tokens and the {@link SessionCache}
+         */
+        DATABASE,
+        /**
+         * Tokens carrying the user, verified in memory by {@link SignedSessionTokens}
+         */
+        SIGNED
+    }
+
+    String create(UserDTO userDTO, Date lifetimeEnds);
+
+    void signedOut(String token);
+}
@@ -0,0 +1,88 @@
+package auth;
+
+import api.UserDTO;
+import io.dropwizard.auth.Auth;
+import org.glassfish.hk2.api.InjectionResolver;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.TypeLiteral;
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.glassfish.jersey.server.internal.inject.AbstractContainerRequestValueFactory;
+import org.glassfish.jersey.server.internal.inject.AbstractValueFactoryProvider;
+import org.glassfish.jersey.server.internal.inject.MultivaluedParameterExtractorProvider;
+import org.glassfish.jersey.server.internal.inject.ParamInjectionResolver;
+import org.glassfish.jersey.server.model.Parameter;
+import org.glassfish.jersey.server.spi.internal.ValueFactoryProvider;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.security.Principal;
+import java.util.Optional;
+
+/**
+ * Injects the signed in user into {@code @Auth UserDTO} and {@code @Auth Optional<UserDTO>} parameters, the latter being
+ * empty for signed out requests. Used with {@link CookieAuthDynamicFeature} in place of Dropwizard's provider, which
+ * only knows the first.
+ */
+@Singleton
+public class SessionUserValueFactoryProvider extends AbstractValueFactoryProvider {
+
+    @Inject
+    public SessionUserValueFactoryProvider(MultivaluedParameterExtractorProvider mpep, ServiceLocator injector) {
+        super(mpep, injector, Parameter.Source.UNKNOWN);
+    }
+
+    @Override
+    protected AbstractContainerRequestValueFactory<?> createValueFactory(Parameter parameter) {
+        if (!parameter.isAnnotationPresent(Auth.class)) {
+            return null;
+        }
+        if (parameter.getRawType() == UserDTO.class) {
+            return new UserValueFactory();
+        }
+        if (parameter.getRawType() == Optional.class && isOptionalOfUser(parameter.getType())) {
+            return new OptionalUserValueFactory();
+        }
+        return null;
+    }
+
+    private static boolean isOptionalOfUser(Type type) {
+        return type instanceof ParameterizedType
+                && ((ParameterizedType) type).getActualTypeArguments()[0] == UserDTO.class;
+    }
+
+    private static class UserValueFactory extends AbstractContainerRequestValueFactory<UserDTO> {
+        @Override
+        public UserDTO provide() {
+            Principal principal = getContainerRequest().getSecurityContext().getUserPrincipal();
+            if (!(principal instanceof UserDTO)) {
+                throw new IllegalStateException("Cannot inject a signed in user into a request without one");
+            }
+            return (UserDTO) principal;
+        }
+    }
+
+    private static class OptionalUserValueFactory extends AbstractContainerRequestValueFactory<Optional<UserDTO>> {
+        @Override
+        public Optional<UserDTO> provide() {
+            Principal principal = getContainerRequest().getSecurityContext().getUserPrincipal();
+            return principal instanceof UserDTO ? Optional.of((UserDTO) principal) : Optional.empty();
+        }
+    }
+
+    static class SessionUserInjectionResolver extends ParamInjectionResolver<Auth> {
+        SessionUserInjectionResolver() {
+            super(SessionUserValueFactoryProvider.class);
+        }
+    }
+
+    public static class Binder extends AbstractBinder {
+        @Override
+        protected void configure() {
+            bind(SessionUserValueFactoryProvider.class).to(ValueFactoryProvider.class).in(Singleton.class);
+            bind(SessionUserInjectionResolver.class).to(new TypeLiteral<InjectionResolver<Auth>>() {
+            }).in(Singleton.class);
+        }
+    }
+}
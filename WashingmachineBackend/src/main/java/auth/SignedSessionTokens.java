@@ -0,0 +1,179 @@
+package auth;
+
+import api.UserDTO;
+import db.UserTokenDAO;
+import io.dropwizard.auth.Authenticator;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Tokens carrying the user and the end of their lifetime, signed with HMAC-SHA256, so they are verified in memory
+ * without reading user_tokens. A token looks like "keyId.payload.signature", both parts base64url encoded.
+ *
+ * Keys are rotated by adding a new key first, which signs every new token, and removing the old key once the tokens
+ * it signed have run out. Signed-out tokens are rejected through the {@link TokenRevocations}. The token still carries
+ * the role and profile the user had at sign-in until it runs out.
+ */
+public class SignedSessionTokens implements SessionTokens, Authenticator<String, UserDTO> {
+    public static final int MIN_KEY_BYTES = 32;
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 1;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final Map<String, SigningKey> keys = new LinkedHashMap<>();
+    private final SigningKey signingKey;
+    private final TokenRevocations tokenRevocations;
+    private final UserTokenDAO userTokenDAO;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    /**
+     * @param base64Keys secrets by key id, the first one signs new tokens
+     */
+    public SignedSessionTokens(Map<String, String> base64Keys, TokenRevocations tokenRevocations, UserTokenDAO userTokenDAO) {
+        for (Map.Entry<String, String> key : base64Keys.entrySet()) {
+            if (key.getKey().isEmpty() || key.getKey().contains(".")) {
+                throw new IllegalArgumentException("Token signing key ids must be non-empty and cannot contain '.'");
+            }
+            byte[] secret = Base64.getDecoder().decode(key.getValue());
+            if (secret.length < MIN_KEY_BYTES) {
+                throw new IllegalArgumentException("Token signing key " + key.getKey() + " must be at least " + MIN_KEY_BYTES + " bytes");
+            }
+            keys.put(key.getKey(), new SigningKey(key.getKey(), secret));
+        }
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("Signed tokens need at least one signing key");
+        }
+        this.signingKey = keys.values().iterator().next();
+        this.tokenRevocations = tokenRevocations;
+        this.userTokenDAO = userTokenDAO;
+    }
+
+    @Override
+    public String create(UserDTO userDTO, Date lifetimeEnds) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream payload = new DataOutputStream(bytes)) {
+            payload.writeByte(VERSION);
+            payload.writeUTF(userDTO.getName());
+            payload.writeInt(userDTO.getRole());
+            payload.writeUTF(userDTO.getRealName());
+            payload.writeUTF(userDTO.getApartment());
+            payload.writeLong(lifetimeEnds.getTime());
+            // Tokens of the same user and lifetime differ, so revoking one does not revoke the next
+            payload.writeLong(secureRandom.nextLong());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String signed = signingKey.id + "." + ENCODER.encodeToString(bytes.toByteArray());
+        return signed + "." + ENCODER.encodeToString(signingKey.sign(signed));
+    }
+
+    /**
+     * Anything but a valid token of ours is not authenticated, e.g. other cookies sent along
+     */
+    @Override
+    public Optional<UserDTO> authenticate(String token) {
+        Claims claims = verify(token);
+        if (claims == null || claims.lifetimeEnds < System.currentTimeMillis() || tokenRevocations.isRevoked(token)) {
+            return Optional.empty();
+        }
+        return Optional.of(claims.userDTO);
+    }
+
+    /**
+     * Revokes the token and drops it from user_tokens, so the next sign-in gets a new one
+     */
+    @Override
+    public void signedOut(String token) {
+        Claims claims = verify(token);
+        if (claims == null || claims.lifetimeEnds < System.currentTimeMillis()) {
+            return;
+        }
+        tokenRevocations.revoke(token, new Date(claims.lifetimeEnds));
+        userTokenDAO.deleteUserTokenFromUsername(claims.userDTO.getName());
+    }
+
+    /**
+     * @return the claims of a token signed by one of the keys, or null
+     */
+    private Claims verify(String token) {
+        int keyEnd = token.indexOf('.');
+        int payloadEnd = token.lastIndexOf('.');
+        if (keyEnd <= 0 || payloadEnd <= keyEnd) {
+            return null;
+        }
+        SigningKey key = keys.get(token.substring(0, keyEnd));
+        if (key == null) {
+            return null;
+        }
+        try {
+            byte[] signature = DECODER.decode(token.substring(payloadEnd + 1));
+            if (!MessageDigest.isEqual(signature, key.sign(token.substring(0, payloadEnd)))) {
+                return null;
+            }
+            DataInputStream payload = new DataInputStream(new ByteArrayInputStream(DECODER.decode(token.substring(keyEnd + 1, payloadEnd))));
+            if (payload.readByte() != VERSION) {
+                return null;
+            }
+            String username = payload.readUTF();
+            int role = payload.readInt();
+            String realName = payload.readUTF();
+            String apartment = payload.readUTF();
+            return new Claims(new UserDTO(username, role, realName, apartment), payload.readLong());
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+    }
+
+    private static class Claims {
+        private final UserDTO userDTO;
+        private final long lifetimeEnds;
+
+        private Claims(UserDTO userDTO, long lifetimeEnds) {
+            this.userDTO = userDTO;
+            this.lifetimeEnds = lifetimeEnds;
+        }
+    }
+
+    private static class SigningKey {
+        private final String id;
+        private final SecretKeySpec secret;
+        // Mac instances are not thread safe but expensive to create
+        private final ThreadLocal<Mac> macs;
+
+        private SigningKey(String id, byte[] secret) {
+            this.id = id;
+            this.secret = new SecretKeySpec(secret, ALGORITHM);
+            this.macs = ThreadLocal.withInitial(() -> {
+                try {
+                    Mac mac = Mac.getInstance(ALGORITHM);
+                    mac.init(this.secret);
+                    return mac;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        private byte[] sign(String content) {
+            return macs.get().doFinal(content.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package auth;
+
+import db.CoherenceChannel;
+import db.TokenRevocationDAO;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The signed-out tokens still within their lifetime, held in memory so signed tokens are verified without a query.
+ * Revocations are stored in token_revocations for nodes starting later and published on the {@link CoherenceChannel}
+ * for the running ones. Every other token is never looked up, and while nobody has signed out nothing is even hashed.
+ */
+public class TokenRevocations {
+    private final TokenRevocationDAO tokenRevocationDAO;
+    private final CoherenceChannel coherenceChannel;
+    private final Map<String, Long> revokedUntil = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxLifetimeMillis how long revocations received from other nodes are kept, as only the hash is published
+     */
+    public TokenRevocations(TokenRevocationDAO tokenRevocationDAO, CoherenceChannel coherenceChannel, long maxLifetimeMillis) {
+        this.tokenRevocationDAO = tokenRevocationDAO;
+        this.coherenceChannel = coherenceChannel;
+        coherenceChannel.subscribe(CoherenceChannel.REVOCATION, tokenHash ->
+                revokedUntil.put(tokenHash, System.currentTimeMillis() + maxLifetimeMillis));
+        coherenceChannel.onResync(this::load);
+    }
+
+    public void load() {
+        Date now = new Date();
+        tokenRevocationDAO.deleteExpiredRevocations(now);
+        revokedUntil.clear();
+        for (Map.Entry<String, Date> revocation : tokenRevocationDAO.getRevocations(now)) {
+            revokedUntil.put(revocation.getKey(), revocation.getValue().getTime());
+        }
+    }
+
+    public void revoke(String token, Date lifetimeEnds) {
+        String tokenHash = CoherenceChannel.hashToken(token);
+        tokenRevocationDAO.insertRevocation(tokenHash, lifetimeEnds);
+        revokedUntil.put(tokenHash, lifetimeEnds.getTime());
+        coherenceChannel.publish(CoherenceChannel.REVOCATION, tokenHash);
+        dropExpired();
+    }
+
+    public boolean isRevoked(String token) {
+        return !revokedUntil.isEmpty() && revokedUntil.containsKey(CoherenceChannel.hashToken(token));
+    }
+
+    public int size() {
+        return revokedUntil.size();
+    }
+
+    private void dropExpired() {
+        long now = System.currentTimeMillis();
+        revokedUntil.values().removeIf(until -> until <= now);
+    }
+}
@@ -0,0 +1,17 @@
+package core;
+
+import api.BookingDTO;
+
+/**
+ * Notified about booking writes once they are committed
+ */
+public interface BookingChangeListener {
+    void bookingCreated(BookingDTO bookingDTO);
+
+    /**
+     * @param previous the interval of the booking before the edit, or null if it was not known on this node
+     */
+    void bookingEdited(BookingInterval previous, BookingDTO bookingDTO);
+
+    void bookingDeleted(BookingDTO bookingDTO);
+}
@@ -0,0 +1,68 @@
+package core;
+
+import api.BookingDTO;
+import db.BookingDAO;
+import db.CoherenceChannel;
+
+import java.time.YearMonth;
+
+/**
+ * Publishes the months this node writes bookings to, and brings the machine timelines, month versions and month cache
+ * up to date when another node reports a month as changed.
+ */
+public class BookingCoherence implements BookingChangeListener {
+    private final CoherenceChannel coherenceChannel;
+    private final BookingDAO bookingDAO;
+    private final MachineTimelines machineTimelines;
+    private final BookingMonthVersions bookingMonthVersions;
+    private final BookingMonthCache bookingMonthCache;
+
+    public BookingCoherence(CoherenceChannel coherenceChannel, BookingDAO bookingDAO, MachineTimelines machineTimelines,
+                            BookingMonthVersions bookingMonthVersions, BookingMonthCache bookingMonthCache) {
+        this.coherenceChannel = coherenceChannel;
+        this.bookingDAO = bookingDAO;
+        this.machineTimelines = machineTimelines;
+        this.bookingMonthVersions = bookingMonthVersions;
+        this.bookingMonthCache = bookingMonthCache;
+        coherenceChannel.subscribe(CoherenceChannel.BOOKING, month -> monthChangedElsewhere(YearMonth.parse(month)));
+        coherenceChannel.onResync(this::resync);
+    }
+
+    void monthChangedElsewhere(YearMonth month) {
+        machineTimelines.replaceStartingIn(BookingMonthVersions.startOf(month).getTime(),
+                BookingMonthVersions.startOf(month.plusMonths(1)).getTime(),
+                bookingDAO.getBookingIntervalsStartingInInterval(BookingMonthVersions.startOf(month),
+                        BookingMonthVersions.startOf(month.plusMonths(1))));
+        bookingMonthVersions.bump(month);
+        bookingMonthCache.invalidate(month);
+    }
+
+    void resync() {
+        machineTimelines.replaceStartingIn(Long.MIN_VALUE, Long.MAX_VALUE, bookingDAO.getAllBookingIntervals());
+        bookingMonthVersions.renewEpoch();
+        bookingMonthCache.invalidateAll();
+    }
+
+    @Override
+    public void bookingCreated(BookingDTO bookingDTO) {
+        publish(BookingMonthVersions.monthOf(bookingDTO.getStartTime()));
+    }
+
+    @Override
+    public void bookingEdited(BookingInterval previous, BookingDTO bookingDTO) {
+        YearMonth month = BookingMonthVersions.monthOf(bookingDTO.getStartTime());
+        if (previous != null && !BookingMonthVersions.monthOf(previous.getStartTime()).equals(month)) {
+            publish(BookingMonthVersions.monthOf(previous.getStartTime()));
+        }
+        publish(month);
+    }
+
+    @Override
+    public void bookingDeleted(BookingDTO bookingDTO) {
+        publish(BookingMonthVersions.monthOf(bookingDTO.getStartTime()));
+    }
+
+    private void publish(YearMonth month) {
+        coherenceChannel.publish(CoherenceChannel.BOOKING, month.toString());
+    }
+}
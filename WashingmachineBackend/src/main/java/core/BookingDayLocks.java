@@ -0,0 +1,99 @@
+package core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks serializing booking writes per machine and day. Every machine has stripes of its own, so writers
+ * booking different machines never wait on each other. Writers booking different days of a machine take different
+ * stripes too; with the default of 366 stripes that holds for any two days less than a year apart. Stripes are always
+ * taken in ascending order, so writers touching several days cannot deadlock.
+ *
+ * Closing the held locks hands their release to the release executor, so they can cover a write until it is
+ * committed rather than only until the resource method returns.
+ */
+public class BookingDayLocks {
+    public static final int DEFAULT_NUMBER_OF_STRIPES = 366;
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
+
+    private final int numberOfStripes;
+    private final Executor releaseExecutor;
+    private final ConcurrentMap<Integer, ReentrantLock[]> machineStripes = new ConcurrentHashMap<>();
+
+    public BookingDayLocks() {
+        this(DEFAULT_NUMBER_OF_STRIPES, Runnable::run);
+    }
+
+    /**
+     * @param releaseExecutor releases closed locks, e.g. once the unit of work they were taken in has completed. It
+     *                        must run the release on the thread that took the locks
+     */
+    public BookingDayLocks(Executor releaseExecutor) {
+        this(DEFAULT_NUMBER_OF_STRIPES, releaseExecutor);
+    }
+
+    public BookingDayLocks(int numberOfStripes, Executor releaseExecutor) {
+        this.numberOfStripes = numberOfStripes;
+        this.releaseExecutor = releaseExecutor;
+    }
+
+    /**
+     * Locks every day of the machine touched by [startTime, endTime). Days follow the same UTC day buckets as
+     * {@link BookingIntervalIndex}. Release the locks by closing the returned handle.
+     */
+    public Held lock(int machineId, long startTime, long endTime) {
+        ReentrantLock[] stripes = machineStripes.computeIfAbsent(machineId, machine -> newStripes());
+        long firstDay = Math.floorDiv(startTime, MILLIS_PER_DAY);
+        long lastDay = Math.floorDiv(Math.max(startTime, endTime - 1), MILLIS_PER_DAY);
+
+        boolean[] needed = new boolean[stripes.length];
+        long numberOfDays = Math.min(lastDay - firstDay + 1, stripes.length);
+        for (long day = firstDay; day < firstDay + numberOfDays; day++) {
+            needed[(int) Math.floorMod(day, (long) stripes.length)] = true;
+        }
+
+        int count = 0;
+        int[] taken = new int[(int) numberOfDays];
+        for (int i = 0; i < stripes.length; i++) {
+            if (needed[i]) {
+                stripes[i].lock();
+                taken[count++] = i;
+            }
+        }
+        return new Held(stripes, taken, count, releaseExecutor);
+    }
+
+    private ReentrantLock[] newStripes() {
+        ReentrantLock[] stripes = new ReentrantLock[numberOfStripes];
+        for (int i = 0; i < numberOfStripes; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        return stripes;
+    }
+
+    public static class Held implements AutoCloseable {
+        private final ReentrantLock[] stripes;
+        private final int[] taken;
+        private final int count;
+        private final Executor releaseExecutor;
+
+        private Held(ReentrantLock[] stripes, int[] taken, int count, Executor releaseExecutor) {
+            this.stripes = stripes;
+            this.taken = taken;
+            this.count = count;
+            this.releaseExecutor = releaseExecutor;
+        }
+
+        @Override
+        public void close() {
+            releaseExecutor.execute(() -> {
+                for (int i = count - 1; i >= 0; i--) {
+                    stripes[taken[i]].unlock();
+                }
+            });
+        }
+    }
+}
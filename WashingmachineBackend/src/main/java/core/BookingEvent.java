@@ -0,0 +1,31 @@
+package core;
+
+import api.BookingDTO;
+
+public class BookingEvent {
+    public enum Type {
+        CREATED, EDITED, DELETED,
+        /**
+         * Carries no booking, only keeps idle connections open and finds the ones that are gone
+         */
+        HEARTBEAT
+    }
+
+    public static final BookingEvent HEARTBEAT = new BookingEvent(Type.HEARTBEAT, null);
+
+    private final Type type;
+    private final BookingDTO booking;
+
+    public BookingEvent(Type type, BookingDTO booking) {
+        this.type = type;
+        this.booking = booking;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public BookingDTO getBooking() {
+        return booking;
+    }
+}
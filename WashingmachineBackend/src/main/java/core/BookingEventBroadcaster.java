@@ -0,0 +1,258 @@
+package core;
+
+import api.BookingDTO;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes committed booking changes to everyone subscribed to the month the booking starts in, redacted for each
+ * subscriber like {@link BookingMonthCache#getBookingsInInterval}.
+ *
+ * Publishing never blocks the writing request: events are only queued in a bounded buffer per subscriber, which is
+ * drained by a shared executor. A subscriber whose buffer overflows is too slow to keep up and is evicted, it can
+ * reconnect and refetch the interval. So is one whose write has not returned within the write timeout, found by
+ * {@link #evictStalledSubscribers()}: its delivery thread is interrupted, which releases a blocking write to the
+ * container, so a few stuck connections cannot hold every delivery thread. Idle subscribers cost their registration
+ * and an empty buffer, no thread.
+ */
+public class BookingEventBroadcaster implements BookingChangeListener {
+    public static final int DEFAULT_BUFFER_SIZE = 64;
+    public static final long DEFAULT_WRITE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    // Well within the 30 second idle timeout of the server's connectors, so idle streams are not cut
+    public static final long HEARTBEAT_INTERVAL_SECONDS = 10;
+
+    private final Map<YearMonth, Set<Subscriber>> subscribersByMonth = new ConcurrentHashMap<>();
+    // Subscribers with a write in progress
+    private final Set<Subscriber> sending = ConcurrentHashMap.newKeySet();
+    private final Executor deliveryExecutor;
+    private final int bufferSize;
+    private final long writeTimeoutNanos;
+    private final AtomicInteger numberOfSubscribers = new AtomicInteger();
+    private final Meter evictions;
+
+    public BookingEventBroadcaster(Executor deliveryExecutor, int bufferSize, MetricRegistry metricRegistry) {
+        this(deliveryExecutor, bufferSize, DEFAULT_WRITE_TIMEOUT_MILLIS, metricRegistry);
+    }
+
+    public BookingEventBroadcaster(Executor deliveryExecutor, int bufferSize, long writeTimeoutMillis,
+                                   MetricRegistry metricRegistry) {
+        this.deliveryExecutor = deliveryExecutor;
+        this.bufferSize = bufferSize;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        this.evictions = metricRegistry.meter(MetricRegistry.name(BookingEventBroadcaster.class, "evictions"));
+        metricRegistry.register(MetricRegistry.name(BookingEventBroadcaster.class, "subscribers"),
+                (Gauge<Integer>) numberOfSubscribers::get);
+    }
+
+    /**
+     * @param username the subscriber's own bookings are sent in full, empty for anonymous subscribers
+     */
+    public Subscriber subscribe(List<YearMonth> months, String username, BookingEventSink sink) {
+        Subscriber subscriber = new Subscriber(months, username, sink);
+        numberOfSubscribers.incrementAndGet();
+        for (YearMonth month : months) {
+            // Added inside compute, as unsubscribe drops the set of a month once it is empty
+            subscribersByMonth.compute(month, (ignored, subscribers) -> {
+                Set<Subscriber> monthSubscribers = subscribers != null ? subscribers : ConcurrentHashMap.newKeySet();
+                monthSubscribers.add(subscriber);
+                return monthSubscribers;
+            });
+        }
+        return subscriber;
+    }
+
+    public int getNumberOfSubscribers() {
+        return numberOfSubscribers.get();
+    }
+
+    /**
+     * Sent periodically, so subscribers that disconnected without a booking change in their months are found too
+     */
+    public void sendHeartbeats() {
+        for (Set<Subscriber> subscribers : subscribersByMonth.values()) {
+            for (Subscriber subscriber : subscribers) {
+                // Anything already queued proves the connection just as well
+                if (subscriber.buffer.isEmpty()) {
+                    subscriber.offer(BookingEvent.HEARTBEAT);
+                }
+            }
+        }
+    }
+
+    /**
+     * Run periodically, evicts every subscriber whose current write has taken longer than the write timeout
+     */
+    public void evictStalledSubscribers() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : sending) {
+            subscriber.evictIfStalled(now);
+        }
+    }
+
+    @Override
+    public void bookingCreated(BookingDTO bookingDTO) {
+        publish(BookingEvent.Type.CREATED, bookingDTO, BookingMonthVersions.monthOf(bookingDTO.getStartTime()), null);
+    }
+
+    @Override
+    public void bookingEdited(BookingInterval previous, BookingDTO bookingDTO) {
+        // Subscribers of the month the booking moved away from must learn about it as well
+        YearMonth previousMonth = previous != null ? BookingMonthVersions.monthOf(previous.getStartTime()) : null;
+        publish(BookingEvent.Type.EDITED, bookingDTO, BookingMonthVersions.monthOf(bookingDTO.getStartTime()), previousMonth);
+    }
+
+    @Override
+    public void bookingDeleted(BookingDTO bookingDTO) {
+        publish(BookingEvent.Type.DELETED, bookingDTO, BookingMonthVersions.monthOf(bookingDTO.getStartTime()), null);
+    }
+
+    private void publish(BookingEvent.Type type, BookingDTO bookingDTO, YearMonth month, YearMonth otherMonth) {
+        Set<Subscriber> subscribers = subscribersByMonth.getOrDefault(month, Collections.emptySet());
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(new BookingEvent(type, BookingRedactor.redactFor(bookingDTO, subscriber.username)));
+        }
+
+        if (otherMonth != null && !otherMonth.equals(month)) {
+            for (Subscriber subscriber : subscribersByMonth.getOrDefault(otherMonth, Collections.emptySet())) {
+                // Subscribed to both months, already got it
+                if (!subscribers.contains(subscriber)) {
+                    subscriber.offer(new BookingEvent(type, BookingRedactor.redactFor(bookingDTO, subscriber.username)));
+                }
+            }
+        }
+    }
+
+    public class Subscriber {
+        private final List<YearMonth> months;
+        private final String username;
+        private final BookingEventSink sink;
+        private final BlockingQueue<BookingEvent> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // The delivery thread and start of the write in progress, guarded by this
+        private Thread sendingThread;
+        private long sendStartedNanos;
+        private boolean stalled;
+
+        private Subscriber(List<YearMonth> months, String username, BookingEventSink sink) {
+            this.months = months;
+            this.username = username;
+            this.sink = sink;
+            this.buffer = new LinkedBlockingQueue<>(bufferSize);
+        }
+
+        private void offer(BookingEvent bookingEvent) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(bookingEvent)) {
+                evictions.mark();
+                unsubscribe();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    deliveryExecutor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    unsubscribe();
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                BookingEvent bookingEvent;
+                while (!closed.get() && (bookingEvent = buffer.poll()) != null) {
+                    try {
+                        send(bookingEvent);
+                    } catch (IOException | RuntimeException e) {
+                        // Most likely the subscriber went away
+                        unsubscribe();
+                    }
+                }
+                draining.set(false);
+                // An event offered after the last poll but before draining was cleared would otherwise be stranded
+            } while (!closed.get() && !buffer.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        private void send(BookingEvent bookingEvent) throws IOException {
+            synchronized (this) {
+                sendingThread = Thread.currentThread();
+                sendStartedNanos = System.nanoTime();
+            }
+            sending.add(this);
+            try {
+                sink.send(bookingEvent);
+            } finally {
+                sending.remove(this);
+                boolean evicted;
+                synchronized (this) {
+                    sendingThread = null;
+                    evicted = stalled;
+                }
+                if (evicted) {
+                    // The interrupt was meant for this write only, closing is left to the thread that was stuck in it
+                    Thread.interrupted();
+                    sink.close();
+                }
+            }
+        }
+
+        private synchronized void evictIfStalled(long now) {
+            if (sendingThread == null || stalled || now - sendStartedNanos < writeTimeoutNanos) {
+                return;
+            }
+            stalled = true;
+            // Before interrupting, as the released write unsubscribes as well
+            if (deregister()) {
+                evictions.mark();
+            }
+            sendingThread.interrupt();
+        }
+
+        public void unsubscribe() {
+            if (deregister()) {
+                sink.close();
+            }
+        }
+
+        private boolean deregister() {
+            if (!closed.compareAndSet(false, true)) {
+                return false;
+            }
+            for (YearMonth month : months) {
+                subscribersByMonth.computeIfPresent(month, (ignored, subscribers) -> {
+                    subscribers.remove(this);
+                    return subscribers.isEmpty() ? null : subscribers;
+                });
+            }
+            numberOfSubscribers.decrementAndGet();
+            buffer.clear();
+            return true;
+        }
+
+        public boolean isClosed() {
+            return closed.get();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package core;
+
+import java.io.IOException;
+
+/**
+ * Connection of a single subscriber to {@link BookingEventBroadcaster}, e.g. a Server-Sent Events stream
+ */
+public interface BookingEventSink {
+    /**
+     * May block while the subscriber is slow to read, but must give up with an IOException when the thread is
+     * interrupted, as it is once the write timeout has passed. Throwing evicts the subscriber.
+     */
+    void send(BookingEvent bookingEvent) throws IOException;
+
+    void close();
+}
@@ -0,0 +1,40 @@
+package core;
+
+import api.MachineDTO;
+
+public class BookingInterval {
+    private final int id;
+    private final int machineId;
+    private final long startTime;
+    private final long endTime;
+
+    /**
+     * An interval of the first machine
+     */
+    public BookingInterval(int id, long startTime, long endTime) {
+        this(id, MachineDTO.FIRST_MACHINE_ID, startTime, endTime);
+    }
+
+    public BookingInterval(int id, int machineId, long startTime, long endTime) {
+        this.id = id;
+        this.machineId = machineId;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getMachineId() {
+        return machineId;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+}
@@ -0,0 +1,307 @@
+package core;
+
+import api.MachineDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index of the booked intervals of one machine, used to answer overlap checks without a database round trip.
+ * Intervals are bucketed per day and kept in sorted arrays keyed by epoch minute. Readers never lock nor allocate,
+ * writers replace the arrays of the days they touch and publish a new table of days.
+ *
+ * The database is still the final authority, the index only has to be as fresh as the writes on this node and the
+ * ranges other nodes report as changed.
+ */
+public class BookingIntervalIndex {
+    public static final int NO_BOOKING = -1;
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+    private static final long MINUTES_PER_DAY = 24 * 60;
+
+    private final int machineId;
+    // Only touched under the lock, readers use the table published from it
+    private final Map<Long, DayIntervals> days = new HashMap<>();
+    private final Map<Integer, BookingInterval> bookings = new HashMap<>();
+    private volatile DayTable dayTable = DayTable.EMPTY;
+
+    /**
+     * An index of the first machine
+     */
+    public BookingIntervalIndex() {
+        this(MachineDTO.FIRST_MACHINE_ID);
+    }
+
+    public BookingIntervalIndex(int machineId) {
+        this.machineId = machineId;
+    }
+
+    public int getMachineId() {
+        return machineId;
+    }
+
+    public synchronized void putAll(Iterable<BookingInterval> bookingIntervals) {
+        for (BookingInterval bookingInterval : bookingIntervals) {
+            putUnpublished(bookingInterval.getId(), bookingInterval.getStartTime(), bookingInterval.getEndTime());
+        }
+        publish();
+    }
+
+    /**
+     * Replaces every indexed booking starting in [startTime, endTime) with the given ones, e.g. after another node
+     * wrote to that range
+     */
+    public synchronized void replaceStartingIn(long startTime, long endTime, Iterable<BookingInterval> bookingIntervals) {
+        List<Integer> staleIds = new ArrayList<>();
+        for (BookingInterval bookingInterval : bookings.values()) {
+            if (bookingInterval.getStartTime() >= startTime && bookingInterval.getStartTime() < endTime) {
+                staleIds.add(bookingInterval.getId());
+            }
+        }
+        for (int id : staleIds) {
+            removeUnpublished(id);
+        }
+        for (BookingInterval bookingInterval : bookingIntervals) {
+            putUnpublished(bookingInterval.getId(), bookingInterval.getStartTime(), bookingInterval.getEndTime());
+        }
+        publish();
+    }
+
+    /**
+     * @return the interval previously stored for the id, or null if the booking was not indexed
+     */
+    public synchronized BookingInterval put(int id, long startTime, long endTime) {
+        BookingInterval previous = putUnpublished(id, startTime, endTime);
+        publish();
+        return previous;
+    }
+
+    /**
+     * @return the indexed interval of the booking, or null if it is not indexed
+     */
+    public synchronized BookingInterval get(int id) {
+        return bookings.get(id);
+    }
+
+    /**
+     * @return the interval that was removed, or null if the booking was not indexed
+     */
+    public synchronized BookingInterval remove(int id) {
+        BookingInterval bookingInterval = removeUnpublished(id);
+        publish();
+        return bookingInterval;
+    }
+
+    private BookingInterval putUnpublished(int id, long startTime, long endTime) {
+        BookingInterval previous = removeUnpublished(id);
+        BookingInterval bookingInterval = new BookingInterval(id, machineId, startTime, endTime);
+        bookings.put(id, bookingInterval);
+
+        long startMinute = toEpochMinute(startTime);
+        long endMinute = toEpochMinute(endTime);
+        for (long day = firstDay(startMinute); day <= lastDay(startMinute, endMinute); day++) {
+            DayIntervals dayIntervals = days.getOrDefault(day, DayIntervals.EMPTY);
+            days.put(day, dayIntervals.with(id, startMinute, endMinute));
+        }
+        return previous;
+    }
+
+    private BookingInterval removeUnpublished(int id) {
+        BookingInterval bookingInterval = bookings.remove(id);
+        if (bookingInterval == null) {
+            return null;
+        }
+
+        long startMinute = toEpochMinute(bookingInterval.getStartTime());
+        long endMinute = toEpochMinute(bookingInterval.getEndTime());
+        for (long day = firstDay(startMinute); day <= lastDay(startMinute, endMinute); day++) {
+            DayIntervals dayIntervals = days.get(day);
+            if (dayIntervals == null) continue;
+
+            DayIntervals remaining = dayIntervals.without(id);
+            if (remaining.size() == 0) {
+                days.remove(day);
+            } else {
+                days.put(day, remaining);
+            }
+        }
+        return bookingInterval;
+    }
+
+    /**
+     * @param ignoredId a booking that is allowed to overlap, e.g. the booking being edited. Use {@link #NO_BOOKING}
+     *                  when every indexed booking counts.
+     * @return true if any indexed booking other than ignoredId overlaps [startTime, endTime)
+     */
+    public boolean overlaps(long startTime, long endTime, int ignoredId) {
+        long startMinute = toEpochMinute(startTime);
+        long endMinute = toEpochMinute(endTime);
+        DayTable dayTable = this.dayTable;
+        for (long day = firstDay(startMinute); day <= lastDay(startMinute, endMinute); day++) {
+            DayIntervals dayIntervals = dayTable.get(day);
+            if (dayIntervals != null && dayIntervals.overlaps(startMinute, endMinute, ignoredId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized int size() {
+        return bookings.size();
+    }
+
+    private void publish() {
+        dayTable = new DayTable(days);
+    }
+
+    private static long toEpochMinute(long millis) {
+        return Math.floorDiv(millis, MILLIS_PER_MINUTE);
+    }
+
+    private static long firstDay(long startMinute) {
+        return Math.floorDiv(startMinute, MINUTES_PER_DAY);
+    }
+
+    // Intervals are half open, an interval ending exactly at midnight does not touch the next day
+    private static long lastDay(long startMinute, long endMinute) {
+        return Math.floorDiv(Math.max(startMinute, endMinute - 1), MINUTES_PER_DAY);
+    }
+
+    /**
+     * Immutable open addressing table of the days with bookings, looked up by epoch day without boxing it
+     */
+    private static class DayTable {
+        private static final DayTable EMPTY = new DayTable(new HashMap<>());
+
+        private final long[] keys;
+        private final DayIntervals[] values;
+        private final int mask;
+
+        private DayTable(Map<Long, DayIntervals> days) {
+            // At most half full, consecutive days get consecutive slots
+            int capacity = Integer.highestOneBit(Math.max(1, days.size()) * 2 - 1) << 1;
+            this.keys = new long[capacity];
+            this.values = new DayIntervals[capacity];
+            this.mask = capacity - 1;
+            for (Map.Entry<Long, DayIntervals> day : days.entrySet()) {
+                int slot = slot(day.getKey());
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = day.getKey();
+                values[slot] = day.getValue();
+            }
+        }
+
+        private DayIntervals get(long day) {
+            for (int slot = slot(day); values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == day) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        private int slot(long day) {
+            return Long.hashCode(day) & mask;
+        }
+    }
+
+    /**
+     * Immutable set of intervals touching a single day, sorted by start minute. maxEnds[i] holds the largest end
+     * of the intervals 0..i, which lets an overlap scan stop as soon as nothing further left can reach the query.
+     */
+    private static class DayIntervals {
+        private static final DayIntervals EMPTY = new DayIntervals(new int[0], new long[0], new long[0]);
+
+        private final int[] ids;
+        private final long[] starts;
+        private final long[] ends;
+        private final long[] maxEnds;
+
+        private DayIntervals(int[] ids, long[] starts, long[] ends) {
+            this.ids = ids;
+            this.starts = starts;
+            this.ends = ends;
+            this.maxEnds = new long[ends.length];
+            long maxEnd = Long.MIN_VALUE;
+            for (int i = 0; i < ends.length; i++) {
+                maxEnd = Math.max(maxEnd, ends[i]);
+                maxEnds[i] = maxEnd;
+            }
+        }
+
+        private int size() {
+            return ids.length;
+        }
+
+        private boolean overlaps(long startMinute, long endMinute, int ignoredId) {
+            // Every interval starting before the query ends is a candidate
+            for (int i = firstIndexStartingAtOrAfter(endMinute) - 1; i >= 0; i--) {
+                if (maxEnds[i] <= startMinute) {
+                    return false;
+                }
+                if (ends[i] > startMinute && starts[i] < ends[i] && ids[i] != ignoredId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int firstIndexStartingAtOrAfter(long minute) {
+            int low = 0;
+            int high = starts.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] < minute) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private DayIntervals with(int id, long startMinute, long endMinute) {
+            int position = firstIndexStartingAtOrAfter(startMinute);
+            int[] newIds = new int[ids.length + 1];
+            long[] newStarts = new long[starts.length + 1];
+            long[] newEnds = new long[ends.length + 1];
+
+            System.arraycopy(ids, 0, newIds, 0, position);
+            System.arraycopy(starts, 0, newStarts, 0, position);
+            System.arraycopy(ends, 0, newEnds, 0, position);
+            newIds[position] = id;
+            newStarts[position] = startMinute;
+            newEnds[position] = endMinute;
+            System.arraycopy(ids, position, newIds, position + 1, ids.length - position);
+            System.arraycopy(starts, position, newStarts, position + 1, starts.length - position);
+            System.arraycopy(ends, position, newEnds, position + 1, ends.length - position);
+            return new DayIntervals(newIds, newStarts, newEnds);
+        }
+
+        private DayIntervals without(int id) {
+            int position = -1;
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    position = i;
+                    break;
+                }
+            }
+            if (position < 0) {
+                return this;
+            }
+
+            int[] newIds = Arrays.copyOf(ids, ids.length - 1);
+            long[] newStarts = Arrays.copyOf(starts, starts.length - 1);
+            long[] newEnds = Arrays.copyOf(ends, ends.length - 1);
+            System.arraycopy(ids, position + 1, newIds, position, ids.length - position - 1);
+            System.arraycopy(starts, position + 1, newStarts, position, starts.length - position - 1);
+            System.arraycopy(ends, position + 1, newEnds, position, ends.length - position - 1);
+            return new DayIntervals(newIds, newStarts, newEnds);
+        }
+    }
+}
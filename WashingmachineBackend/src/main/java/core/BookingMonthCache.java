@@ -0,0 +1,120 @@
+package core;
+
+import api.BookingDTO;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import db.BookingDAO;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Read-through cache holding every booking starting in a month, unredacted. Redaction for the requesting user is
+ * applied when reading from the cache.
+ *
+ * Each cached month remembers the {@link BookingMonthVersions} version it was loaded at, so a load racing with a
+ * write can never be served once the write is committed. Writes also evict their months right away.
+ */
+public class BookingMonthCache implements BookingChangeListener {
+    private final BookingDAO bookingDAO;
+    private final BookingMonthVersions bookingMonthVersions;
+    private final Cache<YearMonth, CachedMonth> cache;
+    private final Meter hits;
+    private final Meter misses;
+    private final Counter invalidations;
+
+    public BookingMonthCache(BookingDAO bookingDAO, BookingMonthVersions bookingMonthVersions,
+                             CacheBuilderSpec cacheBuilderSpec, MetricRegistry metricRegistry) {
+        this.bookingDAO = bookingDAO;
+        this.bookingMonthVersions = bookingMonthVersions;
+        this.cache = CacheBuilder.from(cacheBuilderSpec).recordStats().build();
+
+        // A month loaded before a write it did not see counts as a miss, so hits and misses are tracked here
+        this.hits = metricRegistry.meter(MetricRegistry.name(BookingMonthCache.class, "hits"));
+        this.misses = metricRegistry.meter(MetricRegistry.name(BookingMonthCache.class, "misses"));
+        this.invalidations = metricRegistry.counter(MetricRegistry.name(BookingMonthCache.class, "invalidations"));
+        metricRegistry.register(MetricRegistry.name(BookingMonthCache.class, "evictions"), (Gauge<Long>) () -> cache.stats().evictionCount());
+        metricRegistry.register(MetricRegistry.name(BookingMonthCache.class, "size"), (Gauge<Long>) cache::size);
+    }
+
+    /**
+     * Same result as {@link BookingDAO#getBookingsInInterval(Date, Date, String)}
+     */
+    public List<BookingDTO> getBookingsInInterval(Date startTime, Date endTime, String username) {
+        List<YearMonth> months = BookingMonthVersions.monthsBetween(startTime, endTime);
+        if (months == null) {
+            return bookingDAO.getBookingsInInterval(startTime, endTime, username);
+        }
+
+        List<BookingDTO> bookings = new ArrayList<>();
+        for (YearMonth month : months) {
+            for (BookingDTO bookingDTO : getMonth(month)) {
+                if (!bookingDTO.getStartTime().before(startTime) && !bookingDTO.getEndTime().after(endTime)) {
+                    bookings.add(BookingRedactor.redactFor(bookingDTO, username));
+                }
+            }
+        }
+        return bookings;
+    }
+
+    private List<BookingDTO> getMonth(YearMonth month) {
+        long version = bookingMonthVersions.get(month);
+        CachedMonth cachedMonth = cache.getIfPresent(month);
+        if (cachedMonth != null && cachedMonth.version == version) {
+            hits.mark();
+            return cachedMonth.bookings;
+        }
+        misses.mark();
+
+        List<BookingDTO> bookings = Collections.unmodifiableList(bookingDAO.getBookingsStartingInInterval(
+                BookingMonthVersions.startOf(month), BookingMonthVersions.startOf(month.plusMonths(1))));
+        cache.put(month, new CachedMonth(version, bookings));
+        return bookings;
+    }
+
+    public void invalidate(YearMonth month) {
+        cache.invalidate(month);
+        invalidations.inc();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        invalidations.inc();
+    }
+
+    @Override
+    public void bookingCreated(BookingDTO bookingDTO) {
+        invalidate(BookingMonthVersions.monthOf(bookingDTO.getStartTime()));
+    }
+
+    @Override
+    public void bookingEdited(BookingInterval previous, BookingDTO bookingDTO) {
+        if (previous != null) {
+            invalidate(BookingMonthVersions.monthOf(previous.getStartTime()));
+        }
+        invalidate(BookingMonthVersions.monthOf(bookingDTO.getStartTime()));
+    }
+
+    @Override
+    public void bookingDeleted(BookingDTO bookingDTO) {
+        invalidate(BookingMonthVersions.monthOf(bookingDTO.getStartTime()));
+    }
+
+    private static class CachedMonth {
+        private final long version;
+        private final List<BookingDTO> bookings;
+
+        private CachedMonth(long version, List<BookingDTO> bookings) {
+            this.version = version;
+            this.bookings = bookings;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package core;
+
+import api.BookingDTO;
+
+import java.security.SecureRandom;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counter per calendar month, bumped by every committed write to a booking starting in that month.
+ * Anything derived from a month's bookings stays valid for as long as the month's version is unchanged.
+ */
+public class BookingMonthVersions implements BookingChangeListener {
+    /**
+     * Reads spanning more months than this are neither cached nor versioned, e.g. a usage export covering years
+     */
+    public static final int MAX_MONTHS_PER_READ = 24;
+
+    private final Map<YearMonth, AtomicLong> versions = new ConcurrentHashMap<>();
+    private volatile long epoch = new SecureRandom().nextLong();
+
+    /**
+     * Versions start over from zero on every start, so anything handed out to clients must include the epoch as well
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Outdates everything derived from any month, e.g. when writes may have been missed
+     */
+    public void renewEpoch() {
+        epoch = new SecureRandom().nextLong();
+    }
+
+    public long get(YearMonth month) {
+        AtomicLong version = versions.get(month);
+        return version == null ? 0 : version.get();
+    }
+
+    public void bump(YearMonth month) {
+        versions.computeIfAbsent(month, ignored -> new AtomicLong()).incrementAndGet();
+    }
+
+    @Override
+    public void bookingCreated(BookingDTO bookingDTO) {
+        bump(monthOf(bookingDTO.getStartTime()));
+    }
+
+    @Override
+    public void bookingEdited(BookingInterval previous, BookingDTO bookingDTO) {
+        if (previous != null) {
+            bump(monthOf(previous.getStartTime()));
+        }
+        bump(monthOf(bookingDTO.getStartTime()));
+    }
+
+    @Override
+    public void bookingDeleted(BookingDTO bookingDTO) {
+        bump(monthOf(bookingDTO.getStartTime()));
+    }
+
+    /**
+     * @return every month from the one containing startTime to the one containing endTime, or null if that is more than
+     * {@link #MAX_MONTHS_PER_READ} months
+     */
+    public static List<YearMonth> monthsBetween(Date startTime, Date endTime) {
+        YearMonth lastMonth = monthOf(endTime);
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth month = monthOf(startTime); !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            if (months.size() == MAX_MONTHS_PER_READ) {
+                return null;
+            }
+            months.add(month);
+        }
+        return months;
+    }
+
+    public static Date startOf(YearMonth month) {
+        return Date.from(month.atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    public static YearMonth monthOf(Date date) {
+        return monthOf(date.getTime());
+    }
+
+    public static YearMonth monthOf(long millis) {
+        return YearMonth.from(new Date(millis).toInstant().atZone(ZoneId.systemDefault()));
+    }
+}
@@ -0,0 +1,101 @@
+package core;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The opening hours compiled to one bitmap of slots per weekday and per overridden date, slot n of a day is bit n % 64
+ * of word n / 64. Times are local epoch minutes, see {@link ZoneOffsetTable#toLocalMinute(long)}. Immutable, built by
+ * {@link BookingPolicyFactory}.
+ */
+public class BookingPolicy {
+    private static final int MINUTES_PER_DAY = (int) TimeUnit.DAYS.toMinutes(1);
+    // 1970-01-01 was a Thursday
+    private static final int EPOCH_DAY_OF_WEEK = 3;
+
+    private final int slotMinutes;
+    private final int minimumMinutes;
+    private final int slotsPerDay;
+    private final long[][] weekdaySlots;
+    private final long[] dateDays;
+    private final long[][] dateSlots;
+
+    /**
+     * @param weekdaySlots the slots of each weekday, Monday first
+     * @param dateDays     the overridden dates as sorted epoch days
+     * @param dateSlots    the slots of each overridden date
+     */
+    BookingPolicy(int slotMinutes, int minimumMinutes, long[][] weekdaySlots, long[] dateDays, long[][] dateSlots) {
+        this.slotMinutes = slotMinutes;
+        this.minimumMinutes = minimumMinutes;
+        this.slotsPerDay = MINUTES_PER_DAY / slotMinutes;
+        this.weekdaySlots = weekdaySlots;
+        this.dateDays = dateDays;
+        this.dateSlots = dateSlots;
+    }
+
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    public int getMinimumMinutes() {
+        return minimumMinutes;
+    }
+
+    public int getSlotsPerDay() {
+        return slotsPerDay;
+    }
+
+    /**
+     * @return the local minute floored to the start of its slot
+     */
+    public long floorToSlot(long localMinute) {
+        return localMinute - Math.floorMod(localMinute, slotMinutes);
+    }
+
+    /**
+     * @return true if every slot the local interval touches is open, the interval may span several days
+     */
+    public boolean isOpen(long localStartMinute, long localEndMinute) {
+        long slot = Math.floorDiv(localStartMinute, slotMinutes);
+        long endSlot = Math.floorDiv(localEndMinute + slotMinutes - 1, slotMinutes);
+        while (slot < endSlot) {
+            long epochDay = Math.floorDiv(slot, slotsPerDay);
+            long firstSlotOfDay = epochDay * slotsPerDay;
+            int to = (int) Math.min(slotsPerDay, endSlot - firstSlotOfDay);
+            if (!allSet(slotsOf(epochDay), (int) (slot - firstSlotOfDay), to)) {
+                return false;
+            }
+            slot = firstSlotOfDay + to;
+        }
+        return true;
+    }
+
+    /**
+     * @return a copy of the slots of the local date
+     */
+    public long[] getSlots(long epochDay) {
+        return slotsOf(epochDay).clone();
+    }
+
+    private long[] slotsOf(long epochDay) {
+        int date = Arrays.binarySearch(dateDays, epochDay);
+        if (date >= 0) {
+            return dateSlots[date];
+        }
+        return weekdaySlots[(int) Math.floorMod(epochDay + EPOCH_DAY_OF_WEEK, 7)];
+    }
+
+    private static boolean allSet(long[] slots, int from, int to) {
+        while (from < to) {
+            int wordEnd = Math.min(to, (from & ~63) + 64);
+            int length = wordEnd - from;
+            long mask = (length == 64 ? -1L : (1L << length) - 1) << from;
+            if ((slots[from >>> 6] & mask) != mask) {
+                return false;
+            }
+            from = wordEnd;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,160 @@
+package core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The booking policy as it is configured, compiled by {@link #build()}. Opening hours are written as "08:00-22:00",
+ * several per day for quiet hours in between. Weekdays not listed use the default opening hours, dates override their
+ * weekday, e.g. for holidays. A day with no opening hours is closed.
+ */
+public class BookingPolicyFactory {
+    private static final int MINUTES_PER_DAY = (int) TimeUnit.DAYS.toMinutes(1);
+
+    @Min(1)
+    private int slotMinutes = 5;
+
+    @Min(1)
+    private int minimumMinutes = 30;
+
+    @NotNull
+    private List<String> openingHours = Collections.singletonList("08:00-22:00");
+
+    @NotNull
+    private Map<DayOfWeek, List<String>> weekdays = new EnumMap<>(DayOfWeek.class);
+
+    @NotNull
+    private Map<String, List<String>> dates = new TreeMap<>();
+
+    @JsonProperty
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    @JsonProperty
+    public void setSlotMinutes(int slotMinutes) {
+        this.slotMinutes = slotMinutes;
+    }
+
+    @JsonProperty
+    public int getMinimumMinutes() {
+        return minimumMinutes;
+    }
+
+    @JsonProperty
+    public void setMinimumMinutes(int minimumMinutes) {
+        this.minimumMinutes = minimumMinutes;
+    }
+
+    @JsonProperty
+    public List<String> getOpeningHours() {
+        return openingHours;
+    }
+
+    @JsonProperty
+    public void setOpeningHours(List<String> openingHours) {
+        this.openingHours = openingHours;
+    }
+
+    @JsonProperty
+    public Map<DayOfWeek, List<String>> getWeekdays() {
+        return weekdays;
+    }
+
+    @JsonProperty
+    public void setWeekdays(Map<DayOfWeek, List<String>> weekdays) {
+        this.weekdays = weekdays;
+    }
+
+    @JsonProperty
+    public Map<String, List<String>> getDates() {
+        return dates;
+    }
+
+    @JsonProperty
+    public void setDates(Map<String, List<String>> dates) {
+        this.dates = dates;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the slots do not divide a day or opening hours are not on slot boundaries
+     */
+    public BookingPolicy build() {
+        if (slotMinutes < 1 || MINUTES_PER_DAY % slotMinutes != 0) {
+            throw new IllegalArgumentException("slotMinutes must divide a day, got " + slotMinutes);
+        }
+        long[][] weekdaySlots = new long[7][];
+        for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+            weekdaySlots[dayOfWeek.ordinal()] = compile(weekdays.getOrDefault(dayOfWeek, openingHours));
+        }
+
+        TreeMap<LocalDate, long[]> compiledDates = new TreeMap<>();
+        for (Map.Entry<String, List<String>> date : dates.entrySet()) {
+            try {
+                compiledDates.put(LocalDate.parse(date.getKey()), compile(date.getValue()));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Dates must be written as 2017-12-24, got " + date.getKey(), e);
+            }
+        }
+        long[] dateDays = new long[compiledDates.size()];
+        long[][] dateSlots = new long[compiledDates.size()][];
+        int i = 0;
+        for (Map.Entry<LocalDate, long[]> date : compiledDates.entrySet()) {
+            dateDays[i] = date.getKey().toEpochDay();
+            dateSlots[i] = date.getValue();
+            i++;
+        }
+        return new BookingPolicy(slotMinutes, minimumMinutes, weekdaySlots, dateDays, dateSlots);
+    }
+
+    private long[] compile(List<String> hours) {
+        int slotsPerDay = MINUTES_PER_DAY / slotMinutes;
+        long[] slots = new long[(slotsPerDay + 63) / 64];
+        for (String interval : hours == null ? Collections.<String>emptyList() : hours) {
+            String[] startAndEnd = interval.split("-");
+            if (startAndEnd.length != 2) {
+                throw new IllegalArgumentException("Opening hours must be written as 08:00-22:00, got " + interval);
+            }
+            int start = minuteOfDay(startAndEnd[0]);
+            int end = minuteOfDay(startAndEnd[1]);
+            if (start >= end) {
+                throw new IllegalArgumentException("Opening hours must end after they start, got " + interval);
+            }
+            if (start % slotMinutes != 0 || end % slotMinutes != 0) {
+                throw new IllegalArgumentException("Opening hours must be on " + slotMinutes + " minute slots, got "
+                        + interval);
+            }
+            for (int slot = start / slotMinutes; slot < end / slotMinutes; slot++) {
+                slots[slot >>> 6] |= 1L << slot;
+            }
+        }
+        return slots;
+    }
+
+    // 24:00 is allowed as the end of the day
+    private static int minuteOfDay(String time) {
+        String[] hoursAndMinutes = time.trim().split(":");
+        try {
+            int hours = Integer.parseInt(hoursAndMinutes[0]);
+            int minutes = hoursAndMinutes.length == 2 ? Integer.parseInt(hoursAndMinutes[1]) : -1;
+            int minuteOfDay = hours * 60 + minutes;
+            if (minutes < 0 || minutes >= 60 || hours < 0 || minuteOfDay > MINUTES_PER_DAY) {
+                throw new IllegalArgumentException("Times must be written as 08:00, got " + time);
+            }
+            return minuteOfDay;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Times must be written as 08:00, got " + time, e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+/**
+ * Compiles the booking policy again when the configuration file has changed, so opening hours can be changed without a
+ * restart. Each node watches its own file. A policy that cannot be read or compiled is logged and the current one kept.
+ */
+public class BookingPolicyReloader implements Runnable {
+    public static final long DEFAULT_POLL_INTERVAL_SECONDS = 10;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookingPolicyReloader.class);
+
+    private final File configurationFile;
+    private final Callable<BookingPolicyFactory> loader;
+    private final BookingValidator bookingValidator;
+    private long lastModified;
+
+    /**
+     * @param loader reads the booking policy of the configuration file
+     */
+    public BookingPolicyReloader(File configurationFile, Callable<BookingPolicyFactory> loader,
+                                 BookingValidator bookingValidator) {
+        this.configurationFile = configurationFile;
+        this.loader = loader;
+        this.bookingValidator = bookingValidator;
+        this.lastModified = configurationFile.lastModified();
+    }
+
+    @Override
+    public void run() {
+        long modified = configurationFile.lastModified();
+        if (modified == lastModified) {
+            return;
+        }
+        lastModified = modified;
+        try {
+            bookingValidator.setBookingPolicy(loader.call().build());
+            LOGGER.info("Reloaded the booking policy from {}", configurationFile);
+        } catch (Exception e) {
+            LOGGER.error("Kept the current booking policy, {} could not be reloaded", configurationFile, e);
+        }
+    }
+}
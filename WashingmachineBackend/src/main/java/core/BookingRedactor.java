@@ -0,0 +1,19 @@
+package core;
+
+import api.BookingDTO;
+
+public class BookingRedactor {
+    /**
+     * Other users' bookings only reveal when they are and whose they are, not how many uses were booked
+     *
+     * @return the booking itself if it is owned by username, otherwise a copy without the number of uses
+     */
+    public static BookingDTO redactFor(BookingDTO bookingDTO, String username) {
+        if (bookingDTO.getOwner().equals(username)) {
+            return bookingDTO;
+        }
+
+        return new BookingDTO(bookingDTO.getId(), bookingDTO.getMachineId(), bookingDTO.getStartTime(), bookingDTO.getEndTime(), bookingDTO.getOwner(),
+                bookingDTO.getApartment(), bookingDTO.getRealName(), 0, 0);
+    }
+}
@@ -0,0 +1,27 @@
+package core;
+
+/**
+ * Why a booking was turned down, the message is shown to the user
+ */
+public enum BookingRejection {
+    UNKNOWN_MACHINE("The machine does not exist"),
+    ENDS_BEFORE_START("The booking ends before it starts"),
+    TOO_SHORT("The booking is shorter than the minimum length"),
+    OUTSIDE_OPENING_HOURS("The booking is outside the opening hours"),
+    CROSSES_MONTH("The booking must end in the month it starts in"),
+    NO_USES("A booking must use the washing machine or the tumble dryer"),
+    MACHINE_DOES_NOT_WASH("The machine cannot be booked for washing"),
+    MACHINE_DOES_NOT_TUMBLE_DRY("The machine cannot be booked for tumble drying"),
+    IN_THE_PAST("The booking starts in the past"),
+    OVERLAPS("The chosen period overlaps another booking");
+
+    private final String message;
+
+    BookingRejection(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,195 @@
+package core;
+
+import api.BookingDTO;
+import api.BookingRevisionDTO;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import db.BookingRevisionDAO;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends a revision to bookings_rev for every committed booking write. Revisions are put on a bounded queue and
+ * written in batches by a single writer thread, so writes to bookings pay for neither a trigger nor an extra insert.
+ *
+ * With {@link Durability#SYNC} the caller waits until its revision has been written or given up on, concurrent callers
+ * still share batches. The booking write is committed before either, so SYNC only guarantees that a response is not
+ * sent while its revision is still queued. It never fails the caller, revisions given up on after retrying are logged
+ * and counted as dropped like with {@link Durability#ASYNC}, where revisions still queued when the process dies are
+ * lost as well. Either way a full queue blocks the caller rather than dropping revisions.
+ */
+public class BookingRevisionLog implements BookingChangeListener, Managed {
+    public enum Durability {
+        SYNC, ASYNC
+    }
+
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+    public static final int MAX_BATCH_SIZE = 500;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookingRevisionLog.class);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final BookingRevisionDAO bookingRevisionDAO;
+    private final Durability durability;
+    private final BlockingQueue<PendingRevision> queue;
+    private final Timer flushes;
+    private final Histogram batchSizes;
+    private final Meter dropped;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public BookingRevisionLog(BookingRevisionDAO bookingRevisionDAO, Durability durability, int queueSize,
+                              MetricRegistry metricRegistry) {
+        this.bookingRevisionDAO = bookingRevisionDAO;
+        this.durability = durability;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.flushes = metricRegistry.timer(MetricRegistry.name(BookingRevisionLog.class, "flushes"));
+        this.batchSizes = metricRegistry.histogram(MetricRegistry.name(BookingRevisionLog.class, "batch-size"));
+        this.dropped = metricRegistry.meter(MetricRegistry.name(BookingRevisionLog.class, "dropped"));
+        metricRegistry.register(MetricRegistry.name(BookingRevisionLog.class, "queue-depth"), (Gauge<Integer>) queue::size);
+    }
+
+    @Override
+    public void bookingCreated(BookingDTO bookingDTO) {
+        append(new BookingRevisionDTO(bookingDTO, BookingRevisionDTO.CREATED, new Date()));
+    }
+
+    @Override
+    public void bookingEdited(BookingInterval previous, BookingDTO bookingDTO) {
+        append(new BookingRevisionDTO(bookingDTO, BookingRevisionDTO.EDITED, new Date()));
+    }
+
+    @Override
+    public void bookingDeleted(BookingDTO bookingDTO) {
+        append(new BookingRevisionDTO(bookingDTO, BookingRevisionDTO.DELETED, new Date()));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::writeQueued, "booking-revision-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Writes whatever is still queued before returning
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writerThread != null) {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        // Appended while the writer was finishing
+        drainAndWrite(new ArrayList<>());
+    }
+
+    private void append(BookingRevisionDTO revision) {
+        PendingRevision pending = new PendingRevision(revision);
+        if (!running) {
+            // Not started yet or stopped, nothing would take it off the queue
+            write(Collections.singletonList(pending));
+        } else {
+            try {
+                queue.put(pending);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.mark();
+                LOGGER.error("Interrupted, dropped the revision of booking {}", revision.getBookingId());
+                return;
+            }
+        }
+        if (durability == Durability.SYNC) {
+            try {
+                pending.written.join();
+            } catch (CompletionException e) {
+                // Already logged and counted as dropped by the writer
+            }
+        }
+    }
+
+    private void writeQueued() {
+        List<PendingRevision> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (running) {
+            try {
+                PendingRevision first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                    write(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        drainAndWrite(batch);
+    }
+
+    private void drainAndWrite(List<PendingRevision> batch) {
+        while (queue.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<PendingRevision> batch) {
+        List<BookingRevisionDTO> revisions = new ArrayList<>(batch.size());
+        for (PendingRevision pending : batch) {
+            revisions.add(pending.revision);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try (Timer.Context ignored = flushes.time()) {
+                bookingRevisionDAO.insertRevisions(revisions);
+                batchSizes.update(batch.size());
+                for (PendingRevision pending : batch) {
+                    pending.written.complete(null);
+                }
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    LOGGER.error("Dropped {} booking revisions after {} attempts", batch.size(), attempt, e);
+                    dropped.mark(batch.size());
+                    for (PendingRevision pending : batch) {
+                        pending.written.completeExceptionally(e);
+                    }
+                    return;
+                }
+                LOGGER.warn("Could not write {} booking revisions, retrying", batch.size(), e);
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static class PendingRevision {
+        private final BookingRevisionDTO revision;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        private PendingRevision(BookingRevisionDTO revision) {
+            this.revision = revision;
+        }
+    }
+}
@@ -1,7 +1,40 @@
 package core;
 
+import api.BookingDTO;
+
 public interface BookingService {
-    boolean validateEditBooking(long startTime, long endTime, int numberOfWashingMachineUses, int numberOfTumbleDryUses, int id);
+    /**
+     * @return why the booking cannot be moved to the interval on its machine, or null when it can
+     */
+    BookingRejection validateEditBooking(int machineId, long startTime, long endTime, int numberOfWashingMachineUses, int numberOfTumbleDryUses, int id);
+
+    /**
+     * @return why the booking of the machine cannot be created, or null when it can
+     */
+    BookingRejection validateCreateBooking(int machineId, long startTime, long endTime, int numberOfWashingMachineUses, int numberOfTumbleDryUses);
+
+    /**
+     * @return true if the machine can be booked
+     */
+    boolean isMachine(int machineId);
+
+    /**
+     * @return the booking as indexed on this node, or null if it is not indexed
+     */
+    BookingInterval getBooking(int id);
+
+    /**
+     * @return the epoch millis floored to the slot of the booking policy they are in, as bookings are stored
+     */
+    long floorToSlot(long millis);
+
+    BookingPolicy getBookingPolicy();
+
+    void bookingCreated(BookingDTO bookingDTO);
+
+    void bookingEdited(BookingDTO bookingDTO);
+
+    void bookingDeleted(BookingDTO bookingDTO);
 
-    boolean validateCreateBooking(long startTime, long endTime, int numberOfWashingMachineUses, int numberOfTumbleDryUses);
+    void addBookingChangeListener(BookingChangeListener bookingChangeListener);
 }
@@ -1,65 +1,102 @@
 package core;
 
 import api.BookingDTO;
-import db.BookingDAO;
-import exceptions.ValidationErrorException;
 
-import java.util.Calendar;
-import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 public class BookingServiceImpl implements BookingService {
-    private BookingDAO bookingDAO;
+    private MachineTimelines machineTimelines;
+    private BookingValidator bookingValidator;
+    private Executor notificationExecutor;
+    private final List<BookingChangeListener> bookingChangeListeners = new CopyOnWriteArrayList<>();
 
-    public BookingServiceImpl(BookingDAO bookingDAO) {
-        this.bookingDAO = bookingDAO;
+    public BookingServiceImpl(MachineTimelines machineTimelines) {
+        this(machineTimelines, Runnable::run);
+    }
+
+    /**
+     * @param notificationExecutor runs the updates of the machine timelines and the notifications of booking change
+     *                             listeners, e.g. once the write is committed. Until then other writes would be
+     *                             checked against the timelines without it, so the day locks of the write must be
+     *                             held until it is committed, see {@link BookingDayLocks}
+     */
+    public BookingServiceImpl(MachineTimelines machineTimelines, Executor notificationExecutor) {
+        this(machineTimelines, new BookingValidator(machineTimelines), notificationExecutor);
+    }
+
+    public BookingServiceImpl(MachineTimelines machineTimelines, BookingValidator bookingValidator,
+                              Executor notificationExecutor) {
+        this.machineTimelines = machineTimelines;
+        this.bookingValidator = bookingValidator;
+        this.notificationExecutor = notificationExecutor;
+    }
+
+    @Override
+    public BookingRejection validateEditBooking(int machineId, long startTime, long endTime, int numberOfWashingMachineUses, int numberOfTumbleDryUses, int id) {
+        return bookingValidator.validateEdit(machineId, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses, id);
+    }
+
+    @Override
+    public BookingRejection validateCreateBooking(int machineId, long startTime, long endTime, int numberOfWashingMachineUses, int numberOfTumbleDryUses) {
+        return bookingValidator.validateCreate(machineId, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses);
+    }
+
+    @Override
+    public boolean isMachine(int machineId) {
+        return machineTimelines.get(machineId) != null;
     }
 
     @Override
-    public boolean validateEditBooking(long startTime, long endTime, int numberOfWashingMachineUses, int numberOfTumbleDryUses, int id) {
-        Date startDate = Util.convertMillisToDateAndFloorToNearest5Minutes(startTime);
-        Date endDate = Util.convertMillisToDateAndFloorToNearest5Minutes(endTime);
-        List<BookingDTO> overlappingBookingDTOs = bookingDAO.getBookingsOverlappingInterval(startDate, endDate);
+    public BookingInterval getBooking(int id) {
+        return machineTimelines.getBooking(id);
+    }
 
-        if (overlappingBookingDTOs.size() > 0 && overlappingBookingDTOs.get(0).getId() != id) {
-            return false;
-        }
+    @Override
+    public long floorToSlot(long millis) {
+        return bookingValidator.floorToSlot(millis);
+    }
 
-        return commonValidationsForBooking(startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses);
+    @Override
+    public BookingPolicy getBookingPolicy() {
+        return bookingValidator.getBookingPolicy();
     }
 
     @Override
-    public boolean validateCreateBooking(long startTime, long endTime, int numberOfWashingMachineUses, int numberOfTumbleDryUses) {
-        Date startDate = Util.convertMillisToDateAndFloorToNearest5Minutes(startTime);
-        Date endDate = Util.convertMillisToDateAndFloorToNearest5Minutes(endTime);
-        List<BookingDTO> overlappingBookingDTOs = bookingDAO.getBookingsOverlappingInterval(startDate, endDate);
+    public void bookingCreated(BookingDTO bookingDTO) {
+        notificationExecutor.execute(() -> {
+            machineTimelines.put(bookingDTO.getMachineId(), bookingDTO.getId(), bookingDTO.getStartTime().getTime(),
+                    bookingDTO.getEndTime().getTime());
+            for (BookingChangeListener bookingChangeListener : bookingChangeListeners) {
+                bookingChangeListener.bookingCreated(bookingDTO);
+            }
+        });
+    }
 
-        if (overlappingBookingDTOs.size() > 0 || startDate.before(new Date())) {
-            return false;
-        }
+    @Override
+    public void bookingEdited(BookingDTO bookingDTO) {
+        notificationExecutor.execute(() -> {
+            BookingInterval previous = machineTimelines.put(bookingDTO.getMachineId(), bookingDTO.getId(),
+                    bookingDTO.getStartTime().getTime(), bookingDTO.getEndTime().getTime());
+            for (BookingChangeListener bookingChangeListener : bookingChangeListeners) {
+                bookingChangeListener.bookingEdited(previous, bookingDTO);
+            }
+        });
+    }
 
-        return commonValidationsForBooking(startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses);
+    @Override
+    public void bookingDeleted(BookingDTO bookingDTO) {
+        notificationExecutor.execute(() -> {
+            machineTimelines.remove(bookingDTO.getMachineId(), bookingDTO.getId());
+            for (BookingChangeListener bookingChangeListener : bookingChangeListeners) {
+                bookingChangeListener.bookingDeleted(bookingDTO);
+            }
+        });
     }
 
-    private boolean commonValidationsForBooking(long startTime, long endTime, int numberOfWashingMachineUses, int numberOfTumbleDryUses) throws ValidationErrorException {
-        Date startDate = Util.convertMillisToDateAndFloorToNearest5Minutes(startTime);
-        Date endDate = Util.convertMillisToDateAndFloorToNearest5Minutes(endTime);
-        Calendar startDateCalendar = Calendar.getInstance();
-        Calendar endDateCalendar = Calendar.getInstance();
-        startDateCalendar.setTimeInMillis(startTime);
-        endDateCalendar.setTimeInMillis(endTime);
-
-        long timeDifference = endTime - startTime;
-        boolean timeDifferenceGreaterThan30Minutes = (timeDifference / 1000 / 60) >= 30;
-
-        if (startDate.after(endDate) ||
-                (endDateCalendar.get(Calendar.HOUR_OF_DAY) < 8 || (endDateCalendar.get(Calendar.HOUR_OF_DAY) >= 22 && endDateCalendar.get(Calendar.MINUTE) > 0)) ||
-                (startDateCalendar.get(Calendar.HOUR_OF_DAY) < 8 || (startDateCalendar.get(Calendar.HOUR_OF_DAY) >= 22 && startDateCalendar.get(Calendar.MINUTE) > 0)) ||
-                !timeDifferenceGreaterThan30Minutes ||
-                (numberOfTumbleDryUses <= 0 && numberOfWashingMachineUses <= 0)) {
-            return false;
-        }
-
-        return true;
+    @Override
+    public void addBookingChangeListener(BookingChangeListener bookingChangeListener) {
+        bookingChangeListeners.add(bookingChangeListener);
     }
 }
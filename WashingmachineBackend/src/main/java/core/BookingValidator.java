@@ -0,0 +1,146 @@
+package core;
+
+import api.MachineKind;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Checks new and edited bookings against the {@link BookingPolicy}, the kind of the machine and the other bookings of
+ * the same machine. Times are taken apart as epoch minutes with a {@link ZoneOffsetTable}, so a check allocates
+ * nothing.
+ *
+ * Bookings are stored floored to the slots of the policy in local time. The opening hours are checked on every slot
+ * the booking touches before flooring, the rest on the interval as it is stored. The policy may be replaced while
+ * bookings are validated, a check uses the policy it started with.
+ *
+ * Bookings are partitioned by the month they start in and the database only excludes overlaps within a partition, so
+ * a booking must end in its month, even when the opening hours run past midnight.
+ */
+public class BookingValidator {
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long MINUTES_PER_DAY = TimeUnit.DAYS.toMinutes(1);
+
+    private final MachineTimelines machineTimelines;
+    private final ZoneOffsetTable zoneOffsetTable;
+    private final LongSupplier clock;
+    private volatile BookingPolicy bookingPolicy;
+
+    public BookingValidator(MachineTimelines machineTimelines) {
+        this(machineTimelines, new BookingPolicyFactory().build());
+    }
+
+    public BookingValidator(MachineTimelines machineTimelines, BookingPolicy bookingPolicy) {
+        this(machineTimelines, bookingPolicy, ZoneOffsetTable.systemDefault(), System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock the current time in epoch millis
+     */
+    public BookingValidator(MachineTimelines machineTimelines, BookingPolicy bookingPolicy,
+                            ZoneOffsetTable zoneOffsetTable, LongSupplier clock) {
+        this.machineTimelines = machineTimelines;
+        this.bookingPolicy = bookingPolicy;
+        this.zoneOffsetTable = zoneOffsetTable;
+        this.clock = clock;
+    }
+
+    public BookingPolicy getBookingPolicy() {
+        return bookingPolicy;
+    }
+
+    public void setBookingPolicy(BookingPolicy bookingPolicy) {
+        this.bookingPolicy = bookingPolicy;
+    }
+
+    /**
+     * @return the epoch millis floored to the slot they are in, as the booking is stored
+     */
+    public long floorToSlot(long millis) {
+        return floorToSlot(bookingPolicy, Math.floorDiv(millis, MILLIS_PER_MINUTE)) * MILLIS_PER_MINUTE;
+    }
+
+    /**
+     * @return why the booking cannot be created, or null when it can
+     */
+    public BookingRejection validateCreate(int machineId, long startTime, long endTime, int numberOfWashingMachineUses,
+                                           int numberOfTumbleDryUses) {
+        return validate(machineId, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses,
+                BookingIntervalIndex.NO_BOOKING, true);
+    }
+
+    /**
+     * @return why the booking cannot be moved to the interval, or null when it can. It may overlap its own old interval
+     */
+    public BookingRejection validateEdit(int machineId, long startTime, long endTime, int numberOfWashingMachineUses,
+                                         int numberOfTumbleDryUses, int id) {
+        return validate(machineId, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses, id, false);
+    }
+
+    private BookingRejection validate(int machineId, long startTime, long endTime, int numberOfWashingMachineUses,
+                                      int numberOfTumbleDryUses, int ignoredId, boolean mustStartInFuture) {
+        BookingIntervalIndex timeline = machineTimelines.get(machineId);
+        if (timeline == null) {
+            return BookingRejection.UNKNOWN_MACHINE;
+        }
+        MachineKind kind = machineTimelines.getMachine(machineId).getKind();
+        BookingPolicy policy = bookingPolicy;
+        long startMinute = Math.floorDiv(startTime, MILLIS_PER_MINUTE);
+        long endMinute = Math.floorDiv(endTime, MILLIS_PER_MINUTE);
+        long storedStartMinute = floorToSlot(policy, startMinute);
+        long storedEndMinute = floorToSlot(policy, endMinute);
+
+        if (storedStartMinute > storedEndMinute) {
+            return BookingRejection.ENDS_BEFORE_START;
+        }
+        if ((endTime - startTime) / MILLIS_PER_MINUTE < policy.getMinimumMinutes()) {
+            return BookingRejection.TOO_SHORT;
+        }
+        if (!policy.isOpen(zoneOffsetTable.toLocalMinute(startMinute), zoneOffsetTable.toLocalMinute(endMinute))) {
+            return BookingRejection.OUTSIDE_OPENING_HOURS;
+        }
+        if (storedEndMinute > storedStartMinute && monthOf(zoneOffsetTable.toLocalMinute(storedStartMinute))
+                != monthOf(zoneOffsetTable.toLocalMinute(storedEndMinute - 1))) {
+            return BookingRejection.CROSSES_MONTH;
+        }
+        if (numberOfWashingMachineUses <= 0 && numberOfTumbleDryUses <= 0) {
+            return BookingRejection.NO_USES;
+        }
+        if (numberOfWashingMachineUses > 0 && !kind.washes()) {
+            return BookingRejection.MACHINE_DOES_NOT_WASH;
+        }
+        if (numberOfTumbleDryUses > 0 && !kind.tumbleDries()) {
+            return BookingRejection.MACHINE_DOES_NOT_TUMBLE_DRY;
+        }
+        if (mustStartInFuture && storedStartMinute * MILLIS_PER_MINUTE < clock.getAsLong()) {
+            return BookingRejection.IN_THE_PAST;
+        }
+        if (timeline.overlaps(storedStartMinute * MILLIS_PER_MINUTE, storedEndMinute * MILLIS_PER_MINUTE,
+                ignoredId)) {
+            return BookingRejection.OVERLAPS;
+        }
+        return null;
+    }
+
+    /**
+     * @return year * 12 + month - 1 of the local minute, computed like the proleptic Gregorian calendar of
+     * java.time, but without allocating
+     */
+    private static long monthOf(long localMinute) {
+        // Days since 0000-03-01, so the leap day is the last day of the year
+        long days = Math.floorDiv(localMinute, MINUTES_PER_DAY) + 719468;
+        long era = Math.floorDiv(days, 146097);
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthFromMarch = (5 * dayOfYear + 2) / 153;
+        long year = yearOfEra + era * 400 + (monthFromMarch >= 10 ? 1 : 0);
+        long month = monthFromMarch < 10 ? monthFromMarch + 3 : monthFromMarch - 9;
+        return year * 12 + month - 1;
+    }
+
+    private long floorToSlot(BookingPolicy policy, long epochMinute) {
+        long localMinute = zoneOffsetTable.toLocalMinute(epochMinute);
+        return epochMinute - (localMinute - policy.floorToSlot(localMinute));
+    }
+}
@@ -0,0 +1,121 @@
+package core;
+
+import api.MachineDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The machines that can be booked, each with a {@link BookingIntervalIndex} of its own. Checks and writes of one
+ * machine only touch its own timeline, so bookings of different machines never contend on it.
+ *
+ * Machines are read from the machines table at startup, machines added later can be booked after a restart.
+ * Intervals of machines that are not known are left out.
+ */
+public class MachineTimelines {
+    private final List<MachineDTO> machines;
+    // Both indexed by machine id, null where there is no machine
+    private final MachineDTO[] machinesById;
+    private final BookingIntervalIndex[] timelines;
+
+    public MachineTimelines(List<MachineDTO> machines) {
+        this.machines = Collections.unmodifiableList(new ArrayList<>(machines));
+        int largestId = machines.stream().mapToInt(MachineDTO::getId).max().orElse(0);
+        this.machinesById = new MachineDTO[largestId + 1];
+        this.timelines = new BookingIntervalIndex[largestId + 1];
+        for (MachineDTO machine : machines) {
+            machinesById[machine.getId()] = machine;
+            timelines[machine.getId()] = new BookingIntervalIndex(machine.getId());
+        }
+    }
+
+    public List<MachineDTO> getMachines() {
+        return machines;
+    }
+
+    /**
+     * @return the machine, or null if there is no such machine
+     */
+    public MachineDTO getMachine(int machineId) {
+        return machineId >= 0 && machineId < machinesById.length ? machinesById[machineId] : null;
+    }
+
+    /**
+     * @return the timeline of the machine, or null if there is no such machine
+     */
+    public BookingIntervalIndex get(int machineId) {
+        return machineId >= 0 && machineId < timelines.length ? timelines[machineId] : null;
+    }
+
+    /**
+     * @return the indexed interval of the booking on any machine, or null if it is not indexed
+     */
+    public BookingInterval getBooking(int id) {
+        for (BookingIntervalIndex timeline : timelines) {
+            BookingInterval bookingInterval = timeline == null ? null : timeline.get(id);
+            if (bookingInterval != null) {
+                return bookingInterval;
+            }
+        }
+        return null;
+    }
+
+    public void putAll(Iterable<BookingInterval> bookingIntervals) {
+        Map<Integer, List<BookingInterval>> byMachine = byMachine(bookingIntervals);
+        for (BookingIntervalIndex timeline : timelines) {
+            if (timeline != null) {
+                timeline.putAll(byMachine.getOrDefault(timeline.getMachineId(), Collections.emptyList()));
+            }
+        }
+    }
+
+    /**
+     * Replaces every booking starting in [startTime, endTime) on every machine with the given ones
+     */
+    public void replaceStartingIn(long startTime, long endTime, Iterable<BookingInterval> bookingIntervals) {
+        Map<Integer, List<BookingInterval>> byMachine = byMachine(bookingIntervals);
+        for (BookingIntervalIndex timeline : timelines) {
+            if (timeline != null) {
+                timeline.replaceStartingIn(startTime, endTime,
+                        byMachine.getOrDefault(timeline.getMachineId(), Collections.emptyList()));
+            }
+        }
+    }
+
+    /**
+     * @return the interval previously stored for the id, or null if the booking was not indexed
+     */
+    public BookingInterval put(int machineId, int id, long startTime, long endTime) {
+        BookingIntervalIndex timeline = get(machineId);
+        return timeline == null ? null : timeline.put(id, startTime, endTime);
+    }
+
+    /**
+     * @return the interval that was removed, or null if the booking was not indexed
+     */
+    public BookingInterval remove(int machineId, int id) {
+        BookingIntervalIndex timeline = get(machineId);
+        return timeline == null ? null : timeline.remove(id);
+    }
+
+    public int size() {
+        int size = 0;
+        for (BookingIntervalIndex timeline : timelines) {
+            if (timeline != null) {
+                size += timeline.size();
+            }
+        }
+        return size;
+    }
+
+    private static Map<Integer, List<BookingInterval>> byMachine(Iterable<BookingInterval> bookingIntervals) {
+        Map<Integer, List<BookingInterval>> byMachine = new HashMap<>();
+        for (BookingInterval bookingInterval : bookingIntervals) {
+            byMachine.computeIfAbsent(bookingInterval.getMachineId(), machineId -> new ArrayList<>()).add(bookingInterval);
+        }
+        return byMachine;
+    }
+}
@@ -0,0 +1,73 @@
+package core;
+
+import java.time.YearMonth;
+import java.util.Date;
+
+/**
+ * An interval to read usage for, split into the whole months that can be read from the usage_monthly rollup and the
+ * partial months at either end that are aggregated from the bookings themselves.
+ */
+public class UsageInterval {
+    private final Date startTime;
+    private final Date endTime;
+    private final YearMonth firstWholeMonth;
+    private final YearMonth endOfWholeMonths;
+
+    private UsageInterval(Date startTime, Date endTime, YearMonth firstWholeMonth, YearMonth endOfWholeMonths) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.firstWholeMonth = firstWholeMonth;
+        this.endOfWholeMonths = endOfWholeMonths;
+    }
+
+    public static UsageInterval of(Date startTime, Date endTime) {
+        YearMonth firstWholeMonth = BookingMonthVersions.monthOf(startTime);
+        if (BookingMonthVersions.startOf(firstWholeMonth).before(startTime)) {
+            firstWholeMonth = firstWholeMonth.plusMonths(1);
+        }
+        // The month containing the end time is never whole, bookings ending after it are left out
+        YearMonth endOfWholeMonths = BookingMonthVersions.monthOf(endTime);
+        if (endOfWholeMonths.isBefore(firstWholeMonth)) {
+            endOfWholeMonths = firstWholeMonth;
+        }
+        return new UsageInterval(startTime, endTime, firstWholeMonth, endOfWholeMonths);
+    }
+
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    public Date getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * @return the start of the first whole month
+     */
+    public Date getWholeMonthsStart() {
+        return BookingMonthVersions.startOf(firstWholeMonth);
+    }
+
+    /**
+     * @return the end of the last whole month, never before {@link #getWholeMonthsStart()}
+     */
+    public Date getWholeMonthsEnd() {
+        return BookingMonthVersions.startOf(endOfWholeMonths);
+    }
+
+    public int getWholeMonthsStartYear() {
+        return firstWholeMonth.getYear();
+    }
+
+    public int getWholeMonthsStartMonth() {
+        return firstWholeMonth.getMonthValue();
+    }
+
+    public int getWholeMonthsEndYear() {
+        return endOfWholeMonths.getYear();
+    }
+
+    public int getWholeMonthsEndMonth() {
+        return endOfWholeMonths.getMonthValue();
+    }
+}
@@ -0,0 +1,97 @@
+package core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import db.CoherenceChannel;
+import db.UserDAO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+
+/**
+ * Every username, compared case-insensitively like upper(username) in {@link UserDAO}, so availability checks while
+ * typing are answered without a query. Loaded at startup and on every resync of the {@link CoherenceChannel}, and
+ * kept current with the users created on this node and, through the channel, on the others.
+ *
+ * A name created elsewhere while the channel was down may be missing until the resync, the unique constraint on
+ * users still rejects it at creation.
+ */
+public class UsernameIndex {
+    private static final int MAX_SUGGESTION_ATTEMPTS = 1000;
+
+    private final UserDAO userDAO;
+    private final CoherenceChannel coherenceChannel;
+    private final Executor publishExecutor;
+    private final Meter lookups;
+    private volatile NavigableSet<String> usernames = new ConcurrentSkipListSet<>();
+
+    /**
+     * @param publishExecutor adds and publishes created usernames, e.g. once the user is committed, so a rolled back
+     *                        user is never reported as taken
+     */
+    public UsernameIndex(UserDAO userDAO, CoherenceChannel coherenceChannel, Executor publishExecutor,
+                         MetricRegistry metricRegistry) {
+        this.userDAO = userDAO;
+        this.coherenceChannel = coherenceChannel;
+        this.publishExecutor = publishExecutor;
+        this.lookups = metricRegistry.meter(MetricRegistry.name(UsernameIndex.class, "lookups"));
+        metricRegistry.register(MetricRegistry.name(UsernameIndex.class, "size"), (Gauge<Integer>) () -> usernames.size());
+        coherenceChannel.subscribe(CoherenceChannel.USERNAME, username -> usernames.add(normalize(username)));
+        coherenceChannel.onResync(this::load);
+    }
+
+    public void load() {
+        NavigableSet<String> loaded = new ConcurrentSkipListSet<>();
+        for (String username : userDAO.getUsernames()) {
+            loaded.add(normalize(username));
+        }
+        // Swapped in whole so checks never see a half loaded index
+        usernames = loaded;
+    }
+
+    /**
+     * @return true if the username is taken, false for a missing or empty one like the users table would answer
+     */
+    public boolean exists(String username) {
+        lookups.mark();
+        return username != null && usernames.contains(normalize(username));
+    }
+
+    public void created(String username) {
+        publishExecutor.execute(() -> {
+            usernames.add(normalize(username));
+            coherenceChannel.publish(CoherenceChannel.USERNAME, username);
+        });
+    }
+
+    /**
+     * @return up to limit free names made by numbering the username, none if the username itself is free
+     */
+    public List<String> suggest(String username, int limit) {
+        List<String> suggestions = new ArrayList<>();
+        if (username == null) {
+            return suggestions;
+        }
+        String prefix = normalize(username);
+        if (!usernames.contains(prefix)) {
+            return suggestions;
+        }
+        // Only the names starting with the username can collide with a numbered one
+        NavigableSet<String> taken = usernames.subSet(prefix, false, prefix + Character.MAX_VALUE, false);
+        for (int number = 2; suggestions.size() < limit && number < MAX_SUGGESTION_ATTEMPTS; number++) {
+            if (!taken.contains(prefix + number)) {
+                suggestions.add(username + number);
+            }
+        }
+        return suggestions;
+    }
+
+    private static String normalize(String username) {
+        return username.toUpperCase(Locale.ROOT);
+    }
+}
@@ -1,6 +1,6 @@
 package core;
 
-import com.sun.org.apache.xerces.internal.impl.dv.util.HexBin;
+import com.google.common.io.BaseEncoding;
 import org.apache.commons.lang3.RandomStringUtils;
 
 import java.security.MessageDigest;
@@ -12,7 +12,7 @@ public class Util {
         MessageDigest messageDigest = null;
         try {
             messageDigest = MessageDigest.getInstance("SHA-256");
-            return HexBin.encode(messageDigest.digest((password + salt).getBytes()));
+            return BaseEncoding.base16().encode(messageDigest.digest((password + salt).getBytes()));
         } catch (NoSuchAlgorithmException e) {
             // Should never happen
             e.printStackTrace();
@@ -0,0 +1,65 @@
+package core;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The UTC offsets of a zone between two years as sorted arrays of transitions in epoch minutes, so local times can be
+ * computed without allocating. Instants outside those years are looked up in the zone rules.
+ */
+public class ZoneOffsetTable {
+    public static final int DEFAULT_FIRST_YEAR = 2000;
+    public static final int DEFAULT_LAST_YEAR = 2100;
+
+    private final ZoneRules rules;
+    private final long firstMinute;
+    private final long endMinute;
+    // offsets[i + 1] applies from transitions[i], offsets[0] before the first transition
+    private final long[] transitions;
+    private final int[] offsets;
+
+    public ZoneOffsetTable(ZoneId zone, int firstYear, int lastYear) {
+        this.rules = zone.getRules();
+        Instant first = LocalDate.of(firstYear, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant end = LocalDate.of(lastYear + 1, 1, 1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        this.firstMinute = first.getEpochSecond() / 60;
+        this.endMinute = end.getEpochSecond() / 60;
+
+        List<ZoneOffsetTransition> zoneTransitions = new ArrayList<>();
+        for (ZoneOffsetTransition transition = rules.nextTransition(first);
+             transition != null && transition.getInstant().isBefore(end);
+             transition = rules.nextTransition(transition.getInstant())) {
+            zoneTransitions.add(transition);
+        }
+        this.transitions = new long[zoneTransitions.size()];
+        this.offsets = new int[zoneTransitions.size() + 1];
+        offsets[0] = rules.getOffset(first).getTotalSeconds() / 60;
+        for (int i = 0; i < zoneTransitions.size(); i++) {
+            transitions[i] = zoneTransitions.get(i).getInstant().getEpochSecond() / 60;
+            offsets[i + 1] = zoneTransitions.get(i).getOffsetAfter().getTotalSeconds() / 60;
+        }
+    }
+
+    public static ZoneOffsetTable systemDefault() {
+        return new ZoneOffsetTable(ZoneId.systemDefault(), DEFAULT_FIRST_YEAR, DEFAULT_LAST_YEAR);
+    }
+
+    public int offsetMinutes(long epochMinute) {
+        if (epochMinute < firstMinute || epochMinute >= endMinute) {
+            return rules.getOffset(Instant.ofEpochSecond(epochMinute * 60)).getTotalSeconds() / 60;
+        }
+        int index = Arrays.binarySearch(transitions, epochMinute);
+        return offsets[index >= 0 ? index + 1 : -index - 1];
+    }
+
+    public long toLocalMinute(long epochMinute) {
+        return epochMinute + offsetMinutes(epochMinute);
+    }
+}
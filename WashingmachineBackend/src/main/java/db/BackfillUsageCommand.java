@@ -0,0 +1,48 @@
+package db;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.db.DatabaseConfiguration;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.skife.jdbi.v2.DBI;
+
+/**
+ * Rebuilds the usage_monthly rollup from the bookings, archived ones included, once after it has been introduced or
+ * whenever it is in doubt. Bookings cannot be written while it runs.
+ */
+public class BackfillUsageCommand<T extends Configuration> extends ConfiguredCommand<T> {
+    private final DatabaseConfiguration<T> databaseConfiguration;
+    private final Class<T> configurationClass;
+
+    public BackfillUsageCommand(DatabaseConfiguration<T> databaseConfiguration, Class<T> configurationClass) {
+        super("backfill-usage", "Rebuilds the monthly usage rollup from all bookings");
+        this.databaseConfiguration = databaseConfiguration;
+        this.configurationClass = configurationClass;
+    }
+
+    @Override
+    protected Class<T> getConfigurationClass() {
+        return configurationClass;
+    }
+
+    @Override
+    protected void run(Bootstrap<T> bootstrap, Namespace namespace, T configuration) throws Exception {
+        ManagedDataSource dataSource = databaseConfiguration.getDataSourceFactory(configuration)
+                .build(bootstrap.getMetricRegistry(), "backfill-usage");
+        try {
+            DBI dbi = new DBI(dataSource);
+            new SchemaMigrations(dbi).verify();
+            int rows = dbi.inTransaction((handle, status) -> {
+                BookingDAO transactional = handle.attach(BookingDAO.class);
+                transactional.lockBookingsAgainstWrites();
+                transactional.deleteUsageMonthly();
+                return transactional.backfillUsageMonthly();
+            });
+            System.out.println("Backfilled " + rows + " months of usage");
+        } finally {
+            dataSource.stop();
+        }
+    }
+}
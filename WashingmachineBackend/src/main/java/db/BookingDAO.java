@@ -1,15 +1,22 @@
 package db;
 
+import api.BillingDTO;
 import api.BookingDTO;
 import api.UsageAdminExportDTO;
 import api.UsageDTO;
+import core.BookingInterval;
+import core.UsageInterval;
+import db.mappers.BillingMapper;
+import db.mappers.BookingIntervalMapper;
 import db.mappers.BookingMapper;
 import db.mappers.UsageAdminExportMapper;
 import db.mappers.UsageMapper;
+import org.skife.jdbi.v2.ResultIterator;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.customizers.FetchSize;
 import org.skife.jdbi.v2.sqlobject.customizers.RegisterMapper;
 
 import java.util.Date;
@@ -17,36 +24,166 @@ import java.util.List;
 
 @RegisterMapper(BookingMapper.class)
 public interface BookingDAO {
+    int STREAMING_FETCH_SIZE = 500;
 
-    @SqlUpdate("CREATE TABLE IF NOT EXISTS bookings (" +
-            "id SERIAL," +
-            "start_time TIMESTAMP NOT NULL," +
-            "end_time TIMESTAMP NOT NULL," +
-            "owner VARCHAR(100) NOT NULL references users(username)," +
-            "number_of_washing_machine_uses SMALLINT NOT NULL," +
-            "number_of_tumble_dry_uses SMALLINT NOT NULL," +
-            "PRIMARY KEY(id)" +
-            ");")
-    void createBookingTable();
-
-    @SqlUpdate("CREATE TABLE IF NOT EXISTS bookings_rev (" +
-            "booking_id INTEGER," +
-            "start_time TIMESTAMP NOT NULL," +
-            "end_time TIMESTAMP NOT NULL," +
-            "owner VARCHAR(100) NOT NULL references users(username)," +
-            "number_of_washing_machine_uses SMALLINT NOT NULL," +
-            "number_of_tumble_dry_uses SMALLINT NOT NULL," +
-            "update_type VARCHAR(10)" +
+    // start_time <= :endTime follows from end_time <= :endTime, but lets Postgres skip the partitions of later months
+    String BOOKINGS_IN_INTERVAL = "SELECT bookings_table.id, machine_id, start_time, end_time, users.name, users.username as owner, users.apartment, number_of_washing_machine_uses, number_of_tumble_dry_uses " +
+            "FROM users " +
+            "JOIN " +
+            "(SELECT id, machine_id, start_time, end_time, owner, " +
+            "CASE number_of_washing_machine_uses WHEN 0 THEN 0 ELSE 0 END AS number_of_washing_machine_uses, " +
+            "CASE number_of_tumble_dry_uses WHEN 0 THEN 0 ELSE 0 END AS number_of_tumble_dry_uses " +
+            "FROM bookings " +
+            "WHERE start_time >= :startTime " +
+            "AND :endTime >= end_time " +
+            "AND start_time <= :endTime " +
+            "AND owner != :username " +
+            "UNION " +
+            "SELECT id, machine_id, start_time, end_time, owner, number_of_washing_machine_uses, number_of_tumble_dry_uses " +
+            "FROM bookings WHERE start_time >= :startTime AND :endTime >= end_time AND start_time <= :endTime AND owner = :username) bookings_table " +
+            "ON bookings_table.owner = users.username";
+
+    // start_time <= :endTime prunes the partitions of later months, as in BOOKINGS_IN_INTERVAL
+    String USAGE_IN_INTERVAL_ADMIN = "SELECT name, apartment, mon, year, sum_of_washing_machine_uses, sum_of_tumble_dry_uses " +
+            "FROM users " +
+            "JOIN " +
+            "(SELECT " +
+            "to_char(start_time, 'Mon') as mon, " +
+            "extract(year from start_time) as year, " +
+            "owner as username, " +
+            "SUM(number_of_washing_machine_uses) sum_of_washing_machine_uses, " +
+            "SUM(number_of_tumble_dry_uses) sum_of_tumble_dry_uses " +
+            "FROM bookings " +
+            "WHERE start_time >= :startTime " +
+            "AND end_time <= :endTime " +
+            "AND start_time <= :endTime " +
+            "GROUP BY (1, 2, 3)) usage " +
+            "ON usage.username = users.username";
+
+    /**
+     * Adds the uses of the bookings in the added CTE to usage_monthly and subtracts those in the removed CTE, in the
+     * statement that writes the bookings. Rows are upserted in key order so concurrent writes cannot deadlock.
+     */
+    String USAGE_ROLLUP = "rolled_up AS (" +
+            "INSERT INTO usage_monthly (owner, year, month, number_of_bookings, washing_uses, tumble_uses) " +
+            "SELECT owner, extract(year FROM start_time), extract(month FROM start_time), SUM(number_of_bookings), " +
+            "SUM(washing_uses), SUM(tumble_uses) " +
+            "FROM (" +
+            "SELECT owner, start_time, 1 AS number_of_bookings, number_of_washing_machine_uses AS washing_uses, " +
+            "number_of_tumble_dry_uses AS tumble_uses FROM added " +
+            "UNION ALL " +
+            "SELECT owner, start_time, -1, -number_of_washing_machine_uses, -number_of_tumble_dry_uses FROM removed" +
+            ") changes " +
+            "GROUP BY 1, 2, 3 ORDER BY 1, 2, 3 " +
+            "ON CONFLICT (owner, year, month) DO UPDATE SET " +
+            "number_of_bookings = usage_monthly.number_of_bookings + EXCLUDED.number_of_bookings, " +
+            "washing_uses = usage_monthly.washing_uses + EXCLUDED.washing_uses, " +
+            "tumble_uses = usage_monthly.tumble_uses + EXCLUDED.tumble_uses) ";
+
+    String NOTHING_REMOVED = "removed AS (SELECT * FROM bookings WHERE false), ";
+
+    /**
+     * The old values of the updated booking are returned next to the new ones, the row is locked before they are read
+     */
+    String UPDATE_BOOKING_RETURNING_PREVIOUS = "updated AS (" +
+            "UPDATE bookings " +
+            "SET start_time = :startTime, end_time = :endTime," +
+            "number_of_washing_machine_uses = :numberOfWashingMachineUses," +
+            "number_of_tumble_dry_uses = :numberOfTumbleDryUses " +
+            "FROM (SELECT id, start_time, number_of_washing_machine_uses, number_of_tumble_dry_uses FROM bookings " +
+            "WHERE id = :id AND start_time = :currentStartTime AND owner = :username AND machine_id = :machineId FOR UPDATE) previous " +
+            "WHERE bookings.id = previous.id AND bookings.start_time = :currentStartTime " +
+            "RETURNING bookings.*, previous.start_time AS previous_start_time, " +
+            "previous.number_of_washing_machine_uses AS previous_number_of_washing_machine_uses, " +
+            "previous.number_of_tumble_dry_uses AS previous_number_of_tumble_dry_uses), " +
+            "added AS (SELECT owner, start_time, number_of_washing_machine_uses, number_of_tumble_dry_uses FROM updated), " +
+            "removed AS (SELECT owner, previous_start_time AS start_time, " +
+            "previous_number_of_washing_machine_uses AS number_of_washing_machine_uses, " +
+            "previous_number_of_tumble_dry_uses AS number_of_tumble_dry_uses FROM updated), ";
+
+    /**
+     * Usage rows in a {@link core.UsageInterval}: whole months from usage_monthly, the partial months at either end from
+     * the bookings, less the bookings of the whole months that end after the interval. There is a row for each of those,
+     * at most one per machine, and every query on these rows sums them.
+     */
+    String USAGE_ROWS_IN_INTERVAL = "SELECT owner, year, month, number_of_bookings, washing_uses, tumble_uses " +
+            "FROM usage_monthly " +
+            "WHERE (year, month) >= (:interval.wholeMonthsStartYear, :interval.wholeMonthsStartMonth) " +
+            "AND (year, month) < (:interval.wholeMonthsEndYear, :interval.wholeMonthsEndMonth) " +
+            "UNION ALL " +
+            "SELECT owner, CAST(extract(year FROM start_time) AS INTEGER), CAST(extract(month FROM start_time) AS INTEGER), 1, " +
+            "number_of_washing_machine_uses, number_of_tumble_dry_uses " +
+            "FROM bookings " +
+            "WHERE start_time >= :interval.startTime AND start_time < :interval.wholeMonthsStart " +
+            "AND end_time <= :interval.endTime " +
+            "UNION ALL " +
+            "SELECT owner, CAST(extract(year FROM start_time) AS INTEGER), CAST(extract(month FROM start_time) AS INTEGER), 1, " +
+            "number_of_washing_machine_uses, number_of_tumble_dry_uses " +
+            "FROM bookings " +
+            "WHERE start_time >= :interval.wholeMonthsEnd AND start_time <= :interval.endTime " +
+            "AND end_time <= :interval.endTime " +
+            "UNION ALL " +
+            "SELECT owner, CAST(extract(year FROM start_time) AS INTEGER), CAST(extract(month FROM start_time) AS INTEGER), -1, " +
+            "-number_of_washing_machine_uses, -number_of_tumble_dry_uses " +
+            "FROM bookings " +
+            "WHERE tsrange(start_time, end_time) && tsrange(:interval.endTime, :interval.endTime, '[]') " +
+            "AND start_time >= :interval.wholeMonthsStart AND start_time < :interval.wholeMonthsEnd";
+
+    String USAGE_BY_MONTH_IN_INTERVAL = "SELECT owner, year, month, " +
+            "SUM(washing_uses) sum_of_washing_machine_uses, " +
+            "SUM(tumble_uses) sum_of_tumble_dry_uses " +
+            "FROM (" + USAGE_ROWS_IN_INTERVAL + ") usage_rows " +
+            "GROUP BY 1, 2, 3 " +
+            "HAVING SUM(number_of_bookings) > 0";
+
+    String USAGE_IN_INTERVAL_ADMIN_FROM_ROLLUP = "SELECT name, apartment, to_char(make_date(year, month, 1), 'Mon') as mon, year, " +
+            "sum_of_washing_machine_uses, sum_of_tumble_dry_uses " +
+            "FROM users " +
+            "JOIN (" + USAGE_BY_MONTH_IN_INTERVAL + ") usage " +
+            "ON usage.owner = users.username " +
+            "ORDER BY apartment, name, year, usage.month";
+
+    String BILLING_IN_INTERVAL = "SELECT apartment, " +
+            "SUM(sum_of_washing_machine_uses) sum_of_washing_machine_uses, " +
+            "SUM(sum_of_tumble_dry_uses) sum_of_tumble_dry_uses " +
+            "FROM users " +
+            "JOIN (" + USAGE_BY_MONTH_IN_INTERVAL + ") usage " +
+            "ON usage.owner = users.username " +
+            "GROUP BY apartment " +
+            "ORDER BY apartment";
+
+    /**
+     * Uses per owner and month, maintained by every statement that writes bookings. Filled from existing bookings by
+     * {@link #backfillUsageMonthly()}.
+     */
+    @SqlUpdate("CREATE TABLE IF NOT EXISTS usage_monthly (" +
+            "owner VARCHAR(100) NOT NULL," +
+            "year INTEGER NOT NULL," +
+            "month INTEGER NOT NULL," +
+            "number_of_bookings INTEGER NOT NULL," +
+            "washing_uses INTEGER NOT NULL," +
+            "tumble_uses INTEGER NOT NULL," +
+            "PRIMARY KEY(owner, year, month)" +
             ");")
-    void createBookingRevTable();
+    void createUsageMonthlyTable();
 
-    @SqlUpdate("CREATE TRIGGER booking_rev_trigger" +
-            "AFTER INSERT OR UPDATE OR DELETE ON bookings")
-    void createBookingRevTrigger();
+    @SqlUpdate("CREATE INDEX IF NOT EXISTS usage_monthly_month ON usage_monthly (year, month)")
+    void createUsageMonthlyMonthIndex();
 
-    @SqlUpdate("INSERT INTO bookings (start_time, end_time, owner, number_of_washing_machine_uses, number_of_tumble_dry_uses) " +
-            "VALUES (:bookingDTO.startTime, :bookingDTO.endTime, :bookingDTO.owner, :bookingDTO.numberOfWashingMachineUses, :bookingDTO.numberOfTumbleDryUses)")
-    void insertBooking(@BindBean("bookingDTO") BookingDTO bookingDTO);
+    /**
+     * Inserts the booking and reads it back joined with its owner in a single statement
+     *
+     * @return the inserted booking including its id, the owner's name and apartment
+     */
+    @SqlQuery("WITH added AS (" +
+            "INSERT INTO bookings (machine_id, start_time, end_time, owner, number_of_washing_machine_uses, number_of_tumble_dry_uses) " +
+            "VALUES (:bookingDTO.machineId, :bookingDTO.startTime, :bookingDTO.endTime, :bookingDTO.owner, :bookingDTO.numberOfWashingMachineUses, :bookingDTO.numberOfTumbleDryUses) " +
+            "RETURNING *), " +
+            NOTHING_REMOVED +
+            USAGE_ROLLUP +
+            "SELECT added.id, machine_id, start_time, end_time, owner, name, apartment, number_of_washing_machine_uses, number_of_tumble_dry_uses " +
+            "FROM added JOIN users ON added.owner = users.username")
+    BookingDTO insertBookingAndGet(@BindBean("bookingDTO") BookingDTO bookingDTO);
 
     /**
      *
@@ -56,50 +193,68 @@ public interface BookingDAO {
      *                 for other bookings only the start and end time and the owner of it will be provided.
      * @return bookings in interval, detailed bookings for the username provided
      */
-    @SqlQuery("SELECT bookings_table.id, start_time, end_time, users.name, users.username as owner, users.apartment, number_of_washing_machine_uses, number_of_tumble_dry_uses " +
-            "FROM users " +
-            "JOIN " +
-            "(SELECT id, start_time, end_time, owner, " +
-            "CASE number_of_washing_machine_uses WHEN 0 THEN 0 ELSE 0 END AS number_of_washing_machine_uses, " +
-            "CASE number_of_tumble_dry_uses WHEN 0 THEN 0 ELSE 0 END AS number_of_tumble_dry_uses " +
-            "FROM bookings " +
-            "WHERE start_time >= :startTime " +
-            "AND :endTime >= end_time " +
-            "AND owner != :username " +
-            "UNION " +
-            "SELECT * FROM bookings WHERE start_time >= :startTime AND :endTime >= end_time AND owner = :username) bookings_table " +
-            "ON bookings_table.owner = users.username")
+    @SqlQuery(BOOKINGS_IN_INTERVAL)
     List<BookingDTO> getBookingsInInterval(@Bind("startTime") Date startTime, @Bind("endTime") Date endTime, @Bind("username") String username);
 
-    @SqlQuery("SELECT bookings.id, start_time, end_time, owner, name, apartment, number_of_washing_machine_uses, number_of_tumble_dry_uses " +
+    /**
+     * Same as {@link #getBookingsInInterval(Date, Date, String)}, but read through a cursor. Must be called in a
+     * transaction and the iterator must be closed.
+     */
+    @SqlQuery(BOOKINGS_IN_INTERVAL)
+    @FetchSize(STREAMING_FETCH_SIZE)
+    ResultIterator<BookingDTO> iterateBookingsInInterval(@Bind("startTime") Date startTime, @Bind("endTime") Date endTime, @Bind("username") String username);
+
+    /**
+     * Unlike {@link #getBookingsInInterval(Date, Date, String)} nothing is redacted, callers must not expose the result as is
+     *
+     * @return every booking with a start time in [startTime, endTime)
+     */
+    @SqlQuery("SELECT bookings.id, machine_id, start_time, end_time, owner, name, apartment, number_of_washing_machine_uses, number_of_tumble_dry_uses " +
             "FROM bookings JOIN users ON bookings.owner = users.username " +
-            "WHERE start_time < :endTime AND end_time > :startTime")
-    List<BookingDTO> getBookingsOverlappingInterval(@Bind("startTime") Date startTime, @Bind("endTime") Date endTime);
+            "WHERE start_time >= :startTime AND start_time < :endTime")
+    List<BookingDTO> getBookingsStartingInInterval(@Bind("startTime") Date startTime, @Bind("endTime") Date endTime);
 
-    @SqlUpdate("DELETE FROM bookings WHERE id = :id AND owner = :username")
-    int deleteBooking(@Bind("username") String username, @Bind("id") int id);
+    @RegisterMapper(BookingIntervalMapper.class)
+    @SqlQuery("SELECT id, machine_id, start_time, end_time FROM bookings")
+    List<BookingInterval> getAllBookingIntervals();
 
-    @SqlQuery("SELECT bookings.id, start_time, end_time, owner, name, apartment, number_of_washing_machine_uses, number_of_tumble_dry_uses " +
-            "FROM bookings JOIN users ON bookings.owner = users.username " +
-            "WHERE start_time = :startTime AND end_time = :endTime AND owner = :owner")
-    BookingDTO getBookingFromOwnerAndDates(@Bind("owner") String owner, @Bind("startTime") Date startTime,
-                                           @Bind("endTime") Date endTime);
+    @RegisterMapper(BookingIntervalMapper.class)
+    @SqlQuery("SELECT id, machine_id, start_time, end_time FROM bookings WHERE start_time >= :startTime AND start_time < :endTime")
+    List<BookingInterval> getBookingIntervalsStartingInInterval(@Bind("startTime") Date startTime, @Bind("endTime") Date endTime);
 
-    @SqlQuery("SELECT bookings.id, start_time, end_time, owner, name, apartment, number_of_washing_machine_uses, number_of_tumble_dry_uses " +
-            "FROM bookings JOIN users ON bookings.owner = users.username " +
-            "WHERE bookings.id = :id AND owner = :username")
-    BookingDTO getBookingFromId(@Bind("username") String username, @Bind("id") int id);
+    /**
+     * @param currentStartTime the start time the booking has now, so only its partition is searched
+     * @return the updated booking, or null if no booking with the id and start time on the machine is owned by the
+     * username
+     */
+    @SqlQuery("WITH " +
+            UPDATE_BOOKING_RETURNING_PREVIOUS +
+            USAGE_ROLLUP +
+            "SELECT updated.id, machine_id, start_time, end_time, owner, name, apartment, number_of_washing_machine_uses, number_of_tumble_dry_uses " +
+            "FROM updated JOIN users ON updated.owner = users.username")
+    BookingDTO updateBookingAndGet(@Bind("username") String username, @Bind("id") int id, @Bind("machineId") int machineId,
+                                   @Bind("currentStartTime") Date currentStartTime, @Bind("startTime") Date startTime, @Bind("endTime") Date endTime,
+                                   @Bind("numberOfWashingMachineUses") int numberOfWashingMachineUses,
+                                   @Bind("numberOfTumbleDryUses") int numberOfTumbleDryUses);
 
-    @SqlUpdate("UPDATE bookings " +
-            "SET start_time = :startTime, end_time = :endTime," +
-            "number_of_washing_machine_uses = :numberOfWashingMachineUses," +
-            "number_of_tumble_dry_uses = :numberOfTumbleDryUses " +
-            "WHERE id = :id AND owner = :username")
-    int updateBooking(@Bind("username") String username, @Bind("id") int id,
-                      @Bind("startTime") Date startTime, @Bind("endTime") Date endTime,
-                      @Bind("numberOfWashingMachineUses") int numberOfWashingMachineUses,
-                      @Bind("numberOfTumbleDryUses") int numberOfTumbleDryUses);
+    /**
+     * @param currentStartTime the start time of the booking, so only its partition is searched
+     * @return the deleted booking, or null if no booking with the id and start time is owned by the username
+     */
+    @SqlQuery("WITH removed AS (" +
+            "DELETE FROM bookings WHERE id = :id AND start_time = :currentStartTime AND owner = :username " +
+            "RETURNING *), " +
+            "added AS (SELECT * FROM removed WHERE false), " +
+            USAGE_ROLLUP +
+            "SELECT removed.id, machine_id, start_time, end_time, owner, name, apartment, number_of_washing_machine_uses, number_of_tumble_dry_uses " +
+            "FROM removed JOIN users ON removed.owner = users.username")
+    BookingDTO deleteBookingAndGet(@Bind("username") String username, @Bind("id") int id,
+                                   @Bind("currentStartTime") Date currentStartTime);
 
+    /**
+     * Aggregates the bookings themselves, which can take an index on neither the interval nor the months. Kept as the
+     * reference that {@link #getUsageInIntervalFromRollup(String, UsageInterval)} is verified against.
+     */
     @RegisterMapper(UsageMapper.class)
     @SqlQuery("SELECT " +
             "to_char(start_time, 'Mon') as mon, "+
@@ -113,6 +268,16 @@ public interface BookingDAO {
             "GROUP BY (1, 2)")
     List<UsageDTO> getUsageInInterval(@Bind("username") String username, @Bind("startTime") Date startTime, @Bind("endTime") Date endTime);
 
+    /**
+     * Same result as {@link #getUsageInInterval(String, Date, Date)}, read from usage_monthly in time proportional to
+     * the number of months
+     */
+    @RegisterMapper(UsageMapper.class)
+    @SqlQuery("SELECT to_char(make_date(year, month, 1), 'Mon') as mon, year, sum_of_washing_machine_uses, sum_of_tumble_dry_uses " +
+            "FROM (" + USAGE_BY_MONTH_IN_INTERVAL + ") usage " +
+            "WHERE owner = :username")
+    List<UsageDTO> getUsageInIntervalFromRollup(@Bind("username") String username, @BindBean("interval") UsageInterval interval);
+
     /**
      *
      * @param startTime The starting point of where to retrieve usage for
@@ -120,22 +285,65 @@ public interface BookingDAO {
      * @return usage for every user in the interval together with their real name and apartment
      */
     @RegisterMapper(UsageAdminExportMapper.class)
-    @SqlQuery("SELECT name, apartment, mon, year, sum_of_washing_machine_uses, sum_of_tumble_dry_uses " +
-            "FROM users " +
-            "JOIN " +
-            "(SELECT " +
-            "to_char(start_time, 'Mon') as mon, " +
-            "extract(year from start_time) as year, " +
-            "owner as username, " +
-            "SUM(number_of_washing_machine_uses) sum_of_washing_machine_uses, " +
-            "SUM(number_of_tumble_dry_uses) sum_of_tumble_dry_uses " +
-            "FROM bookings " +
-            "WHERE start_time >= :startTime " +
-            "AND end_time <= :endTime " +
-            "GROUP BY (1, 2, 3)) usage " +
-            "ON usage.username = users.username")
+    @SqlQuery(USAGE_IN_INTERVAL_ADMIN)
     List<UsageAdminExportDTO> getUsageInIntervalAdmin(@Bind("startTime") Date startTime, @Bind("endTime") Date endTime);
 
-    @SqlUpdate("TRUNCATE TABLE bookings")
+    /**
+     * Same result as {@link #getUsageInIntervalAdmin(Date, Date)}, read from usage_monthly
+     */
+    @RegisterMapper(UsageAdminExportMapper.class)
+    @SqlQuery(USAGE_IN_INTERVAL_ADMIN_FROM_ROLLUP)
+    List<UsageAdminExportDTO> getUsageInIntervalAdminFromRollup(@BindBean("interval") UsageInterval interval);
+
+    /**
+     * Same as {@link #getUsageInIntervalAdminFromRollup(UsageInterval)}, but read through a cursor. Must be called in a
+     * transaction and the iterator must be closed.
+     */
+    @RegisterMapper(UsageAdminExportMapper.class)
+    @SqlQuery(USAGE_IN_INTERVAL_ADMIN_FROM_ROLLUP)
+    @FetchSize(STREAMING_FETCH_SIZE)
+    ResultIterator<UsageAdminExportDTO> iterateUsageInIntervalAdmin(@BindBean("interval") UsageInterval interval);
+
+    /**
+     * Totals of {@link #getUsageInIntervalAdminFromRollup(UsageInterval)} per apartment, for billing
+     */
+    @RegisterMapper(BillingMapper.class)
+    @SqlQuery(BILLING_IN_INTERVAL)
+    List<BillingDTO> getBillingInInterval(@BindBean("interval") UsageInterval interval);
+
+    /**
+     * Same as {@link #getBillingInInterval(UsageInterval)}, but read through a cursor. Must be called in a transaction
+     * and the iterator must be closed.
+     */
+    @RegisterMapper(BillingMapper.class)
+    @SqlQuery(BILLING_IN_INTERVAL)
+    @FetchSize(STREAMING_FETCH_SIZE)
+    ResultIterator<BillingDTO> iterateBillingInInterval(@BindBean("interval") UsageInterval interval);
+
+    /**
+     * Keeps bookings from being written until the transaction ends, while usage_monthly is rebuilt
+     */
+    @SqlUpdate("LOCK TABLE bookings IN SHARE MODE")
+    void lockBookingsAgainstWrites();
+
+    @SqlUpdate("DELETE FROM usage_monthly")
+    void deleteUsageMonthly();
+
+    /**
+     * Fills an empty usage_monthly from the bookings, archived ones included. Must run in a transaction holding
+     * {@link #lockBookingsAgainstWrites()}.
+     *
+     * @return the number of owner and month rows
+     */
+    @SqlUpdate("INSERT INTO usage_monthly (owner, year, month, number_of_bookings, washing_uses, tumble_uses) " +
+            "SELECT owner, extract(year FROM start_time), extract(month FROM start_time), count(*), " +
+            "SUM(number_of_washing_machine_uses), SUM(number_of_tumble_dry_uses) " +
+            "FROM (SELECT owner, start_time, number_of_washing_machine_uses, number_of_tumble_dry_uses FROM bookings " +
+            "UNION ALL " +
+            "SELECT owner, start_time, number_of_washing_machine_uses, number_of_tumble_dry_uses FROM bookings_archive) all_bookings " +
+            "GROUP BY 1, 2, 3")
+    int backfillUsageMonthly();
+
+    @SqlUpdate("TRUNCATE TABLE bookings, usage_monthly")
     void truncateTable();
 }
@@ -0,0 +1,152 @@
+package db;
+
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps bookings partitioned by the month they start in, so queries for the current and coming months only touch a
+ * few small partitions however many years of bookings there are. Partitions are named like bookings_2017_03, months
+ * without one go to bookings_default.
+ *
+ * {@link #maintain(YearMonth)} creates the partitions of the coming months ahead of time, moving their bookings out of
+ * the default partition, and moves the partitions of months older than kept to bookings_archive. Moving a partition
+ * is a catalog change, no rows are copied. Nodes sharing the database serialize this through an advisory lock. The
+ * tables themselves are created by {@link SchemaMigrations}.
+ */
+public class BookingPartitions {
+    public static final int DEFAULT_MONTHS_AHEAD = 3;
+    public static final int DEFAULT_MONTHS_KEPT = 24;
+    /**
+     * The exclusion constraint of every partition created, bookings of the same machine must not overlap. It only
+     * holds within a partition, so {@link core.BookingValidator} keeps bookings from crossing into the next month
+     */
+    public static final String NO_OVERLAP = "machine_id WITH =, tsrange(start_time, end_time) WITH &&";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookingPartitions.class);
+    // Arbitrary, but the same on every node
+    private static final long MAINTENANCE_LOCK = 7245327358L;
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'bookings_'yyyy_MM");
+    private static final Pattern PARTITION_NAME_PATTERN = Pattern.compile("bookings_(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-'01 00:00:00'");
+
+    private final DBI dbi;
+    private final int monthsAhead;
+    private final int monthsKept;
+
+    /**
+     * @param monthsKept months, the current one included, kept in bookings. 0 keeps every month.
+     */
+    public BookingPartitions(DBI dbi, int monthsAhead, int monthsKept) {
+        this.dbi = dbi;
+        this.monthsAhead = monthsAhead;
+        this.monthsKept = monthsKept;
+    }
+
+    public static String partitionName(YearMonth month) {
+        return month.format(PARTITION_NAME);
+    }
+
+    /**
+     * Logs rather than throws, for running on a schedule
+     */
+    public void maintain() {
+        try {
+            maintain(YearMonth.now());
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not maintain the booking partitions", e);
+        }
+    }
+
+    public void maintain(YearMonth currentMonth) {
+        createPartitions(currentMonth, currentMonth.plusMonths(monthsAhead));
+        if (monthsKept > 0) {
+            YearMonth oldestKept = currentMonth.minusMonths(monthsKept - 1);
+            for (YearMonth month : getPartitionedMonths("bookings")) {
+                if (month.isBefore(oldestKept)) {
+                    archive(month);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the missing partitions of the months from first to last, both included
+     */
+    public void createPartitions(YearMonth first, YearMonth last) {
+        Set<YearMonth> existing = getPartitionedMonths("bookings");
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            if (!existing.contains(month)) {
+                YearMonth partitionMonth = month;
+                dbi.inTransaction((handle, status) -> {
+                    lockMaintenance(handle);
+                    // Nothing may be written to the default partition while its bookings of the month are moved
+                    handle.execute("LOCK TABLE bookings IN ACCESS EXCLUSIVE MODE");
+                    createPartition(handle, partitionMonth);
+                    return null;
+                });
+            }
+        }
+    }
+
+    /**
+     * @return the months that have a partition of their own in the table, bookings or bookings_archive
+     */
+    public Set<YearMonth> getPartitionedMonths(String table) {
+        try (Handle handle = dbi.open()) {
+            List<String> partitions = handle.createQuery("SELECT child.relname FROM pg_inherits " +
+                    "JOIN pg_class child ON child.oid = pg_inherits.inhrelid " +
+                    "WHERE pg_inherits.inhparent = to_regclass(:table)")
+                    .bind("table", table)
+                    .mapTo(String.class)
+                    .list();
+            Set<YearMonth> months = new TreeSet<>();
+            for (String partition : partitions) {
+                Matcher matcher = PARTITION_NAME_PATTERN.matcher(partition);
+                if (matcher.matches()) {
+                    months.add(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+                }
+            }
+            return months;
+        }
+    }
+
+    private void archive(YearMonth month) {
+        dbi.inTransaction((handle, status) -> {
+            lockMaintenance(handle);
+            String partition = partitionName(month);
+            handle.execute("ALTER TABLE bookings DETACH PARTITION " + partition);
+            handle.execute("ALTER TABLE bookings_archive ATTACH PARTITION " + partition + " " + bounds(month));
+            return null;
+        });
+        LOGGER.info("Archived the bookings of {}", month);
+    }
+
+    private static void createPartition(Handle handle, YearMonth month) {
+        String partition = partitionName(month);
+        String inMonth = "start_time >= '" + month.format(BOUND) + "' AND start_time < '" + month.plusMonths(1).format(BOUND) + "'";
+        handle.execute("CREATE TEMPORARY TABLE moved_bookings ON COMMIT DROP AS SELECT * FROM bookings_default WHERE " + inMonth);
+        handle.execute("DELETE FROM bookings_default WHERE " + inMonth);
+        handle.execute("CREATE TABLE " + partition + " PARTITION OF bookings (" +
+                "CONSTRAINT " + partition + "_no_overlap EXCLUDE USING gist (" + NO_OVERLAP + ")" +
+                ") " + bounds(month));
+        handle.execute("INSERT INTO " + partition + " SELECT * FROM moved_bookings");
+    }
+
+    static String bounds(YearMonth month) {
+        return "FOR VALUES FROM ('" + month.format(BOUND) + "') TO ('" + month.plusMonths(1).format(BOUND) + "')";
+    }
+
+    static void lockMaintenance(Handle handle) {
+        handle.createQuery("SELECT pg_advisory_xact_lock(:lock)").bind("lock", MAINTENANCE_LOCK).list();
+    }
+}
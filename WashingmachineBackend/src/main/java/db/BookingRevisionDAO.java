@@ -0,0 +1,57 @@
+package db;
+
+import api.BookingRevisionDTO;
+import db.mappers.BookingRevisionMapper;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.customizers.RegisterMapper;
+
+import java.util.List;
+
+/**
+ * Append-only history of booking writes. The owner is not a foreign key, history outlives users.
+ */
+@RegisterMapper(BookingRevisionMapper.class)
+public interface BookingRevisionDAO {
+    @SqlUpdate("CREATE TABLE IF NOT EXISTS bookings_rev (" +
+            "revision BIGSERIAL," +
+            "booking_id INTEGER NOT NULL," +
+            "start_time TIMESTAMP NOT NULL," +
+            "end_time TIMESTAMP NOT NULL," +
+            "owner VARCHAR(100) NOT NULL," +
+            "number_of_washing_machine_uses SMALLINT NOT NULL," +
+            "number_of_tumble_dry_uses SMALLINT NOT NULL," +
+            "update_type VARCHAR(10) NOT NULL," +
+            "changed_at TIMESTAMP NOT NULL," +
+            "PRIMARY KEY(revision)" +
+            ");")
+    void createBookingRevisionTable();
+
+    @SqlUpdate("CREATE INDEX IF NOT EXISTS bookings_rev_booking ON bookings_rev (booking_id, revision)")
+    void createBookingRevisionIndex();
+
+    @SqlBatch("INSERT INTO bookings_rev (booking_id, start_time, end_time, owner, number_of_washing_machine_uses, " +
+            "number_of_tumble_dry_uses, update_type, changed_at) " +
+            "VALUES (:revision.bookingId, :revision.startTime, :revision.endTime, :revision.owner, " +
+            ":revision.numberOfWashingMachineUses, :revision.numberOfTumbleDryUses, :revision.updateType, :revision.changedAt)")
+    void insertRevisions(@BindBean("revision") List<BookingRevisionDTO> revisions);
+
+    /**
+     * @param afterRevision only revisions after this one are returned, 0 for the first page
+     * @return at most limit revisions of the booking, oldest first
+     */
+    @SqlQuery("SELECT revision, booking_id, start_time, end_time, owner, number_of_washing_machine_uses, " +
+            "number_of_tumble_dry_uses, update_type, changed_at " +
+            "FROM bookings_rev " +
+            "WHERE booking_id = :bookingId AND revision > :afterRevision " +
+            "ORDER BY revision " +
+            "LIMIT :limit")
+    List<BookingRevisionDTO> getRevisions(@Bind("bookingId") int bookingId, @Bind("afterRevision") long afterRevision,
+                                          @Bind("limit") int limit);
+
+    @SqlUpdate("TRUNCATE TABLE bookings_rev")
+    void truncateTable();
+}
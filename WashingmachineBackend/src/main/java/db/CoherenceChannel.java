@@ -0,0 +1,269 @@
+package db;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.hash.Hashing;
+import io.dropwizard.lifecycle.Managed;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.skife.jdbi.v2.tweak.ConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the in-process caches of several nodes sharing one database coherent, using Postgres LISTEN/NOTIFY on
+ * dedicated connections outside the JDBI pool. Invalidations are sent by a publisher thread on a connection of its own,
+ * so publishing neither waits for the listener's polls nor for the database.
+ *
+ * Invalidations are published as "node/topic:key", e.g. "3f2a9c1b/booking:2017-03", and handed to the handlers of
+ * the topic on every other node. Notifications sent while a node is not listening are lost, so after connecting,
+ * including the first time, every resync handler is run and should drop everything it caches.
+ */
+public class CoherenceChannel implements Managed {
+    public static final String CHANNEL = "vaskemaskine_coherence";
+    public static final String BOOKING = "booking";
+    public static final String TOKEN = "token";
+    // Signed tokens revoked by signing out, kept apart from TOKEN which only drops cached sessions
+    public static final String REVOCATION = "revocation";
+    public static final String USERNAME = "username";
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 250;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoherenceChannel.class);
+    private static final long MAX_RECONNECT_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final ConnectionFactory connectionFactory;
+    private final long pollIntervalMillis;
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final Map<String, List<Consumer<String>>> handlers = new ConcurrentHashMap<>();
+    private final List<Runnable> resyncHandlers = new CopyOnWriteArrayList<>();
+    private final Meter published;
+    private final Meter received;
+
+    private final Object connectionLock = new Object();
+    private Connection connection;
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "coherence-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Only used on the publisher thread
+    private Connection publishConnection;
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public CoherenceChannel(ConnectionFactory connectionFactory, long pollIntervalMillis, MetricRegistry metricRegistry) {
+        this.connectionFactory = connectionFactory;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.published = metricRegistry.meter(MetricRegistry.name(CoherenceChannel.class, "published"));
+        this.received = metricRegistry.meter(MetricRegistry.name(CoherenceChannel.class, "received"));
+    }
+
+    /**
+     * Tokens are secrets and must not end up in the database logs, so they are published by hash
+     */
+    public static String hashToken(String token) {
+        return Hashing.sha256().hashString(token, StandardCharsets.UTF_8).toString();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @param handler called with the key of every invalidation other nodes publish on the topic, on the listener thread
+     */
+    public void subscribe(String topic, Consumer<String> handler) {
+        handlers.computeIfAbsent(topic, ignored -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    /**
+     * @param handler called after reconnecting, when invalidations may have been missed
+     */
+    public void onResync(Runnable handler) {
+        resyncHandlers.add(handler);
+    }
+
+    /**
+     * Tells every other node that the key is stale, in the order published. Returns right away, failing to publish is
+     * logged rather than thrown, the change itself has already been committed and other nodes catch up once they resync.
+     */
+    public void publish(String topic, String key) {
+        try {
+            publisher.execute(() -> send(topic, key));
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Stopped, could not publish {}:{}", topic, key);
+        }
+    }
+
+    @Override
+    public void start() throws Exception {
+        connect();
+        // Whatever other nodes wrote between loading the caches and listening would be missed otherwise
+        resync();
+        running = true;
+        listenerThread = new Thread(this::listen, "coherence-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public void stop() throws Exception {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+            listenerThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        synchronized (connectionLock) {
+            closeConnection();
+        }
+        // Invalidations published until now are still sent
+        publisher.shutdown();
+        publisher.awaitTermination(5, TimeUnit.SECONDS);
+        closeQuietly(publishConnection);
+        publishConnection = null;
+    }
+
+    private void send(String topic, String key) {
+        try {
+            if (publishConnection == null) {
+                publishConnection = connectionFactory.openConnection();
+                publishConnection.setAutoCommit(true);
+            }
+            try (PreparedStatement statement = publishConnection.prepareStatement("SELECT pg_notify(?, ?)")) {
+                statement.setString(1, CHANNEL);
+                statement.setString(2, nodeId + "/" + topic + ":" + key);
+                statement.execute();
+                published.mark();
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Could not publish {}:{}", topic, key, e);
+            closeQuietly(publishConnection);
+            publishConnection = null;
+        }
+    }
+
+    private void connect() throws SQLException {
+        Connection newConnection = connectionFactory.openConnection();
+        try (Statement statement = newConnection.createStatement()) {
+            newConnection.setAutoCommit(true);
+            statement.execute("LISTEN " + CHANNEL);
+        } catch (SQLException e) {
+            newConnection.close();
+            throw e;
+        }
+        synchronized (connectionLock) {
+            connection = newConnection;
+        }
+    }
+
+    private void listen() {
+        long reconnectDelayMillis = pollIntervalMillis;
+        boolean missedNotifications = false;
+        while (running) {
+            try {
+                if (missedNotifications) {
+                    connect();
+                    resync();
+                    missedNotifications = false;
+                    reconnectDelayMillis = pollIntervalMillis;
+                }
+                for (PGNotification notification : poll()) {
+                    dispatch(notification.getParameter());
+                }
+                Thread.sleep(pollIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (SQLException | RuntimeException e) {
+                LOGGER.warn("Coherence channel failed, reconnecting in {} ms", reconnectDelayMillis, e);
+                synchronized (connectionLock) {
+                    closeConnection();
+                }
+                missedNotifications = true;
+                try {
+                    Thread.sleep(reconnectDelayMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                reconnectDelayMillis = Math.min(reconnectDelayMillis * 2, MAX_RECONNECT_DELAY_MILLIS);
+            }
+        }
+    }
+
+    private PGNotification[] poll() throws SQLException {
+        synchronized (connectionLock) {
+            if (connection == null) {
+                throw new SQLException("Not connected");
+            }
+            // The driver only reads notifications off the socket while executing a statement
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SELECT 1");
+            }
+            PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications();
+            return notifications != null ? notifications : new PGNotification[0];
+        }
+    }
+
+    void dispatch(String payload) {
+        int nodeSeparator = payload.indexOf('/');
+        int topicSeparator = payload.indexOf(':', nodeSeparator + 1);
+        if (nodeSeparator < 0 || topicSeparator < 0) {
+            LOGGER.warn("Ignoring malformed invalidation {}", payload);
+            return;
+        }
+        if (payload.substring(0, nodeSeparator).equals(nodeId)) {
+            return;
+        }
+
+        received.mark();
+        String topic = payload.substring(nodeSeparator + 1, topicSeparator);
+        String key = payload.substring(topicSeparator + 1);
+        for (Consumer<String> handler : handlers.getOrDefault(topic, Collections.emptyList())) {
+            try {
+                handler.accept(key);
+            } catch (RuntimeException e) {
+                LOGGER.error("Could not apply invalidation {}", payload, e);
+            }
+        }
+    }
+
+    private void resync() {
+        LOGGER.info("Listening, dropping everything cached as invalidations may have been missed");
+        for (Runnable handler : resyncHandlers) {
+            handler.run();
+        }
+    }
+
+    private void closeConnection() {
+        closeQuietly(connection);
+        connection = null;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // Closing a connection that already failed
+            }
+        }
+    }
+}
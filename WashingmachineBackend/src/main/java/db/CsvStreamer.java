@@ -0,0 +1,66 @@
+package db;
+
+import org.skife.jdbi.v2.ResultIterator;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * Streams the rows of a query as CSV (RFC 4180) with a header line, for spreadsheets
+ */
+public class CsvStreamer extends CursorStreamer {
+    public static final String TEXT_CSV = "text/csv; charset=UTF-8";
+
+    public CsvStreamer(UnitOfWork unitOfWork) {
+        super(unitOfWork);
+    }
+
+    /**
+     * @param query runs the query on a DAO attached to the streaming handle, the iterator is closed when done
+     * @param columns turns a row into its fields, in the order of the header
+     */
+    public <D, T> StreamingOutput stream(Class<D> sqlObjectType, Function<D, ResultIterator<T>> query,
+                                         String[] header, Function<T, Object[]> columns) {
+        return stream(sqlObjectType, query, (rows, outputStream) -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            writeLine(writer, header);
+            while (rows.hasNext()) {
+                writeLine(writer, columns.apply(rows.next()));
+            }
+            writer.flush();
+        });
+    }
+
+    private static void writeLine(Writer writer, Object[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escape(fields[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    private static String escape(Object field) {
+        if (field == null) {
+            return "";
+        }
+        if (field instanceof Number) {
+            return field.toString();
+        }
+        String value = field.toString();
+        // Text from users must not be evaluated as a formula when the file is opened in a spreadsheet
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
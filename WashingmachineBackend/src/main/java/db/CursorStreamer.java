@@ -0,0 +1,50 @@
+package db;
+
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.ResultIterator;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Function;
+
+/**
+ * Writes the rows of a query to the response while they are read, so memory stays constant no matter how many rows
+ * there are. Postgres only reads through a cursor, honouring the fetch size, inside a transaction.
+ *
+ * The response is written after the request's {@link UnitOfWork} has been committed, so the query runs on a handle
+ * of its own.
+ */
+public abstract class CursorStreamer {
+    private final UnitOfWork unitOfWork;
+
+    protected CursorStreamer(UnitOfWork unitOfWork) {
+        this.unitOfWork = unitOfWork;
+    }
+
+    /**
+     * @param query runs the query on a DAO attached to the streaming handle, the iterator is closed when done
+     */
+    protected <D, T> StreamingOutput stream(Class<D> sqlObjectType, Function<D, ResultIterator<T>> query,
+                                            RowsWriter<T> rowsWriter) {
+        return (OutputStream outputStream) -> {
+            try (Handle handle = unitOfWork.openDetachedHandle()) {
+                handle.begin();
+                try (ResultIterator<T> rows = query.apply(handle.attach(sqlObjectType))) {
+                    rowsWriter.write(rows, outputStream);
+                } finally {
+                    // Nothing was written
+                    handle.rollback();
+                }
+            }
+        };
+    }
+
+    /**
+     * Must not close the output stream, the container owns it
+     */
+    protected interface RowsWriter<T> {
+        void write(Iterator<T> rows, OutputStream outputStream) throws IOException;
+    }
+}
@@ -0,0 +1,60 @@
+package db;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.db.DatabaseConfiguration;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.setup.Bootstrap;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+import org.skife.jdbi.v2.DBI;
+
+/**
+ * "db migrate" applies the pending {@link SchemaMigrations}, "db status" prints the version of the schema. Run
+ * migrate before starting a build that needs a newer schema.
+ */
+public class DbCommand<T extends Configuration> extends ConfiguredCommand<T> {
+    private static final String ACTION = "action";
+    private static final String MIGRATE = "migrate";
+    private static final String STATUS = "status";
+
+    private final DatabaseConfiguration<T> databaseConfiguration;
+    private final Class<T> configurationClass;
+
+    public DbCommand(DatabaseConfiguration<T> databaseConfiguration, Class<T> configurationClass) {
+        super("db", "Migrates the database schema or prints its version");
+        this.databaseConfiguration = databaseConfiguration;
+        this.configurationClass = configurationClass;
+    }
+
+    @Override
+    protected Class<T> getConfigurationClass() {
+        return configurationClass;
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        subparser.addArgument(ACTION)
+                .choices(MIGRATE, STATUS)
+                .help("migrate applies the pending versions, status prints the current one");
+        super.configure(subparser);
+    }
+
+    @Override
+    protected void run(Bootstrap<T> bootstrap, Namespace namespace, T configuration) throws Exception {
+        ManagedDataSource dataSource = databaseConfiguration.getDataSourceFactory(configuration)
+                .build(bootstrap.getMetricRegistry(), "db");
+        try {
+            SchemaMigrations schemaMigrations = new SchemaMigrations(new DBI(dataSource));
+            if (MIGRATE.equals(namespace.getString(ACTION))) {
+                int applied = schemaMigrations.migrate();
+                System.out.println("Applied " + applied + " versions, the schema is at version " + schemaMigrations.getVersion());
+            } else {
+                System.out.println("The schema is at version " + schemaMigrations.getVersion() + " of "
+                        + SchemaMigrations.CURRENT_VERSION);
+            }
+        } finally {
+            dataSource.stop();
+        }
+    }
+}
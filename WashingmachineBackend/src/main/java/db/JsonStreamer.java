@@ -0,0 +1,36 @@
+package db;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.skife.jdbi.v2.ResultIterator;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.util.function.Function;
+
+/**
+ * Streams the rows of a query as a JSON array
+ */
+public class JsonStreamer extends CursorStreamer {
+    private final ObjectMapper objectMapper;
+
+    public JsonStreamer(UnitOfWork unitOfWork, ObjectMapper objectMapper) {
+        super(unitOfWork);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param query runs the query on a DAO attached to the streaming handle, the iterator is closed when done
+     */
+    public <D, T> StreamingOutput stream(Class<D> sqlObjectType, Function<D, ResultIterator<T>> query) {
+        return stream(sqlObjectType, query, (rows, outputStream) -> {
+            try (JsonGenerator jsonGenerator = objectMapper.getFactory().createGenerator(outputStream)) {
+                jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                jsonGenerator.writeStartArray();
+                while (rows.hasNext()) {
+                    jsonGenerator.writeObject(rows.next());
+                }
+                jsonGenerator.writeEndArray();
+            }
+        });
+    }
+}
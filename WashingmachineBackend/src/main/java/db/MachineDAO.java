@@ -0,0 +1,23 @@
+package db;
+
+import api.MachineDTO;
+import api.MachineKind;
+import db.mappers.MachineMapper;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.customizers.RegisterMapper;
+
+import java.util.List;
+
+@RegisterMapper(MachineMapper.class)
+public interface MachineDAO {
+    @SqlQuery("INSERT INTO machines (name, kind) VALUES (:name, :kind) RETURNING id")
+    int insertMachine(@Bind("name") String name, @Bind("kind") MachineKind kind);
+
+    @SqlQuery("SELECT id, name, kind FROM machines ORDER BY id")
+    List<MachineDTO> getMachines();
+
+    @SqlUpdate("DELETE FROM machines WHERE id != " + MachineDTO.FIRST_MACHINE_ID)
+    void deleteAddedMachines();
+}
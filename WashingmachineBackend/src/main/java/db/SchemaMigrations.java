@@ -0,0 +1,244 @@
+package db;
+
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Versioned changes of the schema, applied in order by the db migrate command and recorded in schema_version.
+ * The application itself only checks that the database is at {@link #CURRENT_VERSION}.
+ *
+ * Version 1 is the schema created by the DAOs before there were migrations, and is safe to apply to those databases.
+ * A version once released never changes, so DDL the DAOs have changed since is copied into the version as it was.
+ * Later versions are scripts in resources/migrations, named like 002_indexes.sql, statements separated by ';'.
+ * Each version is applied in a transaction of its own. Nodes migrating at once serialize through an advisory lock.
+ */
+public class SchemaMigrations {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigrations.class);
+    // Arbitrary, but the same on every node
+    private static final long MIGRATION_LOCK = 7245327359L;
+
+    private static final List<Migration> MIGRATIONS = Arrays.asList(
+            new Migration(1, "Tables created by the DAOs", SchemaMigrations::baseline),
+            new Migration(2, "Indexes on usernames, tokens and booking times", script("002_indexes")),
+            new Migration(3, "Machines, overlaps excluded per machine", SchemaMigrations::machines),
+            new Migration(4, "Kinds of machines", script("004_machine_kinds"))
+    );
+
+    public static final int CURRENT_VERSION = MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+
+    private final DBI dbi;
+
+    public SchemaMigrations(DBI dbi) {
+        this.dbi = dbi;
+    }
+
+    /**
+     * @return the last applied version, 0 if none
+     */
+    public int getVersion() {
+        try (Handle handle = dbi.open()) {
+            return getVersion(handle);
+        }
+    }
+
+    /**
+     * Applies the versions after the current one
+     *
+     * @return the number of versions applied
+     */
+    public int migrate() {
+        int applied = 0;
+        for (Migration migration : MIGRATIONS) {
+            boolean migrated = dbi.inTransaction((handle, status) -> {
+                handle.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                        "version INTEGER NOT NULL," +
+                        "description TEXT NOT NULL," +
+                        "applied_at TIMESTAMP NOT NULL DEFAULT now()," +
+                        "PRIMARY KEY(version))");
+                handle.createQuery("SELECT pg_advisory_xact_lock(:lock)").bind("lock", MIGRATION_LOCK).list();
+                if (getVersion(handle) >= migration.version) {
+                    return false;
+                }
+                LOGGER.info("Migrating the schema to version {}: {}", migration.version, migration.description);
+                migration.apply.accept(handle);
+                handle.insert("INSERT INTO schema_version (version, description) VALUES (?, ?)",
+                        migration.version, migration.description);
+                return true;
+            });
+            if (migrated) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * @throws IllegalStateException if the schema is not at the version this build expects
+     */
+    public void verify() {
+        int version = getVersion();
+        if (version < CURRENT_VERSION) {
+            throw new IllegalStateException("The schema is at version " + version + " but " + CURRENT_VERSION
+                    + " is required, run the db migrate command first");
+        } else if (version > CURRENT_VERSION) {
+            throw new IllegalStateException("The schema is at version " + version + ", newer than the "
+                    + CURRENT_VERSION + " this build knows");
+        }
+    }
+
+    private static int getVersion(Handle handle) {
+        boolean exists = handle.createQuery("SELECT to_regclass('schema_version') IS NOT NULL")
+                .mapTo(Boolean.class)
+                .first();
+        if (!exists) {
+            return 0;
+        }
+        return handle.createQuery("SELECT COALESCE(max(version), 0) FROM schema_version")
+                .mapTo(Integer.class)
+                .first();
+    }
+
+    private static void baseline(Handle handle) {
+        UserDAO userDAO = handle.attach(UserDAO.class);
+        userDAO.createRoleTable();
+        userDAO.createUsersTable();
+        baselineBookings(handle);
+        BookingDAO bookingDAO = handle.attach(BookingDAO.class);
+        bookingDAO.createUsageMonthlyTable();
+        bookingDAO.createUsageMonthlyMonthIndex();
+        handle.attach(UserTokenDAO.class).createUserTokenTable();
+        BookingRevisionDAO bookingRevisionDAO = handle.attach(BookingRevisionDAO.class);
+        bookingRevisionDAO.createBookingRevisionTable();
+        bookingRevisionDAO.createBookingRevisionIndex();
+        handle.attach(TokenRevocationDAO.class).createTokenRevocationTable();
+    }
+
+    /**
+     * The partitioned bookings tables as version 1 created them, converting the unpartitioned bookings table of
+     * earlier versions. Copied rather than shared with the DAOs, as those follow the current schema.
+     */
+    private static void baselineBookings(Handle handle) {
+        BookingPartitions.lockMaintenance(handle);
+        boolean unpartitioned = "r".equals(handle.createQuery("SELECT relkind FROM pg_class WHERE oid = to_regclass('bookings')")
+                .mapTo(String.class).first());
+        if (!unpartitioned) {
+            createBaselineBookingTables(handle);
+            return;
+        }
+
+        LOGGER.info("Converting bookings to a table partitioned by month");
+        handle.execute("LOCK TABLE bookings IN ACCESS EXCLUSIVE MODE");
+        handle.execute("ALTER TABLE bookings RENAME TO bookings_unpartitioned");
+        // Index and sequence names are shared by the schema
+        handle.execute("ALTER INDEX IF EXISTS bookings_pkey RENAME TO bookings_unpartitioned_pkey");
+        handle.execute("DROP INDEX IF EXISTS bookings_start_time");
+        handle.execute("ALTER TABLE bookings_unpartitioned DROP CONSTRAINT IF EXISTS bookings_no_overlap");
+        handle.execute("ALTER SEQUENCE IF EXISTS bookings_id_seq RENAME TO bookings_unpartitioned_id_seq");
+        createBaselineBookingTables(handle);
+
+        List<String> months = handle.createQuery("SELECT DISTINCT to_char(start_time, 'YYYY-MM') FROM bookings_unpartitioned")
+                .mapTo(String.class)
+                .list();
+        for (String month : months) {
+            String partition = BookingPartitions.partitionName(YearMonth.parse(month));
+            handle.execute("CREATE TABLE " + partition + " PARTITION OF bookings (" +
+                    "CONSTRAINT " + partition + "_no_overlap EXCLUDE USING gist (tsrange(start_time, end_time) WITH &&)" +
+                    ") " + BookingPartitions.bounds(YearMonth.parse(month)));
+        }
+        int bookings = handle.update("INSERT INTO bookings " +
+                "(id, start_time, end_time, owner, number_of_washing_machine_uses, number_of_tumble_dry_uses) " +
+                "SELECT id, start_time, end_time, owner, number_of_washing_machine_uses, number_of_tumble_dry_uses " +
+                "FROM bookings_unpartitioned");
+        handle.execute("SELECT setval('bookings_id_seq', COALESCE((SELECT max(id) FROM bookings), 0) + 1, false)");
+        handle.execute("DROP TABLE bookings_unpartitioned");
+        LOGGER.info("Moved {} bookings into {} monthly partitions", bookings, months.size());
+    }
+
+    private static void createBaselineBookingTables(Handle handle) {
+        handle.execute("CREATE TABLE IF NOT EXISTS bookings (" +
+                "id SERIAL," +
+                "start_time TIMESTAMP NOT NULL," +
+                "end_time TIMESTAMP NOT NULL," +
+                "owner VARCHAR(100) NOT NULL references users(username)," +
+                "number_of_washing_machine_uses SMALLINT NOT NULL," +
+                "number_of_tumble_dry_uses SMALLINT NOT NULL," +
+                "PRIMARY KEY(id, start_time)" +
+                ") PARTITION BY RANGE (start_time)");
+        handle.execute("CREATE TABLE IF NOT EXISTS bookings_default PARTITION OF bookings (" +
+                "CONSTRAINT bookings_default_no_overlap EXCLUDE USING gist (tsrange(start_time, end_time) WITH &&)" +
+                ") DEFAULT");
+        handle.execute("CREATE INDEX IF NOT EXISTS bookings_start_time ON bookings (start_time)");
+        handle.execute("CREATE TABLE IF NOT EXISTS bookings_archive (" +
+                "id INTEGER NOT NULL," +
+                "start_time TIMESTAMP NOT NULL," +
+                "end_time TIMESTAMP NOT NULL," +
+                "owner VARCHAR(100) NOT NULL," +
+                "number_of_washing_machine_uses SMALLINT NOT NULL," +
+                "number_of_tumble_dry_uses SMALLINT NOT NULL" +
+                ") PARTITION BY RANGE (start_time)");
+    }
+
+    /**
+     * Puts the bookings from before there were several machines on the first, and excludes overlaps per machine on
+     * every partition, archived ones included. Comparing the machine in a GiST index takes btree_gist.
+     */
+    private static void machines(Handle handle) {
+        BookingPartitions.lockMaintenance(handle);
+        handle.execute("CREATE EXTENSION IF NOT EXISTS btree_gist");
+        // Ids are handed out from 2, machine 1 is the one every booking was on before
+        handle.execute("CREATE SEQUENCE IF NOT EXISTS machines_id_seq START WITH 2");
+        handle.execute("CREATE TABLE IF NOT EXISTS machines (" +
+                "id INTEGER NOT NULL DEFAULT nextval('machines_id_seq')," +
+                "name VARCHAR(100) NOT NULL," +
+                "UNIQUE(name)," +
+                "PRIMARY KEY(id)" +
+                ")");
+        handle.execute("ALTER SEQUENCE machines_id_seq OWNED BY machines.id");
+        // Not inserted at all when it exists, as the columns of later versions are not known here
+        handle.execute("INSERT INTO machines (id, name) SELECT 1, 'Vaskemaskine' " +
+                "WHERE NOT EXISTS (SELECT 1 FROM machines WHERE id = 1)");
+
+        for (String table : Arrays.asList("bookings", "bookings_archive")) {
+            handle.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS machine_id INTEGER NOT NULL DEFAULT 1");
+            handle.execute("ALTER TABLE " + table + " ALTER COLUMN machine_id DROP DEFAULT");
+        }
+        handle.execute("ALTER TABLE bookings DROP CONSTRAINT IF EXISTS bookings_machine_id_fkey");
+        handle.execute("ALTER TABLE bookings ADD CONSTRAINT bookings_machine_id_fkey " +
+                "FOREIGN KEY (machine_id) REFERENCES machines(id)");
+
+        List<String> partitions = handle.createQuery("SELECT child.relname FROM pg_inherits " +
+                "JOIN pg_class child ON child.oid = pg_inherits.inhrelid " +
+                "WHERE pg_inherits.inhparent IN (to_regclass('bookings'), to_regclass('bookings_archive'))")
+                .mapTo(String.class)
+                .list();
+        // Per partition, bookings crossing a month end are rejected by the validator
+        for (String partition : partitions) {
+            handle.execute("ALTER TABLE " + partition + " DROP CONSTRAINT IF EXISTS " + partition + "_no_overlap");
+            handle.execute("ALTER TABLE " + partition + " ADD CONSTRAINT " + partition + "_no_overlap " +
+                    "EXCLUDE USING gist (machine_id WITH =, tsrange(start_time, end_time) WITH &&)");
+        }
+    }
+
+    private static Consumer<Handle> script(String name) {
+        return handle -> handle.createScript("migrations/" + name).execute();
+    }
+
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final Consumer<Handle> apply;
+
+        private Migration(int version, String description, Consumer<Handle> apply) {
+            this.version = version;
+            this.description = description;
+            this.apply = apply;
+        }
+    }
+}
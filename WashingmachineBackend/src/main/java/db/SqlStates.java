@@ -0,0 +1,19 @@
+package db;
+
+import java.sql.SQLException;
+
+public class SqlStates {
+    public static final String EXCLUSION_VIOLATION = "23P01";
+
+    /**
+     * @return true if the exception, or any exception causing it, is an SQLException with the given SQL state
+     */
+    public static boolean hasSqlState(Throwable throwable, String sqlState) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && sqlState.equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,37 @@
+package db;
+
+import db.mappers.TokenRevocationMapper;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.customizers.RegisterMapper;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Signed-out tokens that are still within their lifetime, by {@link CoherenceChannel#hashToken(String)}
+ */
+@RegisterMapper(TokenRevocationMapper.class)
+public interface TokenRevocationDAO {
+    @SqlUpdate("CREATE TABLE IF NOT EXISTS token_revocations (" +
+            "token_hash VARCHAR(64) NOT NULL," +
+            "lifetime_ends TIMESTAMP NOT NULL," +
+            "PRIMARY KEY(token_hash)" +
+            ");")
+    void createTokenRevocationTable();
+
+    @SqlUpdate("INSERT INTO token_revocations (token_hash, lifetime_ends) VALUES (:tokenHash, :lifetimeEnds) " +
+            "ON CONFLICT (token_hash) DO NOTHING")
+    int insertRevocation(@Bind("tokenHash") String tokenHash, @Bind("lifetimeEnds") Date lifetimeEnds);
+
+    @SqlQuery("SELECT token_hash, lifetime_ends FROM token_revocations WHERE lifetime_ends > :now")
+    List<Map.Entry<String, Date>> getRevocations(@Bind("now") Date now);
+
+    @SqlUpdate("DELETE FROM token_revocations WHERE lifetime_ends <= :now")
+    int deleteExpiredRevocations(@Bind("now") Date now);
+
+    @SqlUpdate("TRUNCATE TABLE token_revocations")
+    void truncateTable();
+}
@@ -0,0 +1,190 @@
+package db;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binds one JDBI handle and transaction to the work done by the current thread, normally a single request.
+ * DAOs created through {@link #attach(Class)} run their statements on that handle, so a request checks out at most
+ * one pooled connection no matter how many DAOs or statements it uses. The handle is opened lazily on the first
+ * statement and the transaction is committed or rolled back by {@link UnitOfWorkApplicationListener}.
+ *
+ * Outside a unit of work, e.g. during startup, the DAOs behave like {@link DBI#onDemand(Class)}.
+ */
+public class UnitOfWork {
+    private final DBI dbi;
+    private final ThreadLocal<Work> currentWork = new ThreadLocal<>();
+    private final Histogram checkoutsPerRequest;
+    private final Meter checkouts;
+
+    public UnitOfWork(DBI dbi, MetricRegistry metricRegistry) {
+        this.dbi = dbi;
+        this.checkoutsPerRequest = metricRegistry.histogram(MetricRegistry.name(UnitOfWork.class, "connection-checkouts-per-request"));
+        this.checkouts = metricRegistry.meter(MetricRegistry.name(UnitOfWork.class, "connection-checkouts"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T attach(Class<T> sqlObjectType) {
+        T onDemand = dbi.onDemand(sqlObjectType);
+        return (T) Proxy.newProxyInstance(sqlObjectType.getClassLoader(), new Class[]{sqlObjectType},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return method.invoke(onDemand, args);
+                    }
+
+                    Work work = currentWork.get();
+                    if (work == null) {
+                        checkouts.mark();
+                        return invoke(method, onDemand, args);
+                    }
+                    return invoke(method, work.attached(sqlObjectType), args);
+                });
+    }
+
+    /**
+     * Opens a handle that is not bound to the unit of work, e.g. for responses that keep reading after the
+     * request's transaction has been committed. The caller is responsible for closing it.
+     */
+    public Handle openDetachedHandle() {
+        Work work = currentWork.get();
+        if (work != null) {
+            work.checkouts++;
+        }
+        checkouts.mark();
+        return dbi.open();
+    }
+
+    /**
+     * Runs the action once the current unit of work has committed, or right away outside a unit of work.
+     * Actions of work that is rolled back are dropped.
+     */
+    public void afterCommit(Runnable action) {
+        Work work = currentWork.get();
+        if (work == null) {
+            action.run();
+        } else {
+            work.afterCommit.add(action);
+        }
+    }
+
+    /**
+     * Runs the action once the current unit of work has been committed, after the actions of
+     * {@link #afterCommit(Runnable)}, or rolled back, e.g. to release locks that must cover the commit. Runs it right
+     * away outside a unit of work.
+     */
+    public void afterCompletion(Runnable action) {
+        Work work = currentWork.get();
+        if (work == null) {
+            action.run();
+        } else {
+            work.afterCompletion.add(action);
+        }
+    }
+
+    public Work begin() {
+        Work stale = currentWork.get();
+        if (stale != null) {
+            // A request finishing on another thread never cleared this one, e.g. an asynchronous response
+            rollback(stale);
+        }
+
+        Work work = new Work();
+        currentWork.set(work);
+        return work;
+    }
+
+    public void commit(Work work) {
+        try {
+            try {
+                if (work.handle != null && work.handle.isInTransaction()) {
+                    work.handle.commit();
+                }
+            } catch (RuntimeException e) {
+                work.afterCommit.clear();
+                throw e;
+            } finally {
+                close(work);
+            }
+            run(work.afterCommit);
+        } finally {
+            run(work.afterCompletion);
+        }
+    }
+
+    public void rollback(Work work) {
+        work.afterCommit.clear();
+        try {
+            if (work.handle != null && work.handle.isInTransaction()) {
+                work.handle.rollback();
+            }
+        } finally {
+            close(work);
+            run(work.afterCompletion);
+        }
+    }
+
+    public void finish(Work work) {
+        rollback(work);
+        checkoutsPerRequest.update(work.checkouts);
+    }
+
+    private void close(Work work) {
+        if (work.handle != null) {
+            work.handle.close();
+            work.handle = null;
+            work.attached.clear();
+        }
+        if (currentWork.get() == work) {
+            currentWork.remove();
+        }
+    }
+
+    private static void run(List<Runnable> actions) {
+        List<Runnable> running = new ArrayList<>(actions);
+        actions.clear();
+        for (Runnable action : running) {
+            action.run();
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    public class Work {
+        private Handle handle;
+        private final Map<Class<?>, Object> attached = new HashMap<>();
+        private final List<Runnable> afterCommit = new ArrayList<>();
+        private final List<Runnable> afterCompletion = new ArrayList<>();
+        private int checkouts;
+
+        private Object attached(Class<?> sqlObjectType) {
+            if (handle == null) {
+                handle = dbi.open();
+                handle.begin();
+                checkouts++;
+                UnitOfWork.this.checkouts.mark();
+            }
+            return attached.computeIfAbsent(sqlObjectType, handle::attach);
+        }
+
+        public int getCheckouts() {
+            return checkouts;
+        }
+    }
+}
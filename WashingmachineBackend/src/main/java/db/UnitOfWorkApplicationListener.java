@@ -0,0 +1,58 @@
+package db;
+
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * Wraps every matched request in a {@link UnitOfWork}. The work starts once the request is matched, so the
+ * authentication filter shares the handle with the resource method. It is committed before the response is
+ * written and rolled back if the request fails.
+ */
+public class UnitOfWorkApplicationListener implements ApplicationEventListener {
+    private final UnitOfWork unitOfWork;
+
+    public UnitOfWorkApplicationListener(UnitOfWork unitOfWork) {
+        this.unitOfWork = unitOfWork;
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent applicationEvent) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return new UnitOfWorkEventListener();
+    }
+
+    private class UnitOfWorkEventListener implements RequestEventListener {
+        private UnitOfWork.Work work;
+
+        @Override
+        public void onEvent(RequestEvent requestEvent) {
+            switch (requestEvent.getType()) {
+                case REQUEST_MATCHED:
+                    work = unitOfWork.begin();
+                    break;
+                case RESP_FILTERS_START:
+                    if (work != null) {
+                        unitOfWork.commit(work);
+                    }
+                    break;
+                case ON_EXCEPTION:
+                    if (work != null) {
+                        unitOfWork.rollback(work);
+                    }
+                    break;
+                case FINISHED:
+                    if (work != null) {
+                        unitOfWork.finish(work);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package db;
 
+import api.CredentialsDTO;
 import api.UserDTO;
+import db.mappers.CredentialsMapper;
 import db.mappers.UserMapper;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+import org.skife.jdbi.v2.sqlobject.customizers.Mapper;
 import org.skife.jdbi.v2.sqlobject.customizers.RegisterMapper;
 
+import java.util.List;
+
 
 @RegisterMapper(UserMapper.class)
 public interface UserDAO {
@@ -51,6 +56,21 @@ public interface UserDAO {
     @SqlQuery("SELECT username, role, name, apartment from users where upper(username) = upper(:username)")
     UserDTO getUser(@Bind("username") String username);
 
+    /**
+     * Sign-in reads everything it needs with this one query
+     */
+    @SqlQuery("SELECT users.username, password, salt, role, name, apartment, token, lifetime_ends, status " +
+            "FROM users LEFT JOIN user_tokens ON user_tokens.username = users.username " +
+            "WHERE upper(users.username) = upper(:username)")
+    @Mapper(CredentialsMapper.class)
+    CredentialsDTO getCredentials(@Bind("username") String username);
+
+    @SqlUpdate("UPDATE users SET password = :password WHERE username = :username")
+    int updatePassword(@Bind("username") String username, @Bind("password") String password);
+
+    @SqlQuery("SELECT username FROM users")
+    List<String> getUsernames();
+
     @SqlQuery("SELECT salt FROM users WHERE upper(username) = upper(:username)")
     String getSaltForUser(@Bind("username") String username);
 
@@ -1,16 +1,20 @@
 package db;
 
+import api.SessionDTO;
 import api.UserTokenDTO;
+import db.mappers.SessionMapper;
 import db.mappers.UserMapper;
 import db.mappers.UserTokenMapper;
 import org.skife.jdbi.v2.sqlobject.Bind;
 import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
 import org.skife.jdbi.v2.sqlobject.SqlQuery;
 import org.skife.jdbi.v2.sqlobject.SqlUpdate;
 import org.skife.jdbi.v2.sqlobject.customizers.Mapper;
 import org.skife.jdbi.v2.sqlobject.customizers.RegisterMapper;
 
 import java.util.Date;
+import java.util.List;
 
 @RegisterMapper(UserTokenMapper.class)
 public interface UserTokenDAO {
@@ -42,6 +46,12 @@ public interface UserTokenDAO {
     @SqlQuery("SELECT * FROM user_tokens WHERE token = :userToken")
     UserTokenDTO getUserTokenFromToken(@Bind("userToken") String userToken);
 
+    @SqlQuery("SELECT user_tokens.username, token, lifetime_ends, status, role, name, apartment " +
+            "FROM user_tokens JOIN users ON users.username = user_tokens.username " +
+            "WHERE token = :token")
+    @Mapper(SessionMapper.class)
+    SessionDTO getSessionFromToken(@Bind("token") String token);
+
     @SqlQuery("SELECT username FROM user_tokens WHERE token = :token")
     String getUsernameFromToken(@Bind("token") String token);
 
@@ -53,4 +63,7 @@ public interface UserTokenDAO {
 
     @SqlUpdate("UPDATE user_tokens SET lifetime_ends = :time WHERE token = :token")
     int setNewTimeForToken(@Bind("token") String token, @Bind("time") Date time);
-}
\ No newline at end of file
+
+    @SqlBatch("UPDATE user_tokens SET lifetime_ends = :time WHERE token = :token")
+    void setNewTimesForTokens(@Bind("token") List<String> tokens, @Bind("time") List<Date> times);
+}
@@ -0,0 +1,16 @@
+package db.mappers;
+
+import api.BillingDTO;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class BillingMapper implements ResultSetMapper<BillingDTO> {
+    @Override
+    public BillingDTO map(int i, ResultSet resultSet, StatementContext statementContext) throws SQLException {
+        return new BillingDTO(resultSet.getString("apartment"), resultSet.getInt("sum_of_washing_machine_uses"),
+                resultSet.getInt("sum_of_tumble_dry_uses"));
+    }
+}
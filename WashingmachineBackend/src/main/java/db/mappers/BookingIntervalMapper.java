@@ -0,0 +1,18 @@
+package db.mappers;
+
+import core.BookingInterval;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class BookingIntervalMapper implements ResultSetMapper<BookingInterval> {
+    @Override
+    public BookingInterval map(int i, ResultSet resultSet, StatementContext statementContext) throws SQLException {
+        return new BookingInterval(resultSet.getInt("id"),
+                resultSet.getInt("machine_id"),
+                resultSet.getTimestamp("start_time").getTime(),
+                resultSet.getTimestamp("end_time").getTime());
+    }
+}
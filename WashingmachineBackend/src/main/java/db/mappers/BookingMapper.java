@@ -13,6 +13,7 @@ public class BookingMapper implements ResultSetMapper<BookingDTO> {
     @Override
     public BookingDTO map(int i, ResultSet resultSet, StatementContext statementContext) throws SQLException {
         return new BookingDTO(resultSet.getInt("id"),
+                resultSet.getInt("machine_id"),
                 new Date(resultSet.getTimestamp("start_time").getTime()),
                 new Date(resultSet.getTimestamp("end_time").getTime()),
                 resultSet.getString("owner"),
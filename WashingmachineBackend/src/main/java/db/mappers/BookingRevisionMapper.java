@@ -0,0 +1,24 @@
+package db.mappers;
+
+import api.BookingRevisionDTO;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+
+public class BookingRevisionMapper implements ResultSetMapper<BookingRevisionDTO> {
+    @Override
+    public BookingRevisionDTO map(int i, ResultSet resultSet, StatementContext statementContext) throws SQLException {
+        return new BookingRevisionDTO(resultSet.getLong("revision"),
+                resultSet.getInt("booking_id"),
+                new Date(resultSet.getTimestamp("start_time").getTime()),
+                new Date(resultSet.getTimestamp("end_time").getTime()),
+                resultSet.getString("owner"),
+                resultSet.getInt("number_of_washing_machine_uses"),
+                resultSet.getInt("number_of_tumble_dry_uses"),
+                resultSet.getString("update_type"),
+                new Date(resultSet.getTimestamp("changed_at").getTime()));
+    }
+}
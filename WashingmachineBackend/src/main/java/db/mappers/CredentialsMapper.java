@@ -0,0 +1,20 @@
+package db.mappers;
+
+import api.CredentialsDTO;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class CredentialsMapper implements ResultSetMapper<CredentialsDTO> {
+    private final UserMapper userMapper = new UserMapper();
+    private final UserTokenMapper userTokenMapper = new UserTokenMapper();
+
+    @Override
+    public CredentialsDTO map(int i, ResultSet resultSet, StatementContext statementContext) throws SQLException {
+        return new CredentialsDTO(userMapper.map(i, resultSet, statementContext), resultSet.getString("password"),
+                resultSet.getString("salt"),
+                resultSet.getString("token") == null ? null : userTokenMapper.map(i, resultSet, statementContext));
+    }
+}
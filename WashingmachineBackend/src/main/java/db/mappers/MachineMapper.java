@@ -0,0 +1,17 @@
+package db.mappers;
+
+import api.MachineDTO;
+import api.MachineKind;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class MachineMapper implements ResultSetMapper<MachineDTO> {
+    @Override
+    public MachineDTO map(int i, ResultSet resultSet, StatementContext statementContext) throws SQLException {
+        return new MachineDTO(resultSet.getInt("id"), resultSet.getString("name"),
+                MachineKind.valueOf(resultSet.getString("kind")));
+    }
+}
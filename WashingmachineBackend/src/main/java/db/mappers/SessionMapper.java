@@ -0,0 +1,18 @@
+package db.mappers;
+
+import api.SessionDTO;
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class SessionMapper implements ResultSetMapper<SessionDTO> {
+    private final UserTokenMapper userTokenMapper = new UserTokenMapper();
+    private final UserMapper userMapper = new UserMapper();
+
+    @Override
+    public SessionDTO map(int i, ResultSet resultSet, StatementContext statementContext) throws SQLException {
+        return new SessionDTO(userTokenMapper.map(i, resultSet, statementContext), userMapper.map(i, resultSet, statementContext));
+    }
+}
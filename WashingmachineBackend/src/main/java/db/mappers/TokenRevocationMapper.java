@@ -0,0 +1,17 @@
+package db.mappers;
+
+import org.skife.jdbi.v2.StatementContext;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.Date;
+import java.util.Map;
+
+public class TokenRevocationMapper implements ResultSetMapper<Map.Entry<String, Date>> {
+    @Override
+    public Map.Entry<String, Date> map(int i, ResultSet resultSet, StatementContext statementContext) throws SQLException {
+        return new AbstractMap.SimpleImmutableEntry<>(resultSet.getString("token_hash"), resultSet.getTimestamp("lifetime_ends"));
+    }
+}
@@ -0,0 +1,13 @@
+package exceptions;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+public class TooBusyException extends WebApplicationException {
+    public TooBusyException(String error, long retryAfterSeconds) {
+        super(error, Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .build());
+    }
+}
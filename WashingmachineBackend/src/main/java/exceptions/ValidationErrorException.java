@@ -1,10 +1,23 @@
 package exceptions;
 
+import api.SuccessDTO;
+
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 public class ValidationErrorException extends WebApplicationException {
     public ValidationErrorException(String error) {
         super(error, Response.status(Response.Status.BAD_REQUEST).build());
     }
+
+    /**
+     * Sends the DTO as the body, for clients to tell rejections apart
+     */
+    public ValidationErrorException(SuccessDTO successDTO) {
+        super(successDTO.getError(), Response.status(Response.Status.BAD_REQUEST)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(successDTO)
+                .build());
+    }
 }
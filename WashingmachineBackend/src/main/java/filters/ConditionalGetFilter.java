@@ -0,0 +1,117 @@
+package filters;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import core.BookingMonthVersions;
+import core.Util;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.YearMonth;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Gives {@link MonthVersioned} responses a strong ETag built from the request, the signed in user and the
+ * {@link BookingMonthVersions} of the months it covers, and answers a matching If-None-Match with 304 Not Modified
+ * before the resource, and thereby the database, is reached.
+ *
+ * The ETag is computed before the resource reads anything, so a write committing in between can only make the ETag
+ * older than the response, never newer, and the next request then simply gets the full response again.
+ */
+@MonthVersioned
+@Priority(Priorities.USER + 100)
+public class ConditionalGetFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    // Shared by everything that could be cached, but must be revalidated every time
+    public static final String CACHE_CONTROL = "private, no-cache";
+
+    private static final String ENTITY_TAG_PROPERTY = ConditionalGetFilter.class.getName() + ".entityTag";
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final BookingMonthVersions bookingMonthVersions;
+
+    public ConditionalGetFilter(BookingMonthVersions bookingMonthVersions) {
+        this.bookingMonthVersions = bookingMonthVersions;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext containerRequestContext) throws IOException {
+        EntityTag entityTag = entityTagFor(containerRequestContext);
+        if (entityTag == null) {
+            return;
+        }
+
+        containerRequestContext.setProperty(ENTITY_TAG_PROPERTY, entityTag);
+        Response.ResponseBuilder notModified = containerRequestContext.getRequest().evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            containerRequestContext.abortWith(notModified.build());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext containerRequestContext, ContainerResponseContext containerResponseContext) throws IOException {
+        containerResponseContext.getHeaders().putSingle(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+
+        Object entityTag = containerRequestContext.getProperty(ENTITY_TAG_PROPERTY);
+        int status = containerResponseContext.getStatus();
+        if (entityTag != null && (status == Response.Status.OK.getStatusCode() || status == Response.Status.NOT_MODIFIED.getStatusCode())) {
+            containerResponseContext.getHeaders().putSingle(HttpHeaders.ETAG, entityTag);
+        }
+    }
+
+    /**
+     * @return the entity tag for the request, or null if the request is invalid or spans too many months to be versioned
+     */
+    EntityTag entityTagFor(ContainerRequestContext containerRequestContext) {
+        MultivaluedMap<String, String> queryParameters = containerRequestContext.getUriInfo().getQueryParameters();
+        Long startTime = parseMillis(queryParameters.getFirst("startTime"));
+        Long endTime = parseMillis(queryParameters.getFirst("endTime"));
+        if (startTime == null || endTime == null) {
+            return null;
+        }
+
+        Date startDate = Util.convertMillisToDateAndFloorToNearest5Minutes(startTime);
+        Date endDate = Util.convertMillisToDateAndFloorToNearest5Minutes(endTime);
+        List<YearMonth> months = BookingMonthVersions.monthsBetween(startDate, endDate);
+        if (months == null) {
+            return null;
+        }
+
+        // The authentication filters have run by now, a token that has expired or was signed out is signed out here too
+        Principal principal = containerRequestContext.getSecurityContext().getUserPrincipal();
+        Hasher hasher = HASH_FUNCTION.newHasher()
+                .putLong(bookingMonthVersions.getEpoch())
+                .putString(containerRequestContext.getUriInfo().getPath(), StandardCharsets.UTF_8)
+                .putLong(startDate.getTime())
+                .putLong(endDate.getTime())
+                .putString(principal != null ? principal.getName() : "", StandardCharsets.UTF_8);
+        for (YearMonth month : months) {
+            hasher.putInt(month.getYear()).putInt(month.getMonthValue()).putLong(bookingMonthVersions.get(month));
+        }
+        return new EntityTag(hasher.hash().toString());
+    }
+
+    private static Long parseMillis(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            long millis = Long.parseLong(value);
+            return millis >= 0 ? millis : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package filters;
+
+import javax.ws.rs.NameBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a GET whose response only depends on the bookings starting between its startTime and endTime query parameters
+ * and on the userAccessToken cookie, so it can be answered with 304 Not Modified while none of the months were written.
+ *
+ * @see ConditionalGetFilter
+ */
+@NameBinding
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface MonthVersioned {
+}
@@ -6,9 +6,15 @@ import javax.ws.rs.container.ContainerResponseFilter;
 import javax.ws.rs.core.HttpHeaders;
 import java.io.IOException;
 
+/**
+ * Default cache policy: nothing may be served from a cache without revalidating it. Responses that set their own
+ * Cache-Control, e.g. through {@link ConditionalGetFilter}, are left alone.
+ */
 public class NoCacheFilter implements ContainerResponseFilter {
     @Override
     public void filter(ContainerRequestContext containerRequestContext, ContainerResponseContext containerResponseContext) throws IOException {
-        containerResponseContext.getHeaders().putSingle(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if (! containerResponseContext.getHeaders().containsKey(HttpHeaders.CACHE_CONTROL)) {
+            containerResponseContext.getHeaders().putSingle(HttpHeaders.CACHE_CONTROL, "no-cache");
+        }
     }
 }
@@ -1,9 +1,11 @@
 package resources;
 
+import api.CredentialsDTO;
 import api.UserTokenDTO;
 import api.UserDTO;
-import core.Util;
-import db.UserDAO;
+import auth.AuthenticationCacheInvalidator;
+import auth.CredentialStore;
+import auth.SessionTokens;
 import db.UserTokenDAO;
 
 import javax.naming.AuthenticationException;
@@ -13,64 +15,66 @@ import javax.ws.rs.core.Cookie;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
-import java.math.BigInteger;
-import java.security.SecureRandom;
 import java.util.Calendar;
 
 @Path("/auth")
 @Produces(MediaType.APPLICATION_JSON)
 public class AuthResource {
     private UserTokenDAO userTokenDAO;
-    private UserDAO userDAO;
+    private CredentialStore credentialStore;
     private int tokenLifetime;
     private String domain;
+    private AuthenticationCacheInvalidator authenticationCacheInvalidator;
+    private SessionTokens sessionTokens;
     private final String USER_ACCESS_TOKEN = "userAccessToken";
 
-    public AuthResource(UserTokenDAO userTokenDAO, UserDAO userDAO, int tokenLifetime, String domain) {
+    public AuthResource(UserTokenDAO userTokenDAO, CredentialStore credentialStore, int tokenLifetime, String domain,
+                        AuthenticationCacheInvalidator authenticationCacheInvalidator, SessionTokens sessionTokens) {
         this.userTokenDAO = userTokenDAO;
-        this.userDAO = userDAO;
+        this.credentialStore = credentialStore;
         this.tokenLifetime = tokenLifetime;
         this.domain = domain;
+        this.authenticationCacheInvalidator = authenticationCacheInvalidator;
+        this.sessionTokens = sessionTokens;
     }
 
     @POST
     @Path("/sign_in")
     public Response signIn(@FormParam("username") @NotNull String username,
                            @NotNull @FormParam("password") String password) throws AuthenticationException {
-        UserDTO userDTO = userDAO.getUser(username);
-
-        if (userDTO == null) {
-            throw new AuthenticationException("UserDTO does not exist");
+        CredentialsDTO credentials = credentialStore.authenticate(username, password);
+        if (credentials == null) {
+            throw new AuthenticationException("UserDTO not authenticated");
         }
+        UserDTO userDTO = credentials.getUser();
 
-        String hashedAndSaltedPassword = Util.getHashedAndSaltedPassword(password, userDAO.getSaltForUser(username));
-        if (userDAO.authenticateUser(username, hashedAndSaltedPassword)) {
-            // If token doesn't exist yet, we create one.
-            UserTokenDTO userTokenDTO = userTokenDAO.getUserTokenFromUsername(username);
-            if (userTokenDTO == null) {
-                userTokenDTO = createTokenForUser(username);
-                return createResponseFromToken(userTokenDTO);
-            }
-
-            // Create new token for userDTO if old one has about one day left on it
-            Calendar calendar = Calendar.getInstance();
-            calendar.add(Calendar.DAY_OF_YEAR, 1);
-            if (calendar.getTime().after(userTokenDTO.getLifetimeEnds())) {
-                userTokenDAO.deleteUserTokenFromUsername(username);
-                userTokenDTO = createTokenForUser(username);
-                return createResponseFromToken(userTokenDTO);
-            } else {
-                // We return the current token
-                return createResponseFromToken(userTokenDTO);
-            }
+        // If token doesn't exist yet, we create one.
+        UserTokenDTO userTokenDTO = credentials.getUserToken();
+        if (userTokenDTO == null) {
+            userTokenDTO = createTokenForUser(userDTO);
+            return createResponseFromToken(userTokenDTO);
         }
 
-        throw new AuthenticationException("UserDTO not authenticated");
+        // Create new token for userDTO if old one has about one day left on it
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        if (calendar.getTime().after(userTokenDTO.getLifetimeEnds())) {
+            userTokenDAO.deleteUserTokenFromUsername(userDTO.getName());
+            authenticationCacheInvalidator.tokenRevoked(userTokenDTO.getToken());
+            userTokenDTO = createTokenForUser(userDTO);
+            return createResponseFromToken(userTokenDTO);
+        } else {
+            // We return the current token
+            return createResponseFromToken(userTokenDTO);
+        }
     }
 
     @POST
     @Path("/sign_out")
     public Response signOut(@CookieParam(USER_ACCESS_TOKEN) Cookie userAccessToken) {
+        if (userAccessToken != null) {
+            sessionTokens.signedOut(userAccessToken.getValue());
+        }
         return Response.ok()
                 .header("Set-Cookie", USER_ACCESS_TOKEN + "=deleted;Domain=" + domain + ";Path=/;Expires=Thu, 01-Jan-1970 00:00:01 GMT")
                 .build();
@@ -88,17 +92,11 @@ public class AuthResource {
     }
 
 
-    private UserTokenDTO createTokenForUser(String username) {
-        // Generate 128-bit random token
-        byte[] bytes = new byte[17];
-        SecureRandom secureRandom = new SecureRandom();
-        secureRandom.nextBytes(bytes);
-        bytes[0] = 0;
-        String token = new BigInteger(bytes).toString();
-
+    private UserTokenDTO createTokenForUser(UserDTO userDTO) {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.DAY_OF_YEAR, tokenLifetime);
-        UserTokenDTO userTokenDTOToInsert = new UserTokenDTO(username, token, calendar.getTime(), UserTokenDTO.Status.VALID);
+        String token = sessionTokens.create(userDTO, calendar.getTime());
+        UserTokenDTO userTokenDTOToInsert = new UserTokenDTO(userDTO.getName(), token, calendar.getTime(), UserTokenDTO.Status.VALID);
         userTokenDAO.createUserToken(userTokenDTOToInsert);
         return userTokenDTOToInsert;
     }
@@ -1,81 +1,200 @@
 package resources;
 
 import api.BookingDTO;
+import api.BookingPolicyDTO;
+import api.BookingRejectionDTO;
+import api.MachineDTO;
+import core.BookingDayLocks;
+import core.BookingInterval;
+import core.BookingMonthCache;
+import core.BookingMonthVersions;
+import core.BookingPolicy;
+import core.BookingRejection;
 import core.BookingService;
 import api.UserDTO;
 import core.Util;
 import db.BookingDAO;
-import db.UserTokenDAO;
+import db.JsonStreamer;
+import db.SqlStates;
 import exceptions.ValidationErrorException;
+import filters.MonthVersioned;
 import io.dropwizard.auth.Auth;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
-import javax.ws.rs.core.Cookie;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
-import java.util.List;
+import java.util.Optional;
 
 @Path("/booking")
 @Produces(MediaType.APPLICATION_JSON)
 public class BookingResource {
     private BookingDAO bookingDAO;
-    private UserTokenDAO userTokenDAO;
     private BookingService bookingService;
+    private BookingDayLocks bookingDayLocks;
+    private BookingMonthCache bookingMonthCache;
+    private JsonStreamer jsonStreamer;
 
-    public BookingResource(BookingDAO bookingDAO, UserTokenDAO userTokenDAO, BookingService bookingService) {
+    public BookingResource(BookingDAO bookingDAO, BookingService bookingService, BookingDayLocks bookingDayLocks,
+                           BookingMonthCache bookingMonthCache, JsonStreamer jsonStreamer) {
         this.bookingDAO = bookingDAO;
-        this.userTokenDAO = userTokenDAO;
         this.bookingService = bookingService;
+        this.bookingDayLocks = bookingDayLocks;
+        this.bookingMonthCache = bookingMonthCache;
+        this.jsonStreamer = jsonStreamer;
     }
 
+    /**
+     * @param machineId the machine booked, the first machine for clients that do not know of several
+     */
     @POST
     public BookingDTO createBooking(@Auth UserDTO userDTO,
+                                    @FormParam("machineId") @DefaultValue("" + MachineDTO.FIRST_MACHINE_ID) int machineId,
                                     @FormParam("startTime") @NotNull @Min(0) Long startTime,
                                     @FormParam("endTime") @NotNull @Min(0) Long endTime,
                                     @FormParam("numberOfWashingMachineUses") @NotNull int numberOfWashingMachineUses,
                                     @FormParam("numberOfTumbleDryUses") @NotNull int numberOfTumbleDryUses) {
-        if (! bookingService.validateCreateBooking(startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses)) {
-            throw new ValidationErrorException("Input parameters were not valid for the chosen period");
+        Date startDate = new Date(bookingService.floorToSlot(startTime));
+        Date endDate = new Date(bookingService.floorToSlot(endTime));
+
+        // Checked before locking, as every machine locked gets stripes of its own
+        if (!bookingService.isMachine(machineId)) {
+            throw rejected(BookingRejection.UNKNOWN_MACHINE);
         }
-        Date startDate = Util.convertMillisToDateAndFloorToNearest5Minutes(startTime);
-        Date endDate = Util.convertMillisToDateAndFloorToNearest5Minutes(endTime);
+        // Validation and insertion must not interleave with other writes on the same days of the machine, the locks
+        // are held until the insertion is committed and in the timeline
+        try (BookingDayLocks.Held ignored = bookingDayLocks.lock(machineId, startDate.getTime(), endDate.getTime())) {
+            BookingRejection rejection = bookingService.validateCreateBooking(machineId, startTime, endTime,
+                    numberOfWashingMachineUses, numberOfTumbleDryUses);
+            if (rejection != null) {
+                throw rejected(rejection);
+            }
 
-        BookingDTO bookingDTOForInsertion = new BookingDTO(startDate, endDate,
-                userDTO.getName(), numberOfTumbleDryUses, numberOfWashingMachineUses);
-        bookingDAO.insertBooking(bookingDTOForInsertion);
-        return bookingDAO.getBookingFromOwnerAndDates(userDTO.getName(), startDate, endDate);
+            BookingDTO bookingDTOForInsertion = new BookingDTO(machineId, startDate, endDate,
+                    userDTO.getName(), numberOfWashingMachineUses, numberOfTumbleDryUses);
+            BookingDTO bookingDTO;
+            try {
+                bookingDTO = bookingDAO.insertBookingAndGet(bookingDTOForInsertion);
+            } catch (UnableToExecuteStatementException e) {
+                throw overlapOrRethrow(e);
+            }
+            bookingService.bookingCreated(bookingDTO);
+            return bookingDTO;
+        }
     }
 
+    /**
+     * A booking stays on its machine, moving it to another machine is a delete and a create
+     *
+     * @param machineId the machine of the booking
+     */
     @PUT
     public BookingDTO editBooking(@Auth UserDTO userDTO, @FormParam("id") int id,
+                                  @FormParam("machineId") @DefaultValue("" + MachineDTO.FIRST_MACHINE_ID) int machineId,
                                   @FormParam("startTime") @NotNull @Min(0) Long startTime,
                                   @FormParam("endTime") @NotNull @Min(0) Long endTime,
                                   @FormParam("numberOfWashingMachineUses") @NotNull int numberOfWashingMachineUses,
                                   @FormParam("numberOfTumbleDryUses") @NotNull int numberOfTumbleDryUses) {
-        if (! bookingService.validateEditBooking(startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses, id)) {
-            throw new ValidationErrorException("Input parameters were not valid for the chosen period and id");
+        Date startDate = new Date(bookingService.floorToSlot(startTime));
+        Date endDate = new Date(bookingService.floorToSlot(endTime));
+
+        if (!bookingService.isMachine(machineId)) {
+            throw rejected(BookingRejection.UNKNOWN_MACHINE);
+        }
+        // Bookings are partitioned by start time, the indexed one keeps the write to the booking's partition
+        BookingInterval current = bookingService.getBooking(id);
+        if (current == null) {
+            throw new NotFoundException("No booking with the given id on the machine is owned by the user");
+        }
+        try (BookingDayLocks.Held ignored = bookingDayLocks.lock(machineId, startDate.getTime(), endDate.getTime())) {
+            BookingRejection rejection = bookingService.validateEditBooking(machineId, startTime, endTime,
+                    numberOfWashingMachineUses, numberOfTumbleDryUses, id);
+            if (rejection != null) {
+                throw rejected(rejection);
+            }
+            BookingDTO bookingDTO;
+            try {
+                bookingDTO = bookingDAO.updateBookingAndGet(userDTO.getName(), id, machineId,
+                        new Date(current.getStartTime()), startDate, endDate,
+                        numberOfWashingMachineUses, numberOfTumbleDryUses);
+            } catch (UnableToExecuteStatementException e) {
+                throw overlapOrRethrow(e);
+            }
+            if (bookingDTO == null) {
+                throw new NotFoundException("No booking with the given id on the machine is owned by the user");
+            }
+            bookingService.bookingEdited(bookingDTO);
+            return bookingDTO;
         }
-        bookingDAO.updateBooking(userDTO.getName(), id, Util.convertMillisToDateAndFloorToNearest5Minutes(startTime),
-                Util.convertMillisToDateAndFloorToNearest5Minutes(endTime), numberOfWashingMachineUses, numberOfTumbleDryUses);
-        return bookingDAO.getBookingFromId(userDTO.getName(), id);
     }
 
     @GET
     @Path("/interval")
-    public List<BookingDTO> getBookingsInInterval(@QueryParam("startTime") @NotNull @Min(0) Long startTime,
-                                                  @QueryParam("endTime") @NotNull @Min(0) Long endTime,
-                                                  @CookieParam("userAccessToken") Cookie userAccessToken) {
+    @MonthVersioned
+    public Response getBookingsInInterval(@Auth Optional<UserDTO> userDTO,
+                                          @QueryParam("startTime") @NotNull @Min(0) Long startTime,
+                                          @QueryParam("endTime") @NotNull @Min(0) Long endTime) {
+        String username = userDTO.map(UserDTO::getName).orElse("");
+        Date startDate = Util.convertMillisToDateAndFloorToNearest5Minutes(startTime);
+        Date endDate = Util.convertMillisToDateAndFloorToNearest5Minutes(endTime);
 
-        String username = (userAccessToken != null) ? userTokenDAO.getUsernameFromToken(userAccessToken.getValue()) : "";
-        return bookingDAO.getBookingsInInterval(Util.convertMillisToDateAndFloorToNearest5Minutes(startTime),
-                Util.convertMillisToDateAndFloorToNearest5Minutes(endTime), username);
+        // Intervals too long to be cached are streamed rather than collected in memory
+        if (BookingMonthVersions.monthsBetween(startDate, endDate) == null) {
+            return Response.ok(jsonStreamer.stream(BookingDAO.class,
+                    dao -> dao.iterateBookingsInInterval(startDate, endDate, username))).build();
+        }
+        return Response.ok(bookingMonthCache.getBookingsInInterval(startDate, endDate, username)).build();
+    }
+
+    /**
+     * The opening hours of every local date in the interval, as bookings are validated against them
+     */
+    @GET
+    @Path("/policy")
+    public BookingPolicyDTO getBookingPolicy(@QueryParam("startTime") @NotNull @Min(0) Long startTime,
+                                             @QueryParam("endTime") @NotNull @Min(0) Long endTime) {
+        if (BookingMonthVersions.monthsBetween(new Date(startTime), new Date(endTime)) == null) {
+            throw new ValidationErrorException("The interval must cover at most " + BookingMonthVersions.MAX_MONTHS_PER_READ
+                    + " months");
+        }
+        BookingPolicy policy = bookingService.getBookingPolicy();
+        BookingPolicyDTO bookingPolicyDTO = new BookingPolicyDTO(policy.getSlotMinutes(), policy.getMinimumMinutes());
+        LocalDate lastDate = Instant.ofEpochMilli(endTime).atZone(ZoneId.systemDefault()).toLocalDate();
+        for (LocalDate date = Instant.ofEpochMilli(startTime).atZone(ZoneId.systemDefault()).toLocalDate();
+             !date.isAfter(lastDate); date = date.plusDays(1)) {
+            bookingPolicyDTO.addDay(date.toString(), policy.getSlots(date.toEpochDay()), policy.getSlotsPerDay());
+        }
+        return bookingPolicyDTO;
     }
 
     @DELETE
     public void deleteBooking(@Auth UserDTO userDTO,
                               @FormParam("id") @NotNull int id) {
-        bookingDAO.deleteBooking(userDTO.getName(), id);
+        BookingInterval current = bookingService.getBooking(id);
+        BookingDTO deletedBookingDTO = current == null ? null
+                : bookingDAO.deleteBookingAndGet(userDTO.getName(), id, new Date(current.getStartTime()));
+        if (deletedBookingDTO == null) {
+            throw new NotFoundException("No booking with the given id is owned by the user");
+        }
+        bookingService.bookingDeleted(deletedBookingDTO);
+    }
+
+    // The exclusion constraint on bookings is the final authority on overlaps within a month, e.g. for writes from
+    // other nodes
+    private RuntimeException overlapOrRethrow(UnableToExecuteStatementException e) {
+        if (SqlStates.hasSqlState(e, SqlStates.EXCLUSION_VIOLATION)) {
+            return rejected(BookingRejection.OVERLAPS);
+        }
+        return e;
+    }
+
+    private static ValidationErrorException rejected(BookingRejection rejection) {
+        return new ValidationErrorException(new BookingRejectionDTO(rejection.getMessage(), rejection.name()));
     }
 }
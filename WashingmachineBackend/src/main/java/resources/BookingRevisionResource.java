@@ -0,0 +1,38 @@
+package resources;
+
+import api.BookingRevisionDTO;
+import api.UserDTO;
+import core.RoleHelper;
+import db.BookingRevisionDAO;
+import io.dropwizard.auth.Auth;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+@Path("/booking/{id}/revisions")
+@Produces(MediaType.APPLICATION_JSON)
+public class BookingRevisionResource {
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private BookingRevisionDAO bookingRevisionDAO;
+
+    public BookingRevisionResource(BookingRevisionDAO bookingRevisionDAO) {
+        this.bookingRevisionDAO = bookingRevisionDAO;
+    }
+
+    /**
+     * @param afterRevision the last revision of the previous page, 0 for the first page
+     */
+    @GET
+    public List<BookingRevisionDTO> getRevisions(@Auth UserDTO user,
+                                                 @PathParam("id") int id,
+                                                 @QueryParam("after") @DefaultValue("0") @Min(0) long afterRevision,
+                                                 @QueryParam("limit") @DefaultValue("50") @Min(1) @Max(MAX_PAGE_SIZE) int limit) {
+        if (! RoleHelper.isAdmin(user.getRole())) throw new WebApplicationException(Response.Status.FORBIDDEN);
+        return bookingRevisionDAO.getRevisions(id, afterRevision, limit);
+    }
+}
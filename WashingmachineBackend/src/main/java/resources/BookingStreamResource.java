@@ -0,0 +1,90 @@
+package resources;
+
+import api.BookingDTO;
+import api.UserDTO;
+import core.BookingEvent;
+import core.BookingEventBroadcaster;
+import core.BookingEventSink;
+import core.BookingMonthVersions;
+import core.Util;
+import exceptions.ValidationErrorException;
+import io.dropwizard.auth.Auth;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.glassfish.jersey.media.sse.SseFeature;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+
+@Path("/booking/stream")
+public class BookingStreamResource {
+    private BookingEventBroadcaster bookingEventBroadcaster;
+
+    public BookingStreamResource(BookingEventBroadcaster bookingEventBroadcaster) {
+        this.bookingEventBroadcaster = bookingEventBroadcaster;
+    }
+
+    /**
+     * Streams created, edited and deleted events for bookings starting in the months between startTime and endTime,
+     * redacted like {@link BookingResource#getBookingsInInterval}. Events are named after their type in lower case and
+     * carry the booking as JSON.
+     */
+    @GET
+    @Produces(SseFeature.SERVER_SENT_EVENTS)
+    public EventOutput streamBookingChanges(@Auth Optional<UserDTO> userDTO,
+                                            @QueryParam("startTime") @NotNull @Min(0) Long startTime,
+                                            @QueryParam("endTime") @NotNull @Min(0) Long endTime) {
+        List<YearMonth> months = BookingMonthVersions.monthsBetween(Util.convertMillisToDateAndFloorToNearest5Minutes(startTime),
+                Util.convertMillisToDateAndFloorToNearest5Minutes(endTime));
+        if (months == null || months.isEmpty()) {
+            throw new ValidationErrorException("The interval must cover between 1 and " + BookingMonthVersions.MAX_MONTHS_PER_READ + " months");
+        }
+
+        EventOutput eventOutput = new EventOutput();
+        bookingEventBroadcaster.subscribe(months, userDTO.map(UserDTO::getName).orElse(""), new EventOutputSink(eventOutput));
+        return eventOutput;
+    }
+
+    private static class EventOutputSink implements BookingEventSink {
+        private final EventOutput eventOutput;
+
+        private EventOutputSink(EventOutput eventOutput) {
+            this.eventOutput = eventOutput;
+        }
+
+        @Override
+        public void send(BookingEvent bookingEvent) throws IOException {
+            if (eventOutput.isClosed()) {
+                throw new IOException("Event stream is closed");
+            }
+
+            OutboundEvent.Builder builder = new OutboundEvent.Builder();
+            if (bookingEvent.getType() == BookingEvent.Type.HEARTBEAT) {
+                builder.comment("heartbeat");
+            } else {
+                builder.name(bookingEvent.getType().name().toLowerCase())
+                        .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                        .data(BookingDTO.class, bookingEvent.getBooking());
+            }
+            eventOutput.write(builder.build());
+        }
+
+        @Override
+        public void close() {
+            try {
+                eventOutput.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package resources;
+
+import api.MachineDTO;
+import core.MachineTimelines;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import java.util.List;
+
+@Path("/machine")
+@Produces(MediaType.APPLICATION_JSON)
+public class MachineResource {
+    private MachineTimelines machineTimelines;
+
+    public MachineResource(MachineTimelines machineTimelines) {
+        this.machineTimelines = machineTimelines;
+    }
+
+    /**
+     * @return the machines that can be booked
+     */
+    @GET
+    public List<MachineDTO> getMachines() {
+        return machineTimelines.getMachines();
+    }
+}
@@ -1,55 +1,102 @@
 package resources;
 
-import api.UsageAdminExportDTO;
 import api.UsageDTO;
 import api.UserDTO;
 import core.RoleHelper;
+import core.UsageInterval;
 import core.Util;
 import db.BookingDAO;
-import db.UserTokenDAO;
+import db.CsvStreamer;
+import db.JsonStreamer;
+import filters.MonthVersioned;
 import io.dropwizard.auth.Auth;
 
 import javax.validation.constraints.Min;
 import javax.ws.rs.*;
-import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @Path("/usage")
 @Produces(MediaType.APPLICATION_JSON)
 public class UsageResource {
     private BookingDAO bookingDAO;
-    private UserTokenDAO userTokenDAO;
+    private JsonStreamer jsonStreamer;
+    private CsvStreamer csvStreamer;
 
-    public UsageResource(BookingDAO bookingDAO, UserTokenDAO userTokenDAO) {
+    public UsageResource(BookingDAO bookingDAO, JsonStreamer jsonStreamer, CsvStreamer csvStreamer) {
         this.bookingDAO = bookingDAO;
-        this.userTokenDAO = userTokenDAO;
+        this.jsonStreamer = jsonStreamer;
+        this.csvStreamer = csvStreamer;
     }
 
     @GET
-    public List<UsageDTO> getUsageInInterval(@CookieParam("userAccessToken") Cookie userAccessToken,
+    @MonthVersioned
+    public List<UsageDTO> getUsageInInterval(@Auth Optional<UserDTO> user,
                                              @QueryParam("startTime") @Min(0) long startTime,
                                              @QueryParam("endTime") @Min(0) long endTime) {
         // Return empty list if user is not logged in to ensure JSON is formatted correctly
-        if (userAccessToken == null) return new ArrayList<>();
+        if (!user.isPresent()) return new ArrayList<>();
 
-        String username = userTokenDAO.getUsernameFromToken(userAccessToken.getValue());
-        return bookingDAO.getUsageInInterval(username,
-                Util.convertMillisToDateAndFloorToNearest5Minutes(startTime),
-                Util.convertMillisToDateAndFloorToNearest5Minutes(endTime));
+        return bookingDAO.getUsageInIntervalFromRollup(user.get().getName(), usageInterval(startTime, endTime));
     }
 
     @Path("/admin")
     @GET
-    public List<UsageAdminExportDTO> getUsageInIntervalAdmin(@Auth UserDTO user,
-                                                             @QueryParam("startTime") @Min(0) long startTime,
-                                                             @QueryParam("endTime") @Min(0) long endTime) {
+    public Response getUsageInIntervalAdmin(@Auth UserDTO user,
+                                            @QueryParam("startTime") @Min(0) long startTime,
+                                            @QueryParam("endTime") @Min(0) long endTime) {
+        requireAdmin(user);
+        UsageInterval interval = usageInterval(startTime, endTime);
+        // Exports may cover years, so rows are streamed as they are read
+        return Response.ok(jsonStreamer.stream(BookingDAO.class,
+                dao -> dao.iterateUsageInIntervalAdmin(interval))).build();
+    }
+
+    @Path("/admin/export.csv")
+    @GET
+    @Produces(CsvStreamer.TEXT_CSV)
+    public Response exportUsageInIntervalAdmin(@Auth UserDTO user,
+                                               @QueryParam("startTime") @Min(0) long startTime,
+                                               @QueryParam("endTime") @Min(0) long endTime) {
+        requireAdmin(user);
+        UsageInterval interval = usageInterval(startTime, endTime);
+        return Response.ok(csvStreamer.stream(BookingDAO.class,
+                dao -> dao.iterateUsageInIntervalAdmin(interval),
+                new String[]{"apartment", "name", "month", "washing_machine_uses", "tumble_dry_uses"},
+                usage -> new Object[]{usage.getApartment(), usage.getRealName(),
+                        String.format("%d-%02d", usage.getYear(), usage.getMonth() + 1),
+                        usage.getSumOfWashingMachineUses(), usage.getSumOfTumbleDryUses()}))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"usage.csv\"")
+                .build();
+    }
+
+    @Path("/admin/billing.csv")
+    @GET
+    @Produces(CsvStreamer.TEXT_CSV)
+    public Response exportBillingInIntervalAdmin(@Auth UserDTO user,
+                                                 @QueryParam("startTime") @Min(0) long startTime,
+                                                 @QueryParam("endTime") @Min(0) long endTime) {
+        requireAdmin(user);
+        UsageInterval interval = usageInterval(startTime, endTime);
+        return Response.ok(csvStreamer.stream(BookingDAO.class,
+                dao -> dao.iterateBillingInInterval(interval),
+                new String[]{"apartment", "washing_machine_uses", "tumble_dry_uses"},
+                billing -> new Object[]{billing.getApartment(), billing.getSumOfWashingMachineUses(),
+                        billing.getSumOfTumbleDryUses()}))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"billing.csv\"")
+                .build();
+    }
+
+    private static void requireAdmin(UserDTO user) {
         if (! RoleHelper.isAdmin(user.getRole())) throw new WebApplicationException(Response.Status.FORBIDDEN);
-        return bookingDAO.getUsageInIntervalAdmin(
-                Util.convertMillisToDateAndFloorToNearest5Minutes(startTime),
-                Util.convertMillisToDateAndFloorToNearest5Minutes(endTime)
-        );
+    }
+
+    private static UsageInterval usageInterval(long startTime, long endTime) {
+        return UsageInterval.of(Util.convertMillisToDateAndFloorToNearest5Minutes(startTime),
+                Util.convertMillisToDateAndFloorToNearest5Minutes(endTime));
     }
 }
@@ -1,20 +1,21 @@
 package resources;
 
-import api.SuccessDTO;
 import api.UserDTO;
+import api.UsernameAvailabilityDTO;
+import auth.CredentialStore;
 import core.RoleHelper;
-import core.Util;
+import core.UsernameIndex;
 import db.UserDAO;
-import db.UserTokenDAO;
+import io.dropwizard.auth.Auth;
 import org.apache.commons.lang3.RandomStringUtils;
 
 import javax.naming.AuthenticationException;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.*;
-import javax.ws.rs.core.Cookie;
 import javax.ws.rs.core.MediaType;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 @Path("/user")
@@ -23,12 +24,16 @@ public class UserResource {
     private final List<String> allowedApartments = new ArrayList<>(
             Arrays.asList("st.v.", "st.h.", "1.tv.", "1.th.", "2.", "3.tv.", "3.th.", "4.")
     );
+    private static final int SUGGESTIONS = 3;
+
     private UserDAO userDAO;
-    private UserTokenDAO userTokenDAO;
+    private CredentialStore credentialStore;
+    private UsernameIndex usernameIndex;
 
-    public UserResource(UserDAO userDAO, UserTokenDAO userTokenDAO) {
+    public UserResource(UserDAO userDAO, CredentialStore credentialStore, UsernameIndex usernameIndex) {
         this.userDAO = userDAO;
-        this.userTokenDAO = userTokenDAO;
+        this.credentialStore = credentialStore;
+        this.usernameIndex = usernameIndex;
     }
 
     @POST
@@ -43,27 +48,26 @@ public class UserResource {
         }
 
         String salt = RandomStringUtils.randomAlphanumeric(50);
-        String hashedAndSaltedPassword = Util.getHashedAndSaltedPassword(password, salt);
+        String hashedAndSaltedPassword = credentialStore.hashNewPassword(password, salt);
 
         userDAO.insertUser(username, hashedAndSaltedPassword, salt, name, apartment, RoleHelper.ROLE_DEFAULT);
+        usernameIndex.created(username);
         return new UserDTO(username, RoleHelper.ROLE_DEFAULT, name, apartment);
     }
 
     @GET
     @Path("/username_exists")
-    public SuccessDTO doesUsernameExistAlready(@QueryParam("username") String username) {
-        UserDTO userDTO = userDAO.getUser(username);
-        if (userDTO == null) {
-            return new SuccessDTO("", true);
+    public UsernameAvailabilityDTO doesUsernameExistAlready(@QueryParam("username") String username) {
+        if (!usernameIndex.exists(username)) {
+            return new UsernameAvailabilityDTO("", true, Collections.emptyList());
         }
 
-        return new SuccessDTO("Username already exist", false);
+        return new UsernameAvailabilityDTO("Username already exist", false, usernameIndex.suggest(username, SUGGESTIONS));
     }
 
     @GET
     @Path("/user_from_user_access_token")
-    public UserDTO userFromUserAccessToken(@CookieParam("userAccessToken") Cookie userAccessToken) {
-        String username = userTokenDAO.getUsernameFromToken(userAccessToken.getValue());
-        return userDAO.getUser(username);
+    public UserDTO userFromUserAccessToken(@Auth UserDTO userDTO) {
+        return userDTO;
     }
 }
@@ -0,0 +1,13 @@
+-- Usernames are looked up case-insensitively everywhere
+CREATE INDEX IF NOT EXISTS users_upper_username ON users (upper(username));
+CREATE INDEX IF NOT EXISTS user_tokens_upper_username ON user_tokens (upper(username));
+
+-- Every authenticated request without a cached session looks its token up
+CREATE INDEX IF NOT EXISTS user_tokens_token ON user_tokens (token);
+
+-- The bookings of one user in an interval. Overlaps are already found through the GiST index of the exclusion
+-- constraint on every partition, and intervals through bookings_start_time
+CREATE INDEX IF NOT EXISTS bookings_owner_start_time ON bookings (owner, start_time);
+CREATE INDEX IF NOT EXISTS bookings_archive_start_time ON bookings_archive (start_time);
+
+CREATE INDEX IF NOT EXISTS token_revocations_lifetime_ends ON token_revocations (lifetime_ends);
@@ -0,0 +1,5 @@
+-- What a machine can be booked for. The machine every booking was on before washes and tumble dries
+ALTER TABLE machines ADD COLUMN IF NOT EXISTS kind VARCHAR(20) NOT NULL DEFAULT 'WASHER_DRYER';
+ALTER TABLE machines ALTER COLUMN kind DROP DEFAULT;
+ALTER TABLE machines DROP CONSTRAINT IF EXISTS machines_kind_check;
+ALTER TABLE machines ADD CONSTRAINT machines_kind_check CHECK (kind IN ('WASHER', 'DRYER', 'WASHER_DRYER'));
@@ -1,18 +1,28 @@
+import api.CredentialsDTO;
 import api.UserTokenDTO;
 import core.RoleHelper;
 import api.UserDTO;
+import auth.AuthenticationCacheInvalidator;
+import auth.CredentialStore;
+import auth.HashingExecutor;
+import auth.PasswordHasher;
+import auth.RandomSessionTokens;
+import auth.SessionTokens;
 import core.Util;
 import db.UserDAO;
 import db.UserTokenDAO;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.Mockito;
+import com.codahale.metrics.MetricRegistry;
 import resources.AuthResource;
 import javax.naming.AuthenticationException;
+import javax.ws.rs.core.Cookie;
 import javax.ws.rs.core.Response;
 import java.util.Calendar;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.junit.Assert.*;
 
@@ -24,50 +34,48 @@ public class AuthResourceTest {
     private final String TOKEN = "token";
     private final String NAME = "name";
     private final String APARTMENT = "apartment";
+    private final int ITERATIONS = 1000;
     private AuthResource authResource;
     private UserTokenDAO userTokenDAO;
     private UserDAO userDAO;
+    private CredentialStore credentialStore;
 
     @Before
     public void setup() {
         userTokenDAO = mock(UserTokenDAO.class);
         userDAO = mock(UserDAO.class);
-        authResource = new AuthResource(userTokenDAO, userDAO, 123, null);
+        credentialStore = new CredentialStore(userDAO, new PasswordHasher(ITERATIONS),
+                new HashingExecutor(1, 4, new MetricRegistry()), new MetricRegistry());
+        authResource = new AuthResource(userTokenDAO, credentialStore, 123, null, mock(AuthenticationCacheInvalidator.class),
+                new RandomSessionTokens());
     }
 
     @Test(expected = AuthenticationException.class)
     public void nonexistentUserShouldReturnError() throws javax.naming.AuthenticationException {
-        when(userDAO.getUser(USERNAME)).thenReturn(null);
+        when(userDAO.getCredentials(USERNAME)).thenReturn(null);
         authResource.signIn(USERNAME, "bogus");
     }
 
     @Test
     public void ifNoTokenAlreadyExistsForUserWeCreateOne() throws AuthenticationException {
-        when(userDAO.getUser(USERNAME)).thenReturn(new UserDTO(USERNAME, RoleHelper.ROLE_DEFAULT, NAME, APARTMENT));
-        when(userDAO.getSaltForUser(USERNAME)).thenReturn(SALT);
-        String hashedAndSaltedPassword = Util.getHashedAndSaltedPassword(PASSWORD, SALT);
-        when(userDAO.authenticateUser(USERNAME, hashedAndSaltedPassword)).thenReturn(true);
+        when(userDAO.getCredentials(USERNAME)).thenReturn(credentials(null));
         Response signedInUserToken = authResource.signIn(USERNAME, PASSWORD);
         assertNotNull(signedInUserToken.getCookies().get("userAccessToken").getValue());
+        verify(userDAO, times(1)).getCredentials(USERNAME);
+        verify(userTokenDAO, times(1)).createUserToken(org.mockito.Matchers.any(UserTokenDTO.class));
     }
 
     @Test(expected = AuthenticationException.class)
     public void incorrectCredentialsShouldResolveInError() throws AuthenticationException {
-        when(userDAO.getUser(USERNAME)).thenReturn(new UserDTO(USERNAME, RoleHelper.ROLE_DEFAULT, NAME, APARTMENT));
-        when(userDAO.getSaltForUser(USERNAME)).thenReturn(SALT);
-        String hashedAndSaltedPassword = Util.getHashedAndSaltedPassword("wrong_password", SALT);
-        when(userDAO.authenticateUser(USERNAME, hashedAndSaltedPassword)).thenReturn(true);
-        authResource.signIn(USERNAME, PASSWORD);
+        when(userDAO.getCredentials(USERNAME)).thenReturn(credentials(null));
+        authResource.signIn(USERNAME, "wrong_password");
     }
 
     @Test
     public void ifTokenAlreadyExistsWithMoreThan1DayLeftOnItNoNewTokenShouldBeCreated() throws AuthenticationException {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.DAY_OF_YEAR, 2);
-        when(userTokenDAO.getUserTokenFromUsername(USERNAME)).thenReturn(new UserTokenDTO(USERNAME, TOKEN, calendar.getTime(), UserTokenDTO.Status.VALID));
-
-        when(userDAO.getUser(USERNAME)).thenReturn(new UserDTO(USERNAME, RoleHelper.ROLE_DEFAULT, NAME, APARTMENT));
-        when(userDAO.authenticateUser(Mockito.contains(USERNAME), Mockito.anyString())).thenReturn(true);
+        when(userDAO.getCredentials(USERNAME)).thenReturn(credentials(new UserTokenDTO(USERNAME, TOKEN, calendar.getTime(), UserTokenDTO.Status.VALID)));
         Response signedInUserToken = authResource.signIn(USERNAME, PASSWORD);
         assertEquals(TOKEN, signedInUserToken.getCookies().get("userAccessToken").getValue());
     }
@@ -76,11 +84,38 @@ public class AuthResourceTest {
     public void ifTokenAlreadyExistsWithLessThan1DayLeftOnItANewTokenShouldBeCreated() throws AuthenticationException {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.HOUR_OF_DAY, 23);
-        when(userTokenDAO.getUserTokenFromUsername(USERNAME)).thenReturn(new UserTokenDTO(USERNAME, TOKEN, calendar.getTime(), UserTokenDTO.Status.VALID));
-
-        when(userDAO.getUser(USERNAME)).thenReturn(new UserDTO(USERNAME, RoleHelper.ROLE_DEFAULT, NAME, APARTMENT));
-        when(userDAO.authenticateUser(Mockito.contains(USERNAME), Mockito.anyString())).thenReturn(true);
+        when(userDAO.getCredentials(USERNAME)).thenReturn(credentials(new UserTokenDTO(USERNAME, TOKEN, calendar.getTime(), UserTokenDTO.Status.VALID)));
         Response signedInUserToken = authResource.signIn(USERNAME, PASSWORD);
         assertNotEquals(TOKEN, signedInUserToken.getCookies().get("userAccessToken").getValue());
     }
+
+    @Test
+    public void legacyHashShouldBeUpgradedAtSignIn() throws AuthenticationException {
+        when(userDAO.getCredentials(USERNAME)).thenReturn(credentials(null));
+        authResource.signIn(USERNAME, PASSWORD);
+        verify(userDAO).updatePassword(USERNAME, new PasswordHasher(ITERATIONS).hash(PASSWORD, SALT));
+    }
+
+    @Test
+    public void currentHashShouldNotBeRewritten() throws AuthenticationException {
+        when(userDAO.getCredentials(USERNAME)).thenReturn(new CredentialsDTO(
+                new UserDTO(USERNAME, RoleHelper.ROLE_DEFAULT, NAME, APARTMENT),
+                new PasswordHasher(ITERATIONS).hash(PASSWORD, SALT), SALT, null));
+        authResource.signIn(USERNAME, PASSWORD);
+        verify(userDAO, times(0)).updatePassword(org.mockito.Matchers.anyString(), org.mockito.Matchers.anyString());
+    }
+
+    @Test
+    public void signOutShouldEndTheTokenOfTheCookie() {
+        SessionTokens sessionTokens = mock(SessionTokens.class);
+        authResource = new AuthResource(userTokenDAO, credentialStore, 123, null, mock(AuthenticationCacheInvalidator.class), sessionTokens);
+        Response response = authResource.signOut(new Cookie("userAccessToken", TOKEN));
+        assertEquals(200, response.getStatus());
+        verify(sessionTokens).signedOut(TOKEN);
+    }
+
+    private CredentialsDTO credentials(UserTokenDTO userTokenDTO) {
+        return new CredentialsDTO(new UserDTO(USERNAME, RoleHelper.ROLE_DEFAULT, NAME, APARTMENT),
+                Util.getHashedAndSaltedPassword(PASSWORD, SALT), SALT, userTokenDTO);
+    }
 }
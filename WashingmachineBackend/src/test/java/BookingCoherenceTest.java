@@ -0,0 +1,122 @@
+import api.BookingDTO;
+import api.MachineDTO;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilderSpec;
+import core.BookingCoherence;
+import core.BookingInterval;
+import core.BookingIntervalIndex;
+import core.BookingMonthCache;
+import core.BookingMonthVersions;
+import core.MachineTimelines;
+import db.BookingDAO;
+import db.CoherenceChannel;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.YearMonth;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BookingCoherenceTest {
+    private CoherenceChannel coherenceChannel;
+    private BookingDAO bookingDAO;
+    private BookingIntervalIndex bookingIntervalIndex;
+    private BookingMonthVersions bookingMonthVersions;
+    private BookingCoherence bookingCoherence;
+    private Consumer<String> remoteBookingHandler;
+    private Runnable resyncHandler;
+    private BookingDTO bookingDTO;
+    private YearMonth month;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        coherenceChannel = mock(CoherenceChannel.class);
+        bookingDAO = mock(BookingDAO.class);
+        MachineTimelines machineTimelines = CommonTestUtil.machineTimelines(1);
+        bookingIntervalIndex = machineTimelines.get(MachineDTO.FIRST_MACHINE_ID);
+        bookingMonthVersions = new BookingMonthVersions();
+        BookingMonthCache bookingMonthCache = new BookingMonthCache(bookingDAO, bookingMonthVersions,
+                CacheBuilderSpec.parse("maximumSize=24"), new MetricRegistry());
+        bookingCoherence = new BookingCoherence(coherenceChannel, bookingDAO, machineTimelines, bookingMonthVersions,
+                bookingMonthCache);
+
+        ArgumentCaptor<Consumer> handlerCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(coherenceChannel).subscribe(eq(CoherenceChannel.BOOKING), handlerCaptor.capture());
+        remoteBookingHandler = handlerCaptor.getValue();
+        ArgumentCaptor<Runnable> resyncCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(coherenceChannel).onResync(resyncCaptor.capture());
+        resyncHandler = resyncCaptor.getValue();
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2030, Calendar.MARCH, 10, 10, 0, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        Date startTime = calendar.getTime();
+        calendar.set(Calendar.HOUR_OF_DAY, 11);
+        bookingDTO = new BookingDTO(1, startTime, calendar.getTime(), "user", "apartment", "name", 1, 1);
+        month = BookingMonthVersions.monthOf(startTime);
+    }
+
+    @Test
+    public void localWritesShouldBePublishedByMonth() {
+        bookingCoherence.bookingCreated(bookingDTO);
+
+        verify(coherenceChannel).publish(CoherenceChannel.BOOKING, month.toString());
+    }
+
+    @Test
+    public void bookingMovedToAnotherMonthShouldPublishBothMonths() {
+        long previousStart = bookingDTO.getStartTime().getTime() - 31L * 24 * 60 * 60 * 1000;
+        bookingCoherence.bookingEdited(new BookingInterval(1, previousStart, previousStart + 60 * 60 * 1000), bookingDTO);
+
+        verify(coherenceChannel).publish(CoherenceChannel.BOOKING, month.minusMonths(1).toString());
+        verify(coherenceChannel).publish(CoherenceChannel.BOOKING, month.toString());
+    }
+
+    @Test
+    public void bookingMadeElsewhereShouldBlockItsIntervalHere() {
+        long startTime = bookingDTO.getStartTime().getTime();
+        long endTime = bookingDTO.getEndTime().getTime();
+        when(bookingDAO.getBookingIntervalsStartingInInterval(any(Date.class), any(Date.class)))
+                .thenReturn(Collections.singletonList(new BookingInterval(1, startTime, endTime)));
+
+        remoteBookingHandler.accept(month.toString());
+
+        assertTrue(bookingIntervalIndex.overlaps(startTime, endTime, BookingIntervalIndex.NO_BOOKING));
+        assertEquals(1, bookingMonthVersions.get(month));
+    }
+
+    @Test
+    public void bookingDeletedElsewhereShouldFreeItsIntervalHere() {
+        long startTime = bookingDTO.getStartTime().getTime();
+        long endTime = bookingDTO.getEndTime().getTime();
+        bookingIntervalIndex.put(1, startTime, endTime);
+        when(bookingDAO.getBookingIntervalsStartingInInterval(any(Date.class), any(Date.class)))
+                .thenReturn(Collections.emptyList());
+
+        remoteBookingHandler.accept(month.toString());
+
+        assertFalse(bookingIntervalIndex.overlaps(startTime, endTime, BookingIntervalIndex.NO_BOOKING));
+    }
+
+    @Test
+    public void resyncShouldReloadEverythingAndOutdateEntityTags() {
+        long epoch = bookingMonthVersions.getEpoch();
+        bookingIntervalIndex.put(1, bookingDTO.getStartTime().getTime(), bookingDTO.getEndTime().getTime());
+        when(bookingDAO.getAllBookingIntervals()).thenReturn(Collections.singletonList(new BookingInterval(2, 0, 60 * 1000)));
+
+        resyncHandler.run();
+
+        assertEquals(1, bookingIntervalIndex.size());
+        assertTrue(bookingIntervalIndex.overlaps(0, 60 * 1000, BookingIntervalIndex.NO_BOOKING));
+        assertNotEquals(epoch, bookingMonthVersions.getEpoch());
+    }
+}
@@ -0,0 +1,153 @@
+import api.MachineDTO;
+import api.UserDTO;
+import com.codahale.metrics.MetricRegistry;
+import core.BookingDayLocks;
+import core.BookingInterval;
+import core.BookingMonthCache;
+import core.BookingServiceImpl;
+import core.MachineTimelines;
+import core.RoleHelper;
+import db.BookingDAO;
+import db.JsonStreamer;
+import db.UnitOfWork;
+import db.UserDAO;
+import exceptions.ValidationErrorException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import resources.BookingResource;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Hammers BookingResource.createBooking from many threads against the local test database, each attempt in a unit of
+ * work committed like a request. No two stored bookings may overlap, and once everything is committed the machine
+ * timeline must hold exactly the stored bookings.
+ */
+public class BookingConcurrencyStressTest {
+    private static final int NUMBER_OF_THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 250;
+    private static final int NUMBER_OF_DAYS = 4;
+
+    private BookingDAO bookingDAO;
+    private UserDAO userDAO;
+    private UnitOfWork unitOfWork;
+    private MachineTimelines machineTimelines;
+    private BookingResource bookingResource;
+    private long firstDay;
+
+    @Before
+    public void setup() {
+        DBI dbi = new DBI("jdbc:postgresql://localhost:5432/test", "postgres", "root");
+        CommonTestUtil.migrate(dbi);
+        userDAO = dbi.onDemand(UserDAO.class);
+        for (int thread = 0; thread < NUMBER_OF_THREADS; thread++) {
+            userDAO.insertUser("user" + thread, "password_that_should_have_been_hashed_and_salted", "bogus", "name",
+                    "apartment", RoleHelper.ROLE_DEFAULT);
+        }
+
+        unitOfWork = new UnitOfWork(dbi, new MetricRegistry());
+        bookingDAO = unitOfWork.attach(BookingDAO.class);
+        machineTimelines = CommonTestUtil.machineTimelines(1);
+        bookingResource = new BookingResource(bookingDAO, new BookingServiceImpl(machineTimelines, unitOfWork::afterCommit),
+                new BookingDayLocks(unitOfWork::afterCompletion), mock(BookingMonthCache.class), mock(JsonStreamer.class));
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        firstDay = calendar.getTimeInMillis();
+    }
+
+    @After
+    public void tearDown() {
+        bookingDAO.truncateTable();
+        userDAO.truncateUsersTable();
+    }
+
+    @Test
+    public void concurrentBookingsOnSameDaysShouldNeverOverlap() throws Exception {
+        int created = runAttempts(false);
+        assertStoredAndIndexed(created);
+    }
+
+    @Test
+    public void concurrentBookingsOnDifferentDaysShouldNeverOverlap() throws Exception {
+        int created = runAttempts(true);
+        assertStoredAndIndexed(created);
+    }
+
+    /**
+     * @return the number of bookings created
+     */
+    private int runAttempts(boolean dayPerThread) throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < NUMBER_OF_THREADS; thread++) {
+            final int threadNumber = thread;
+            futures.add(executorService.submit(() -> {
+                Random random = new Random(threadNumber);
+                UserDTO userDTO = new UserDTO("user" + threadNumber, RoleHelper.ROLE_DEFAULT, "name", "apartment");
+                for (int attempt = 0; attempt < ATTEMPTS_PER_THREAD; attempt++) {
+                    int day = dayPerThread ? threadNumber : random.nextInt(NUMBER_OF_DAYS);
+                    // Start between 08:00 and 20:00 on a 5 minute grid, 30 to 120 minutes long
+                    long startTime = firstDay + TimeUnit.DAYS.toMillis(day)
+                            + TimeUnit.MINUTES.toMillis(8 * 60 + 5 * random.nextInt(12 * 12));
+                    long endTime = startTime + TimeUnit.MINUTES.toMillis(30 + 5 * random.nextInt(19));
+                    // Like UnitOfWorkApplicationListener around a request
+                    UnitOfWork.Work work = unitOfWork.begin();
+                    try {
+                        bookingResource.createBooking(userDTO, MachineDTO.FIRST_MACHINE_ID, startTime, endTime, 1, 1);
+                        unitOfWork.commit(work);
+                        created.incrementAndGet();
+                    } catch (ValidationErrorException e) {
+                        // Expected for every attempt clashing with an earlier booking, by validation or constraint
+                        unitOfWork.rollback(work);
+                    } finally {
+                        unitOfWork.finish(work);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+        return created.get();
+    }
+
+    private void assertStoredAndIndexed(int created) {
+        List<BookingInterval> bookings = new ArrayList<>(bookingDAO.getAllBookingIntervals());
+        assertTrue("Some bookings should have succeeded", created > 0);
+        assertEquals("Every booking created should have been committed", created, bookings.size());
+        assertEquals("The timeline should hold exactly the committed bookings", bookings.size(), machineTimelines.size());
+
+        bookings.sort(Comparator.comparingLong(BookingInterval::getStartTime));
+        int doubleBookings = 0;
+        long latestEnd = Long.MIN_VALUE;
+        for (BookingInterval booking : bookings) {
+            if (booking.getStartTime() < latestEnd) {
+                doubleBookings++;
+            }
+            latestEnd = Math.max(latestEnd, booking.getEndTime());
+        }
+        assertEquals(0, doubleBookings);
+    }
+}
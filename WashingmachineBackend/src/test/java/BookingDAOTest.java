@@ -1,26 +1,37 @@
+import api.BillingDTO;
 import api.BookingDTO;
+import api.MachineDTO;
+import api.MachineKind;
 import api.UsageAdminExportDTO;
 import api.UsageDTO;
 import api.UserDTO;
 import core.RoleHelper;
+import core.UsageInterval;
 import db.BookingDAO;
+import db.MachineDAO;
 import db.UserDAO;
 import org.hamcrest.Matchers;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
 
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class BookingDAOTest {
     private BookingDAO bookingDAO;
     private UserDAO userDAO;
+    private MachineDAO machineDAO;
     private final String USERNAME_1 = "user";
     private final String USERNAME_2 = "user2";
     private final String NAME_1 = "name1";
@@ -33,9 +44,8 @@ public class BookingDAOTest {
         DBI dbi = new DBI("jdbc:postgresql://localhost:5432/test", "postgres", "root");
         bookingDAO = dbi.onDemand(BookingDAO.class);
         userDAO = dbi.onDemand(UserDAO.class);
-        userDAO.createRoleTable();
-        userDAO.createUsersTable();
-        bookingDAO.createBookingTable();
+        machineDAO = dbi.onDemand(MachineDAO.class);
+        CommonTestUtil.migrate(dbi);
         userDAO.insertUser(USERNAME_1, "password_that_should_have_been_hashed_and_salted", "bogus", NAME_1, APARTMENT_1, RoleHelper.ROLE_DEFAULT);
         userDAO.insertUser(USERNAME_2, "password_that_should_have_been_hashed_and_salted", "bogus", NAME_2, APARTMENT_2, RoleHelper.ROLE_DEFAULT);
     }
@@ -43,6 +53,7 @@ public class BookingDAOTest {
     @After
     public void tearDown() throws InterruptedException {
         bookingDAO.truncateTable();
+        machineDAO.deleteAddedMachines();
         userDAO.truncateUsersTable();
     }
 
@@ -50,9 +61,10 @@ public class BookingDAOTest {
     public void shouldBeAbleToFindBookingAfterItsInsertion() {
         Date startTime = new Date();
         Date endTime = new Date();
-        BookingDTO bookingDTO = new BookingDTO(startTime, endTime, USERNAME_1, 1, 2);
-        bookingDAO.insertBooking(bookingDTO);
-        bookingDTO = bookingDAO.getBookingFromOwnerAndDates(USERNAME_1, startTime, endTime);
+        bookingDAO.insertBookingAndGet(new BookingDTO(startTime, endTime, USERNAME_1, 1, 2));
+        List<BookingDTO> bookings = bookingDAO.getBookingsInInterval(startTime, endTime, USERNAME_1);
+        assertEquals(1, bookings.size());
+        BookingDTO bookingDTO = bookings.get(0);
         assertEquals(USERNAME_1, bookingDTO.getOwner());
         assertEquals(APARTMENT_1, bookingDTO.getApartment());
         assertEquals(NAME_1, bookingDTO.getRealName());
@@ -81,9 +93,9 @@ public class BookingDAOTest {
         calendar.set(Calendar.HOUR_OF_DAY, 16);
         endDate3 = calendar.getTime();
 
-        bookingDAO.insertBooking(new BookingDTO(startDate1, endDate1, USERNAME_1, 0, 1));
-        bookingDAO.insertBooking(new BookingDTO(startDate2, endDate2, USERNAME_2, 0, 1));
-        bookingDAO.insertBooking(new BookingDTO(startDate3, endDate3, USERNAME_1, 123, 321));
+        bookingDAO.insertBookingAndGet(new BookingDTO(startDate1, endDate1, USERNAME_1, 0, 1));
+        bookingDAO.insertBookingAndGet(new BookingDTO(startDate2, endDate2, USERNAME_2, 0, 1));
+        bookingDAO.insertBookingAndGet(new BookingDTO(startDate3, endDate3, USERNAME_1, 123, 321));
 
         calendar.set(Calendar.HOUR_OF_DAY, 9);
         searchDateStart = calendar.getTime();
@@ -103,15 +115,16 @@ public class BookingDAOTest {
     public void shouldBeAbleToUpdateBooking() {
         Date startTime = new Date();
         Date endTime = new Date();
-        bookingDAO.insertBooking(new BookingDTO(startTime, endTime, USERNAME_1, 1, 0));
-        BookingDTO bookingDTO = bookingDAO.getBookingFromOwnerAndDates(USERNAME_1, startTime, endTime);
+        BookingDTO bookingDTO = bookingDAO.insertBookingAndGet(new BookingDTO(startTime, endTime, USERNAME_1, 1, 0));
 
         Date newStartDate = new Date(0);
         Date newEndDate = new Date();
         int bookingID = bookingDTO.getId();
-        bookingDAO.updateBooking(USERNAME_1, bookingID, newStartDate, newEndDate, 321, 123);
+        bookingDAO.updateBookingAndGet(USERNAME_1, bookingID, MachineDTO.FIRST_MACHINE_ID, bookingDTO.getStartTime(), newStartDate, newEndDate, 321, 123);
         // Implicitly tests that that dates are updated
-        bookingDTO = bookingDAO.getBookingFromOwnerAndDates(USERNAME_1, newStartDate, newEndDate);
+        List<BookingDTO> bookings = bookingDAO.getBookingsInInterval(newStartDate, newEndDate, USERNAME_1);
+        assertEquals(1, bookings.size());
+        bookingDTO = bookings.get(0);
 
         assertEquals("Should not create new row", bookingID, bookingDTO.getId());
         assertEquals(USERNAME_1, bookingDTO.getOwner());
@@ -123,76 +136,100 @@ public class BookingDAOTest {
     public void shouldOnlyBeAbleToUpdateAndDeleteOwnBookings() {
         Date startTime = new Date();
         Date endTime = new Date();
-        BookingDTO bookingDTO = new BookingDTO(startTime, endTime, USERNAME_2, 1, 1);
-        bookingDAO.insertBooking(bookingDTO);
-        BookingDTO insertedBooking = bookingDAO.getBookingFromOwnerAndDates(USERNAME_2, startTime, endTime);
-        int numberOfAffectedRows = bookingDAO.updateBooking(USERNAME_1, insertedBooking.getId(), new Date(), new Date(), 1, 2);
-        assertEquals(0, numberOfAffectedRows);
-
-        numberOfAffectedRows = bookingDAO.deleteBooking(USERNAME_1, insertedBooking.getId());
-        assertEquals(0, numberOfAffectedRows);
+        BookingDTO insertedBooking = bookingDAO.insertBookingAndGet(new BookingDTO(startTime, endTime, USERNAME_2, 1, 1));
+        assertEquals(null, bookingDAO.updateBookingAndGet(USERNAME_1, insertedBooking.getId(), MachineDTO.FIRST_MACHINE_ID, startTime, new Date(), new Date(), 1, 2));
+        assertEquals(null, bookingDAO.deleteBookingAndGet(USERNAME_1, insertedBooking.getId(), startTime));
     }
 
     @Test
     public void shouldBeAbleToDeleteOwnBookings() {
         Date startTime = new Date();
         Date endTime = new Date();
-        BookingDTO bookingDTO = new BookingDTO(startTime, endTime, USERNAME_1, 1, 1);
-        bookingDAO.insertBooking(bookingDTO);
-        BookingDTO insertedBooking = bookingDAO.getBookingFromOwnerAndDates(USERNAME_1, startTime, endTime);
-        int numberOfAffectedRows = bookingDAO.deleteBooking(USERNAME_1, insertedBooking.getId());
-        assertEquals(1, numberOfAffectedRows);
+        BookingDTO insertedBooking = bookingDAO.insertBookingAndGet(new BookingDTO(startTime, endTime, USERNAME_1, 1, 1));
+        assertEquals(insertedBooking.getId(), bookingDAO.deleteBookingAndGet(USERNAME_1, insertedBooking.getId(), startTime).getId());
+        assertEquals(0, bookingDAO.getBookingsInInterval(startTime, endTime, USERNAME_1).size());
     }
 
     @Test
-    public void getBookingsOverlappingIntervalShouldWork() {
-        // Create two bookings with different start end points
-        Date startDate1, endDate1, startDate2, endDate2, startDate3, endDate3, searchDateStart, searchDateEnd;
-        Calendar calendar = Calendar.getInstance();
-        calendar.set(Calendar.HOUR_OF_DAY, 10);
-        calendar.set(Calendar.MINUTE, 0);
-        startDate1 = calendar.getTime();
-        calendar.set(Calendar.HOUR_OF_DAY, 11);
-        endDate1 = calendar.getTime();
-        calendar.set(Calendar.HOUR_OF_DAY, 12);
-        startDate2 = calendar.getTime();
-        calendar.set(Calendar.HOUR_OF_DAY, 13);
-        endDate2 = calendar.getTime();
-        calendar.set(Calendar.HOUR_OF_DAY, 15);
-        startDate3 = calendar.getTime();
-        calendar.set(Calendar.HOUR_OF_DAY, 18);
-        endDate3 = calendar.getTime();
-        calendar.set(Calendar.HOUR_OF_DAY, 10);
-        calendar.set(Calendar.MINUTE, 10);
-        searchDateStart = calendar.getTime();
-        calendar.set(Calendar.HOUR_OF_DAY, 12);
-        searchDateEnd = calendar.getTime();
+    public void machinesShouldBeReadWithTheirKind() {
+        int dryerId = machineDAO.insertMachine("Dryer", MachineKind.DRYER);
+        List<MachineDTO> machines = machineDAO.getMachines();
+        assertEquals(2, machines.size());
+        // The machine every booking was on before there were several both washes and tumble dries
+        assertEquals(MachineDTO.FIRST_MACHINE_ID, machines.get(0).getId());
+        assertEquals(MachineKind.WASHER_DRYER, machines.get(0).getKind());
+        assertEquals(dryerId, machines.get(1).getId());
+        assertEquals(MachineKind.DRYER, machines.get(1).getKind());
+    }
 
-        bookingDAO.insertBooking(new BookingDTO(startDate1, endDate1, USERNAME_1, 1, 2));
-        bookingDAO.insertBooking(new BookingDTO(startDate2, endDate2, USERNAME_2, 2, 2));
-        bookingDAO.insertBooking(new BookingDTO(startDate3, endDate3, USERNAME_1, 3, 2));
+    @Test
+    public void overlappingBookingsShouldOnlyBeRejectedOnTheSameMachine() {
+        int secondMachineId = machineDAO.insertMachine("Second machine", MachineKind.WASHER);
+        Date startTime = dateOf(2030, Calendar.MAY, 1, 10);
+        Date endTime = dateOf(2030, Calendar.MAY, 1, 12);
+        bookingDAO.insertBookingAndGet(new BookingDTO(MachineDTO.FIRST_MACHINE_ID, startTime, endTime, USERNAME_1, 1, 0));
+        assertEquals(secondMachineId, bookingDAO.insertBookingAndGet(
+                new BookingDTO(secondMachineId, startTime, endTime, USERNAME_2, 1, 0)).getMachineId());
+
+        try {
+            bookingDAO.insertBookingAndGet(new BookingDTO(secondMachineId, dateOf(2030, Calendar.MAY, 1, 11), endTime, USERNAME_1, 1, 0));
+            fail("The bookings of the second machine overlap");
+        } catch (UnableToExecuteStatementException e) {
+            // Expected, the exclusion constraint holds per machine
+        }
+    }
 
-        // Could probably look at values of the returned values here, but meh
-        List<BookingDTO> bookings = bookingDAO.getBookingsOverlappingInterval(searchDateStart, searchDateEnd);
-        assertEquals(2, bookings.size());
+    @Test
+    public void insertBookingAndGetShouldReturnTheJoinedBooking() {
+        Date startTime = new Date();
+        Date endTime = new Date();
+        BookingDTO bookingDTO = bookingDAO.insertBookingAndGet(new BookingDTO(startTime, endTime, USERNAME_1, 1, 2));
+        assertEquals(bookingDAO.getBookingsInInterval(startTime, endTime, USERNAME_1).get(0).getId(), bookingDTO.getId());
+        assertEquals(USERNAME_1, bookingDTO.getOwner());
+        assertEquals(NAME_1, bookingDTO.getRealName());
+        assertEquals(APARTMENT_1, bookingDTO.getApartment());
+        assertEquals(1, bookingDTO.getNumberOfWashingMachineUses());
+        assertEquals(2, bookingDTO.getNumberOfTumbleDryUses());
     }
 
     @Test
-    public void getBookingFromIdShouldWork() {
+    public void updateBookingAndGetShouldOnlyUpdateOwnBookings() {
         Date startTime = new Date();
         Date endTime = new Date();
-        BookingDTO bookingDTO = new BookingDTO(startTime, endTime, USERNAME_1, 1, 2);
-        bookingDAO.insertBooking(bookingDTO);
-        bookingDTO = bookingDAO.getBookingFromOwnerAndDates(USERNAME_1, startTime, endTime);
-
-        BookingDTO bookingDTOToTest = bookingDAO.getBookingFromId(USERNAME_2, bookingDTO.getId());
-        assertEquals(null, bookingDTOToTest);
-        bookingDTOToTest = bookingDAO.getBookingFromId(USERNAME_1, bookingDTO.getId());
-        assertEquals(USERNAME_1, bookingDTOToTest.getOwner());
-        assertEquals(NAME_1, bookingDTOToTest.getRealName());
-        assertEquals(APARTMENT_1, bookingDTOToTest.getApartment());
-        assertEquals(1, bookingDTOToTest.getNumberOfWashingMachineUses());
-        assertEquals(2, bookingDTOToTest.getNumberOfTumbleDryUses());
+        BookingDTO bookingDTO = bookingDAO.insertBookingAndGet(new BookingDTO(startTime, endTime, USERNAME_1, 1, 2));
+
+        assertEquals(null, bookingDAO.updateBookingAndGet(USERNAME_2, bookingDTO.getId(), MachineDTO.FIRST_MACHINE_ID, startTime, startTime, endTime, 3, 4));
+        BookingDTO updatedBookingDTO = bookingDAO.updateBookingAndGet(USERNAME_1, bookingDTO.getId(), MachineDTO.FIRST_MACHINE_ID, startTime, startTime, endTime, 3, 4);
+        assertEquals(bookingDTO.getId(), updatedBookingDTO.getId());
+        assertEquals(NAME_1, updatedBookingDTO.getRealName());
+        assertEquals(3, updatedBookingDTO.getNumberOfWashingMachineUses());
+        assertEquals(4, updatedBookingDTO.getNumberOfTumbleDryUses());
+    }
+
+    @Test
+    public void editAndDeleteShouldOnlyFindTheBookingAtItsCurrentStartTime() {
+        Date startTime = dateOf(2030, Calendar.MAY, 1, 10);
+        Date endTime = dateOf(2030, Calendar.MAY, 1, 12);
+        Date otherStartTime = dateOf(2030, Calendar.JUNE, 1, 10);
+        BookingDTO bookingDTO = bookingDAO.insertBookingAndGet(new BookingDTO(startTime, endTime, USERNAME_1, 1, 2));
+
+        assertEquals(null, bookingDAO.updateBookingAndGet(USERNAME_1, bookingDTO.getId(), MachineDTO.FIRST_MACHINE_ID, otherStartTime, startTime, endTime, 3, 4));
+        assertEquals(null, bookingDAO.deleteBookingAndGet(USERNAME_1, bookingDTO.getId(), otherStartTime));
+        // Moved to another month, and so another partition, it is found at its new start time
+        BookingDTO moved = bookingDAO.updateBookingAndGet(USERNAME_1, bookingDTO.getId(), MachineDTO.FIRST_MACHINE_ID, startTime, otherStartTime, dateOf(2030, Calendar.JUNE, 1, 12), 3, 4);
+        assertEquals(otherStartTime, moved.getStartTime());
+        assertEquals(bookingDTO.getId(), bookingDAO.deleteBookingAndGet(USERNAME_1, bookingDTO.getId(), otherStartTime).getId());
+    }
+
+    @Test
+    public void deleteBookingAndGetShouldOnlyDeleteOwnBookings() {
+        Date startTime = new Date();
+        Date endTime = new Date();
+        BookingDTO bookingDTO = bookingDAO.insertBookingAndGet(new BookingDTO(startTime, endTime, USERNAME_1, 1, 2));
+
+        assertEquals(null, bookingDAO.deleteBookingAndGet(USERNAME_2, bookingDTO.getId(), startTime));
+        assertEquals(bookingDTO.getId(), bookingDAO.deleteBookingAndGet(USERNAME_1, bookingDTO.getId(), startTime).getId());
+        assertEquals(0, bookingDAO.getBookingsInInterval(startTime, endTime, USERNAME_1).size());
     }
 
     @Test
@@ -201,8 +238,8 @@ public class BookingDAOTest {
         BookingDTO ownBooking = new BookingDTO(calendar.getTime(), calendar.getTime(), USERNAME_1, 123, 321);
         BookingDTO someoneElsesBooking = new BookingDTO(calendar.getTime(), calendar.getTime(), USERNAME_2, 1337, 7331);
 
-        bookingDAO.insertBooking(ownBooking);
-        bookingDAO.insertBooking(someoneElsesBooking);
+        bookingDAO.insertBookingAndGet(ownBooking);
+        bookingDAO.insertBookingAndGet(someoneElsesBooking);
 
         calendar.add(Calendar.HOUR_OF_DAY, -1);
         Date startTimeForSearch = calendar.getTime();
@@ -283,6 +320,111 @@ public class BookingDAOTest {
         }
     }
 
+    @Test
+    public void usageFromRollupShouldMatchAggregatingBookings() {
+        // Bookings across four months, one ending in the next month and two that are later moved or deleted
+        bookingDAO.insertBookingAndGet(new BookingDTO(dateOf(2030, Calendar.JANUARY, 15, 10), dateOf(2030, Calendar.JANUARY, 15, 11), USERNAME_1, 1, 2));
+        bookingDAO.insertBookingAndGet(new BookingDTO(dateOf(2030, Calendar.JANUARY, 31, 21), dateOf(2030, Calendar.FEBRUARY, 1, 9), USERNAME_2, 3, 0));
+        bookingDAO.insertBookingAndGet(new BookingDTO(dateOf(2030, Calendar.FEBRUARY, 10, 8), dateOf(2030, Calendar.FEBRUARY, 10, 9), USERNAME_1, 0, 0));
+        BookingDTO moved = bookingDAO.insertBookingAndGet(new BookingDTO(dateOf(2030, Calendar.FEBRUARY, 20, 8), dateOf(2030, Calendar.FEBRUARY, 20, 9), USERNAME_1, 4, 4));
+        BookingDTO deleted = bookingDAO.insertBookingAndGet(new BookingDTO(dateOf(2030, Calendar.MARCH, 5, 12), dateOf(2030, Calendar.MARCH, 5, 14), USERNAME_2, 2, 1));
+        bookingDAO.insertBookingAndGet(new BookingDTO(dateOf(2030, Calendar.APRIL, 1, 8), dateOf(2030, Calendar.APRIL, 1, 9), USERNAME_1, 7, 0));
+        assertNotNull(bookingDAO.updateBookingAndGet(USERNAME_1, moved.getId(), MachineDTO.FIRST_MACHINE_ID, moved.getStartTime(), dateOf(2030, Calendar.MARCH, 20, 8), dateOf(2030, Calendar.MARCH, 20, 10), 5, 6));
+        assertNotNull(bookingDAO.deleteBookingAndGet(USERNAME_2, deleted.getId(), deleted.getStartTime()));
+
+        assertRollupMatchesBookings();
+
+        // Backfilling must arrive at the same rollup
+        bookingDAO.deleteUsageMonthly();
+        bookingDAO.backfillUsageMonthly();
+        assertRollupMatchesBookings();
+    }
+
+    @Test
+    public void usageFromRollupShouldLeaveOutEveryMachinesBookingEndingAfterTheInterval() {
+        int secondMachineId = machineDAO.insertMachine("Second machine", MachineKind.WASHER_DRYER);
+        // Both cross into February, on machines of their own
+        bookingDAO.insertBookingAndGet(new BookingDTO(MachineDTO.FIRST_MACHINE_ID, dateOf(2030, Calendar.JANUARY, 31, 21),
+                dateOf(2030, Calendar.FEBRUARY, 1, 9), USERNAME_1, 1, 2));
+        bookingDAO.insertBookingAndGet(new BookingDTO(secondMachineId, dateOf(2030, Calendar.JANUARY, 31, 22),
+                dateOf(2030, Calendar.FEBRUARY, 1, 8), USERNAME_1, 3, 4));
+        bookingDAO.insertBookingAndGet(new BookingDTO(secondMachineId, dateOf(2030, Calendar.JANUARY, 10, 8),
+                dateOf(2030, Calendar.JANUARY, 10, 9), USERNAME_1, 5, 6));
+
+        UsageInterval usageInterval = UsageInterval.of(dateOf(2030, Calendar.JANUARY, 1, 0), dateOf(2030, Calendar.FEBRUARY, 1, 0));
+        List<UsageDTO> usage = bookingDAO.getUsageInIntervalFromRollup(USERNAME_1, usageInterval);
+        assertEquals(1, usage.size());
+        assertEquals(5, usage.get(0).getSumOfWashingMachineUses());
+        assertEquals(6, usage.get(0).getSumOfTumbleDryUses());
+        assertEquals(usageToStrings(bookingDAO.getUsageInInterval(USERNAME_1, dateOf(2030, Calendar.JANUARY, 1, 0),
+                dateOf(2030, Calendar.FEBRUARY, 1, 0))), usageToStrings(usage));
+    }
+
+    @Test
+    public void billingShouldTotalUsagePerApartment() {
+        IntervalTestSetupClass intervalTestSetupClass = new IntervalTestSetupClass().invoke();
+        UsageInterval usageInterval = UsageInterval.of(intervalTestSetupClass.getStartSearchDate(),
+                intervalTestSetupClass.getEndSearchDate());
+
+        List<BillingDTO> billing = bookingDAO.getBillingInInterval(usageInterval);
+        assertEquals(2, billing.size());
+        assertEquals(APARTMENT_1, billing.get(0).getApartment());
+        assertEquals(1337 + 18, billing.get(0).getSumOfWashingMachineUses());
+        assertEquals(7331 + 25, billing.get(0).getSumOfTumbleDryUses());
+        assertEquals(APARTMENT_2, billing.get(1).getApartment());
+        assertEquals(123, billing.get(1).getSumOfWashingMachineUses());
+        assertEquals(321, billing.get(1).getSumOfTumbleDryUses());
+    }
+
+    private void assertRollupMatchesBookings() {
+        Date[][] intervals = {
+                // Whole months only
+                {dateOf(2030, Calendar.JANUARY, 1, 0), dateOf(2030, Calendar.MAY, 1, 0)},
+                // Partial months at both ends
+                {dateOf(2029, Calendar.DECEMBER, 20, 0), dateOf(2030, Calendar.MARCH, 25, 0)},
+                // Ends inside the booking that crosses into February
+                {dateOf(2030, Calendar.JANUARY, 1, 0), dateOf(2030, Calendar.FEBRUARY, 1, 0)},
+                {dateOf(2029, Calendar.DECEMBER, 1, 0), dateOf(2030, Calendar.FEBRUARY, 1, 8)},
+                // Within a single month
+                {dateOf(2030, Calendar.MARCH, 10, 0), dateOf(2030, Calendar.MARCH, 25, 0)},
+                {dateOf(2030, Calendar.FEBRUARY, 1, 0), dateOf(2030, Calendar.FEBRUARY, 15, 0)},
+        };
+        for (Date[] interval : intervals) {
+            UsageInterval usageInterval = UsageInterval.of(interval[0], interval[1]);
+            for (String username : new String[]{USERNAME_1, USERNAME_2}) {
+                assertEquals(usageToStrings(bookingDAO.getUsageInInterval(username, interval[0], interval[1])),
+                        usageToStrings(bookingDAO.getUsageInIntervalFromRollup(username, usageInterval)));
+            }
+            assertEquals(adminUsageToStrings(bookingDAO.getUsageInIntervalAdmin(interval[0], interval[1])),
+                    adminUsageToStrings(bookingDAO.getUsageInIntervalAdminFromRollup(usageInterval)));
+        }
+    }
+
+    private static Date dateOf(int year, int month, int day, int hour) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, hour, 0);
+        return calendar.getTime();
+    }
+
+    private static Set<String> usageToStrings(List<UsageDTO> usage) {
+        Set<String> strings = new TreeSet<>();
+        for (UsageDTO usageDTO : usage) {
+            strings.add(usageDTO.getYear() + "-" + usageDTO.getMonth() + ": " +
+                    usageDTO.getSumOfWashingMachineUses() + "/" + usageDTO.getSumOfTumbleDryUses());
+        }
+        return strings;
+    }
+
+    private static Set<String> adminUsageToStrings(List<UsageAdminExportDTO> usage) {
+        Set<String> strings = new TreeSet<>();
+        for (UsageAdminExportDTO usageDTO : usage) {
+            strings.add(usageDTO.getRealName() + " " + usageDTO.getApartment() + " " + usageDTO.getYear() + "-" + usageDTO.getMonth() + ": " +
+                    usageDTO.getSumOfWashingMachineUses() + "/" + usageDTO.getSumOfTumbleDryUses());
+        }
+        return strings;
+    }
+
     private class IntervalTestSetupClass {
         private Calendar calendar;
         private Date startSearchDate;
@@ -323,11 +465,11 @@ public class BookingDAOTest {
             BookingDTO fifthBooking = new BookingDTO(calendar.getTime(), calendar.getTime(), USERNAME_1, 30, 30);
 
             // Insert bookings
-            bookingDAO.insertBooking(firstBooking);
-            bookingDAO.insertBooking(secondBooking);
-            bookingDAO.insertBooking(thirdBooking);
-            bookingDAO.insertBooking(fourthBooking);
-            bookingDAO.insertBooking(fifthBooking);
+            bookingDAO.insertBookingAndGet(firstBooking);
+            bookingDAO.insertBookingAndGet(secondBooking);
+            bookingDAO.insertBookingAndGet(thirdBooking);
+            bookingDAO.insertBookingAndGet(fourthBooking);
+            bookingDAO.insertBookingAndGet(fifthBooking);
 
             // Setup search dates
             calendar.set(Calendar.HOUR_OF_DAY, 10);
@@ -0,0 +1,242 @@
+import api.BookingDTO;
+import com.codahale.metrics.MetricRegistry;
+import core.BookingEvent;
+import core.BookingEventBroadcaster;
+import core.BookingEventSink;
+import core.BookingInterval;
+import core.BookingMonthVersions;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BookingEventBroadcasterTest {
+    private static final String USERNAME_1 = "user1";
+    private static final String USERNAME_2 = "user2";
+
+    private BookingEventBroadcaster bookingEventBroadcaster;
+    private MetricRegistry metricRegistry;
+    private BookingDTO bookingDTO;
+    private YearMonth month;
+
+    @Before
+    public void setup() {
+        metricRegistry = new MetricRegistry();
+        bookingEventBroadcaster = new BookingEventBroadcaster(Runnable::run, 2, metricRegistry);
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2030, Calendar.MARCH, 10, 10, 0, 0);
+        Date startTime = calendar.getTime();
+        calendar.set(Calendar.HOUR_OF_DAY, 11);
+        bookingDTO = new BookingDTO(1, startTime, calendar.getTime(), USERNAME_1, "apartment", "name", 2, 1);
+        month = BookingMonthVersions.monthOf(startTime);
+    }
+
+    @Test
+    public void subscribersShouldOnlyGetEventsOfTheirMonths() {
+        RecordingSink subscribed = new RecordingSink();
+        RecordingSink otherMonth = new RecordingSink();
+        bookingEventBroadcaster.subscribe(Collections.singletonList(month), USERNAME_1, subscribed);
+        bookingEventBroadcaster.subscribe(Collections.singletonList(month.plusMonths(1)), USERNAME_1, otherMonth);
+
+        bookingEventBroadcaster.bookingCreated(bookingDTO);
+        bookingEventBroadcaster.bookingDeleted(bookingDTO);
+
+        assertEquals(2, subscribed.events.size());
+        assertEquals(BookingEvent.Type.CREATED, subscribed.events.get(0).getType());
+        assertEquals(BookingEvent.Type.DELETED, subscribed.events.get(1).getType());
+        assertEquals(0, otherMonth.events.size());
+    }
+
+    @Test
+    public void otherUsersBookingsShouldBeRedacted() {
+        RecordingSink owner = new RecordingSink();
+        RecordingSink other = new RecordingSink();
+        bookingEventBroadcaster.subscribe(Collections.singletonList(month), USERNAME_1, owner);
+        bookingEventBroadcaster.subscribe(Collections.singletonList(month), USERNAME_2, other);
+
+        bookingEventBroadcaster.bookingCreated(bookingDTO);
+
+        assertEquals(2, owner.events.get(0).getBooking().getNumberOfWashingMachineUses());
+        assertEquals(0, other.events.get(0).getBooking().getNumberOfWashingMachineUses());
+        assertEquals(0, other.events.get(0).getBooking().getNumberOfTumbleDryUses());
+        assertEquals(USERNAME_1, other.events.get(0).getBooking().getOwner());
+    }
+
+    @Test
+    public void bookingMovedToAnotherMonthShouldReachBothMonthsOnce() {
+        RecordingSink oldMonth = new RecordingSink();
+        RecordingSink bothMonths = new RecordingSink();
+        bookingEventBroadcaster.subscribe(Collections.singletonList(month.minusMonths(1)), USERNAME_2, oldMonth);
+        bookingEventBroadcaster.subscribe(Arrays.asList(month.minusMonths(1), month), USERNAME_2, bothMonths);
+
+        long previousStart = bookingDTO.getStartTime().getTime() - 31L * 24 * 60 * 60 * 1000;
+        bookingEventBroadcaster.bookingEdited(new BookingInterval(1, previousStart, previousStart + 60 * 60 * 1000), bookingDTO);
+
+        assertEquals(1, oldMonth.events.size());
+        assertEquals(1, bothMonths.events.size());
+        assertEquals(BookingEvent.Type.EDITED, bothMonths.events.get(0).getType());
+    }
+
+    @Test
+    public void subscriberThatFailsShouldBeEvicted() {
+        RecordingSink failing = new RecordingSink();
+        failing.fail = true;
+        BookingEventBroadcaster.Subscriber subscriber = bookingEventBroadcaster.subscribe(Collections.singletonList(month), USERNAME_1, failing);
+
+        bookingEventBroadcaster.bookingCreated(bookingDTO);
+
+        assertTrue(subscriber.isClosed());
+        assertTrue(failing.closed);
+        assertEquals(0, bookingEventBroadcaster.getNumberOfSubscribers());
+    }
+
+    @Test
+    public void subscriberThatFallsBehindShouldBeEvicted() {
+        // Nothing is delivered, so the buffer of two events fills up
+        List<Runnable> pendingDeliveries = new ArrayList<>();
+        metricRegistry = new MetricRegistry();
+        bookingEventBroadcaster = new BookingEventBroadcaster(pendingDeliveries::add, 2, metricRegistry);
+        RecordingSink slow = new RecordingSink();
+        BookingEventBroadcaster.Subscriber subscriber = bookingEventBroadcaster.subscribe(Collections.singletonList(month), USERNAME_1, slow);
+
+        bookingEventBroadcaster.bookingCreated(bookingDTO);
+        bookingEventBroadcaster.bookingEdited(null, bookingDTO);
+        assertFalse(subscriber.isClosed());
+        bookingEventBroadcaster.bookingDeleted(bookingDTO);
+
+        assertTrue(subscriber.isClosed());
+        assertEquals(1, pendingDeliveries.size());
+        assertEquals(1, metricRegistry.meter(MetricRegistry.name(BookingEventBroadcaster.class, "evictions")).getCount());
+    }
+
+    @Test
+    public void stalledWriteShouldBeInterruptedAndEvicted() throws Exception {
+        ExecutorService deliveryExecutor = Executors.newSingleThreadExecutor();
+        try {
+            metricRegistry = new MetricRegistry();
+            bookingEventBroadcaster = new BookingEventBroadcaster(deliveryExecutor, 2, 50, metricRegistry);
+            StalledSink stalled = new StalledSink();
+            BlockingRecordingSink healthy = new BlockingRecordingSink();
+            BookingEventBroadcaster.Subscriber stalledSubscriber = bookingEventBroadcaster.subscribe(
+                    Collections.singletonList(month), USERNAME_1, stalled);
+            bookingEventBroadcaster.bookingCreated(bookingDTO);
+            assertTrue(stalled.writing.await(10, TimeUnit.SECONDS));
+            // Queued behind the stalled write on the only delivery thread
+            bookingEventBroadcaster.subscribe(Collections.singletonList(month), USERNAME_2, healthy);
+            bookingEventBroadcaster.bookingDeleted(bookingDTO);
+
+            Thread.sleep(100);
+            bookingEventBroadcaster.evictStalledSubscribers();
+
+            assertEquals(BookingEvent.Type.DELETED, healthy.events.poll(10, TimeUnit.SECONDS).getType());
+            assertTrue(stalledSubscriber.isClosed());
+            assertTrue(stalled.interrupted);
+            assertTrue(stalled.closed);
+            assertEquals(1, bookingEventBroadcaster.getNumberOfSubscribers());
+            assertEquals(1, metricRegistry.meter(MetricRegistry.name(BookingEventBroadcaster.class, "evictions")).getCount());
+        } finally {
+            deliveryExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void writesWithinTheTimeoutShouldNotBeEvicted() {
+        RecordingSink sink = new RecordingSink();
+        BookingEventBroadcaster.Subscriber subscriber = bookingEventBroadcaster.subscribe(Collections.singletonList(month), USERNAME_1, sink);
+        bookingEventBroadcaster.bookingCreated(bookingDTO);
+
+        bookingEventBroadcaster.evictStalledSubscribers();
+
+        assertFalse(subscriber.isClosed());
+        assertFalse(sink.closed);
+    }
+
+    @Test
+    public void heartbeatsShouldFindSubscribersThatAreGone() {
+        RecordingSink gone = new RecordingSink();
+        RecordingSink alive = new RecordingSink();
+        bookingEventBroadcaster.subscribe(Collections.singletonList(month), USERNAME_1, gone);
+        bookingEventBroadcaster.subscribe(Collections.singletonList(month), USERNAME_2, alive);
+        gone.fail = true;
+
+        bookingEventBroadcaster.sendHeartbeats();
+
+        assertTrue(gone.closed);
+        assertEquals(BookingEvent.Type.HEARTBEAT, alive.events.get(0).getType());
+        assertEquals(1, bookingEventBroadcaster.getNumberOfSubscribers());
+    }
+
+    /**
+     * Like a write to a client that stopped reading: closing the stream does not release it, only an interrupt does
+     */
+    private static class StalledSink implements BookingEventSink {
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private volatile boolean interrupted;
+        private volatile boolean closed;
+
+        @Override
+        public void send(BookingEvent bookingEvent) throws IOException {
+            writing.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                throw new InterruptedIOException();
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static class BlockingRecordingSink implements BookingEventSink {
+        private final BlockingQueue<BookingEvent> events = new LinkedBlockingQueue<>();
+
+        @Override
+        public void send(BookingEvent bookingEvent) {
+            events.add(bookingEvent);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class RecordingSink implements BookingEventSink {
+        private final List<BookingEvent> events = new ArrayList<>();
+        private boolean fail;
+        private boolean closed;
+
+        @Override
+        public void send(BookingEvent bookingEvent) throws IOException {
+            if (fail) {
+                throw new IOException("Connection reset");
+            }
+            events.add(bookingEvent);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import api.BookingDTO;
+import com.codahale.metrics.MetricRegistry;
+import core.BookingEvent;
+import core.BookingEventBroadcaster;
+import core.BookingEventSink;
+import core.BookingMonthVersions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Keeps thousands of idle subscribers, each watching the three months a calendar page shows, and checks that they
+ * cost a bounded amount of memory and no threads, that the memory stays flat while they idle, and that a subscriber
+ * whose writes never return cannot hold up everyone else or keep its delivery thread.
+ */
+public class BookingEventLoadTest {
+    private static final int NUMBER_OF_SUBSCRIBERS = 10000;
+    private static final int NUMBER_OF_DELIVERY_THREADS = 4;
+    private static final int NUMBER_OF_EVENTS = 50;
+    private static final long WRITE_TIMEOUT_MILLIS = 200;
+
+    private ExecutorService deliveryExecutor;
+    private ScheduledExecutorService maintenanceExecutor;
+    private BookingEventBroadcaster bookingEventBroadcaster;
+    private List<YearMonth> months;
+    private BookingDTO bookingDTO;
+
+    @Before
+    public void setup() {
+        deliveryExecutor = Executors.newFixedThreadPool(NUMBER_OF_DELIVERY_THREADS);
+        maintenanceExecutor = Executors.newSingleThreadScheduledExecutor();
+        bookingEventBroadcaster = new BookingEventBroadcaster(deliveryExecutor, BookingEventBroadcaster.DEFAULT_BUFFER_SIZE,
+                WRITE_TIMEOUT_MILLIS, new MetricRegistry());
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2030, Calendar.MARCH, 10, 10, 0, 0);
+        Date startTime = calendar.getTime();
+        calendar.set(Calendar.HOUR_OF_DAY, 11);
+        bookingDTO = new BookingDTO(1, startTime, calendar.getTime(), "user0", "apartment", "name", 1, 1);
+        YearMonth month = BookingMonthVersions.monthOf(startTime);
+        months = Arrays.asList(month.minusMonths(1), month, month.plusMonths(1));
+    }
+
+    @After
+    public void tearDown() {
+        deliveryExecutor.shutdownNow();
+        maintenanceExecutor.shutdownNow();
+    }
+
+    @Test
+    public void idleSubscribersShouldKeepMemoryFlat() throws Exception {
+        int threadsBefore = Thread.activeCount();
+        long heapBefore = usedHeapAfterGc();
+
+        List<CountingSink> sinks = new ArrayList<>();
+        for (int subscriber = 0; subscriber < NUMBER_OF_SUBSCRIBERS; subscriber++) {
+            CountingSink sink = new CountingSink();
+            sinks.add(sink);
+            bookingEventBroadcaster.subscribe(months, "user" + subscriber, sink);
+        }
+        long heapSubscribed = usedHeapAfterGc();
+
+        // A heartbeat is skipped while anything is queued, so each round waits for the previous one
+        for (int round = 1; round <= 20; round++) {
+            bookingEventBroadcaster.sendHeartbeats();
+            awaitDeliveries(sinks, round);
+        }
+        long heapAfterHeartbeats = usedHeapAfterGc();
+
+        long bytesPerSubscriber = (heapSubscribed - heapBefore) / NUMBER_OF_SUBSCRIBERS;
+        assertEquals(NUMBER_OF_SUBSCRIBERS, bookingEventBroadcaster.getNumberOfSubscribers());
+        assertTrue("Idle subscribers should be cheap, was " + bytesPerSubscriber + " bytes each", bytesPerSubscriber < 4096);
+        assertTrue("Heartbeats should not accumulate, grew " + (heapAfterHeartbeats - heapSubscribed) / 1024 + " kB",
+                heapAfterHeartbeats - heapSubscribed < 2 * 1024 * 1024);
+        assertTrue("Subscribers should not hold threads", Thread.activeCount() - threadsBefore <= NUMBER_OF_DELIVERY_THREADS);
+    }
+
+    @Test
+    public void slowSubscriberShouldBeEvictedWithoutDelayingOthers() throws Exception {
+        List<CountingSink> sinks = new ArrayList<>();
+        for (int subscriber = 0; subscriber < NUMBER_OF_SUBSCRIBERS; subscriber++) {
+            CountingSink sink = new CountingSink();
+            sinks.add(sink);
+            bookingEventBroadcaster.subscribe(months, "user" + subscriber, sink);
+        }
+        CountDownLatch released = new CountDownLatch(1);
+        // Like a client that stopped reading, closing the stream does not release the write, only an interrupt does
+        BookingEventBroadcaster.Subscriber slowSubscriber = bookingEventBroadcaster.subscribe(months, "slow", new BookingEventSink() {
+            @Override
+            public void send(BookingEvent bookingEvent) throws IOException {
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    released.countDown();
+                    throw new InterruptedIOException();
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        maintenanceExecutor.scheduleWithFixedDelay(bookingEventBroadcaster::evictStalledSubscribers,
+                WRITE_TIMEOUT_MILLIS / 4, WRITE_TIMEOUT_MILLIS / 4, TimeUnit.MILLISECONDS);
+
+        for (int event = 0; event < BookingEventBroadcaster.DEFAULT_BUFFER_SIZE + NUMBER_OF_EVENTS; event++) {
+            bookingEventBroadcaster.bookingCreated(bookingDTO);
+        }
+        awaitDeliveries(sinks, BookingEventBroadcaster.DEFAULT_BUFFER_SIZE + NUMBER_OF_EVENTS);
+
+        assertTrue(slowSubscriber.isClosed());
+        assertTrue("The delivery thread of the slow subscriber should have been released",
+                released.await(10 * WRITE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(NUMBER_OF_SUBSCRIBERS, bookingEventBroadcaster.getNumberOfSubscribers());
+    }
+
+    private static void awaitDeliveries(List<CountingSink> sinks, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        for (CountingSink sink : sinks) {
+            while (sink.received.get() < expected) {
+                assertTrue("Events were not delivered in time", System.nanoTime() < deadline);
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static class CountingSink implements BookingEventSink {
+        private final AtomicInteger received = new AtomicInteger();
+
+        @Override
+        public void send(BookingEvent bookingEvent) {
+            received.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import core.BookingInterval;
+import core.BookingIntervalIndex;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Calendar;
+
+import static org.junit.Assert.*;
+
+public class BookingIntervalIndexTest {
+    private BookingIntervalIndex bookingIntervalIndex;
+    private Calendar calendar;
+
+    @Before
+    public void setup() {
+        bookingIntervalIndex = new BookingIntervalIndex();
+        calendar = Calendar.getInstance();
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+    }
+
+    private long at(int hourOfDay, int minute) {
+        calendar.set(Calendar.HOUR_OF_DAY, hourOfDay);
+        calendar.set(Calendar.MINUTE, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    @Test
+    public void overlappingIntervalShouldBeFound() {
+        bookingIntervalIndex.put(1, at(10, 0), at(11, 0));
+        assertTrue(bookingIntervalIndex.overlaps(at(10, 30), at(12, 0), BookingIntervalIndex.NO_BOOKING));
+        assertTrue(bookingIntervalIndex.overlaps(at(9, 0), at(10, 5), BookingIntervalIndex.NO_BOOKING));
+        assertTrue(bookingIntervalIndex.overlaps(at(9, 0), at(12, 0), BookingIntervalIndex.NO_BOOKING));
+    }
+
+    @Test
+    public void adjacentIntervalsShouldNotOverlap() {
+        bookingIntervalIndex.put(1, at(10, 0), at(11, 0));
+        assertFalse(bookingIntervalIndex.overlaps(at(11, 0), at(12, 0), BookingIntervalIndex.NO_BOOKING));
+        assertFalse(bookingIntervalIndex.overlaps(at(9, 0), at(10, 0), BookingIntervalIndex.NO_BOOKING));
+    }
+
+    @Test
+    public void ignoredBookingShouldOnlyHideItself() {
+        bookingIntervalIndex.put(1, at(10, 0), at(11, 0));
+        bookingIntervalIndex.put(2, at(11, 0), at(12, 0));
+        assertFalse(bookingIntervalIndex.overlaps(at(10, 0), at(11, 0), 1));
+        assertTrue(bookingIntervalIndex.overlaps(at(10, 0), at(11, 30), 1));
+    }
+
+    @Test
+    public void longIntervalStartingEarlierShouldBeFoundBehindShortOnes() {
+        bookingIntervalIndex.put(1, at(8, 0), at(20, 0));
+        bookingIntervalIndex.put(2, at(9, 0), at(9, 30));
+        bookingIntervalIndex.put(3, at(12, 0), at(12, 30));
+        assertTrue(bookingIntervalIndex.overlaps(at(15, 0), at(16, 0), 2));
+        assertFalse(bookingIntervalIndex.overlaps(at(15, 0), at(16, 0), 1));
+    }
+
+    @Test
+    public void removedAndMovedBookingsShouldNoLongerOverlap() {
+        bookingIntervalIndex.put(1, at(10, 0), at(11, 0));
+        BookingInterval previous = bookingIntervalIndex.put(1, at(14, 0), at(15, 0));
+        assertEquals(at(10, 0), previous.getStartTime());
+        assertFalse(bookingIntervalIndex.overlaps(at(10, 0), at(11, 0), BookingIntervalIndex.NO_BOOKING));
+        assertTrue(bookingIntervalIndex.overlaps(at(14, 30), at(16, 0), BookingIntervalIndex.NO_BOOKING));
+
+        assertNotNull(bookingIntervalIndex.remove(1));
+        assertNull(bookingIntervalIndex.remove(1));
+        assertFalse(bookingIntervalIndex.overlaps(at(14, 30), at(16, 0), BookingIntervalIndex.NO_BOOKING));
+        assertEquals(0, bookingIntervalIndex.size());
+    }
+
+    @Test
+    public void intervalSpanningMidnightShouldBeFoundOnBothDays() {
+        long start = at(21, 0);
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        long end = at(9, 0);
+        bookingIntervalIndex.put(1, start, end);
+        assertTrue(bookingIntervalIndex.overlaps(at(8, 0), at(8, 30), BookingIntervalIndex.NO_BOOKING));
+        calendar.add(Calendar.DAY_OF_YEAR, -1);
+        assertTrue(bookingIntervalIndex.overlaps(at(21, 30), at(22, 0), BookingIntervalIndex.NO_BOOKING));
+    }
+
+    @Test
+    public void putAllShouldIndexEveryBooking() {
+        bookingIntervalIndex.putAll(Arrays.asList(
+                new BookingInterval(1, at(10, 0), at(11, 0)),
+                new BookingInterval(2, at(12, 0), at(13, 0))));
+        assertEquals(2, bookingIntervalIndex.size());
+        assertTrue(bookingIntervalIndex.overlaps(at(12, 30), at(14, 0), BookingIntervalIndex.NO_BOOKING));
+    }
+}
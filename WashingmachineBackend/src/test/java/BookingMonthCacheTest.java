@@ -0,0 +1,139 @@
+import api.BookingDTO;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilderSpec;
+import core.BookingMonthCache;
+import core.BookingMonthVersions;
+import db.BookingDAO;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class BookingMonthCacheTest {
+    private static final String USERNAME_1 = "user1";
+    private static final String USERNAME_2 = "user2";
+
+    private BookingDAO bookingDAO;
+    private BookingMonthVersions bookingMonthVersions;
+    private BookingMonthCache bookingMonthCache;
+    private MetricRegistry metricRegistry;
+    private Date monthStart;
+    private Date monthEnd;
+    private BookingDTO bookingOfUser1;
+    private BookingDTO bookingOfUser2;
+
+    @Before
+    public void setup() {
+        bookingDAO = mock(BookingDAO.class);
+        bookingMonthVersions = new BookingMonthVersions();
+        metricRegistry = new MetricRegistry();
+        bookingMonthCache = new BookingMonthCache(bookingDAO, bookingMonthVersions, CacheBuilderSpec.parse("maximumSize=24"),
+                metricRegistry);
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2030, Calendar.MARCH, 1, 0, 0, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        monthStart = calendar.getTime();
+        calendar.set(Calendar.DAY_OF_MONTH, 10);
+        calendar.set(Calendar.HOUR_OF_DAY, 10);
+        Date startTime1 = calendar.getTime();
+        calendar.set(Calendar.HOUR_OF_DAY, 11);
+        Date endTime1 = calendar.getTime();
+        calendar.set(Calendar.HOUR_OF_DAY, 12);
+        Date startTime2 = calendar.getTime();
+        calendar.set(Calendar.HOUR_OF_DAY, 13);
+        Date endTime2 = calendar.getTime();
+        calendar.set(Calendar.DAY_OF_MONTH, 31);
+        calendar.set(Calendar.HOUR_OF_DAY, 23);
+        monthEnd = calendar.getTime();
+
+        bookingOfUser1 = new BookingDTO(1, startTime1, endTime1, USERNAME_1, "apartment1", "name1", 2, 1);
+        bookingOfUser2 = new BookingDTO(2, startTime2, endTime2, USERNAME_2, "apartment2", "name2", 1, 2);
+        when(bookingDAO.getBookingsStartingInInterval(any(Date.class), any(Date.class)))
+                .thenReturn(Arrays.asList(bookingOfUser1, bookingOfUser2));
+    }
+
+    @Test
+    public void repeatedReadsOfAMonthShouldOnlyQueryTheDatabaseOnce() {
+        bookingMonthCache.getBookingsInInterval(monthStart, monthEnd, USERNAME_1);
+        bookingMonthCache.getBookingsInInterval(monthStart, monthEnd, USERNAME_2);
+        bookingMonthCache.getBookingsInInterval(monthStart, monthEnd, "");
+
+        verify(bookingDAO, times(1)).getBookingsStartingInInterval(any(Date.class), any(Date.class));
+        assertEquals(2, metricRegistry.meter(MetricRegistry.name(BookingMonthCache.class, "hits")).getCount());
+        assertEquals(1, metricRegistry.meter(MetricRegistry.name(BookingMonthCache.class, "misses")).getCount());
+    }
+
+    @Test
+    public void otherUsersBookingsShouldBeRedacted() {
+        List<BookingDTO> bookings = bookingMonthCache.getBookingsInInterval(monthStart, monthEnd, USERNAME_1);
+
+        assertEquals(2, bookings.size());
+        assertEquals(2, bookings.get(0).getNumberOfWashingMachineUses());
+        assertEquals(1, bookings.get(0).getNumberOfTumbleDryUses());
+        assertEquals(0, bookings.get(1).getNumberOfWashingMachineUses());
+        assertEquals(0, bookings.get(1).getNumberOfTumbleDryUses());
+        assertEquals(USERNAME_2, bookings.get(1).getOwner());
+
+        // The cached month itself must not have been redacted for the first reader
+        List<BookingDTO> bookingsOfUser2 = bookingMonthCache.getBookingsInInterval(monthStart, monthEnd, USERNAME_2);
+        assertEquals(0, bookingsOfUser2.get(0).getNumberOfWashingMachineUses());
+        assertEquals(1, bookingsOfUser2.get(1).getNumberOfWashingMachineUses());
+        assertEquals(2, bookingsOfUser2.get(1).getNumberOfTumbleDryUses());
+    }
+
+    @Test
+    public void onlyBookingsWithinTheIntervalShouldBeReturned() {
+        List<BookingDTO> bookings = bookingMonthCache.getBookingsInInterval(bookingOfUser1.getEndTime(), monthEnd, USERNAME_1);
+
+        assertEquals(1, bookings.size());
+        assertEquals(bookingOfUser2.getId(), bookings.get(0).getId());
+    }
+
+    @Test
+    public void writesShouldInvalidateTheMonth() {
+        bookingMonthCache.getBookingsInInterval(monthStart, monthEnd, USERNAME_1);
+        bookingMonthVersions.bookingDeleted(bookingOfUser2);
+        bookingMonthCache.bookingDeleted(bookingOfUser2);
+        when(bookingDAO.getBookingsStartingInInterval(any(Date.class), any(Date.class)))
+                .thenReturn(Collections.singletonList(bookingOfUser1));
+
+        List<BookingDTO> bookings = bookingMonthCache.getBookingsInInterval(monthStart, monthEnd, USERNAME_1);
+
+        assertEquals(1, bookings.size());
+        verify(bookingDAO, times(2)).getBookingsStartingInInterval(any(Date.class), any(Date.class));
+        assertEquals(1, metricRegistry.counter(MetricRegistry.name(BookingMonthCache.class, "invalidations")).getCount());
+    }
+
+    @Test
+    public void monthLoadedBeforeAVersionBumpShouldBeReloaded() {
+        bookingMonthCache.getBookingsInInterval(monthStart, monthEnd, USERNAME_1);
+        // The write committed, but its invalidation has not reached the cache yet
+        bookingMonthVersions.bookingCreated(bookingOfUser1);
+
+        bookingMonthCache.getBookingsInInterval(monthStart, monthEnd, USERNAME_1);
+        bookingMonthCache.getBookingsInInterval(monthStart, monthEnd, USERNAME_1);
+
+        verify(bookingDAO, times(2)).getBookingsStartingInInterval(any(Date.class), any(Date.class));
+    }
+
+    @Test
+    public void intervalsSpanningMonthsShouldReadEveryMonth() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(monthStart);
+        calendar.add(Calendar.MONTH, 2);
+        calendar.add(Calendar.DAY_OF_MONTH, 3);
+
+        bookingMonthCache.getBookingsInInterval(monthStart, calendar.getTime(), USERNAME_1);
+
+        verify(bookingDAO, times(3)).getBookingsStartingInInterval(any(Date.class), any(Date.class));
+    }
+}
@@ -0,0 +1,213 @@
+import api.BookingDTO;
+import api.MachineDTO;
+import core.RoleHelper;
+import db.BookingDAO;
+import db.BookingPartitions;
+import db.UserDAO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs against the local test database and leaves it with empty, partitioned bookings tables.
+ */
+public class BookingPartitionsTest {
+    private static final String USERNAME = "user";
+    private static final Pattern SCANNED_PARTITION = Pattern.compile("(?:Seq Scan|Heap Scan|Scan using \\S+) on (bookings_\\w+)");
+
+    private DBI dbi;
+    private UserDAO userDAO;
+    private BookingDAO bookingDAO;
+
+    @Before
+    public void setup() {
+        dbi = new DBI("jdbc:postgresql://localhost:5432/test", "postgres", "root");
+        userDAO = dbi.onDemand(UserDAO.class);
+        bookingDAO = dbi.onDemand(BookingDAO.class);
+        CommonTestUtil.migrate(dbi);
+        dropBookingTables();
+        userDAO.insertUser(USERNAME, "password_that_should_have_been_hashed_and_salted", "bogus", "name", "apartment", RoleHelper.ROLE_DEFAULT);
+    }
+
+    @After
+    public void tearDown() {
+        dropBookingTables();
+        CommonTestUtil.migrate(dbi);
+        bookingDAO.truncateTable();
+        userDAO.truncateUsersTable();
+    }
+
+    @Test
+    public void shouldConvertUnpartitionedBookings() {
+        try (Handle handle = dbi.open()) {
+            handle.execute("CREATE TABLE bookings (id SERIAL, start_time TIMESTAMP NOT NULL, end_time TIMESTAMP NOT NULL, " +
+                    "owner VARCHAR(100) NOT NULL references users(username), number_of_washing_machine_uses SMALLINT NOT NULL, " +
+                    "number_of_tumble_dry_uses SMALLINT NOT NULL, PRIMARY KEY(id), " +
+                    "CONSTRAINT bookings_no_overlap EXCLUDE USING gist (tsrange(start_time, end_time) WITH &&))");
+            handle.execute("CREATE INDEX bookings_start_time ON bookings (start_time)");
+            handle.execute("INSERT INTO bookings (start_time, end_time, owner, number_of_washing_machine_uses, number_of_tumble_dry_uses) " +
+                    "VALUES ('2017-01-10 10:00', '2017-01-10 11:00', ?, 1, 0), ('2017-02-10 10:00', '2017-02-10 11:00', ?, 0, 1)",
+                    USERNAME, USERNAME);
+        }
+
+        CommonTestUtil.migrate(dbi);
+
+        BookingPartitions bookingPartitions = new BookingPartitions(dbi, 0, 0);
+        try (Handle handle = dbi.open()) {
+            assertEquals("p", handle.createQuery("SELECT relkind FROM pg_class WHERE oid = to_regclass('bookings')")
+                    .mapTo(String.class).first());
+            assertEquals(2, (int) handle.createQuery("SELECT count(*) FROM bookings").mapTo(Integer.class).first());
+            assertEquals(new TreeSet<>(Arrays.asList(YearMonth.of(2017, 1), YearMonth.of(2017, 2))),
+                    bookingPartitions.getPartitionedMonths("bookings"));
+            // Version 3 puts the converted bookings on the first machine and excludes overlaps per machine
+            assertEquals(2, (int) handle.createQuery("SELECT count(*) FROM bookings WHERE machine_id = ?")
+                    .bind(0, MachineDTO.FIRST_MACHINE_ID).mapTo(Integer.class).first());
+            assertTrue(handle.createQuery("SELECT pg_get_constraintdef(oid) FROM pg_constraint WHERE conname = 'bookings_2017_01_no_overlap'")
+                    .mapTo(String.class).first().contains("machine_id WITH ="));
+        }
+        // New bookings continue the ids of the old table
+        int id = bookingDAO.insertBookingAndGet(new BookingDTO(Timestamp.valueOf("2017-01-11 10:00:00"),
+                Timestamp.valueOf("2017-01-11 11:00:00"), USERNAME, 1, 1)).getId();
+        assertEquals(3, id);
+    }
+
+    @Test
+    public void creatingAPartitionShouldTakeItsBookingsFromTheDefaultPartition() {
+        BookingPartitions bookingPartitions = new BookingPartitions(dbi, 1, 0);
+        CommonTestUtil.migrate(dbi);
+        insertBooking("2017-03-10 10:00");
+        insertBooking("2017-05-10 10:00");
+
+        bookingPartitions.maintain(YearMonth.of(2017, 3));
+
+        assertEquals(new TreeSet<>(Arrays.asList(YearMonth.of(2017, 3), YearMonth.of(2017, 4))),
+                bookingPartitions.getPartitionedMonths("bookings"));
+        assertEquals(1, countRows("bookings_2017_03"));
+        assertEquals(1, countRows("bookings_default"));
+        assertEquals(2, countRows("bookings"));
+    }
+
+    @Test
+    public void shouldArchiveMonthsOlderThanKept() {
+        BookingPartitions bookingPartitions = new BookingPartitions(dbi, 0, 2);
+        CommonTestUtil.migrate(dbi);
+        bookingPartitions.createPartitions(YearMonth.of(2017, 1), YearMonth.of(2017, 3));
+        insertBooking("2017-01-10 10:00");
+        insertBooking("2017-03-10 10:00");
+
+        bookingPartitions.maintain(YearMonth.of(2017, 4));
+
+        assertEquals(new TreeSet<>(Arrays.asList(YearMonth.of(2017, 3), YearMonth.of(2017, 4))),
+                bookingPartitions.getPartitionedMonths("bookings"));
+        assertEquals(new TreeSet<>(Arrays.asList(YearMonth.of(2017, 1), YearMonth.of(2017, 2))),
+                bookingPartitions.getPartitionedMonths("bookings_archive"));
+        assertEquals(1, countRows("bookings"));
+        assertEquals(1, countRows("bookings_archive"));
+    }
+
+    /**
+     * Reads of the current month should plan and run the same with ten years of bookings as with one
+     */
+    @Test
+    public void readingAMonthShouldNotDependOnTheYearsOfBookings() {
+        BookingPartitions bookingPartitions = new BookingPartitions(dbi, 0, 0);
+        CommonTestUtil.migrate(dbi);
+        YearMonth lastMonth = YearMonth.of(2026, 12);
+
+        insertSyntheticYears(bookingPartitions, lastMonth, 1);
+        Set<String> scannedAfterOneYear = scannedPartitions(lastMonth);
+        double millisAfterOneYear = readMillis(lastMonth);
+
+        insertSyntheticYears(bookingPartitions, lastMonth.minusYears(1), 9);
+        Set<String> scannedAfterTenYears = scannedPartitions(lastMonth);
+        double millisAfterTenYears = readMillis(lastMonth);
+
+        assertEquals(scannedAfterOneYear, scannedAfterTenYears);
+        assertEquals(new HashSet<>(Arrays.asList(BookingPartitions.partitionName(lastMonth), "bookings_default")), scannedAfterTenYears);
+        // Generous, as only the partitions scanned are deterministic
+        assertTrue("Reading " + lastMonth + " took " + millisAfterOneYear + " ms after 1 year and " + millisAfterTenYears
+                + " ms after 10 years", millisAfterTenYears < 3 * millisAfterOneYear + 5);
+    }
+
+    /**
+     * A booking every other hour through the years ending with lastMonth
+     */
+    private void insertSyntheticYears(BookingPartitions bookingPartitions, YearMonth lastMonth, int years) {
+        YearMonth firstMonth = lastMonth.minusYears(years).plusMonths(1);
+        bookingPartitions.createPartitions(firstMonth, lastMonth);
+        try (Handle handle = dbi.open()) {
+            handle.execute("INSERT INTO bookings (start_time, end_time, owner, number_of_washing_machine_uses, number_of_tumble_dry_uses, machine_id) " +
+                    "SELECT start_time, start_time + INTERVAL '1 hour', ?, 1, 1, 1 " +
+                    "FROM generate_series(?::timestamp, ?::timestamp - INTERVAL '1 hour', INTERVAL '2 hours') AS start_time",
+                    USERNAME, Timestamp.valueOf(firstMonth.atDay(1).atStartOfDay()),
+                    Timestamp.valueOf(lastMonth.plusMonths(1).atDay(1).atStartOfDay()));
+            handle.execute("ANALYZE bookings");
+        }
+    }
+
+    private Set<String> scannedPartitions(YearMonth month) {
+        try (Handle handle = dbi.open()) {
+            List<String> plan = handle.createQuery("EXPLAIN " + BookingDAO.BOOKINGS_IN_INTERVAL)
+                    .bind("startTime", Timestamp.valueOf(month.atDay(1).atStartOfDay()))
+                    .bind("endTime", Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay()))
+                    .bind("username", USERNAME)
+                    .mapTo(String.class)
+                    .list();
+            Set<String> partitions = new HashSet<>();
+            for (String line : plan) {
+                Matcher matcher = SCANNED_PARTITION.matcher(line);
+                while (matcher.find()) {
+                    partitions.add(matcher.group(1));
+                }
+            }
+            return partitions;
+        }
+    }
+
+    private double readMillis(YearMonth month) {
+        LocalDateTime start = month.atDay(1).atStartOfDay();
+        int rounds = 20;
+        long started = 0;
+        for (int i = -5; i < rounds; i++) {
+            if (i == 0) {
+                started = System.nanoTime();
+            }
+            assertTrue(!bookingDAO.getBookingsInInterval(Timestamp.valueOf(start),
+                    Timestamp.valueOf(start.plusMonths(1)), USERNAME).isEmpty());
+        }
+        return (System.nanoTime() - started) / 1e6 / rounds;
+    }
+
+    private void insertBooking(String startTime) {
+        Timestamp start = Timestamp.valueOf(startTime + ":00");
+        bookingDAO.insertBookingAndGet(new BookingDTO(start, new Timestamp(start.getTime() + 60 * 60 * 1000), USERNAME, 1, 1));
+    }
+
+    private int countRows(String table) {
+        try (Handle handle = dbi.open()) {
+            return handle.createQuery("SELECT count(*) FROM " + table).mapTo(Integer.class).first();
+        }
+    }
+
+    private void dropBookingTables() {
+        try (Handle handle = dbi.open()) {
+            handle.execute("DROP TABLE IF EXISTS bookings, bookings_archive CASCADE");
+        }
+    }
+}
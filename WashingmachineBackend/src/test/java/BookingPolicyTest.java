@@ -0,0 +1,75 @@
+import api.BookingPolicyDTO;
+import core.BookingPolicy;
+import core.BookingPolicyFactory;
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BookingPolicyTest {
+    private static final long MONDAY = LocalDate.of(2017, 3, 6).toEpochDay();
+    private static final long SUNDAY = LocalDate.of(2017, 3, 12).toEpochDay();
+
+    @Test
+    public void defaultPolicyShouldBeOpenFrom8To22() {
+        BookingPolicy bookingPolicy = new BookingPolicyFactory().build();
+        assertTrue(bookingPolicy.isOpen(minute(MONDAY, 8, 0), minute(MONDAY, 22, 0)));
+        assertFalse(bookingPolicy.isOpen(minute(MONDAY, 7, 59), minute(MONDAY, 9, 0)));
+        assertFalse(bookingPolicy.isOpen(minute(MONDAY, 21, 0), minute(MONDAY, 22, 1)));
+        // Overnight bookings touch the closed hours
+        assertFalse(bookingPolicy.isOpen(minute(MONDAY, 21, 0), minute(MONDAY + 1, 9, 0)));
+    }
+
+    @Test
+    public void weekdaysAndDatesShouldOverrideTheOpeningHours() {
+        BookingPolicyFactory bookingPolicyFactory = new BookingPolicyFactory();
+        bookingPolicyFactory.setWeekdays(Collections.singletonMap(DayOfWeek.SUNDAY,
+                Arrays.asList("10:00-12:00", "13:00-24:00")));
+        bookingPolicyFactory.setDates(Collections.singletonMap("2017-03-06", Collections.emptyList()));
+        BookingPolicy bookingPolicy = bookingPolicyFactory.build();
+
+        assertFalse(bookingPolicy.isOpen(minute(MONDAY, 10, 0), minute(MONDAY, 11, 0)));
+        assertTrue(bookingPolicy.isOpen(minute(MONDAY + 1, 10, 0), minute(MONDAY + 1, 11, 0)));
+        assertTrue(bookingPolicy.isOpen(minute(SUNDAY, 10, 0), minute(SUNDAY, 12, 0)));
+        assertFalse(bookingPolicy.isOpen(minute(SUNDAY, 11, 0), minute(SUNDAY, 13, 0)));
+        assertTrue(bookingPolicy.isOpen(minute(SUNDAY, 13, 0), minute(SUNDAY, 24, 0)));
+        assertFalse(bookingPolicy.isOpen(minute(SUNDAY, 9, 0), minute(SUNDAY, 10, 30)));
+    }
+
+    @Test
+    public void slotsShouldBeEncodedAsHexForTheCalendar() {
+        BookingPolicyFactory bookingPolicyFactory = new BookingPolicyFactory();
+        bookingPolicyFactory.setSlotMinutes(60);
+        bookingPolicyFactory.setOpeningHours(Arrays.asList("01:00-02:00", "08:00-22:00"));
+        BookingPolicy bookingPolicy = bookingPolicyFactory.build();
+        BookingPolicyDTO bookingPolicyDTO = new BookingPolicyDTO(bookingPolicy.getSlotMinutes(),
+                bookingPolicy.getMinimumMinutes());
+        bookingPolicyDTO.addDay("2017-03-06", bookingPolicy.getSlots(MONDAY), bookingPolicy.getSlotsPerDay());
+        assertEquals("20fff3", bookingPolicyDTO.getDays().get("2017-03-06"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void openingHoursOffTheSlotsShouldBeRejected() {
+        BookingPolicyFactory bookingPolicyFactory = new BookingPolicyFactory();
+        bookingPolicyFactory.setSlotMinutes(15);
+        bookingPolicyFactory.setOpeningHours(Collections.singletonList("08:10-22:00"));
+        bookingPolicyFactory.build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void slotsThatDoNotDivideADayShouldBeRejected() {
+        BookingPolicyFactory bookingPolicyFactory = new BookingPolicyFactory();
+        bookingPolicyFactory.setSlotMinutes(7);
+        bookingPolicyFactory.build();
+    }
+
+    private static long minute(long epochDay, int hour, int minute) {
+        return epochDay * 24 * 60 + hour * 60 + minute;
+    }
+}
@@ -1,27 +1,37 @@
 import api.BookingDTO;
+import api.MachineDTO;
+import core.BookingDayLocks;
+import core.BookingIntervalIndex;
+import core.BookingMonthCache;
+import core.BookingMonthVersions;
 import core.BookingServiceImpl;
+import core.MachineTimelines;
 import core.RoleHelper;
 import api.UserDTO;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilderSpec;
 import db.BookingDAO;
-import db.UserTokenDAO;
+import db.JsonStreamer;
 import exceptions.ValidationErrorException;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import resources.BookingResource;
 
-import java.util.ArrayList;
+import javax.ws.rs.NotFoundException;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 public class BookingResourceTest {
     private BookingDAO bookingDAO;
     private BookingResource bookingResource;
-    private UserTokenDAO userTokenDAO;
+    private static final int MACHINE = MachineDTO.FIRST_MACHINE_ID;
+
+    private BookingIntervalIndex bookingIntervalIndex;
     private Calendar calendar;
     private final String USERNAME_1 = "user";
     private final String NAME_1 = "name";
@@ -30,8 +40,11 @@ public class BookingResourceTest {
     @Before
     public void setup() {
         bookingDAO = mock(BookingDAO.class);
-        userTokenDAO = mock(UserTokenDAO.class);
-        bookingResource = new BookingResource(bookingDAO, userTokenDAO, new BookingServiceImpl(bookingDAO));
+        MachineTimelines machineTimelines = CommonTestUtil.machineTimelines(1);
+        bookingIntervalIndex = machineTimelines.get(MACHINE);
+        bookingResource = new BookingResource(bookingDAO, new BookingServiceImpl(machineTimelines), new BookingDayLocks(),
+                new BookingMonthCache(bookingDAO, new BookingMonthVersions(), CacheBuilderSpec.parse("maximumSize=24"), new MetricRegistry()),
+                mock(JsonStreamer.class));
         calendar = Calendar.getInstance();
     }
 
@@ -42,7 +55,7 @@ public class BookingResourceTest {
         long startTime = calendar.getTime().getTime();
         calendar.set(Calendar.HOUR_OF_DAY, 10);
         long endTime = calendar.getTime().getTime();
-        bookingResource.createBooking(null, startTime, endTime, 1, 1);
+        bookingResource.createBooking(null, MACHINE, startTime, endTime, 1, 1);
     }
 
     @Test(expected = ValidationErrorException.class)
@@ -53,7 +66,7 @@ public class BookingResourceTest {
         calendar.set(Calendar.HOUR_OF_DAY, 9);
         calendar.add(Calendar.DAY_OF_YEAR, 1);
         long endTime = calendar.getTime().getTime();
-        bookingResource.createBooking(null, startTime, endTime, 1, 1);
+        bookingResource.createBooking(null, MACHINE, startTime, endTime, 1, 1);
     }
 
     @Test(expected = ValidationErrorException.class)
@@ -63,7 +76,7 @@ public class BookingResourceTest {
         calendar.set(Calendar.HOUR_OF_DAY, 22);
         calendar.set(Calendar.MINUTE, 1);
         long endTime = calendar.getTime().getTime();
-        bookingResource.createBooking(null, startTime, endTime, 1, 1);
+        bookingResource.createBooking(null, MACHINE, startTime, endTime, 1, 1);
     }
 
     @Test(expected = ValidationErrorException.class)
@@ -74,7 +87,7 @@ public class BookingResourceTest {
         calendar.set(Calendar.MINUTE, 0);
         calendar.add(Calendar.DAY_OF_YEAR, 1);
         long endTime = calendar.getTime().getTime();
-        bookingResource.createBooking(null, startTime, endTime, 1, 1);
+        bookingResource.createBooking(null, MACHINE, startTime, endTime, 1, 1);
     }
 
     @Test(expected = ValidationErrorException.class)
@@ -84,7 +97,7 @@ public class BookingResourceTest {
         Date startTime = calendar.getTime();
         calendar.set(Calendar.HOUR_OF_DAY, 15);
         Date endTime = calendar.getTime();
-        bookingResource.createBooking(null, startTime.getTime(), endTime.getTime(), 1, 1);
+        bookingResource.createBooking(null, MACHINE, startTime.getTime(), endTime.getTime(), 1, 1);
     }
 
     @Test(expected = ValidationErrorException.class)
@@ -93,7 +106,7 @@ public class BookingResourceTest {
         long startTime = calendar.getTime().getTime();
         calendar.add(Calendar.HOUR_OF_DAY, -1);
         long endTime = calendar.getTime().getTime();
-        bookingResource.createBooking(null, startTime, endTime, 1, 1);
+        bookingResource.createBooking(null, MACHINE, startTime, endTime, 1, 1);
     }
 
     @Test(expected = ValidationErrorException.class)
@@ -103,7 +116,7 @@ public class BookingResourceTest {
         long startTime = calendar.getTime().getTime();
         calendar.add(Calendar.MINUTE, 10);
         long endTime = calendar.getTime().getTime();
-        bookingResource.createBooking(null, startTime, endTime, 1, 1);
+        bookingResource.createBooking(null, MACHINE, startTime, endTime, 1, 1);
     }
 
     @Test(expected = ValidationErrorException.class)
@@ -113,7 +126,7 @@ public class BookingResourceTest {
         long startTime = calendar.getTime().getTime();
         calendar.set(Calendar.HOUR_OF_DAY, 12);
         long endTime = calendar.getTime().getTime();
-        bookingResource.createBooking(null, startTime, endTime, 0, 0);
+        bookingResource.createBooking(null, MACHINE, startTime, endTime, 0, 0);
     }
 
     @Test(expected = ValidationErrorException.class)
@@ -125,10 +138,8 @@ public class BookingResourceTest {
         Date startTime = calendar.getTime();
         calendar.set(Calendar.HOUR_OF_DAY, 12);
         Date endTime = calendar.getTime();
-        List<BookingDTO> overlappingBookings = new ArrayList<>();
-        overlappingBookings.add(new BookingDTO(null, null, null, 0, 0));
-        when(bookingDAO.getBookingsOverlappingInterval(startTime, endTime)).thenReturn(overlappingBookings);
-        bookingResource.createBooking(null, startTime.getTime(), endTime.getTime(), 1, 1);
+        bookingIntervalIndex.put(2, startTime.getTime(), endTime.getTime());
+        bookingResource.createBooking(null, MACHINE, startTime.getTime(), endTime.getTime(), 1, 1);
     }
 
     // Covers all other methods as well, we test the DAO instead.
@@ -142,9 +153,9 @@ public class BookingResourceTest {
         Date startTime = calendar.getTime();
         calendar.set(Calendar.HOUR_OF_DAY, 12);
         Date endTime = calendar.getTime();
-        when(bookingDAO.getBookingFromOwnerAndDates(USERNAME_1, startTime, endTime)).
+        when(bookingDAO.insertBookingAndGet(any(BookingDTO.class))).
                 thenReturn(new BookingDTO(startTime, endTime, NAME_1, 1, 0));
-        BookingDTO bookingDTO = bookingResource.createBooking(new UserDTO(USERNAME_1, RoleHelper.ROLE_DEFAULT, NAME_1, APARTMENT_1), startTime.getTime(), endTime.getTime(), 1, 0);
+        BookingDTO bookingDTO = bookingResource.createBooking(new UserDTO(USERNAME_1, RoleHelper.ROLE_DEFAULT, NAME_1, APARTMENT_1), MACHINE, startTime.getTime(), endTime.getTime(), 1, 0);
         assert(bookingDTO.getOwner().equals(NAME_1));
         assert(bookingDTO.getEndTime().equals(endTime));
         assert(bookingDTO.getStartTime().equals(startTime));
@@ -156,6 +167,8 @@ public class BookingResourceTest {
         calendar.add(Calendar.DAY_OF_YEAR, 1);
         calendar.set(Calendar.HOUR_OF_DAY, 10);
         calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
         Date startTime = calendar.getTime();
         calendar.set(Calendar.HOUR_OF_DAY, 12);
         Date endTime = calendar.getTime();
@@ -165,12 +178,11 @@ public class BookingResourceTest {
         calendar.set(Calendar.HOUR_OF_DAY, 10);
         Date startDateNotWithinBounds = calendar.getTime();
 
-        ArrayList<BookingDTO> bookingsInInterval = new ArrayList<>();
-        bookingsInInterval.add(new BookingDTO(startTime, endTime, USERNAME_1, 1, 1));
-        bookingsInInterval.add(new BookingDTO(endDateNotWithinBounds, startDateNotWithinBounds, USERNAME_1, 1, 1));
-        when(bookingDAO.getBookingsOverlappingInterval(startTime, endTime)).thenReturn(bookingsInInterval);
-        when(bookingDAO.getBookingFromId(USERNAME_1, 1)).thenReturn(new BookingDTO(1, startTime, endTime, USERNAME_1, APARTMENT_1, NAME_1, 1, 1));
-        BookingDTO bookingDTO = bookingResource.editBooking(new UserDTO(USERNAME_1, RoleHelper.ROLE_DEFAULT, NAME_1, APARTMENT_1), 1, startTime.getTime(), endTime.getTime(),
+        bookingIntervalIndex.put(1, startTime.getTime(), endTime.getTime());
+        bookingIntervalIndex.put(2, startDateNotWithinBounds.getTime(), endDateNotWithinBounds.getTime());
+        when(bookingDAO.updateBookingAndGet(USERNAME_1, 1, MACHINE, startTime, startTime, endTime, 123, 321))
+                .thenReturn(new BookingDTO(1, startTime, endTime, USERNAME_1, APARTMENT_1, NAME_1, 123, 321));
+        BookingDTO bookingDTO = bookingResource.editBooking(new UserDTO(USERNAME_1, RoleHelper.ROLE_DEFAULT, NAME_1, APARTMENT_1), 1, MACHINE, startTime.getTime(), endTime.getTime(),
                 123, 321);
 
         Assert.assertEquals(1, bookingDTO.getId());
@@ -190,10 +202,75 @@ public class BookingResourceTest {
         calendar.set(Calendar.HOUR_OF_DAY, 12);
         Date endTime = calendar.getTime();
 
-        ArrayList<BookingDTO> bookingsInInterval = new ArrayList<>();
-        bookingsInInterval.add(new BookingDTO(startTime, endTime, USERNAME_1, 1, 2));
-        when(bookingDAO.getBookingsOverlappingInterval(startTime, endTime)).thenReturn(bookingsInInterval);
-        bookingResource.editBooking(new UserDTO(USERNAME_1, RoleHelper.ROLE_DEFAULT, NAME_1, APARTMENT_1), 1, startTime.getTime(), endTime.getTime(),
+        bookingIntervalIndex.put(1, startTime.getTime() - 7200000, startTime.getTime() - 3600000);
+        bookingIntervalIndex.put(2, startTime.getTime(), endTime.getTime());
+        bookingResource.editBooking(new UserDTO(USERNAME_1, RoleHelper.ROLE_DEFAULT, NAME_1, APARTMENT_1), 1, MACHINE, startTime.getTime(), endTime.getTime(),
+                123, 321);
+    }
+
+    // The booking itself sorting first must not hide a clash with another booking
+    @Test(expected = ValidationErrorException.class)
+    public void editOverlappingItselfAndAnotherBookingShouldResultInException() {
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 10);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        Date startTime = calendar.getTime();
+        calendar.set(Calendar.HOUR_OF_DAY, 11);
+        Date endTimeOfOwnBooking = calendar.getTime();
+        calendar.set(Calendar.HOUR_OF_DAY, 12);
+        Date endTime = calendar.getTime();
+
+        bookingIntervalIndex.put(1, startTime.getTime(), endTimeOfOwnBooking.getTime());
+        bookingIntervalIndex.put(2, endTimeOfOwnBooking.getTime(), endTime.getTime());
+        bookingResource.editBooking(new UserDTO(USERNAME_1, RoleHelper.ROLE_DEFAULT, NAME_1, APARTMENT_1), 1, MACHINE, startTime.getTime(), endTime.getTime(),
                 123, 321);
     }
+
+    @Test(expected = NotFoundException.class)
+    public void editingSomeoneElsesBookingShouldResultInNotFound() {
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 10);
+        calendar.set(Calendar.MINUTE, 0);
+        long startTime = calendar.getTime().getTime();
+        calendar.set(Calendar.HOUR_OF_DAY, 12);
+        long endTime = calendar.getTime().getTime();
+        bookingResource.editBooking(new UserDTO(USERNAME_1, RoleHelper.ROLE_DEFAULT, NAME_1, APARTMENT_1), 1, MACHINE, startTime, endTime,
+                1, 1);
+    }
+
+    @Test(expected = ValidationErrorException.class)
+    public void bookingUnknownMachineShouldResultInException() {
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 10);
+        calendar.set(Calendar.MINUTE, 0);
+        long startTime = calendar.getTime().getTime();
+        calendar.set(Calendar.HOUR_OF_DAY, 12);
+        long endTime = calendar.getTime().getTime();
+        bookingResource.createBooking(CommonTestUtil.defaultUser, MACHINE + 1, startTime, endTime, 1, 1);
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void deletingSomeoneElsesBookingShouldResultInNotFound() {
+        bookingResource.deleteBooking(new UserDTO(USERNAME_1, RoleHelper.ROLE_DEFAULT, NAME_1, APARTMENT_1), 1);
+    }
+
+    @Test
+    public void deletedBookingShouldNoLongerBlockItsInterval() {
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 10);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        Date startTime = calendar.getTime();
+        calendar.set(Calendar.HOUR_OF_DAY, 12);
+        Date endTime = calendar.getTime();
+        bookingIntervalIndex.put(1, startTime.getTime(), endTime.getTime());
+
+        when(bookingDAO.deleteBookingAndGet(USERNAME_1, 1, startTime))
+                .thenReturn(new BookingDTO(1, startTime, endTime, USERNAME_1, APARTMENT_1, NAME_1, 1, 1));
+        bookingResource.deleteBooking(new UserDTO(USERNAME_1, RoleHelper.ROLE_DEFAULT, NAME_1, APARTMENT_1), 1);
+        Assert.assertFalse(bookingIntervalIndex.overlaps(startTime.getTime(), endTime.getTime(), BookingIntervalIndex.NO_BOOKING));
+    }
 }
@@ -0,0 +1,56 @@
+import api.BookingRevisionDTO;
+import db.BookingRevisionDAO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class BookingRevisionDAOTest {
+    private BookingRevisionDAO bookingRevisionDAO;
+
+    @Before
+    public void setup() {
+        DBI dbi = new DBI("jdbc:postgresql://localhost:5432/test", "postgres", "root");
+        bookingRevisionDAO = dbi.onDemand(BookingRevisionDAO.class);
+        bookingRevisionDAO.createBookingRevisionTable();
+        bookingRevisionDAO.createBookingRevisionIndex();
+    }
+
+    @After
+    public void tearDown() {
+        bookingRevisionDAO.truncateTable();
+    }
+
+    @Test
+    public void revisionsOfABookingShouldBePagedOldestFirst() {
+        List<BookingRevisionDTO> revisions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            revisions.add(revision(1, i == 0 ? BookingRevisionDTO.CREATED : BookingRevisionDTO.EDITED, i));
+            revisions.add(revision(2, BookingRevisionDTO.EDITED, i));
+        }
+        bookingRevisionDAO.insertRevisions(revisions);
+
+        List<BookingRevisionDTO> firstPage = bookingRevisionDAO.getRevisions(1, 0, 3);
+        assertEquals(3, firstPage.size());
+        assertEquals(BookingRevisionDTO.CREATED, firstPage.get(0).getUpdateType());
+        assertEquals(0, firstPage.get(0).getNumberOfWashingMachineUses());
+        assertEquals(2, firstPage.get(2).getNumberOfWashingMachineUses());
+
+        List<BookingRevisionDTO> secondPage = bookingRevisionDAO.getRevisions(1, firstPage.get(2).getRevision(), 3);
+        assertEquals(2, secondPage.size());
+        assertEquals(3, secondPage.get(0).getNumberOfWashingMachineUses());
+        assertEquals(1, secondPage.get(0).getBookingId());
+        assertEquals(0, bookingRevisionDAO.getRevisions(1, secondPage.get(1).getRevision(), 3).size());
+    }
+
+    private static BookingRevisionDTO revision(int bookingId, String updateType, int numberOfWashingMachineUses) {
+        return new BookingRevisionDTO(-1, bookingId, new Date(0), new Date(60 * 60 * 1000), "user",
+                numberOfWashingMachineUses, 0, updateType, new Date());
+    }
+}
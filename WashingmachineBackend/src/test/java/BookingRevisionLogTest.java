@@ -0,0 +1,142 @@
+import api.BookingDTO;
+import api.BookingRevisionDTO;
+import com.codahale.metrics.MetricRegistry;
+import core.BookingRevisionLog;
+import db.BookingRevisionDAO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.*;
+
+public class BookingRevisionLogTest {
+    private BookingRevisionDAO bookingRevisionDAO;
+    private MetricRegistry metricRegistry;
+    private BookingRevisionLog bookingRevisionLog;
+    private BookingDTO bookingDTO;
+    private List<Integer> batchSizes;
+    private CountDownLatch firstWriteStarted;
+    private CountDownLatch releaseWrites;
+
+    @Before
+    public void setup() {
+        bookingRevisionDAO = mock(BookingRevisionDAO.class);
+        metricRegistry = new MetricRegistry();
+        batchSizes = Collections.synchronizedList(new ArrayList<>());
+        firstWriteStarted = new CountDownLatch(1);
+        releaseWrites = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            firstWriteStarted.countDown();
+            releaseWrites.await(10, TimeUnit.SECONDS);
+            batchSizes.add(((List<?>) invocation.getArguments()[0]).size());
+            return null;
+        }).when(bookingRevisionDAO).insertRevisions(anyListOf(BookingRevisionDTO.class));
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2030, Calendar.MARCH, 10, 10, 0, 0);
+        Date startTime = calendar.getTime();
+        calendar.set(Calendar.HOUR_OF_DAY, 11);
+        bookingDTO = new BookingDTO(1, startTime, calendar.getTime(), "user", "apartment", "name", 2, 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        releaseWrites.countDown();
+        bookingRevisionLog.stop();
+    }
+
+    @Test
+    public void asynchronousWritesShouldNotWaitAndShouldBeBatched() throws Exception {
+        bookingRevisionLog = newLog(BookingRevisionLog.Durability.ASYNC);
+        bookingRevisionLog.start();
+
+        bookingRevisionLog.bookingCreated(bookingDTO);
+        assertTrue(firstWriteStarted.await(10, TimeUnit.SECONDS));
+        // The writer is stuck on the first revision, these must neither wait nor be written one by one
+        for (int i = 0; i < 10; i++) {
+            bookingRevisionLog.bookingEdited(null, bookingDTO);
+        }
+        assertEquals(10, metricRegistry.getGauges().get(MetricRegistry.name(BookingRevisionLog.class, "queue-depth")).getValue());
+
+        releaseWrites.countDown();
+        bookingRevisionLog.stop();
+
+        assertEquals(Collections.singletonList(1), batchSizes.subList(0, 1));
+        assertEquals(11, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.size() <= 3);
+        assertEquals(batchSizes.size(), metricRegistry.timer(MetricRegistry.name(BookingRevisionLog.class, "flushes")).getCount());
+    }
+
+    @Test
+    public void synchronousWritesShouldWaitForTheirRevision() throws Exception {
+        bookingRevisionLog = newLog(BookingRevisionLog.Durability.SYNC);
+        bookingRevisionLog.start();
+
+        Thread writer = new Thread(() -> bookingRevisionLog.bookingDeleted(bookingDTO));
+        writer.start();
+        assertTrue(firstWriteStarted.await(10, TimeUnit.SECONDS));
+        writer.join(200);
+        assertTrue("Should wait until the revision is written", writer.isAlive());
+
+        releaseWrites.countDown();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(writer.isAlive());
+        assertEquals(Collections.singletonList(1), batchSizes);
+    }
+
+    @Test
+    public void revisionsShouldRecordTheStateAfterTheWrite() throws Exception {
+        releaseWrites.countDown();
+        bookingRevisionLog = newLog(BookingRevisionLog.Durability.SYNC);
+
+        bookingRevisionLog.bookingDeleted(bookingDTO);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BookingRevisionDTO>> captor = ArgumentCaptor.forClass((Class) List.class);
+        verify(bookingRevisionDAO).insertRevisions(captor.capture());
+        BookingRevisionDTO revision = captor.getValue().get(0);
+        assertEquals(BookingRevisionDTO.DELETED, revision.getUpdateType());
+        assertEquals(bookingDTO.getId(), revision.getBookingId());
+        assertEquals(bookingDTO.getStartTime(), revision.getStartTime());
+        assertEquals(bookingDTO.getNumberOfWashingMachineUses(), revision.getNumberOfWashingMachineUses());
+    }
+
+    @Test
+    public void revisionsThatCannotBeWrittenShouldBeDroppedAfterRetrying() throws Exception {
+        doThrow(new RuntimeException("database is down")).when(bookingRevisionDAO).insertRevisions(anyListOf(BookingRevisionDTO.class));
+        bookingRevisionLog = newLog(BookingRevisionLog.Durability.ASYNC);
+
+        bookingRevisionLog.bookingCreated(bookingDTO);
+
+        verify(bookingRevisionDAO, times(3)).insertRevisions(anyListOf(BookingRevisionDTO.class));
+        assertEquals(1, metricRegistry.meter(MetricRegistry.name(BookingRevisionLog.class, "dropped")).getCount());
+    }
+
+    @Test
+    public void synchronousWritesShouldNotFailWhenTheirRevisionIsDropped() throws Exception {
+        doThrow(new RuntimeException("database is down")).when(bookingRevisionDAO).insertRevisions(anyListOf(BookingRevisionDTO.class));
+        bookingRevisionLog = newLog(BookingRevisionLog.Durability.SYNC);
+        bookingRevisionLog.start();
+
+        // Runs after the booking was committed, so it must return normally once the writer gives up
+        bookingRevisionLog.bookingCreated(bookingDTO);
+
+        verify(bookingRevisionDAO, times(3)).insertRevisions(anyListOf(BookingRevisionDTO.class));
+        assertEquals(1, metricRegistry.meter(MetricRegistry.name(BookingRevisionLog.class, "dropped")).getCount());
+    }
+
+    private BookingRevisionLog newLog(BookingRevisionLog.Durability durability) {
+        return new BookingRevisionLog(bookingRevisionDAO, durability, BookingRevisionLog.DEFAULT_QUEUE_SIZE, metricRegistry);
+    }
+}
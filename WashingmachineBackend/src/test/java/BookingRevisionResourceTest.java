@@ -0,0 +1,41 @@
+import api.BookingRevisionDTO;
+import api.UserDTO;
+import core.RoleHelper;
+import db.BookingRevisionDAO;
+import org.junit.Before;
+import org.junit.Test;
+import resources.BookingRevisionResource;
+
+import javax.ws.rs.WebApplicationException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class BookingRevisionResourceTest {
+    private BookingRevisionDAO bookingRevisionDAO;
+    private BookingRevisionResource bookingRevisionResource;
+
+    @Before
+    public void setup() {
+        bookingRevisionDAO = mock(BookingRevisionDAO.class);
+        bookingRevisionResource = new BookingRevisionResource(bookingRevisionDAO);
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void onlyAdminShouldBeAllowedToSeeRevisions() {
+        bookingRevisionResource.getRevisions(CommonTestUtil.defaultUser, 1, 0, 50);
+    }
+
+    @Test
+    public void adminShouldGetTheRequestedPage() {
+        List<BookingRevisionDTO> page = Collections.singletonList(new BookingRevisionDTO(8, 1, new Date(), new Date(),
+                "user", 1, 0, BookingRevisionDTO.EDITED, new Date()));
+        when(bookingRevisionDAO.getRevisions(1, 7, 10)).thenReturn(page);
+
+        UserDTO admin = new UserDTO("admin", RoleHelper.ROLE_ADMIN, "name", "apartment");
+        assertEquals(page, bookingRevisionResource.getRevisions(admin, 1, 7, 10));
+    }
+}
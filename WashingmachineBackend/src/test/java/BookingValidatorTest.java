@@ -0,0 +1,194 @@
+import api.MachineDTO;
+import api.MachineKind;
+import core.BookingIntervalIndex;
+import core.BookingPolicyFactory;
+import core.BookingRejection;
+import core.BookingValidator;
+import core.MachineTimelines;
+import core.ZoneOffsetTable;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BookingValidatorTest {
+    private static final ZoneId ZONE = ZoneId.of("Europe/Copenhagen");
+    private static final long NOW = millis(2017, 3, 1, 12, 0);
+
+    private static final int MACHINE = MachineDTO.FIRST_MACHINE_ID;
+
+    private MachineTimelines machineTimelines;
+    private BookingIntervalIndex bookingIntervalIndex;
+    private BookingValidator bookingValidator;
+
+    @Before
+    public void setup() {
+        machineTimelines = CommonTestUtil.machineTimelines(2);
+        bookingIntervalIndex = machineTimelines.get(MACHINE);
+        bookingValidator = new BookingValidator(machineTimelines, new BookingPolicyFactory().build(),
+                new ZoneOffsetTable(ZONE, 2000, 2100), () -> NOW);
+    }
+
+    @Test
+    public void bookingWithinOpeningHoursShouldBeAccepted() {
+        assertNull(bookingValidator.validateCreate(MACHINE, millis(2017, 3, 2, 8, 0), millis(2017, 3, 2, 22, 0), 1, 0));
+    }
+
+    @Test
+    public void eachRuleShouldGiveItsOwnReason() {
+        long start = millis(2017, 3, 2, 10, 0);
+        assertEquals(BookingRejection.ENDS_BEFORE_START, bookingValidator.validateCreate(MACHINE, start, start - 3600000, 1, 1));
+        assertEquals(BookingRejection.TOO_SHORT, bookingValidator.validateCreate(MACHINE, start, millis(2017, 3, 2, 10, 29), 1, 1));
+        assertEquals(BookingRejection.OUTSIDE_OPENING_HOURS,
+                bookingValidator.validateCreate(MACHINE, millis(2017, 3, 2, 7, 59), start, 1, 1));
+        assertEquals(BookingRejection.OUTSIDE_OPENING_HOURS,
+                bookingValidator.validateCreate(MACHINE, start, millis(2017, 3, 2, 22, 1), 1, 1));
+        assertEquals(BookingRejection.NO_USES, bookingValidator.validateCreate(MACHINE, start, start + 3600000, 0, 0));
+        assertEquals(BookingRejection.IN_THE_PAST,
+                bookingValidator.validateCreate(MACHINE, millis(2017, 3, 1, 10, 0), millis(2017, 3, 1, 11, 0), 1, 1));
+    }
+
+    @Test
+    public void usesShouldMatchTheKindOfTheMachine() {
+        int washer = MACHINE + 1;
+        int dryer = MACHINE + 2;
+        BookingValidator validator = new BookingValidator(new MachineTimelines(Arrays.asList(
+                new MachineDTO(MACHINE, "Washer-dryer", MachineKind.WASHER_DRYER),
+                new MachineDTO(washer, "Washer", MachineKind.WASHER),
+                new MachineDTO(dryer, "Dryer", MachineKind.DRYER))),
+                new BookingPolicyFactory().build(), new ZoneOffsetTable(ZONE, 2000, 2100), () -> NOW);
+        long start = millis(2017, 3, 2, 10, 0);
+        long end = start + 3600000;
+
+        assertNull(validator.validateCreate(MACHINE, start, end, 1, 1));
+        assertNull(validator.validateCreate(washer, start, end, 2, 0));
+        assertNull(validator.validateCreate(dryer, start, end, 0, 2));
+        assertEquals(BookingRejection.MACHINE_DOES_NOT_TUMBLE_DRY, validator.validateCreate(washer, start, end, 1, 1));
+        assertEquals(BookingRejection.MACHINE_DOES_NOT_WASH, validator.validateCreate(dryer, start, end, 1, 1));
+        assertEquals(BookingRejection.MACHINE_DOES_NOT_WASH, validator.validateEdit(dryer, start, end, 1, 0, 7));
+    }
+
+    @Test
+    public void overlapsShouldBeRejectedExceptWithTheBookingBeingEdited() {
+        long start = millis(2017, 3, 2, 10, 0);
+        bookingIntervalIndex.put(7, start, start + 3600000);
+        assertEquals(BookingRejection.OVERLAPS, bookingValidator.validateCreate(MACHINE, start + 1800000, start + 5400000, 1, 1));
+        assertNull(bookingValidator.validateEdit(MACHINE, start + 1800000, start + 5400000, 1, 1, 7));
+        assertEquals(BookingRejection.OVERLAPS, bookingValidator.validateEdit(MACHINE, start + 1800000, start + 5400000, 1, 1, 8));
+    }
+
+    @Test
+    public void machinesShouldBeBookedIndependently() {
+        long start = millis(2017, 3, 2, 10, 0);
+        bookingIntervalIndex.put(7, start, start + 3600000);
+        assertNull(bookingValidator.validateCreate(MACHINE + 1, start, start + 3600000, 1, 1));
+        assertEquals(BookingRejection.UNKNOWN_MACHINE, bookingValidator.validateCreate(MACHINE + 2, start, start + 3600000, 1, 1));
+        assertEquals(BookingRejection.UNKNOWN_MACHINE, bookingValidator.validateEdit(-1, start, start + 3600000, 1, 1, 7));
+    }
+
+    @Test
+    public void editsShouldBeAllowedInThePast() {
+        assertNull(bookingValidator.validateEdit(MACHINE, millis(2017, 3, 1, 10, 0), millis(2017, 3, 1, 11, 0), 1, 1, 7));
+    }
+
+    @Test
+    public void openingHoursShouldFollowDaylightSavingTime() {
+        // 8:00 local time is 7:00 UTC in winter and 6:00 UTC in summer
+        assertNull(bookingValidator.validateCreate(MACHINE, millis(2017, 7, 3, 8, 0), millis(2017, 7, 3, 9, 0), 1, 1));
+        assertEquals(BookingRejection.OUTSIDE_OPENING_HOURS,
+                bookingValidator.validateCreate(MACHINE, millis(2017, 7, 3, 7, 55), millis(2017, 7, 3, 9, 0), 1, 1));
+    }
+
+    @Test
+    public void replacedPolicyShouldApplyToTheNextValidation() {
+        BookingPolicyFactory bookingPolicyFactory = new BookingPolicyFactory();
+        bookingPolicyFactory.setSlotMinutes(15);
+        bookingPolicyFactory.setMinimumMinutes(60);
+        bookingPolicyFactory.setWeekdays(Collections.singletonMap(DayOfWeek.THURSDAY,
+                Arrays.asList("08:00-12:00", "13:00-22:00")));
+        bookingPolicyFactory.setDates(Collections.singletonMap("2017-03-03", Collections.emptyList()));
+        long start = millis(2017, 3, 2, 10, 0);
+        assertNull(bookingValidator.validateCreate(MACHINE, start, start + 1800000, 1, 1));
+
+        bookingValidator.setBookingPolicy(bookingPolicyFactory.build());
+        assertEquals(BookingRejection.TOO_SHORT, bookingValidator.validateCreate(MACHINE, start, start + 1800000, 1, 1));
+        assertNull(bookingValidator.validateCreate(MACHINE, start, start + 7200000, 1, 1));
+        // The quiet hour on Thursdays and the closed date
+        assertEquals(BookingRejection.OUTSIDE_OPENING_HOURS,
+                bookingValidator.validateCreate(MACHINE, millis(2017, 3, 2, 11, 30), millis(2017, 3, 2, 13, 0), 1, 1));
+        assertEquals(BookingRejection.OUTSIDE_OPENING_HOURS,
+                bookingValidator.validateCreate(MACHINE, millis(2017, 3, 3, 10, 0), millis(2017, 3, 3, 12, 0), 1, 1));
+        assertEquals(millis(2017, 3, 2, 10, 0), bookingValidator.floorToSlot(millis(2017, 3, 2, 10, 14)));
+    }
+
+    @Test
+    public void bookingsShouldNotCrossAMonthEnd() {
+        BookingPolicyFactory bookingPolicyFactory = new BookingPolicyFactory();
+        bookingPolicyFactory.setOpeningHours(Collections.singletonList("00:00-24:00"));
+        bookingValidator.setBookingPolicy(bookingPolicyFactory.build());
+
+        assertNull(bookingValidator.validateCreate(MACHINE, millis(2017, 3, 30, 22, 0), millis(2017, 3, 31, 2, 0), 1, 1));
+        assertEquals(BookingRejection.CROSSES_MONTH,
+                bookingValidator.validateCreate(MACHINE, millis(2017, 3, 31, 22, 0), millis(2017, 4, 1, 2, 0), 1, 1));
+        // Ending at midnight ends in the month
+        assertNull(bookingValidator.validateCreate(MACHINE, millis(2017, 3, 31, 22, 0), millis(2017, 4, 1, 0, 0), 1, 1));
+        // Every month end, leap days and centuries included, in local time like the partitions
+        for (YearMonth month = YearMonth.of(2000, 1); month.getYear() < 2101; month = month.plusMonths(1)) {
+            LocalDateTime nextMonth = month.plusMonths(1).atDay(1).atStartOfDay();
+            long lastHour = nextMonth.minusHours(1).atZone(ZONE).toInstant().toEpochMilli();
+            long midnight = nextMonth.atZone(ZONE).toInstant().toEpochMilli();
+            assertNull(month.toString(), bookingValidator.validateEdit(MACHINE, lastHour, midnight, 1, 1, 7));
+            assertEquals(month.toString(), BookingRejection.CROSSES_MONTH,
+                    bookingValidator.validateEdit(MACHINE, lastHour, midnight + 3600000, 1, 1, 7));
+        }
+    }
+
+    @Test
+    public void zoneOffsetTableShouldAgreeWithTheZoneRules() {
+        ZoneOffsetTable zoneOffsetTable = new ZoneOffsetTable(ZONE, 2010, 2020);
+        // Across the table and past both of its ends
+        for (long minute = millis(2009, 6, 1, 0, 0) / 60000; minute < millis(2021, 6, 1, 0, 0) / 60000; minute += 97) {
+            assertEquals(ZONE.getRules().getOffset(Instant.ofEpochSecond(minute * 60)).getTotalSeconds() / 60,
+                    zoneOffsetTable.offsetMinutes(minute));
+        }
+    }
+
+    @Test
+    public void validationShouldNotAllocate() {
+        long start = millis(2017, 3, 2, 10, 0);
+        for (int i = 0; i < 500; i++) {
+            bookingIntervalIndex.put(i, start + i * 7200000L, start + i * 7200000L + 3600000);
+        }
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int calls = 100000;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+            int rejections = 0;
+            for (int i = 0; i < calls; i++) {
+                long startTime = start + (i % 1000) * 3600000L;
+                if (bookingValidator.validateCreate(MACHINE, startTime, startTime + 3600000, 1, 1) != null) rejections++;
+                if (bookingValidator.validateEdit(MACHINE, startTime, startTime + 3600000, 1, 1, i % 500) != null) rejections++;
+            }
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            // The smallest object takes 16 bytes, so anything allocated per call would show
+            assertTrue("Allocated " + allocated + " bytes in " + rejections + " rejections", allocated < calls);
+        }
+    }
+
+    private static long millis(int year, int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(LocalDateTime.of(year, month, day, hour, minute), ZONE).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,104 @@
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.Uninterruptibles;
+import db.CoherenceChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.DriverManager;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Two nodes sharing the local test database, like the DAO tests
+ */
+public class CoherenceChannelTest {
+    private CoherenceChannel node1;
+    private CoherenceChannel node2;
+    private List<String> bookingsOnNode1;
+    private List<String> bookingsOnNode2;
+    private List<String> tokensOnNode2;
+    private List<String> resyncs;
+
+    @Before
+    public void setup() throws Exception {
+        node1 = newNode();
+        node2 = newNode();
+        bookingsOnNode1 = new CopyOnWriteArrayList<>();
+        bookingsOnNode2 = new CopyOnWriteArrayList<>();
+        tokensOnNode2 = new CopyOnWriteArrayList<>();
+        resyncs = new CopyOnWriteArrayList<>();
+        node1.subscribe(CoherenceChannel.BOOKING, bookingsOnNode1::add);
+        node2.subscribe(CoherenceChannel.BOOKING, bookingsOnNode2::add);
+        node2.subscribe(CoherenceChannel.TOKEN, tokensOnNode2::add);
+        node2.onResync(() -> resyncs.add(node2.getNodeId()));
+        node1.start();
+        node2.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        node1.stop();
+        node2.stop();
+    }
+
+    @Test
+    public void invalidationsShouldReachOtherNodesOnly() throws Exception {
+        node1.publish(CoherenceChannel.BOOKING, "2030-03");
+
+        awaitSize(bookingsOnNode2, 1);
+        assertEquals("2030-03", bookingsOnNode2.get(0));
+        Thread.sleep(4 * CoherenceChannel.DEFAULT_POLL_INTERVAL_MILLIS);
+        assertTrue(bookingsOnNode1.isEmpty());
+    }
+
+    @Test
+    public void tokensShouldOnlyBePublishedByHash() throws Exception {
+        node1.publish(CoherenceChannel.TOKEN, CoherenceChannel.hashToken("secret"));
+
+        awaitSize(tokensOnNode2, 1);
+        assertEquals(CoherenceChannel.hashToken("secret"), tokensOnNode2.get(0));
+        assertTrue(!tokensOnNode2.get(0).contains("secret"));
+    }
+
+    @Test
+    public void publishingShouldNotWaitForTheDatabase() throws Exception {
+        CountDownLatch databaseReachable = new CountDownLatch(1);
+        CoherenceChannel stuckNode = new CoherenceChannel(() -> {
+            Uninterruptibles.awaitUninterruptibly(databaseReachable);
+            return DriverManager.getConnection("jdbc:postgresql://localhost:5432/test", "postgres", "root");
+        }, CoherenceChannel.DEFAULT_POLL_INTERVAL_MILLIS, new MetricRegistry());
+
+        long start = System.nanoTime();
+        stuckNode.publish(CoherenceChannel.BOOKING, "2030-04");
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        databaseReachable.countDown();
+        awaitSize(bookingsOnNode2, 1);
+        assertEquals("2030-04", bookingsOnNode2.get(0));
+        stuckNode.stop();
+    }
+
+    @Test
+    public void startingShouldResync() {
+        assertEquals(1, resyncs.size());
+    }
+
+    private static CoherenceChannel newNode() {
+        return new CoherenceChannel(() -> DriverManager.getConnection("jdbc:postgresql://localhost:5432/test", "postgres", "root"),
+                CoherenceChannel.DEFAULT_POLL_INTERVAL_MILLIS, new MetricRegistry());
+    }
+
+    private static void awaitSize(List<String> received, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (received.size() < size) {
+            assertTrue("Invalidation was not received in time", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
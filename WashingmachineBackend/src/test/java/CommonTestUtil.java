@@ -1,5 +1,14 @@
+import api.MachineDTO;
+import api.MachineKind;
 import api.UserDTO;
+import core.MachineTimelines;
 import core.RoleHelper;
+import db.SchemaMigrations;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class CommonTestUtil {
     private final static String USERNAME_DEFAULT = "user";
@@ -7,4 +16,25 @@ public class CommonTestUtil {
     private final static String NAME_DEFAULT = "name";
 
     public final static UserDTO defaultUser = new UserDTO(USERNAME_DEFAULT, RoleHelper.ROLE_DEFAULT, NAME_DEFAULT, APARTMENT_DEFAULT);
+
+    /**
+     * @return empty timelines of machines 1 to numberOfMachines, each washing and tumble drying
+     */
+    public static MachineTimelines machineTimelines(int numberOfMachines) {
+        List<MachineDTO> machines = new ArrayList<>();
+        for (int id = MachineDTO.FIRST_MACHINE_ID; id < MachineDTO.FIRST_MACHINE_ID + numberOfMachines; id++) {
+            machines.add(new MachineDTO(id, "Machine " + id, MachineKind.WASHER_DRYER));
+        }
+        return new MachineTimelines(machines);
+    }
+
+    /**
+     * Applies every migration to the test database again, creating what earlier tests have dropped
+     */
+    public static void migrate(DBI dbi) {
+        try (Handle handle = dbi.open()) {
+            handle.execute("DROP TABLE IF EXISTS schema_version");
+        }
+        new SchemaMigrations(dbi).migrate();
+    }
 }
@@ -0,0 +1,186 @@
+import api.UserDTO;
+import core.BookingMonthVersions;
+import core.RoleHelper;
+import filters.ConditionalGetFilter;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.UriInfo;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ConditionalGetFilterTest {
+    private BookingMonthVersions bookingMonthVersions;
+    private ConditionalGetFilter conditionalGetFilter;
+    private long startTime;
+    private long endTime;
+
+    @Before
+    public void setup() {
+        bookingMonthVersions = new BookingMonthVersions();
+        conditionalGetFilter = new ConditionalGetFilter(bookingMonthVersions);
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2030, Calendar.MARCH, 1, 0, 0, 0);
+        startTime = calendar.getTimeInMillis();
+        calendar.set(2030, Calendar.APRIL, 10, 23, 59, 0);
+        endTime = calendar.getTimeInMillis();
+    }
+
+    @Test
+    public void unchangedMonthsShouldBeAnsweredWithNotModified() throws Exception {
+        EntityTag entityTag = firstResponseEntityTag("booking/interval", "user");
+
+        ContainerRequestContext request = request("booking/interval", startTime, endTime, "user", entityTag);
+        conditionalGetFilter.filter(request);
+
+        verify(request).abortWith(argThat304());
+    }
+
+    @Test
+    public void writeToACoveredMonthShouldChangeTheEntityTag() throws Exception {
+        EntityTag entityTag = firstResponseEntityTag("booking/interval", "user");
+        bookingMonthVersions.bump(BookingMonthVersions.monthOf(endTime));
+
+        ContainerRequestContext request = request("booking/interval", startTime, endTime, "user", entityTag);
+        conditionalGetFilter.filter(request);
+
+        verify(request, never()).abortWith(any(Response.class));
+    }
+
+    @Test
+    public void writeToAnotherMonthShouldNotChangeTheEntityTag() throws Exception {
+        EntityTag entityTag = firstResponseEntityTag("booking/interval", "user");
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(endTime);
+        calendar.add(Calendar.MONTH, 1);
+        bookingMonthVersions.bump(BookingMonthVersions.monthOf(calendar.getTimeInMillis()));
+
+        ContainerRequestContext request = request("booking/interval", startTime, endTime, "user", entityTag);
+        conditionalGetFilter.filter(request);
+
+        verify(request).abortWith(argThat304());
+    }
+
+    @Test
+    public void entityTagShouldDependOnUserAndPath() throws Exception {
+        EntityTag entityTag = firstResponseEntityTag("booking/interval", "user");
+
+        assertNotEquals(entityTag, firstResponseEntityTag("booking/interval", "otherUser"));
+        assertNotEquals(entityTag, firstResponseEntityTag("booking/interval", null));
+        assertNotEquals(entityTag, firstResponseEntityTag("usage", "user"));
+        assertNotEquals(entityTag, firstResponseEntityTag("booking/interval", "user", new BookingMonthVersions()));
+        assertEquals(entityTag, firstResponseEntityTag("booking/interval", "user"));
+    }
+
+    @Test
+    public void requestsSpanningTooManyMonthsShouldNotBeVersioned() throws Exception {
+        ContainerRequestContext request = request("usage", 0, Long.MAX_VALUE, "user", null);
+        ContainerResponseContext response = response(Response.Status.OK);
+
+        conditionalGetFilter.filter(request);
+        conditionalGetFilter.filter(request, response);
+
+        assertFalse(response.getHeaders().containsKey(HttpHeaders.ETAG));
+        assertEquals(ConditionalGetFilter.CACHE_CONTROL, response.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    public void failedResponsesShouldNotGetAnEntityTag() throws Exception {
+        ContainerRequestContext request = request("booking/interval", startTime, endTime, "user", null);
+        ContainerResponseContext response = response(Response.Status.INTERNAL_SERVER_ERROR);
+
+        conditionalGetFilter.filter(request);
+        conditionalGetFilter.filter(request, response);
+
+        assertFalse(response.getHeaders().containsKey(HttpHeaders.ETAG));
+    }
+
+    private EntityTag firstResponseEntityTag(String path, String username) throws Exception {
+        return firstResponseEntityTag(path, username, bookingMonthVersions);
+    }
+
+    private EntityTag firstResponseEntityTag(String path, String username, BookingMonthVersions versions) throws Exception {
+        ConditionalGetFilter filter = new ConditionalGetFilter(versions);
+        ContainerRequestContext request = request(path, startTime, endTime, username, null);
+        ContainerResponseContext response = response(Response.Status.OK);
+
+        filter.filter(request);
+        filter.filter(request, response);
+
+        verify(request, never()).abortWith(any(Response.class));
+        return (EntityTag) response.getHeaders().getFirst(HttpHeaders.ETAG);
+    }
+
+    /**
+     * Mocks a request that, like Jersey's, only meets its preconditions if the entity tag differs from ifNoneMatch
+     */
+    private ContainerRequestContext request(String path, long startTime, long endTime, String username, EntityTag ifNoneMatch) {
+        ContainerRequestContext request = mock(ContainerRequestContext.class);
+        UriInfo uriInfo = mock(UriInfo.class);
+        MultivaluedMap<String, String> queryParameters = new MultivaluedHashMap<>();
+        queryParameters.putSingle("startTime", String.valueOf(startTime));
+        queryParameters.putSingle("endTime", String.valueOf(endTime));
+        when(uriInfo.getQueryParameters()).thenReturn(queryParameters);
+        when(uriInfo.getPath()).thenReturn(path);
+        when(request.getUriInfo()).thenReturn(uriInfo);
+
+        // As left by the authentication filters, the principal is null when signed out
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getUserPrincipal())
+                .thenReturn(username != null ? new UserDTO(username, RoleHelper.ROLE_DEFAULT, "name", "apartment") : null);
+        when(request.getSecurityContext()).thenReturn(securityContext);
+        // Every request comes from a session of its own, which must not matter to the entity tag
+        Map<String, Cookie> cookies = new HashMap<>();
+        cookies.put("userAccessToken", new Cookie("userAccessToken", UUID.randomUUID().toString()));
+        when(request.getCookies()).thenReturn(cookies);
+
+        Request jaxRsRequest = mock(Request.class);
+        when(jaxRsRequest.evaluatePreconditions(any(EntityTag.class))).thenReturn(null);
+        if (ifNoneMatch != null) {
+            when(jaxRsRequest.evaluatePreconditions(eq(ifNoneMatch))).thenReturn(Response.notModified(ifNoneMatch));
+        }
+        when(request.getRequest()).thenReturn(jaxRsRequest);
+
+        Map<String, Object> properties = new HashMap<>();
+        doAnswer(invocation -> properties.put((String) invocation.getArguments()[0], invocation.getArguments()[1]))
+                .when(request).setProperty(any(String.class), any());
+        when(request.getProperty(any(String.class))).thenAnswer(invocation -> properties.get(invocation.getArguments()[0]));
+        return request;
+    }
+
+    private ContainerResponseContext response(Response.Status status) {
+        ContainerResponseContext response = mock(ContainerResponseContext.class);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        when(response.getHeaders()).thenReturn(headers);
+        when(response.getStatus()).thenReturn(status.getStatusCode());
+        return response;
+    }
+
+    private static Response argThat304() {
+        return argThat(new ArgumentMatcher<Response>() {
+            @Override
+            public boolean matches(Object argument) {
+                return ((Response) argument).getStatus() == Response.Status.NOT_MODIFIED.getStatusCode();
+            }
+        });
+    }
+}
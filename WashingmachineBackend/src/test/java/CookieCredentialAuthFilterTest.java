@@ -0,0 +1,95 @@
+import api.UserDTO;
+import auth.CookieCredentialAuthFilter;
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.Authenticator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.SecurityContext;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CookieCredentialAuthFilterTest {
+    private static final String VALID_TOKEN = "valid";
+    private CookieCredentialAuthFilter<UserDTO> requiredFilter;
+    private CookieCredentialAuthFilter<UserDTO> optionalFilter;
+
+    @Before
+    public void setup() {
+        Authenticator<String, UserDTO> authenticator = token -> {
+            if (VALID_TOKEN.equals(token)) {
+                return Optional.of(CommonTestUtil.defaultUser);
+            }
+            throw new AuthenticationException("Session key not present or invalid");
+        };
+        requiredFilter = new CookieCredentialAuthFilter.Builder<UserDTO>().setAuthenticator(authenticator)
+                .buildAuthFilter();
+        optionalFilter = new CookieCredentialAuthFilter.Builder<UserDTO>().setOptional(true)
+                .setAuthenticator(authenticator).buildAuthFilter();
+    }
+
+    @Test
+    public void optionalFilterShouldSetUserOfValidToken() throws IOException {
+        ContainerRequestContext request = request(VALID_TOKEN);
+        optionalFilter.filter(request);
+
+        ArgumentCaptor<SecurityContext> securityContext = ArgumentCaptor.forClass(SecurityContext.class);
+        verify(request).setSecurityContext(securityContext.capture());
+        assertEquals(CommonTestUtil.defaultUser, securityContext.getValue().getUserPrincipal());
+    }
+
+    @Test
+    public void optionalFilterShouldLetInvalidTokenThroughSignedOut() throws IOException {
+        ContainerRequestContext request = request("expired");
+        optionalFilter.filter(request);
+        verify(request, never()).setSecurityContext(any());
+    }
+
+    @Test
+    public void optionalFilterShouldLetMissingCookieThroughSignedOut() throws IOException {
+        ContainerRequestContext request = request(null);
+        optionalFilter.filter(request);
+        verify(request, never()).setSecurityContext(any());
+    }
+
+    @Test
+    public void requiredFilterShouldRejectMissingCookie() throws IOException {
+        try {
+            requiredFilter.filter(request(null));
+            fail();
+        } catch (WebApplicationException e) {
+            assertEquals(401, e.getResponse().getStatus());
+        }
+    }
+
+    @Test
+    public void requiredFilterShouldRejectInvalidToken() throws IOException {
+        try {
+            requiredFilter.filter(request("expired"));
+            fail();
+        } catch (WebApplicationException e) {
+            assertEquals(401, e.getResponse().getStatus());
+        }
+    }
+
+    private static ContainerRequestContext request(String token) {
+        ContainerRequestContext request = mock(ContainerRequestContext.class);
+        when(request.getCookies()).thenReturn(token == null ? Collections.emptyMap()
+                : Collections.singletonMap(CookieCredentialAuthFilter.COOKIE_NAME,
+                new Cookie(CookieCredentialAuthFilter.COOKIE_NAME, token)));
+        when(request.getSecurityContext()).thenReturn(mock(SecurityContext.class));
+        return request;
+    }
+}
@@ -0,0 +1,95 @@
+import api.BillingDTO;
+import com.codahale.metrics.MetricRegistry;
+import db.BookingDAO;
+import db.CsvStreamer;
+import db.UnitOfWork;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.ResultIterator;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class CsvStreamerTest {
+    private static final String[] HEADER = {"apartment", "washing_machine_uses", "tumble_dry_uses"};
+
+    private Handle handle;
+    private CsvStreamer csvStreamer;
+
+    @Before
+    public void setup() {
+        DBI dbi = mock(DBI.class);
+        handle = mock(Handle.class);
+        when(dbi.open()).thenReturn(handle);
+        when(handle.attach(BookingDAO.class)).thenReturn(mock(BookingDAO.class));
+        csvStreamer = new CsvStreamer(new UnitOfWork(dbi, new MetricRegistry()));
+    }
+
+    @Test
+    public void rowsShouldBeWrittenAfterTheHeader() throws Exception {
+        ClosingIterator rows = new ClosingIterator(Arrays.asList(new BillingDTO("1.tv", 3, 4), new BillingDTO("2.th", 0, 1)));
+
+        assertEquals("apartment,washing_machine_uses,tumble_dry_uses\r\n1.tv,3,4\r\n2.th,0,1\r\n", write(rows));
+        assertTrue(rows.closed);
+        verify(handle).begin();
+        verify(handle).rollback();
+        verify(handle).close();
+    }
+
+    @Test
+    public void fieldsShouldBeQuotedAndFormulasDefused() throws Exception {
+        ClosingIterator rows = new ClosingIterator(Arrays.asList(new BillingDTO("St. \"A\", 2", -1, 0),
+                new BillingDTO("=HYPERLINK(\"x\")", 0, 0)));
+
+        assertEquals("apartment,washing_machine_uses,tumble_dry_uses\r\n" +
+                "\"St. \"\"A\"\", 2\",-1,0\r\n" +
+                "\"'=HYPERLINK(\"\"x\"\")\",0,0\r\n", write(rows));
+    }
+
+    private String write(ClosingIterator rows) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        csvStreamer.stream(BookingDAO.class, dao -> rows, HEADER,
+                (BillingDTO billing) -> new Object[]{billing.getApartment(), billing.getSumOfWashingMachineUses(),
+                        billing.getSumOfTumbleDryUses()})
+                .write(outputStream);
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static class ClosingIterator implements ResultIterator<BillingDTO> {
+        private final Iterator<BillingDTO> rows;
+        private boolean closed;
+
+        ClosingIterator(List<BillingDTO> rows) {
+            this.rows = rows.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return rows.hasNext();
+        }
+
+        @Override
+        public BillingDTO next() {
+            return rows.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import api.BookingDTO;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import core.RoleHelper;
+import db.BookingDAO;
+import db.JsonStreamer;
+import db.UnitOfWork;
+import db.UserDAO;
+import io.dropwizard.jackson.Jackson;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the heap held while serializing a long booking interval as a list with streaming it through a cursor,
+ * against the local test database like the DAO tests.
+ */
+public class JsonStreamerHeapTest {
+    private static final int NUMBER_OF_BOOKINGS = 100000;
+    private static final long SAMPLE_EVERY_BYTES = 2 * 1024 * 1024;
+    private static final String USERNAME = "user";
+
+    private DBI dbi;
+    private BookingDAO bookingDAO;
+    private UserDAO userDAO;
+    private ObjectMapper objectMapper;
+    private JsonStreamer jsonStreamer;
+    private Date startTime;
+    private Date endTime;
+
+    @Before
+    public void setup() {
+        dbi = new DBI("jdbc:postgresql://localhost:5432/test", "postgres", "root");
+        bookingDAO = dbi.onDemand(BookingDAO.class);
+        userDAO = dbi.onDemand(UserDAO.class);
+        CommonTestUtil.migrate(dbi);
+        userDAO.insertUser(USERNAME, "password_that_should_have_been_hashed_and_salted", "bogus", "name", "apartment", RoleHelper.ROLE_DEFAULT);
+        try (Handle handle = dbi.open()) {
+            handle.execute("INSERT INTO bookings (start_time, end_time, owner, number_of_washing_machine_uses, number_of_tumble_dry_uses, machine_id) " +
+                    "SELECT TIMESTAMP '2000-01-01' + i * INTERVAL '10 minutes', TIMESTAMP '2000-01-01' + i * INTERVAL '10 minutes' + INTERVAL '5 minutes', ?, 1, 1, 1 " +
+                    "FROM generate_series(0, ? - 1) AS i", USERNAME, NUMBER_OF_BOOKINGS);
+        }
+
+        objectMapper = Jackson.newObjectMapper();
+        jsonStreamer = new JsonStreamer(new UnitOfWork(dbi, new MetricRegistry()), objectMapper);
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(1999, Calendar.DECEMBER, 1);
+        startTime = calendar.getTime();
+        calendar.set(2010, Calendar.JANUARY, 1);
+        endTime = calendar.getTime();
+    }
+
+    @After
+    public void tearDown() {
+        bookingDAO.truncateTable();
+        userDAO.truncateUsersTable();
+    }
+
+    @Test
+    public void streamingShouldHoldFarLessHeapThanAList() throws Exception {
+        long baseline = usedHeapAfterGc();
+        HeapSamplingOutputStream listOutput = new HeapSamplingOutputStream();
+        List<BookingDTO> bookings = bookingDAO.getBookingsInInterval(startTime, endTime, USERNAME);
+        objectMapper.writeValue(listOutput, bookings);
+        assertEquals(NUMBER_OF_BOOKINGS, bookings.size());
+        bookings = null;
+
+        HeapSamplingOutputStream streamedOutput = new HeapSamplingOutputStream();
+        jsonStreamer.stream(BookingDAO.class, dao -> dao.iterateBookingsInInterval(startTime, endTime, USERNAME))
+                .write(streamedOutput);
+
+        long listPeak = listOutput.peakUsedHeap - baseline;
+        long streamedPeak = streamedOutput.peakUsedHeap - baseline;
+        assertEquals(listOutput.bytes, streamedOutput.bytes);
+        assertTrue("Streaming should not hold the rows, peaked at " + streamedPeak / 1024 + " kB against "
+                + listPeak / 1024 + " kB as a list", streamedPeak * 4 < listPeak);
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 2; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Discards the JSON, but samples the live heap every few megabytes written
+     */
+    private static class HeapSamplingOutputStream extends OutputStream {
+        private long bytes;
+        private long peakUsedHeap;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            long before = bytes;
+            bytes += length;
+            if (before / SAMPLE_EVERY_BYTES != bytes / SAMPLE_EVERY_BYTES) {
+                try {
+                    peakUsedHeap = Math.max(peakUsedHeap, usedHeapAfterGc());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
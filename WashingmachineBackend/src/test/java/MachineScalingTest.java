@@ -0,0 +1,167 @@
+import api.BookingDTO;
+import api.MachineDTO;
+import api.UserDTO;
+import core.BookingDayLocks;
+import core.BookingMonthCache;
+import core.BookingServiceImpl;
+import core.RoleHelper;
+import db.BookingDAO;
+import db.JsonStreamer;
+import exceptions.ValidationErrorException;
+import org.junit.Before;
+import org.junit.Test;
+import resources.BookingResource;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Books 1 to 8 machines from many threads on the same days, against a DAO that stores overlapping rows like the
+ * database before the exclusion constraint. Each machine is a timeline of its own, so bookings grow with the machines
+ * while no machine is ever double booked.
+ */
+public class MachineScalingTest {
+    private static final int[] NUMBERS_OF_MACHINES = {1, 2, 4, 8};
+    private static final int NUMBER_OF_THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 1000;
+    private static final int NUMBER_OF_DAYS = 2;
+
+    private long firstDay;
+
+    @Before
+    public void setup() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        firstDay = calendar.getTimeInMillis();
+    }
+
+    @Test
+    public void bookingsShouldScaleWithTheMachinesWithoutDoubleBookings() throws Exception {
+        int bookingsOnOneMachine = 0;
+        for (int numberOfMachines : NUMBERS_OF_MACHINES) {
+            Map<Integer, BookingDTO> storedBookings = new ConcurrentHashMap<>();
+            runAttempts(numberOfMachines, storedBookings);
+
+            Map<Integer, List<BookingDTO>> byMachine = storedBookings.values().stream()
+                    .collect(Collectors.groupingBy(BookingDTO::getMachineId));
+            assertEquals("Every machine should have been booked", numberOfMachines, byMachine.size());
+            for (List<BookingDTO> bookings : byMachine.values()) {
+                assertEquals(0, doubleBookings(bookings));
+            }
+            if (numberOfMachines == 1) {
+                bookingsOnOneMachine = storedBookings.size();
+            } else {
+                // The days of one machine are full, each further machine has room for about as many
+                assertTrue(numberOfMachines + " machines took " + storedBookings.size() + " bookings, one took "
+                        + bookingsOnOneMachine, storedBookings.size() > bookingsOnOneMachine * numberOfMachines / 2);
+            }
+        }
+    }
+
+    @Test
+    public void dayLockOfOneMachineShouldNotBlockAnother() throws Exception {
+        BookingDayLocks bookingDayLocks = new BookingDayLocks();
+        long startTime = firstDay + TimeUnit.HOURS.toMillis(10);
+        long endTime = startTime + TimeUnit.HOURS.toMillis(1);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try (BookingDayLocks.Held ignored = bookingDayLocks.lock(MachineDTO.FIRST_MACHINE_ID, startTime, endTime)) {
+            executorService.submit(() -> bookingDayLocks.lock(MachineDTO.FIRST_MACHINE_ID + 1, startTime, endTime).close())
+                    .get(10, TimeUnit.SECONDS);
+
+            Future<?> sameMachine = executorService.submit(
+                    () -> bookingDayLocks.lock(MachineDTO.FIRST_MACHINE_ID, startTime, endTime).close());
+            try {
+                sameMachine.get(100, TimeUnit.MILLISECONDS);
+                fail("The day of the first machine is locked");
+            } catch (TimeoutException e) {
+                // Expected, it waits for the lock held here
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private void runAttempts(int numberOfMachines, Map<Integer, BookingDTO> storedBookings) throws Exception {
+        AtomicInteger nextId = new AtomicInteger(1);
+        BookingDAO bookingDAO = (BookingDAO) Proxy.newProxyInstance(BookingDAO.class.getClassLoader(),
+                new Class[]{BookingDAO.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("insertBookingAndGet")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    BookingDTO toInsert = (BookingDTO) args[0];
+                    // Widen the window between validation and insertion
+                    Thread.yield();
+                    int id = nextId.getAndIncrement();
+                    BookingDTO inserted = new BookingDTO(id, toInsert.getMachineId(), toInsert.getStartTime(),
+                            toInsert.getEndTime(), toInsert.getOwner(), "", "", 1, 1);
+                    storedBookings.put(id, inserted);
+                    return inserted;
+                });
+        BookingResource bookingResource = new BookingResource(bookingDAO,
+                new BookingServiceImpl(CommonTestUtil.machineTimelines(numberOfMachines)), new BookingDayLocks(),
+                mock(BookingMonthCache.class), mock(JsonStreamer.class));
+
+        ExecutorService executorService = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < NUMBER_OF_THREADS; thread++) {
+            final int threadNumber = thread;
+            futures.add(executorService.submit(() -> {
+                Random random = new Random(threadNumber);
+                UserDTO userDTO = new UserDTO("user" + threadNumber, RoleHelper.ROLE_DEFAULT, "name", "apartment");
+                for (int attempt = 0; attempt < ATTEMPTS_PER_THREAD; attempt++) {
+                    int machineId = MachineDTO.FIRST_MACHINE_ID + random.nextInt(numberOfMachines);
+                    // Start between 08:00 and 20:00 on a 5 minute grid, 30 to 120 minutes long
+                    long startTime = firstDay + TimeUnit.DAYS.toMillis(random.nextInt(NUMBER_OF_DAYS))
+                            + TimeUnit.MINUTES.toMillis(8 * 60 + 5 * random.nextInt(12 * 12));
+                    long endTime = startTime + TimeUnit.MINUTES.toMillis(30 + 5 * random.nextInt(19));
+                    try {
+                        bookingResource.createBooking(userDTO, machineId, startTime, endTime, 1, 1);
+                    } catch (ValidationErrorException e) {
+                        // Expected for every attempt clashing with an earlier booking of the machine
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+    }
+
+    private static int doubleBookings(List<BookingDTO> bookings) {
+        List<BookingDTO> sorted = new ArrayList<>(bookings);
+        sorted.sort(Comparator.comparing(BookingDTO::getStartTime));
+        int doubleBookings = 0;
+        long latestEnd = Long.MIN_VALUE;
+        for (BookingDTO booking : sorted) {
+            if (booking.getStartTime().getTime() < latestEnd) {
+                doubleBookings++;
+            }
+            latestEnd = Math.max(latestEnd, booking.getEndTime().getTime());
+        }
+        return doubleBookings;
+    }
+}
@@ -1,26 +1,34 @@
+import api.SessionDTO;
 import api.UserDTO;
 import api.UserTokenDTO;
 import auth.MyAuthenticator;
+import auth.SessionCache;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilderSpec;
 import core.RoleHelper;
-import db.UserDAO;
 import db.UserTokenDAO;
 import io.dropwizard.auth.AuthenticationException;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class MyAuthenticatorTest {
     private MyAuthenticator myAuthenticator;
-    private UserDAO userDAO;
+    private SessionCache sessionCache;
     private UserTokenDAO userTokenDAO;
+    private MetricRegistry metricRegistry;
     private int tokenLifeTime;
     private final String USERNAME = "username";
     private final String NAME = "name";
@@ -30,20 +38,20 @@ public class MyAuthenticatorTest {
     public void setup() {
         tokenLifeTime = 7;
         userTokenDAO = Mockito.mock(UserTokenDAO.class);
-        userDAO = Mockito.mock(UserDAO.class);
-        myAuthenticator = new MyAuthenticator(userTokenDAO, userDAO, tokenLifeTime);
-        when(userDAO.getUser(USERNAME)).thenReturn(new UserDTO(USERNAME, RoleHelper.ROLE_DEFAULT, NAME, APARTMENT));
+        metricRegistry = new MetricRegistry();
+        sessionCache = new SessionCache(userTokenDAO, CacheBuilderSpec.parse("maximumSize=100"), metricRegistry);
+        myAuthenticator = new MyAuthenticator(sessionCache, tokenLifeTime);
     }
 
     @Test(expected = AuthenticationException.class)
     public void notPresentTokenShouldThrowError() throws io.dropwizard.auth.AuthenticationException {
-        when(userTokenDAO.getUserTokenFromToken("bogus")).thenReturn(null);
+        when(userTokenDAO.getSessionFromToken("bogus")).thenReturn(null);
         myAuthenticator.authenticate("otherBogus");
     }
 
     @Test(expected = AuthenticationException.class)
     public void outdatedTokenShouldThrowError() throws AuthenticationException {
-        when(userTokenDAO.getUserTokenFromToken("key")).thenReturn(new UserTokenDTO("bogus", "key", new Date(0), UserTokenDTO.Status.VALID));
+        when(userTokenDAO.getSessionFromToken("key")).thenReturn(session("bogus", "key", new Date(0), UserTokenDTO.Status.VALID));
         myAuthenticator.authenticate("key");
     }
 
@@ -51,7 +59,7 @@ public class MyAuthenticatorTest {
     public void tokenWithStatusInvalidShouldThrowError() throws AuthenticationException {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.DAY_OF_YEAR, 1);
-        when(userTokenDAO.getUserTokenFromToken("key")).thenReturn(new UserTokenDTO("bogus", "key", calendar.getTime(), UserTokenDTO.Status.INVALID));
+        when(userTokenDAO.getSessionFromToken("key")).thenReturn(session("bogus", "key", calendar.getTime(), UserTokenDTO.Status.INVALID));
         myAuthenticator.authenticate("key");
     }
 
@@ -59,28 +67,97 @@ public class MyAuthenticatorTest {
     public void correctTokenShouldReturnUser() throws AuthenticationException {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.DAY_OF_YEAR, 1);
-        when(userTokenDAO.getUserTokenFromToken("key")).thenReturn(new UserTokenDTO(USERNAME, "key", calendar.getTime(), UserTokenDTO.Status.VALID));
+        when(userTokenDAO.getSessionFromToken("key")).thenReturn(session(USERNAME, "key", calendar.getTime(), UserTokenDTO.Status.VALID));
         Optional<UserDTO> user = myAuthenticator.authenticate("key");
         assertEquals(USERNAME, user.get().getName());
     }
 
+    @Test
+    public void cachedTokenShouldNotBeReadAgain() throws AuthenticationException {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_YEAR, 3);
+        when(userTokenDAO.getSessionFromToken("key")).thenReturn(session(USERNAME, "key", calendar.getTime(), UserTokenDTO.Status.VALID));
+        myAuthenticator.authenticate("key");
+        myAuthenticator.authenticate("key");
+
+        verify(userTokenDAO, times(1)).getSessionFromToken("key");
+        assertEquals(1, metricRegistry.meter(MetricRegistry.name(SessionCache.class, "hits")).getCount());
+        assertEquals(1, metricRegistry.meter(MetricRegistry.name(SessionCache.class, "misses")).getCount());
+        assertEquals(1, metricRegistry.timer(MetricRegistry.name(SessionCache.class, "loads")).getCount());
+    }
+
+    @Test
+    public void expiredCachedTokenShouldBeReadAgainAsItMayHaveBeenExtendedElsewhere() throws AuthenticationException {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_YEAR, 3);
+        when(userTokenDAO.getSessionFromToken("key"))
+                .thenReturn(session(USERNAME, "key", new Date(0), UserTokenDTO.Status.VALID))
+                .thenReturn(session(USERNAME, "key", calendar.getTime(), UserTokenDTO.Status.VALID));
+        sessionCache.get("key");
+
+        assertEquals(USERNAME, myAuthenticator.authenticate("key").get().getName());
+    }
+
+    @Test
+    public void revokedTokenShouldBeReadAgain() throws AuthenticationException {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_YEAR, 3);
+        when(userTokenDAO.getSessionFromToken("key")).thenReturn(session(USERNAME, "key", calendar.getTime(), UserTokenDTO.Status.VALID));
+        myAuthenticator.authenticate("key");
+        sessionCache.invalidate("key");
+        myAuthenticator.authenticate("key");
+
+        verify(userTokenDAO, times(2)).getSessionFromToken("key");
+    }
+
+    @SuppressWarnings("unchecked")
     @Test
     public void shouldUpdateTokenIfAboutToRunOut() throws AuthenticationException {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.HOUR_OF_DAY, 12);
-        when(userTokenDAO.getUserTokenFromToken("token")).thenReturn(new UserTokenDTO(USERNAME, "token", calendar.getTime(), UserTokenDTO.Status.VALID));
+        when(userTokenDAO.getSessionFromToken("token")).thenReturn(session(USERNAME, "token", calendar.getTime(), UserTokenDTO.Status.VALID));
+        myAuthenticator.authenticate("token");
+        // The extended lifetime is cached, so it is only refreshed once
         myAuthenticator.authenticate("token");
+        verify(userTokenDAO, never()).setNewTimesForTokens(anyListOf(String.class), anyListOf(Date.class));
+        sessionCache.flushRefreshes();
 
-        ArgumentCaptor<Date> dateCaptor = ArgumentCaptor.forClass(Date.class);
-        verify(userTokenDAO, times(1)).setNewTimeForToken(Mockito.eq("token"), dateCaptor.capture());
+        ArgumentCaptor<List> tokenCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List> dateCaptor = ArgumentCaptor.forClass(List.class);
+        verify(userTokenDAO, times(1)).setNewTimesForTokens(tokenCaptor.capture(), dateCaptor.capture());
+        assertEquals(Arrays.asList("token"), tokenCaptor.getValue());
 
         calendar.add(Calendar.DAY_OF_YEAR, 7);
         calendar.add(Calendar.HOUR_OF_DAY, -12);
         Calendar calendar2 = Calendar.getInstance();
-        calendar2.setTime(dateCaptor.getValue());
+        calendar2.setTime((Date) dateCaptor.getValue().get(0));
 
         assertEquals(calendar.get(Calendar.DAY_OF_YEAR), calendar2.get(Calendar.DAY_OF_YEAR));
         assertEquals(calendar.get(Calendar.HOUR_OF_DAY), calendar2.get(Calendar.HOUR_OF_DAY));
         assertEquals(calendar.get(Calendar.MINUTE), calendar2.get(Calendar.MINUTE));
+
+        sessionCache.flushRefreshes();
+        verify(userTokenDAO, times(1)).setNewTimesForTokens(anyListOf(String.class), anyListOf(Date.class));
+    }
+
+    @Test
+    public void failedRefreshShouldBeRetriedOnTheNextFlush() throws AuthenticationException {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.HOUR_OF_DAY, 12);
+        when(userTokenDAO.getSessionFromToken("token")).thenReturn(session(USERNAME, "token", calendar.getTime(), UserTokenDTO.Status.VALID));
+        Mockito.doThrow(new RuntimeException("Connection refused")).doNothing()
+                .when(userTokenDAO).setNewTimesForTokens(anyListOf(String.class), anyListOf(Date.class));
+        myAuthenticator.authenticate("token");
+
+        sessionCache.flushRefreshes();
+        sessionCache.flushRefreshes();
+        sessionCache.flushRefreshes();
+
+        verify(userTokenDAO, times(2)).setNewTimesForTokens(anyListOf(String.class), anyListOf(Date.class));
+    }
+
+    private SessionDTO session(String username, String token, Date lifetimeEnds, UserTokenDTO.Status status) {
+        return new SessionDTO(new UserTokenDTO(username, token, lifetimeEnds, status),
+                new UserDTO(username, RoleHelper.ROLE_DEFAULT, NAME, APARTMENT));
     }
 }
@@ -0,0 +1,89 @@
+import auth.HashingExecutor;
+import auth.PasswordHasher;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import core.Util;
+import exceptions.TooBusyException;
+import org.junit.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class PasswordHasherTest {
+    private static final String PASSWORD = "password";
+    private static final String SALT = "salt";
+
+    private final PasswordHasher passwordHasher = new PasswordHasher(1000);
+
+    @Test
+    public void hashShouldVerifyOnlyTheSamePassword() {
+        String hash = passwordHasher.hash(PASSWORD, SALT);
+        assertTrue(hash.startsWith("pbkdf2-sha256$1000$"));
+        assertTrue(passwordHasher.verify(PASSWORD, SALT, hash));
+        assertFalse(passwordHasher.verify("wrong", SALT, hash));
+        assertFalse(passwordHasher.verify(PASSWORD, "other salt", hash));
+    }
+
+    @Test
+    public void legacyHashShouldVerifyAndNeedUpgrade() {
+        String legacyHash = Util.getHashedAndSaltedPassword(PASSWORD, SALT);
+        assertTrue(passwordHasher.verify(PASSWORD, SALT, legacyHash));
+        assertFalse(passwordHasher.verify("wrong", SALT, legacyHash));
+        assertTrue(passwordHasher.needsUpgrade(legacyHash));
+    }
+
+    @Test
+    public void legacyHashShouldStayUppercaseHex() {
+        assertEquals("7A37B85C8918EAC19A9089C0FA5A2AB4DCE3F90528DCDEEC108B23DDF3607B99",
+                Util.getHashedAndSaltedPassword(PASSWORD, SALT));
+    }
+
+    @Test
+    public void hashWithOtherIterationsShouldVerifyAndNeedUpgrade() {
+        String hash = new PasswordHasher(2000).hash(PASSWORD, SALT);
+        assertTrue(passwordHasher.verify(PASSWORD, SALT, hash));
+        assertTrue(passwordHasher.needsUpgrade(hash));
+        assertFalse(passwordHasher.needsUpgrade(passwordHasher.hash(PASSWORD, SALT)));
+    }
+
+    @Test
+    public void malformedHashShouldNotVerify() {
+        assertFalse(passwordHasher.verify(PASSWORD, SALT, "pbkdf2-sha256$x$abc"));
+        assertFalse(passwordHasher.verify(PASSWORD, SALT, "scrypt$1$2$abc"));
+    }
+
+    @Test
+    public void fullHashingQueueShouldRejectWithRetryAfter() throws InterruptedException {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        HashingExecutor hashingExecutor = new HashingExecutor(1, 1, metricRegistry);
+        Gauge<?> queueDepth = metricRegistry.getGauges().get(MetricRegistry.name(HashingExecutor.class, "queue-depth"));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        callers.submit(() -> hashingExecutor.run(() -> {
+            started.countDown();
+            release.await();
+            return null;
+        }));
+        started.await();
+        callers.submit(() -> hashingExecutor.run(() -> null));
+        while (!queueDepth.getValue().equals(1)) {
+            Thread.sleep(1);
+        }
+        try {
+            hashingExecutor.run(() -> null);
+            fail("Expected the full queue to reject");
+        } catch (TooBusyException e) {
+            assertEquals(503, e.getResponse().getStatus());
+            assertTrue(Long.parseLong(e.getResponse().getHeaderString(HttpHeaders.RETRY_AFTER)) >= 1);
+        } finally {
+            release.countDown();
+            callers.shutdown();
+            hashingExecutor.stop();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+import api.BookingDTO;
+import api.BookingRevisionDTO;
+import api.UserTokenDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import core.UsageInterval;
+import db.BookingDAO;
+import db.BookingPartitions;
+import db.BookingRevisionDAO;
+import db.MachineDAO;
+import db.TokenRevocationDAO;
+import db.UserDAO;
+import db.UserTokenDAO;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.Query;
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Plans every statement of the DAOs against five years of synthetic bookings in the local test database, and fails
+ * when one filters a sequential scan of a table that is not small, where an index is missing, or its estimated cost
+ * rises above query-plans.properties. Reading most of a table, e.g. a whole month partition, may scan it.
+ *
+ * After an intended change of a statement, the schema or the dataset, rewrite the baseline with
+ * mvn test -Dtest=QueryPlanTest -DupdateQueryPlans=true and check in the difference.
+ */
+@RunWith(Parameterized.class)
+public class QueryPlanTest {
+    private static final String BASELINE_RESOURCE = "/query-plans.properties";
+    private static final String BASELINE_FILE = "src/test/resources/query-plans.properties";
+    private static final boolean UPDATE_BASELINE = Boolean.getBoolean("updateQueryPlans");
+    // Estimates vary a little with the rows ANALYZE samples
+    private static final double COST_TOLERANCE = 1.25;
+    // Below this a sequential scan is as good as any index
+    private static final int SMALL_TABLE_ROWS = 1000;
+    // A scan keeping less than this share of the rows should have used an index
+    private static final double SELECTIVE_SCAN = 0.1;
+    private static final Pattern PARAMETER = Pattern.compile("(?<![:\\w]):(\\w+(?:\\.\\w+)?)");
+    private static final List<Class<?>> DAOS = Arrays.asList(BookingDAO.class, UserDAO.class, UserTokenDAO.class,
+            BookingRevisionDAO.class, TokenRevocationDAO.class, MachineDAO.class);
+    /**
+     * Statements reading or writing a whole table on purpose
+     */
+    private static final List<String> FULL_SCANS = Arrays.asList(
+            "BookingDAO.getAllBookingIntervals",
+            "BookingDAO.backfillUsageMonthly",
+            "BookingDAO.deleteUsageMonthly",
+            "UserDAO.getUsernames");
+
+    private static final int USERS = 3000;
+    private static final int MACHINES = 3;
+    private static final YearMonth FIRST_MONTH = YearMonth.of(2022, 1);
+    private static final YearMonth LAST_MONTH = YearMonth.of(2026, 12);
+    private static final String USERNAME = "user_42";
+    private static final Timestamp START_TIME = Timestamp.valueOf("2025-06-01 00:00:00");
+    private static final Timestamp END_TIME = Timestamp.valueOf("2025-07-01 00:00:00");
+    private static final Timestamp NOW = Timestamp.valueOf("2025-06-15 12:00:00");
+
+    private static DBI dbi;
+    private static Properties baseline = new Properties();
+    private static Map<String, Double> costs = new TreeMap<>();
+
+    private final String statement;
+    private final Method method;
+
+    public QueryPlanTest(String statement, Method method) {
+        this.statement = statement;
+        this.method = method;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> statements() {
+        List<Object[]> statements = new ArrayList<>();
+        for (Class<?> dao : DAOS) {
+            List<Method> methods = new ArrayList<>(Arrays.asList(dao.getDeclaredMethods()));
+            methods.sort(Comparator.comparing(Method::getName));
+            for (Method method : methods) {
+                String sql = sql(method);
+                if (sql != null && !sql.matches("(?is)\\s*(CREATE|TRUNCATE|LOCK)\\b.*")) {
+                    statements.add(new Object[]{dao.getSimpleName() + "." + method.getName(), method});
+                }
+            }
+        }
+        return statements;
+    }
+
+    @BeforeClass
+    public static void setUpDataset() throws IOException {
+        dbi = new DBI("jdbc:postgresql://localhost:5432/test", "postgres", "root");
+        try (InputStream in = QueryPlanTest.class.getResourceAsStream(BASELINE_RESOURCE)) {
+            if (in != null) {
+                baseline.load(in);
+            }
+        }
+        CommonTestUtil.migrate(dbi);
+        truncateTables();
+        new BookingPartitions(dbi, 0, 0).createPartitions(FIRST_MONTH, LAST_MONTH);
+
+        try (Handle handle = dbi.open()) {
+            handle.execute("INSERT INTO users (username, password, salt, name, apartment, role) " +
+                    "SELECT 'user_' || i, 'password', 'salt', 'name ' || i, " +
+                    "(ARRAY['st.v.', 'st.h.', '1.tv.', '1.th.', '2.', '3.tv.', '3.th.', '4.'])[i % 8 + 1], 1 " +
+                    "FROM generate_series(0, ?) AS i", USERS - 1);
+            handle.execute("INSERT INTO user_tokens (username, token, lifetime_ends, status) " +
+                    "SELECT 'user_' || i, 'token_' || i, DATE '2025-06-22', 'VALID' FROM generate_series(0, ?) AS i",
+                    USERS - 1);
+            handle.execute("INSERT INTO machines (name, kind) SELECT 'Machine ' || i, 'WASHER_DRYER' FROM generate_series(2, ?) AS i", MACHINES);
+            // Back to back half hour bookings spread over the machines, about 1500 a month
+            handle.execute("INSERT INTO bookings (start_time, end_time, owner, number_of_washing_machine_uses, number_of_tumble_dry_uses, machine_id) " +
+                    "SELECT start_time, start_time + INTERVAL '30 minutes', 'user_' || (n % ?), n % 3, n % 2, machine_ids[n % ? + 1] " +
+                    "FROM generate_series(?::timestamp, ?::timestamp - INTERVAL '30 minutes', INTERVAL '30 minutes') " +
+                    "WITH ORDINALITY AS series(start_time, n), (SELECT array_agg(id) AS machine_ids FROM machines) AS machines",
+                    USERS, MACHINES, Timestamp.valueOf(FIRST_MONTH.atDay(1).atStartOfDay()),
+                    Timestamp.valueOf(LAST_MONTH.plusMonths(1).atDay(1).atStartOfDay()));
+            handle.execute("INSERT INTO bookings_rev (booking_id, start_time, end_time, owner, number_of_washing_machine_uses, " +
+                    "number_of_tumble_dry_uses, update_type, changed_at) " +
+                    "SELECT id, start_time, end_time, owner, number_of_washing_machine_uses, number_of_tumble_dry_uses, " +
+                    "'CREATE', start_time FROM bookings");
+            handle.execute("INSERT INTO token_revocations (token_hash, lifetime_ends) " +
+                    "SELECT md5(i::text), TIMESTAMP '2025-06-01' + i * INTERVAL '1 minute' FROM generate_series(1, 20000) AS i");
+            handle.attach(BookingDAO.class).backfillUsageMonthly();
+            handle.execute("ANALYZE");
+        }
+    }
+
+    @AfterClass
+    public static void tearDownDataset() throws IOException {
+        if (UPDATE_BASELINE) {
+            // Sorted and without a date, so the checked in file changes only where costs do
+            try (PrintWriter out = new PrintWriter(BASELINE_FILE, "ISO-8859-1")) {
+                out.println("# Estimated total cost of the plan of every DAO statement, see QueryPlanTest");
+                for (Map.Entry<String, Double> cost : costs.entrySet()) {
+                    out.println(cost.getKey() + "=" + String.format(Locale.ROOT, "%.2f", cost.getValue()));
+                }
+            }
+        }
+        try (Handle handle = dbi.open()) {
+            handle.execute("DROP TABLE IF EXISTS bookings, bookings_archive CASCADE");
+        }
+        CommonTestUtil.migrate(dbi);
+        truncateTables();
+    }
+
+    @Test
+    public void planShouldUseIndexesAndStayWithinBaseline() throws IOException {
+        JsonNode plan;
+        try (Handle handle = dbi.open()) {
+            Query<Map<String, Object>> explain = handle.createQuery("EXPLAIN (FORMAT JSON) " + sql(method));
+            Map<String, Object> arguments = arguments(method);
+            Matcher parameters = PARAMETER.matcher(sql(method));
+            while (parameters.find()) {
+                String name = parameters.group(1);
+                explain.bind(name, argument(arguments, name));
+            }
+            plan = new ObjectMapper().readTree(explain.mapTo(String.class).first()).get(0).get("Plan");
+
+            if (!FULL_SCANS.contains(statement)) {
+                List<JsonNode> scans = new ArrayList<>();
+                collectSequentialScans(plan, scans);
+                for (JsonNode scan : scans) {
+                    String relation = scan.get("Relation Name").asText();
+                    double rows = handle.createQuery("SELECT reltuples FROM pg_class WHERE relname = :relation")
+                            .bind("relation", relation)
+                            .mapTo(Double.class)
+                            .first();
+                    double kept = scan.get("Plan Rows").asDouble();
+                    assertTrue(statement + " scans all " + (long) rows + " rows of " + relation + " for " + (long) kept
+                                    + " of them:\n" + plan.toString(),
+                            rows < SMALL_TABLE_ROWS || kept >= rows * SELECTIVE_SCAN);
+                }
+            }
+        }
+
+        double cost = plan.get("Total Cost").asDouble();
+        costs.put(statement, cost);
+        if (UPDATE_BASELINE) {
+            return;
+        }
+        String baselineCost = baseline.getProperty(statement);
+        assertNotNull(statement + " has no baseline cost, it is planned at " + cost + ". Add it with -DupdateQueryPlans=true",
+                baselineCost);
+        if (cost > Double.parseDouble(baselineCost) * COST_TOLERANCE) {
+            fail(statement + " is planned at " + cost + ", above the baseline of " + baselineCost + ":\n" + plan.toString());
+        }
+    }
+
+    private static void collectSequentialScans(JsonNode node, List<JsonNode> scans) {
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            scans.add(node);
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSequentialScans(child, scans);
+        }
+    }
+
+    private static String sql(Method method) {
+        for (Annotation annotation : method.getAnnotations()) {
+            if (annotation instanceof SqlQuery) {
+                return ((SqlQuery) annotation).value();
+            } else if (annotation instanceof SqlUpdate) {
+                return ((SqlUpdate) annotation).value();
+            } else if (annotation instanceof SqlBatch) {
+                return ((SqlBatch) annotation).value();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A realistic value for every parameter of the method, the first element for the lists of batches
+     */
+    private static Map<String, Object> arguments(Method method) {
+        Map<String, Object> arguments = new HashMap<>();
+        Type[] types = method.getGenericParameterTypes();
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < types.length; i++) {
+            Type type = types[i];
+            if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == List.class) {
+                type = ((ParameterizedType) type).getActualTypeArguments()[0];
+            }
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof Bind) {
+                    String name = ((Bind) annotation).value();
+                    arguments.put(name, sample(name, (Class<?>) type));
+                } else if (annotation instanceof BindBean) {
+                    arguments.put(((BindBean) annotation).value(), sample("", (Class<?>) type));
+                }
+            }
+        }
+        return arguments;
+    }
+
+    private static Object argument(Map<String, Object> arguments, String name) {
+        int dot = name.indexOf('.');
+        if (dot < 0) {
+            return arguments.get(name);
+        }
+        Object bean = arguments.get(name.substring(0, dot));
+        try {
+            for (PropertyDescriptor property : Introspector.getBeanInfo(bean.getClass()).getPropertyDescriptors()) {
+                if (property.getName().equals(name.substring(dot + 1))) {
+                    Object value = property.getReadMethod().invoke(bean);
+                    return value instanceof java.util.Date ? new Timestamp(((java.util.Date) value).getTime()) : value;
+                }
+            }
+        } catch (ReflectiveOperationException | java.beans.IntrospectionException e) {
+            throw new IllegalStateException(e);
+        }
+        throw new IllegalArgumentException("No property " + name);
+    }
+
+    private static Object sample(String name, Class<?> type) {
+        BookingDTO booking = new BookingDTO(Timestamp.valueOf("2025-06-10 10:00:00"),
+                Timestamp.valueOf("2025-06-10 10:30:00"), USERNAME, 1, 1);
+        if (type == BookingDTO.class) {
+            return booking;
+        } else if (type == BookingRevisionDTO.class) {
+            return new BookingRevisionDTO(booking, "UPDATE", NOW);
+        } else if (type == UserTokenDTO.class) {
+            return new UserTokenDTO(USERNAME, "token_42", END_TIME, UserTokenDTO.Status.VALID);
+        } else if (type.isEnum()) {
+            return type.getEnumConstants()[0];
+        } else if (type == UsageInterval.class) {
+            return UsageInterval.of(START_TIME, END_TIME);
+        } else if (java.util.Date.class.isAssignableFrom(type)) {
+            if (name.toLowerCase().startsWith("start")) {
+                return START_TIME;
+            }
+            return name.toLowerCase().startsWith("end") ? END_TIME : NOW;
+        } else if (type == int.class || type == long.class) {
+            switch (name) {
+                case "limit":
+                    return 50;
+                case "afterRevision":
+                    return 0L;
+                case "id":
+                case "bookingId":
+                    return 40000;
+                default:
+                    return 1;
+            }
+        } else if (type == String.class) {
+            switch (name) {
+                case "token":
+                case "userToken":
+                    return "token_42";
+                case "tokenHash":
+                    return "0123456789abcdef0123456789abcdef";
+                case "username":
+                case "owner":
+                    return USERNAME;
+                default:
+                    return name;
+            }
+        }
+        throw new IllegalArgumentException("No sample " + type + " for " + name);
+    }
+
+    private static void truncateTables() {
+        dbi.onDemand(BookingDAO.class).truncateTable();
+        dbi.onDemand(MachineDAO.class).deleteAddedMachines();
+        dbi.onDemand(BookingRevisionDAO.class).truncateTable();
+        dbi.onDemand(TokenRevocationDAO.class).truncateTable();
+        dbi.onDemand(UserTokenDAO.class).truncateTable();
+        dbi.onDemand(UserDAO.class).truncateUsersTable();
+    }
+}
@@ -0,0 +1,90 @@
+import db.SchemaMigrations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs against the local test database, migrating the tables the other tests set up as an existing database would be.
+ */
+public class SchemaMigrationsTest {
+    private DBI dbi;
+    private SchemaMigrations schemaMigrations;
+
+    @Before
+    public void setup() {
+        dbi = new DBI("jdbc:postgresql://localhost:5432/test", "postgres", "root");
+        schemaMigrations = new SchemaMigrations(dbi);
+        dropSchemaVersion();
+    }
+
+    @After
+    public void tearDown() {
+        dropSchemaVersion();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unmigratedSchemaShouldNotVerify() {
+        assertEquals(0, schemaMigrations.getVersion());
+        schemaMigrations.verify();
+    }
+
+    @Test
+    public void migrateShouldApplyEveryVersionOnce() {
+        assertEquals(SchemaMigrations.CURRENT_VERSION, schemaMigrations.migrate());
+        assertEquals(SchemaMigrations.CURRENT_VERSION, schemaMigrations.getVersion());
+        schemaMigrations.verify();
+
+        assertEquals(0, schemaMigrations.migrate());
+    }
+
+    @Test
+    public void migrateShouldCreateTheIndexes() {
+        schemaMigrations.migrate();
+        try (Handle handle = dbi.open()) {
+            Set<String> indexes = new HashSet<>(handle.createQuery("SELECT indexname FROM pg_indexes")
+                    .mapTo(String.class)
+                    .list());
+            assertTrue(indexes.containsAll(Arrays.asList("users_upper_username", "user_tokens_upper_username",
+                    "user_tokens_token", "bookings_owner_start_time", "bookings_archive_start_time",
+                    "token_revocations_lifetime_ends")));
+        }
+    }
+
+    @Test
+    public void migrateShouldExcludeOverlapsPerMachine() {
+        schemaMigrations.migrate();
+        try (Handle handle = dbi.open()) {
+            assertEquals("Vaskemaskine", handle.createQuery("SELECT name FROM machines WHERE id = 1")
+                    .mapTo(String.class)
+                    .first());
+            assertEquals("WASHER_DRYER", handle.createQuery("SELECT kind FROM machines WHERE id = 1")
+                    .mapTo(String.class)
+                    .first());
+            List<String> constraints = handle.createQuery("SELECT pg_get_constraintdef(oid) FROM pg_constraint " +
+                    "WHERE conname LIKE 'bookings%_no_overlap'")
+                    .mapTo(String.class)
+                    .list();
+            assertFalse(constraints.isEmpty());
+            for (String constraint : constraints) {
+                assertTrue(constraint, constraint.contains("machine_id WITH ="));
+            }
+        }
+    }
+
+    private void dropSchemaVersion() {
+        try (Handle handle = dbi.open()) {
+            handle.execute("DROP TABLE IF EXISTS schema_version");
+        }
+    }
+}
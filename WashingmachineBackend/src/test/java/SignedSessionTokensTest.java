@@ -0,0 +1,146 @@
+import api.UserDTO;
+import auth.SignedSessionTokens;
+import auth.TokenRevocations;
+import core.RoleHelper;
+import db.CoherenceChannel;
+import db.TokenRevocationDAO;
+import db.UserTokenDAO;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class SignedSessionTokensTest {
+    private static final String OLD_KEY = Base64.getEncoder().encodeToString("an-old-key-that-is-at-least-32-bytes".getBytes());
+    private static final String NEW_KEY = Base64.getEncoder().encodeToString("the-new-key-that-is-at-least-32-bytes".getBytes());
+    private static final UserDTO USER = new UserDTO("username", RoleHelper.ROLE_ADMIN, "name", "apartment");
+
+    private TokenRevocationDAO tokenRevocationDAO;
+    private CoherenceChannel coherenceChannel;
+    private UserTokenDAO userTokenDAO;
+    private TokenRevocations tokenRevocations;
+    private SignedSessionTokens signedSessionTokens;
+
+    @Before
+    public void setup() {
+        tokenRevocationDAO = mock(TokenRevocationDAO.class);
+        coherenceChannel = mock(CoherenceChannel.class);
+        userTokenDAO = mock(UserTokenDAO.class);
+        tokenRevocations = new TokenRevocations(tokenRevocationDAO, coherenceChannel, TimeUnit.DAYS.toMillis(7));
+        signedSessionTokens = new SignedSessionTokens(Collections.singletonMap("old", OLD_KEY), tokenRevocations, userTokenDAO);
+    }
+
+    @Test
+    public void signedTokenShouldCarryTheUser() {
+        String token = signedSessionTokens.create(USER, inDays(1));
+        UserDTO userDTO = signedSessionTokens.authenticate(token).get();
+        assertEquals(USER.getName(), userDTO.getName());
+        assertEquals(USER.getRole(), userDTO.getRole());
+        assertEquals(USER.getRealName(), userDTO.getRealName());
+        assertEquals(USER.getApartment(), userDTO.getApartment());
+    }
+
+    @Test
+    public void tokensOfTheSameUserAndLifetimeShouldDiffer() {
+        Date lifetimeEnds = inDays(1);
+        assertNotEquals(signedSessionTokens.create(USER, lifetimeEnds), signedSessionTokens.create(USER, lifetimeEnds));
+    }
+
+    @Test
+    public void expiredTokenShouldNotAuthenticate() {
+        assertFalse(signedSessionTokens.authenticate(signedSessionTokens.create(USER, new Date(System.currentTimeMillis() - 1000))).isPresent());
+    }
+
+    @Test
+    public void tamperedTokenShouldNotAuthenticate() {
+        String token = signedSessionTokens.create(USER, inDays(1));
+        String forged = new SignedSessionTokens(Collections.singletonMap("old",
+                Base64.getEncoder().encodeToString("somebody-elses-key-of-at-least-32-bytes".getBytes())), tokenRevocations, userTokenDAO)
+                .create(USER, inDays(1));
+        int payloadStart = token.indexOf('.') + 1;
+        String otherPayload = token.substring(0, payloadStart) + (token.charAt(payloadStart) == 'A' ? 'B' : 'A') + token.substring(payloadStart + 1);
+
+        assertFalse(signedSessionTokens.authenticate(forged).isPresent());
+        assertFalse(signedSessionTokens.authenticate(otherPayload).isPresent());
+        assertFalse(signedSessionTokens.authenticate("unknown." + token.substring(payloadStart)).isPresent());
+        assertFalse(signedSessionTokens.authenticate("12345678901234567890").isPresent());
+        assertFalse(signedSessionTokens.authenticate("old.!!!.???").isPresent());
+    }
+
+    @Test
+    public void rotatedKeysShouldStillVerifyTheirTokens() {
+        String oldToken = signedSessionTokens.create(USER, inDays(1));
+        Map<String, String> keys = new LinkedHashMap<>();
+        keys.put("new", NEW_KEY);
+        keys.put("old", OLD_KEY);
+        SignedSessionTokens rotated = new SignedSessionTokens(keys, tokenRevocations, userTokenDAO);
+        String newToken = rotated.create(USER, inDays(1));
+
+        assertTrue(newToken.startsWith("new."));
+        assertTrue(rotated.authenticate(oldToken).isPresent());
+        assertTrue(rotated.authenticate(newToken).isPresent());
+        assertFalse(signedSessionTokens.authenticate(newToken).isPresent());
+    }
+
+    @Test
+    public void signedOutTokenShouldBeRevokedEverywhere() {
+        String token = signedSessionTokens.create(USER, inDays(1));
+        String otherToken = signedSessionTokens.create(USER, inDays(1));
+        signedSessionTokens.signedOut(token);
+
+        assertEquals(Optional.empty(), signedSessionTokens.authenticate(token));
+        assertTrue(signedSessionTokens.authenticate(otherToken).isPresent());
+        verify(tokenRevocationDAO).insertRevocation(eq(CoherenceChannel.hashToken(token)), any(Date.class));
+        verify(coherenceChannel).publish(CoherenceChannel.REVOCATION, CoherenceChannel.hashToken(token));
+        verify(userTokenDAO).deleteUserTokenFromUsername(USER.getName());
+    }
+
+    @Test
+    public void revocationsFromOtherNodesShouldBeHonoured() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<String>> handler = ArgumentCaptor.forClass((Class) Consumer.class);
+        verify(coherenceChannel).subscribe(eq(CoherenceChannel.REVOCATION), handler.capture());
+        verify(coherenceChannel, never()).subscribe(eq(CoherenceChannel.TOKEN), any());
+        String token = signedSessionTokens.create(USER, inDays(1));
+
+        handler.getValue().accept(CoherenceChannel.hashToken(token));
+
+        assertEquals(Optional.empty(), signedSessionTokens.authenticate(token));
+    }
+
+    @Test
+    public void signingOutWithAForeignTokenShouldDoNothing() {
+        signedSessionTokens.signedOut("12345678901234567890");
+        verify(tokenRevocationDAO, never()).insertRevocation(anyString(), any(Date.class));
+        verify(userTokenDAO, never()).deleteUserTokenFromUsername(anyString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shortKeysShouldBeRejected() {
+        new SignedSessionTokens(Collections.singletonMap("short", Base64.getEncoder().encodeToString("short".getBytes())),
+                tokenRevocations, userTokenDAO);
+    }
+
+    private static Date inDays(int days) {
+        return new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(days));
+    }
+}
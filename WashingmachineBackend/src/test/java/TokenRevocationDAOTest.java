@@ -0,0 +1,42 @@
+import db.TokenRevocationDAO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class TokenRevocationDAOTest {
+    private TokenRevocationDAO tokenRevocationDAO;
+
+    @Before
+    public void setup() {
+        DBI dbi = new DBI("jdbc:postgresql://localhost:5432/test", "postgres", "root");
+        tokenRevocationDAO = dbi.onDemand(TokenRevocationDAO.class);
+        tokenRevocationDAO.createTokenRevocationTable();
+    }
+
+    @After
+    public void tearDown() {
+        tokenRevocationDAO.truncateTable();
+    }
+
+    @Test
+    public void onlyRevocationsWithinTheirLifetimeShouldBeKept() {
+        Date now = new Date();
+        tokenRevocationDAO.insertRevocation("expired", new Date(now.getTime() - 1000));
+        tokenRevocationDAO.insertRevocation("current", new Date(now.getTime() + 1000));
+        assertEquals(0, tokenRevocationDAO.insertRevocation("current", new Date(now.getTime() + 2000)));
+
+        List<Map.Entry<String, Date>> revocations = tokenRevocationDAO.getRevocations(now);
+        assertEquals(1, revocations.size());
+        assertEquals("current", revocations.get(0).getKey());
+        assertEquals(now.getTime() + 1000, revocations.get(0).getValue().getTime());
+
+        assertEquals(1, tokenRevocationDAO.deleteExpiredRevocations(now));
+    }
+}
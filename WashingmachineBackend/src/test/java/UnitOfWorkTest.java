@@ -0,0 +1,192 @@
+import api.BookingDTO;
+import api.MachineDTO;
+import com.codahale.metrics.MetricRegistry;
+import core.BookingDayLocks;
+import core.BookingIntervalIndex;
+import core.BookingServiceImpl;
+import core.MachineTimelines;
+import db.BookingDAO;
+import db.UnitOfWork;
+import db.UserTokenDAO;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.exceptions.TransactionFailedException;
+
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class UnitOfWorkTest {
+    private DBI dbi;
+    private Handle handle;
+    private BookingDAO attachedBookingDAO;
+    private UserTokenDAO attachedUserTokenDAO;
+    private BookingDAO onDemandBookingDAO;
+    private MetricRegistry metricRegistry;
+    private UnitOfWork unitOfWork;
+
+    @Before
+    public void setup() {
+        dbi = mock(DBI.class);
+        handle = mock(Handle.class);
+        attachedBookingDAO = mock(BookingDAO.class);
+        attachedUserTokenDAO = mock(UserTokenDAO.class);
+        onDemandBookingDAO = mock(BookingDAO.class);
+        when(dbi.open()).thenReturn(handle);
+        when(dbi.onDemand(BookingDAO.class)).thenReturn(onDemandBookingDAO);
+        when(dbi.onDemand(UserTokenDAO.class)).thenReturn(mock(UserTokenDAO.class));
+        when(handle.attach(BookingDAO.class)).thenReturn(attachedBookingDAO);
+        when(handle.attach(UserTokenDAO.class)).thenReturn(attachedUserTokenDAO);
+        when(handle.isInTransaction()).thenReturn(true);
+        metricRegistry = new MetricRegistry();
+        unitOfWork = new UnitOfWork(dbi, metricRegistry);
+    }
+
+    @Test
+    public void allDAOsInAUnitOfWorkShouldShareOneHandle() {
+        BookingDAO bookingDAO = unitOfWork.attach(BookingDAO.class);
+        UserTokenDAO userTokenDAO = unitOfWork.attach(UserTokenDAO.class);
+
+        UnitOfWork.Work work = unitOfWork.begin();
+        userTokenDAO.getUsernameFromToken("token");
+        bookingDAO.deleteBookingAndGet("user", 1, new Date(3600000));
+        bookingDAO.getAllBookingIntervals();
+        unitOfWork.commit(work);
+        unitOfWork.finish(work);
+
+        verify(dbi, times(1)).open();
+        verify(handle, times(1)).begin();
+        verify(handle, times(1)).commit();
+        verify(handle, never()).rollback();
+        verify(handle, times(1)).close();
+        verify(attachedUserTokenDAO).getUsernameFromToken("token");
+        verify(attachedBookingDAO).deleteBookingAndGet("user", 1, new Date(3600000));
+        assertEquals(1, work.getCheckouts());
+        assertEquals(1, metricRegistry.histogram(MetricRegistry.name(UnitOfWork.class, "connection-checkouts-per-request"))
+                .getSnapshot().getMax());
+    }
+
+    @Test
+    public void failedWorkShouldBeRolledBack() {
+        BookingDAO bookingDAO = unitOfWork.attach(BookingDAO.class);
+
+        UnitOfWork.Work work = unitOfWork.begin();
+        bookingDAO.getAllBookingIntervals();
+        unitOfWork.rollback(work);
+        unitOfWork.finish(work);
+
+        verify(handle, times(1)).rollback();
+        verify(handle, never()).commit();
+        verify(handle, times(1)).close();
+    }
+
+    @Test
+    public void bookingsShouldOnlyBeIndexedOnceCommitted() {
+        MachineTimelines machineTimelines = CommonTestUtil.machineTimelines(1);
+        BookingServiceImpl bookingService = new BookingServiceImpl(machineTimelines, unitOfWork::afterCommit);
+        BookingDAO bookingDAO = unitOfWork.attach(BookingDAO.class);
+        BookingDTO created = new BookingDTO(1, MachineDTO.FIRST_MACHINE_ID, new Date(3600000), new Date(7200000),
+                "user", "name", "apartment", 1, 0);
+        BookingDTO failed = new BookingDTO(2, MachineDTO.FIRST_MACHINE_ID, new Date(7200000), new Date(10800000),
+                "user", "name", "apartment", 1, 0);
+
+        UnitOfWork.Work work = unitOfWork.begin();
+        bookingDAO.getAllBookingIntervals();
+        bookingService.bookingCreated(created);
+        assertEquals("Not indexed before the commit", 0, machineTimelines.size());
+        unitOfWork.commit(work);
+        unitOfWork.finish(work);
+        assertEquals(1, machineTimelines.size());
+
+        doThrow(new TransactionFailedException("Serialization failure")).when(handle).commit();
+        work = unitOfWork.begin();
+        bookingDAO.getAllBookingIntervals();
+        bookingService.bookingCreated(failed);
+        bookingService.bookingDeleted(created);
+        try {
+            unitOfWork.commit(work);
+            fail("The commit fails");
+        } catch (TransactionFailedException e) {
+            // Expected
+        }
+        unitOfWork.finish(work);
+
+        // Neither the booking created nor the one deleted in the failed work changed the index
+        BookingIntervalIndex timeline = machineTimelines.get(MachineDTO.FIRST_MACHINE_ID);
+        assertEquals(1, timeline.size());
+        assertTrue(timeline.overlaps(3600000, 7200000, BookingIntervalIndex.NO_BOOKING));
+        assertFalse(timeline.overlaps(7200000, 10800000, BookingIntervalIndex.NO_BOOKING));
+    }
+
+    @Test
+    public void dayLocksShouldBeHeldUntilTheWorkCompletes() throws Exception {
+        BookingDayLocks bookingDayLocks = new BookingDayLocks(unitOfWork::afterCompletion);
+        BookingDAO bookingDAO = unitOfWork.attach(BookingDAO.class);
+        ExecutorService otherWriter = Executors.newSingleThreadExecutor();
+        try {
+            UnitOfWork.Work work = unitOfWork.begin();
+            bookingDAO.getAllBookingIntervals();
+            bookingDayLocks.lock(MachineDTO.FIRST_MACHINE_ID, 3600000, 7200000).close();
+            Future<?> waiting = otherWriter.submit(
+                    () -> bookingDayLocks.lock(MachineDTO.FIRST_MACHINE_ID, 3600000, 7200000).close());
+            try {
+                waiting.get(100, TimeUnit.MILLISECONDS);
+                fail("The day is locked until the work is committed");
+            } catch (TimeoutException e) {
+                // Expected
+            }
+            unitOfWork.commit(work);
+            waiting.get(10, TimeUnit.SECONDS);
+            unitOfWork.finish(work);
+
+            // Released by a failed commit as well
+            doThrow(new TransactionFailedException("Serialization failure")).when(handle).commit();
+            work = unitOfWork.begin();
+            bookingDAO.getAllBookingIntervals();
+            bookingDayLocks.lock(MachineDTO.FIRST_MACHINE_ID, 3600000, 7200000).close();
+            try {
+                unitOfWork.commit(work);
+                fail("The commit fails");
+            } catch (TransactionFailedException e) {
+                // Expected
+            }
+            otherWriter.submit(() -> bookingDayLocks.lock(MachineDTO.FIRST_MACHINE_ID, 3600000, 7200000).close())
+                    .get(10, TimeUnit.SECONDS);
+            unitOfWork.finish(work);
+        } finally {
+            otherWriter.shutdownNow();
+        }
+    }
+
+    @Test
+    public void workWithoutStatementsShouldNotCheckOutAConnection() {
+        unitOfWork.attach(BookingDAO.class);
+
+        UnitOfWork.Work work = unitOfWork.begin();
+        unitOfWork.commit(work);
+        unitOfWork.finish(work);
+
+        verify(dbi, never()).open();
+        assertEquals(0, work.getCheckouts());
+    }
+
+    @Test
+    public void statementsOutsideAUnitOfWorkShouldRunOnDemand() {
+        BookingDAO bookingDAO = unitOfWork.attach(BookingDAO.class);
+        bookingDAO.getAllBookingIntervals();
+
+        verify(onDemandBookingDAO).getAllBookingIntervals();
+        verify(dbi, never()).open();
+    }
+}
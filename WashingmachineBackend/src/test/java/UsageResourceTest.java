@@ -1,40 +1,63 @@
 import api.UsageDTO;
 import api.UserDTO;
 import db.BookingDAO;
-import db.UserTokenDAO;
+import db.CsvStreamer;
+import db.JsonStreamer;
 import org.junit.Before;
 import org.junit.Test;
 import resources.UsageResource;
 import resources.UserResource;
 
 import javax.ws.rs.WebApplicationException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class UsageResourceTest {
     UsageResource usageResource;
     BookingDAO bookingDAO;
-    UserTokenDAO userTokenDAO;
 
     @Before
     public void setup() {
         bookingDAO = mock(BookingDAO.class);
-        userTokenDAO = mock(UserTokenDAO.class);
-        usageResource = new UsageResource(bookingDAO, userTokenDAO);
+        usageResource = new UsageResource(bookingDAO, mock(JsonStreamer.class), mock(CsvStreamer.class));
     }
 
     @Test
     public void notLoggedInUserShouldReturnEmptyList() {
-        List<UsageDTO> usage = usageResource.getUsageInInterval(null, 0, Long.MAX_VALUE);
+        List<UsageDTO> usage = usageResource.getUsageInInterval(Optional.empty(), 0, Long.MAX_VALUE);
         assertEquals(0, usage.size());
     }
 
+    @Test
+    public void loggedInUserShouldGetOwnUsage() {
+        UsageDTO usageDTO = new UsageDTO(0, 2017, 3, 1);
+        when(bookingDAO.getUsageInIntervalFromRollup(eq(CommonTestUtil.defaultUser.getName()), any()))
+                .thenReturn(Collections.singletonList(usageDTO));
+        List<UsageDTO> usage = usageResource.getUsageInInterval(Optional.of(CommonTestUtil.defaultUser), 0, Long.MAX_VALUE);
+        assertEquals(Collections.singletonList(usageDTO), usage);
+    }
+
     @Test(expected = WebApplicationException.class)
     public void onlyAdminShouldBeAllowedToAccessAdminTool() {
         usageResource.getUsageInIntervalAdmin(CommonTestUtil.defaultUser, 0, Long.MAX_VALUE);
     }
 
+    @Test(expected = WebApplicationException.class)
+    public void onlyAdminShouldBeAllowedToExportUsage() {
+        usageResource.exportUsageInIntervalAdmin(CommonTestUtil.defaultUser, 0, Long.MAX_VALUE);
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void onlyAdminShouldBeAllowedToExportBilling() {
+        usageResource.exportBillingInIntervalAdmin(CommonTestUtil.defaultUser, 0, Long.MAX_VALUE);
+    }
+
 
 }
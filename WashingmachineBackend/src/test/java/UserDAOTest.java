@@ -1,13 +1,19 @@
+import api.CredentialsDTO;
+import api.UserTokenDTO;
 import core.RoleHelper;
 import api.UserDTO;
 import db.BookingDAO;
 import db.UserDAO;
+import db.UserTokenDAO;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
 
+import java.util.Collections;
+import java.util.Date;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -15,6 +21,7 @@ import static org.junit.Assert.assertTrue;
 public class UserDAOTest {
     private BookingDAO bookingDAO;
     private UserDAO userDAO;
+    private UserTokenDAO userTokenDAO;
     private final String USERNAME_1 = "user";
     private final String USERNAME_1_ALTERNATIVE = "UsEr";
     private final String USERNAME_2 = "user2";
@@ -30,6 +37,8 @@ public class UserDAOTest {
         userDAO = dbi.onDemand(UserDAO.class);
         userDAO.createRoleTable();
         userDAO.createUsersTable();
+        userTokenDAO = dbi.onDemand(UserTokenDAO.class);
+        userTokenDAO.createUserTokenTable();
     }
 
     @After
@@ -58,6 +67,12 @@ public class UserDAOTest {
         assertFalse(login);
     }
 
+    @Test
+    public void getUsernamesShouldWork() {
+        insertUser1();
+        assertEquals(Collections.singletonList(USERNAME_1), userDAO.getUsernames());
+    }
+
     @Test
     public void getUserShouldWork() {
         insertUser1();
@@ -70,6 +85,24 @@ public class UserDAOTest {
         assertEquals(null, userDTO);
     }
 
+    @Test
+    public void getCredentialsShouldIncludeTheCurrentToken() {
+        insertUser1();
+        CredentialsDTO credentials = userDAO.getCredentials(USERNAME_1_ALTERNATIVE);
+        assertEquals(USERNAME_1, credentials.getUser().getName());
+        assertEquals(NAME_1, credentials.getUser().getRealName());
+        assertEquals(USER_1_PASSWORD, credentials.getPasswordHash());
+        assertEquals(USER_1_SALT, credentials.getSalt());
+        assertEquals(null, credentials.getUserToken());
+
+        userTokenDAO.createUserToken(new UserTokenDTO(USERNAME_1, "token", new Date(), UserTokenDTO.Status.VALID));
+        credentials = userDAO.getCredentials(USERNAME_1);
+        assertEquals("token", credentials.getUserToken().getToken());
+        assertEquals(USERNAME_1, credentials.getUserToken().getUsername());
+
+        assertEquals(null, userDAO.getCredentials(USERNAME_2));
+    }
+
     @Test
     public void getSaltForUserShouldWork() {
         insertUser1();
@@ -1,23 +1,30 @@
-import api.SuccessDTO;
+import api.UsernameAvailabilityDTO;
 import api.UserDTO;
+import auth.CredentialStore;
+import auth.HashingExecutor;
+import auth.PasswordHasher;
+import com.codahale.metrics.MetricRegistry;
 import core.RoleHelper;
+import core.UsernameIndex;
+import db.CoherenceChannel;
 import db.UserDAO;
-import db.UserTokenDAO;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.skife.jdbi.v2.tweak.ConnectionFactory;
 import resources.UserResource;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.when;
 
+import java.util.Collections;
+
 
 import javax.naming.AuthenticationException;
-import javax.ws.rs.core.Cookie;
 
 public class UserResourceTest {
     UserResource userResource;
     UserDAO userDAO;
-    UserTokenDAO userTokenDAO;
+    UsernameIndex usernameIndex;
     private final String USERNAME_1 = "username";
     private final String PASSWORD_1 = "password";
     private final String NAME_1 = "name";
@@ -26,8 +33,12 @@ public class UserResourceTest {
     @Before
     public void setup() {
         userDAO = Mockito.mock(UserDAO.class);
-        userTokenDAO = Mockito.mock(UserTokenDAO.class);
-        userResource = new UserResource(userDAO, userTokenDAO);
+        when(userDAO.getUsernames()).thenReturn(Collections.singletonList("Existing"));
+        usernameIndex = new UsernameIndex(userDAO, new CoherenceChannel(Mockito.mock(ConnectionFactory.class),
+                CoherenceChannel.DEFAULT_POLL_INTERVAL_MILLIS, new MetricRegistry()), Runnable::run, new MetricRegistry());
+        usernameIndex.load();
+        userResource = new UserResource(userDAO, new CredentialStore(userDAO, new PasswordHasher(1000),
+                new HashingExecutor(1, 4, new MetricRegistry()), new MetricRegistry()), usernameIndex);
     }
 
     @Test(expected = AuthenticationException.class)
@@ -59,19 +70,30 @@ public class UserResourceTest {
     }
 
     @Test
-    public void doesUsernameExistAlreadyShouldWork() {
-        SuccessDTO success = userResource.doesUsernameExistAlready(USERNAME_1);
+    public void doesUsernameExistAlreadyShouldWork() throws AuthenticationException {
+        UsernameAvailabilityDTO success = userResource.doesUsernameExistAlready(USERNAME_1);
         assertEquals(true, success.isSuccess());
-        when(userDAO.getUser(USERNAME_1)).thenReturn(new UserDTO(USERNAME_1, RoleHelper.ROLE_DEFAULT, NAME_1, APARTMENT_1));
-        success = userResource.doesUsernameExistAlready(USERNAME_1);
+        userResource.createUser(USERNAME_1, PASSWORD_1, NAME_1, APARTMENT_1);
+        success = userResource.doesUsernameExistAlready(USERNAME_1.toUpperCase());
         assertEquals(false, success.isSuccess());
+        assertEquals(3, success.getSuggestions().size());
+        Mockito.verify(userDAO, Mockito.never()).getUser(USERNAME_1);
+    }
+
+    @Test
+    public void missingUsernameShouldBeAvailable() {
+        assertEquals(true, userResource.doesUsernameExistAlready(null).isSuccess());
+    }
+
+    @Test
+    public void usernamesLoadedAtStartupShouldBeTaken() {
+        assertEquals(false, userResource.doesUsernameExistAlready("existing").isSuccess());
     }
 
     @Test
     public void userFromUserAccessTokenShouldWork() {
-        when(userTokenDAO.getUsernameFromToken("token")).thenReturn(USERNAME_1);
-        when(userDAO.getUser(USERNAME_1)).thenReturn(new UserDTO(USERNAME_1, RoleHelper.ROLE_DEFAULT, NAME_1, APARTMENT_1));
-        UserDTO userDTO = userResource.userFromUserAccessToken(new Cookie("token", "token"));
+        UserDTO userDTO = userResource.userFromUserAccessToken(
+                new UserDTO(USERNAME_1, RoleHelper.ROLE_DEFAULT, NAME_1, APARTMENT_1));
         assertEquals(USERNAME_1, userDTO.getName());
         assertEquals(RoleHelper.ROLE_DEFAULT, userDTO.getRole());
     }
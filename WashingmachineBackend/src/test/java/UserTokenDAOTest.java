@@ -1,3 +1,4 @@
+import api.SessionDTO;
 import api.UserTokenDTO;
 import core.RoleHelper;
 import db.UserDAO;
@@ -8,6 +9,7 @@ import org.junit.Test;
 import org.skife.jdbi.v2.DBI;
 
 import java.util.Calendar;
+import java.util.Arrays;
 import java.util.Date;
 
 import static org.junit.Assert.assertEquals;
@@ -98,6 +100,34 @@ public class UserTokenDAOTest {
         assertEquals(calendar.get(Calendar.YEAR), calendar2.get(Calendar.YEAR));
     }
 
+    @Test
+    public void setNewTimesForTokensShouldUpdateEveryToken() {
+        insertUserTokenForUser1();
+        insertUserTokenForUser2();
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_YEAR, 10);
+        Date time1 = calendar.getTime();
+        calendar.add(Calendar.DAY_OF_YEAR, 10);
+        Date time2 = calendar.getTime();
+        userTokenDAO.setNewTimesForTokens(Arrays.asList(USER_1_TOKEN, USER_2_TOKEN), Arrays.asList(time1, time2));
+
+        assertEquals(new java.sql.Date(time1.getTime()).toString(), userTokenDAO.getUserTokenFromToken(USER_1_TOKEN).getLifetimeEnds().toString());
+        assertEquals(new java.sql.Date(time2.getTime()).toString(), userTokenDAO.getUserTokenFromToken(USER_2_TOKEN).getLifetimeEnds().toString());
+    }
+
+    @Test
+    public void getSessionFromTokenShouldIncludeTheUser() {
+        insertUserTokenForUser1();
+        SessionDTO sessionDTO = userTokenDAO.getSessionFromToken(USER_1_TOKEN);
+        assertEquals(USER_1_TOKEN, sessionDTO.getUserToken().getToken());
+        assertEquals(UserTokenDTO.Status.VALID, sessionDTO.getUserToken().getStatus());
+        assertEquals(USERNAME_1, sessionDTO.getUser().getName());
+        assertEquals("name1", sessionDTO.getUser().getRealName());
+        assertEquals("apartment1", sessionDTO.getUser().getApartment());
+
+        assertEquals(null, userTokenDAO.getSessionFromToken("bogus"));
+    }
+
     @Test
     public void getUsernameFromTokenShouldWork() {
         insertUserTokenForUser1();
@@ -0,0 +1,77 @@
+import com.codahale.metrics.MetricRegistry;
+import core.UsernameIndex;
+import db.CoherenceChannel;
+import db.UserDAO;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.tweak.ConnectionFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UsernameIndexTest {
+    private UserDAO userDAO;
+    private UsernameIndex usernameIndex;
+
+    @Before
+    public void setup() {
+        userDAO = mock(UserDAO.class);
+        when(userDAO.getUsernames()).thenReturn(Arrays.asList("Anna", "anna2", "ANNA3", "bo"));
+        usernameIndex = new UsernameIndex(userDAO, new CoherenceChannel(mock(ConnectionFactory.class),
+                CoherenceChannel.DEFAULT_POLL_INTERVAL_MILLIS, new MetricRegistry()), Runnable::run, new MetricRegistry());
+        usernameIndex.load();
+    }
+
+    @Test
+    public void shouldIgnoreCase() {
+        assertTrue(usernameIndex.exists("anna"));
+        assertTrue(usernameIndex.exists("BO"));
+        assertFalse(usernameIndex.exists("ann"));
+    }
+
+    @Test
+    public void missingOrEmptyUsernameShouldBeFree() {
+        assertFalse(usernameIndex.exists(null));
+        assertFalse(usernameIndex.exists(""));
+        assertEquals(Collections.emptyList(), usernameIndex.suggest(null, 2));
+    }
+
+    @Test
+    public void createdUsernameShouldBeTaken() {
+        usernameIndex.created("Carl");
+        assertTrue(usernameIndex.exists("carl"));
+    }
+
+    @Test
+    public void createdUsernameShouldOnlyBeTakenOnceCommitted() {
+        List<Runnable> afterCommit = new ArrayList<>();
+        usernameIndex = new UsernameIndex(userDAO, new CoherenceChannel(mock(ConnectionFactory.class),
+                CoherenceChannel.DEFAULT_POLL_INTERVAL_MILLIS, new MetricRegistry()), afterCommit::add, new MetricRegistry());
+        usernameIndex.load();
+
+        usernameIndex.created("Carl");
+        assertFalse(usernameIndex.exists("carl"));
+        afterCommit.forEach(Runnable::run);
+        assertTrue(usernameIndex.exists("carl"));
+    }
+
+    @Test
+    public void suggestionsShouldSkipTakenNames() {
+        assertEquals(Arrays.asList("anna4", "anna5"), usernameIndex.suggest("anna", 2));
+        assertEquals(Collections.emptyList(), usernameIndex.suggest("free", 2));
+    }
+
+    @Test
+    public void loadShouldReplaceTheIndex() {
+        when(userDAO.getUsernames()).thenReturn(Collections.singletonList("dora"));
+        usernameIndex.load();
+        assertFalse(usernameIndex.exists("anna"));
+        assertTrue(usernameIndex.exists("Dora"));
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs JMH like its own main class, but writes the results as JSON to results/&lt;commit&gt;.json unless -rf or -rff
+ * say otherwise, so runs of different commits can be compared with {@link CompareResults}
+ */
+public class BenchmarkRunner {
+    private static final String RESULTS_DIRECTORY = "results";
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf")) {
+            arguments.add("-rf");
+            arguments.add("json");
+        }
+        if (!arguments.contains("-rff")) {
+            new File(RESULTS_DIRECTORY).mkdirs();
+            arguments.add("-rff");
+            arguments.add(new File(RESULTS_DIRECTORY, commit() + ".json").getPath());
+        }
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+    }
+
+    /**
+     * The abbreviated commit of the working directory, marked when it has changes, or "local" outside of git
+     */
+    private static String commit() {
+        String commit = git("rev-parse", "--short", "HEAD");
+        if (commit == null) {
+            return "local";
+        }
+        String changes = git("status", "--porcelain", "--untracked-files=no");
+        return changes == null || changes.isEmpty() ? commit : commit + "-dirty";
+    }
+
+    private static String git(String... command) {
+        List<String> processCommand = new ArrayList<>();
+        processCommand.add("git");
+        processCommand.addAll(Arrays.asList(command));
+        try {
+            Process process = new ProcessBuilder(processCommand).redirectErrorStream(true).start();
+            StringBuilder output = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    output.append(line).append('\n');
+                }
+            }
+            return process.waitFor() == 0 ? output.toString().trim() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import api.BookingDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing the JSON of a booking list with the object mapper Dropwizard gives Jersey. About 7 bookings a day
+ * makes 210 a month, the most a cached read covers is 13 months.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookingSerializationBenchmark {
+    @Param({"7", "210", "2730"})
+    public int bookings;
+
+    private final ObjectMapper objectMapper = Jackson.newObjectMapper();
+    private List<BookingDTO> bookingDTOs;
+
+    @Setup
+    public void setUp() {
+        bookingDTOs = new ArrayList<>(bookings);
+        long startTime = 1500000000000L;
+        for (int i = 0; i < bookings; i++) {
+            long bookingStart = startTime + TimeUnit.HOURS.toMillis(2) * i;
+            // Uses are only shown on the bookings of the user reading them
+            int uses = i % 10 == 0 ? 1 : 0;
+            bookingDTOs.add(new BookingDTO(i, new Date(bookingStart), new Date(bookingStart + TimeUnit.HOURS.toMillis(1)),
+                    "user" + i % 40, "3.tv.", "Name " + i % 40, uses, uses));
+        }
+    }
+
+    @Benchmark
+    public byte[] writeBookings() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(bookingDTOs);
+    }
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import api.MachineDTO;
+import api.MachineKind;
+import core.BookingInterval;
+import core.BookingRejection;
+import core.BookingServiceImpl;
+import core.MachineTimelines;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of validating a booking in {@link BookingServiceImpl} against the timeline of a machine with existing bookings,
+ * one every two hours between 8 and 22 starting tomorrow. The free slot is at 21:00 on a day in the middle of them, the
+ * taken one overlaps a booking. Run with -prof gc, gc.alloc.rate.norm shows that a validation allocates nothing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookingValidationBenchmark {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Param({"0", "1000", "10000"})
+    public int bookings;
+
+    private BookingServiceImpl bookingService;
+    private long freeStartTime;
+    private long takenStartTime;
+
+    @Setup
+    public void setUp() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.DAY_OF_YEAR, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 8);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        long firstDay = calendar.getTimeInMillis();
+
+        List<BookingInterval> intervals = new ArrayList<>();
+        for (int i = 0; i < bookings; i++) {
+            long startTime = firstDay + TimeUnit.DAYS.toMillis(i / 7) + (i % 7) * 2 * HOUR;
+            intervals.add(new BookingInterval(i, startTime, startTime + HOUR));
+        }
+        MachineTimelines machineTimelines = new MachineTimelines(
+                Collections.singletonList(new MachineDTO(MachineDTO.FIRST_MACHINE_ID, "Vaskemaskine", MachineKind.WASHER_DRYER)));
+        machineTimelines.putAll(intervals);
+        bookingService = new BookingServiceImpl(machineTimelines);
+
+        long middleDay = firstDay + TimeUnit.DAYS.toMillis(bookings / 14);
+        freeStartTime = middleDay + 13 * HOUR;
+        takenStartTime = middleDay + HOUR / 2;
+    }
+
+    @Benchmark
+    public BookingRejection validateCreateFree() {
+        return bookingService.validateCreateBooking(MachineDTO.FIRST_MACHINE_ID, freeStartTime, freeStartTime + HOUR, 1, 1);
+    }
+
+    @Benchmark
+    public BookingRejection validateCreateTaken() {
+        return bookingService.validateCreateBooking(MachineDTO.FIRST_MACHINE_ID, takenStartTime, takenStartTime + HOUR, 1, 1);
+    }
+
+    @Benchmark
+    public BookingRejection validateEdit() {
+        return bookingService.validateEditBooking(MachineDTO.FIRST_MACHINE_ID, freeStartTime, freeStartTime + HOUR, 1, 1, 0);
+    }
+}
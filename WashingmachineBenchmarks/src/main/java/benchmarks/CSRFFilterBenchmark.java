@@ -0,0 +1,60 @@
+package benchmarks;
+
+import filters.CSRFFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link CSRFFilter#filter} for every request, with the origins of configuration-dev.yaml. The allowed request
+ * matches the fourth origin listed, the rejected one is compared with all of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CSRFFilterBenchmark {
+    @Param({"http://localhost.com:3000/booking", "http://elsewhere.example.org/"})
+    public String referer;
+
+    private CSRFFilter csrfFilter;
+    private ContainerRequestContext request;
+
+    @Setup
+    public void setUp() {
+        csrfFilter = new CSRFFilter(Arrays.asList("localhost:3000/", "127.0.0.1:3000/", "myexample.com:3000/",
+                "localhost.com:3000/", "test.myexample.com:3000/"));
+        MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+        headers.putSingle("Referer", referer);
+        headers.putSingle("Accept", "application/json");
+        headers.putSingle("Cookie", "userAccessToken=123456789012345678901234567890123456789");
+        // Only the headers are read, and abortWith does nothing but mark the request
+        request = (ContainerRequestContext) Proxy.newProxyInstance(ContainerRequestContext.class.getClassLoader(),
+                new Class[]{ContainerRequestContext.class},
+                (proxy, method, args) -> method.getName().equals("getHeaders") ? headers : null);
+    }
+
+    @Benchmark
+    public ContainerRequestContext filter() throws IOException {
+        csrfFilter.filter(request);
+        return request;
+    }
+}
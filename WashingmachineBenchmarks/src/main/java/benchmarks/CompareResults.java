@@ -0,0 +1,66 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prints the scores of two JSON result files side by side, e.g.
+ * java -cp target/benchmarks.jar benchmarks.CompareResults results/abc1234.json results/def5678.json
+ */
+public class CompareResults {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <before.json> <after.json>");
+            System.exit(1);
+        }
+        Map<String, JsonNode> before = read(args[0]);
+        Map<String, JsonNode> after = read(args[1]);
+
+        System.out.println(String.format("%-80s %14s %14s %9s  %s", "Benchmark", "Before", "After", "Change", "Unit"));
+        for (Map.Entry<String, JsonNode> entry : after.entrySet()) {
+            JsonNode afterMetric = entry.getValue().get("primaryMetric");
+            double afterScore = afterMetric.get("score").asDouble();
+            JsonNode beforeResult = before.get(entry.getKey());
+            if (beforeResult == null) {
+                System.out.println(String.format("%-80s %14s %14.3f %9s  %s", entry.getKey(), "-", afterScore, "new",
+                        afterMetric.get("scoreUnit").asText()));
+                continue;
+            }
+            double beforeScore = beforeResult.get("primaryMetric").get("score").asDouble();
+            System.out.println(String.format("%-80s %14.3f %14.3f %+8.1f%%  %s", entry.getKey(), beforeScore, afterScore,
+                    (afterScore - beforeScore) / beforeScore * 100, afterMetric.get("scoreUnit").asText()));
+        }
+        for (String removed : before.keySet()) {
+            if (!after.containsKey(removed)) {
+                System.out.println(String.format("%-80s %14s", removed, "removed"));
+            }
+        }
+    }
+
+    /**
+     * The results of a file by benchmark and parameters
+     */
+    private static Map<String, JsonNode> read(String path) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(new File(path))) {
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText());
+            JsonNode params = result.get("params");
+            if (params != null) {
+                Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> param = fields.next();
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import auth.PasswordHasher;
+import core.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of verifying one password per {@link PasswordHasher} setting, next to the legacy unversioned SHA-256. Divide
+ * the hashing threads by the time per verification for the sign-ins per second a node can take.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordHashingBenchmark {
+    private static final String PASSWORD = "correct horse battery staple";
+    private static final String SALT = "Vd8s1oQ0cYbq2Pj5xW3nL7mK9tR4uE6hA0fG2iJ8kZ1yB5wC7v";
+
+    @Param({"100000", "310000", "600000"})
+    public int iterations;
+
+    private PasswordHasher passwordHasher;
+    private String hash;
+    private String legacyHash;
+
+    @Setup
+    public void setUp() {
+        passwordHasher = new PasswordHasher(iterations);
+        hash = passwordHasher.hash(PASSWORD, SALT);
+        legacyHash = Util.getHashedAndSaltedPassword(PASSWORD, SALT);
+    }
+
+    @Benchmark
+    public boolean pbkdf2() {
+        return passwordHasher.verify(PASSWORD, SALT, hash);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean legacySha256() {
+        return passwordHasher.verify(PASSWORD, SALT, legacyHash);
+    }
+}
@@ -0,0 +1,83 @@
+package benchmarks;
+
+import api.BookingDTO;
+import api.UsageDTO;
+import db.mappers.BookingMapper;
+import db.mappers.UsageMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping one row with {@link BookingMapper} and {@link UsageMapper}, on a result set that only hands out the
+ * columns of that row so the driver is left out
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowMappingBenchmark {
+    private final BookingMapper bookingMapper = new BookingMapper();
+    private final UsageMapper usageMapper = new UsageMapper();
+    private ResultSet bookingRow;
+    private ResultSet usageRow;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> booking = new HashMap<>();
+        booking.put("id", 4711);
+        booking.put("start_time", new Timestamp(1500000000000L));
+        booking.put("end_time", new Timestamp(1500003600000L));
+        booking.put("owner", "benchmark_user");
+        booking.put("apartment", "3.tv.");
+        booking.put("name", "Benchmark User");
+        booking.put("number_of_washing_machine_uses", 2);
+        booking.put("number_of_tumble_dry_uses", 1);
+        bookingRow = row(booking);
+
+        Map<String, Object> usage = new HashMap<>();
+        usage.put("mon", "Jul");
+        usage.put("year", 2017);
+        usage.put("sum_of_washing_machine_uses", 12);
+        usage.put("sum_of_tumble_dry_uses", 7);
+        usageRow = row(usage);
+    }
+
+    @Benchmark
+    public BookingDTO mapBooking() throws SQLException {
+        return bookingMapper.map(0, bookingRow, null);
+    }
+
+    @Benchmark
+    public UsageDTO mapUsage() throws SQLException {
+        return usageMapper.map(0, usageRow, null);
+    }
+
+    private static ResultSet row(Map<String, Object> columns) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    Object value = columns.get((String) args[0]);
+                    if (value == null) {
+                        throw new SQLException("No column " + args[0]);
+                    }
+                    return value;
+                });
+    }
+}
@@ -0,0 +1,164 @@
+package benchmarks;
+
+import api.SessionDTO;
+import api.UserDTO;
+import api.UserTokenDTO;
+import auth.MyAuthenticator;
+import auth.SessionCache;
+import auth.SignedSessionTokens;
+import auth.TokenRevocations;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilderSpec;
+import core.RoleHelper;
+import db.CoherenceChannel;
+import db.TokenRevocationDAO;
+import db.UserDAO;
+import db.UserTokenDAO;
+import io.dropwizard.auth.AuthenticationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.skife.jdbi.v2.DBI;
+
+import java.lang.reflect.Proxy;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one request: a signed token verified in memory, a random token found in the
+ * {@link SessionCache}, and a random token read from user_tokens on a cache miss. The last one needs the local test
+ * database used by the DAO tests.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenVerificationBenchmark {
+    private static final String USERNAME = "benchmark_user";
+    private static final String TOKEN = "123456789012345678901234567890123456789";
+
+    @State(Scope.Benchmark)
+    public static class SignedState {
+        /**
+         * Verification only hashes the token once somebody has signed out
+         */
+        @Param({"0", "1"})
+        public int revocations;
+
+        private SignedSessionTokens signedSessionTokens;
+        private String token;
+
+        @Setup
+        public void setUp() {
+            CoherenceChannel coherenceChannel = new CoherenceChannel(() -> {
+                throw new IllegalStateException("Not connected in benchmarks");
+            }, CoherenceChannel.DEFAULT_POLL_INTERVAL_MILLIS, new MetricRegistry());
+            TokenRevocations tokenRevocations = new TokenRevocations(noDatabase(TokenRevocationDAO.class, null),
+                    coherenceChannel, TimeUnit.DAYS.toMillis(7));
+            String key = Base64.getEncoder().encodeToString("benchmark-key-that-is-at-least-32-bytes".getBytes());
+            signedSessionTokens = new SignedSessionTokens(Collections.singletonMap("bench", key), tokenRevocations,
+                    noDatabase(UserTokenDAO.class, null));
+            Date lifetimeEnds = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(7));
+            for (int i = 0; i < revocations; i++) {
+                tokenRevocations.revoke(signedSessionTokens.create(user(), lifetimeEnds), lifetimeEnds);
+            }
+            token = signedSessionTokens.create(user(), lifetimeEnds);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CachedState {
+        private MyAuthenticator myAuthenticator;
+
+        @Setup
+        public void setUp() throws AuthenticationException {
+            SessionDTO session = new SessionDTO(new UserTokenDTO(USERNAME, TOKEN,
+                    new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(7)), UserTokenDTO.Status.VALID), user());
+            SessionCache sessionCache = new SessionCache(noDatabase(UserTokenDAO.class, session),
+                    CacheBuilderSpec.parse("maximumSize=10000"), new MetricRegistry());
+            myAuthenticator = new MyAuthenticator(sessionCache, 7);
+            myAuthenticator.authenticate(TOKEN);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DatabaseState {
+        private DBI dbi;
+        private MyAuthenticator myAuthenticator;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            dbi = new DBI("jdbc:postgresql://localhost:5432/test", "postgres", "root");
+            UserDAO userDAO = dbi.onDemand(UserDAO.class);
+            UserTokenDAO userTokenDAO = dbi.onDemand(UserTokenDAO.class);
+            userDAO.createRoleTable();
+            userDAO.createUsersTable();
+            userTokenDAO.createUserTokenTable();
+            userDAO.insertUser(USERNAME, "password", "salt", "name", "apartment", RoleHelper.ROLE_DEFAULT);
+            userTokenDAO.createUserToken(new UserTokenDTO(USERNAME, TOKEN,
+                    new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(7)), UserTokenDTO.Status.VALID));
+            // Nothing is kept, so every request reads the token and user
+            myAuthenticator = new MyAuthenticator(new SessionCache(userTokenDAO, CacheBuilderSpec.parse("maximumSize=0"),
+                    new MetricRegistry()), 7);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            dbi.onDemand(UserTokenDAO.class).deleteUserTokenFromUsername(USERNAME);
+            dbi.useHandle(handle -> handle.execute("DELETE FROM users WHERE username = ?", USERNAME));
+        }
+    }
+
+    @Benchmark
+    public Optional<UserDTO> signedToken(SignedState state) {
+        return state.signedSessionTokens.authenticate(state.token);
+    }
+
+    @Benchmark
+    public Optional<UserDTO> cachedSession(CachedState state) throws AuthenticationException {
+        return state.myAuthenticator.authenticate(TOKEN);
+    }
+
+    @Benchmark
+    public Optional<UserDTO> databaseSession(DatabaseState state) throws AuthenticationException {
+        return state.myAuthenticator.authenticate(TOKEN);
+    }
+
+    private static UserDTO user() {
+        return new UserDTO(USERNAME, RoleHelper.ROLE_DEFAULT, "name", "apartment");
+    }
+
+    /**
+     * A DAO answering every query with the result and doing nothing else
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T noDatabase(Class<T> daoType, Object result) {
+        return (T) Proxy.newProxyInstance(daoType.getClassLoader(), new Class[]{daoType},
+                (proxy, method, args) -> method.getReturnType().isInstance(result) ? result : defaultValue(method.getReturnType()));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == int.class) {
+            return 0;
+        } else if (type == boolean.class) {
+            return false;
+        } else if (type == java.util.List.class) {
+            return Collections.emptyList();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,35 @@
+package benchmarks;
+
+import core.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link Util#convertMillisToDateAndFloorToNearest5Minutes}, called twice by every booking read and write
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UtilBenchmark {
+    private long millis = 1500000000000L;
+
+    @Benchmark
+    public Date floorToNearest5Minutes() {
+        // A new minute every call, so nothing is folded away
+        millis += 61_000;
+        return Util.convertMillisToDateAndFloorToNearest5Minutes(millis);
+    }
+}
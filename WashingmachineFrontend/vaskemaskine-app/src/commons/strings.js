@@ -12,15 +12,18 @@ const strings = {
         cancel: 'Annuller',
         startTime: 'Starttidspunkt',
         endTime: 'Sluttidspunkt',
+        machine: 'Maskine',
         numberOfWashes: `Antal vaskninger (${COST_OF_WASHING_MACHINE_USE} kr)`,
         numberOfTumbleDries: `Antal tørretumblinger (${COST_OF_TUMBLE_DRY_USE} kr)`,
         confirmDeletion: 'Er du sikker på du vil slette reservationen?',
         daysCurrentBookings: 'Nuværende bookinger på dagen',
         noBookingsAsOfYet: 'N/A',
         errorsMessages: {
-            mustEndBefore22: 'Reservationen skal slutte senest kl. 22.00',
-            mustReserveAtLeast30Minutes: 'Du skal mindst reservere en halv time',
+            mustBeWithinOpeningHours: 'Reservationen skal ligge inden for vaskeriets åbningstid',
+            mustReserveAtLeastMinutes: (minutes) => `Du skal mindst reservere ${minutes} minutter`,
             mustReserveEitherTumbleDrierOrWashingMachine: 'Du skal bestille mindst ét brug af vaskemaskine eller tørretumbler',
+            machineDoesNotWash: 'Maskinen kan ikke bookes til vask',
+            machineDoesNotTumbleDry: 'Maskinen kan ikke bookes til tørretumbling',
             dayIsBeforeToday: 'Du kan ikke reservere bagud i tiden',
             bookingIsClashing: 'Der ligger allerede en reservation i tidsrummet',
             mustBeLoggedIn: 'Du skal være logget ind for at oprette en reservation'
@@ -39,6 +42,7 @@ const strings = {
                 passwordCantBeEmpty: 'Dit password kan ikke være tomt',
                 usernameCantBeEmpty: 'Dit brugernavn kan ikke være tomt',
                 usernameTaken: 'Dit brugernavn er allerede taget',
+                usernameSuggestions: 'Ledige brugernavne: ',
                 nameCantBeEmpty: 'Du skal angive et navn',
                 mustChooseApartment: 'Du skal vælge en lejlighed'
             },
@@ -8,6 +8,7 @@ const urls = {
     api: {
         auth: `${base_url}/auth`,
         booking: `${base_url}/booking`,
+        machine: `${base_url}/machine`,
         user: `${base_url}/user`,
         usage: `${base_url}/usage`
     }
@@ -47,6 +47,42 @@ export function getPrettyStartEndHoursAndMinutesFromBooking(booking) {
     return {startHour, startMinutes, endHour, endMinutes};
 }
 
+// The slots of a day come from /booking/policy as hex, digit k holds slots 4k to 4k + 3 with slot 4k + j in bit j
+export function isWithinOpeningHours(bookingPolicy, date, startMinuteOfDay, endMinuteOfDay) {
+    let month = (date.getMonth() < 9) ? `0${date.getMonth() + 1}` : date.getMonth() + 1;
+    let day = (date.getDate() < 10) ? `0${date.getDate()}` : date.getDate();
+    let slots = bookingPolicy.days[`${date.getFullYear()}-${month}-${day}`];
+    if (slots === undefined) {
+        return startMinuteOfDay >= 8 * 60 && endMinuteOfDay <= 22 * 60;
+    }
+
+    let endSlot = Math.ceil(endMinuteOfDay / bookingPolicy.slotMinutes);
+    for (let slot = Math.floor(startMinuteOfDay / bookingPolicy.slotMinutes); slot < endSlot; slot++) {
+        if ((parseInt(slots.charAt(slot >> 2) || '0', 16) & (1 << (slot & 3))) === 0) {
+            return false;
+        }
+    }
+    return true;
+}
+
+// With a single machine there is nothing to tell the bookings apart by
+export function getMachineName(machines, machineId) {
+    if (machines.length < 2) {
+        return '';
+    }
+    let machine = machines.find((machine) => machine.id === machineId);
+    return machine ? machine.name : '';
+}
+
+// What a machine of each kind can be booked for, as the backend validates it
+export function machineWashes(machine) {
+    return !machine || machine.kind !== 'DRYER';
+}
+
+export function machineTumbleDries(machine) {
+    return !machine || machine.kind !== 'WASHER';
+}
+
 export function properModulo(a, b) {
     return ((a % b) + b) % b;
 }
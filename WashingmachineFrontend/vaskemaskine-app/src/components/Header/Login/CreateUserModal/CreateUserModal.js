@@ -71,6 +71,9 @@ class CreateUserModal extends React.Component {
             }).then(function (data) {
                 if (data.success === false) {
                     errorMessages.push(strings.login.createUserModal.errorsMessages.usernameTaken);
+                    if (data.suggestions && data.suggestions.length > 0) {
+                        errorMessages.push(strings.login.createUserModal.errorsMessages.usernameSuggestions + data.suggestions.join(', '));
+                    }
                 }
 
                 this.setState({errorMessages: errorMessages});
@@ -5,11 +5,12 @@ import {monthNames} from '../../../../../commons/util';
 import './BookingModal.css';
 import {ControlLabel, Form, FormGroup, Col} from "react-bootstrap";
 import ErrorMessages from '../../../../../commons/ErrorMessages';
-import {getBookingsOfDate, getPrettyStartEndHoursAndMinutesFromBooking} from '../../../../../commons/util'
+import {getBookingsOfDate, getMachineName, getPrettyStartEndHoursAndMinutesFromBooking, isWithinOpeningHours, machineTumbleDries, machineWashes} from '../../../../../commons/util'
 
 class BookingModal extends React.Component {
     constructor(props) {
         super(props);
+        this.handleMachineChange = this.handleMachineChange.bind(this);
         this.handleHourStartChange = this.handleHourStartChange.bind(this);
         this.handleMinuteStartChange = this.handleMinuteStartChange.bind(this);
         this.handleHourEndChange = this.handleHourEndChange.bind(this);
@@ -24,6 +25,7 @@ class BookingModal extends React.Component {
         this.resetState = this.resetState.bind(this);
 
         this.state = {
+            machineId: 1,
             startHour: 8,
             startMinutes: 0,
             endHours: 8,
@@ -41,6 +43,7 @@ class BookingModal extends React.Component {
             let endDate = new Date(nextProps.editBookingProps.endTime);
 
             this.setState({
+                machineId: nextProps.editBookingProps.machineId,
                 startHour: startDate.getHours(),
                 startMinutes: startDate.getMinutes(),
                 endHours: endDate.getHours(),
@@ -51,6 +54,17 @@ class BookingModal extends React.Component {
         }
     }
 
+    handleMachineChange(event) {
+        let machineId = Number(event.target.value);
+        let machine = this.props.machines.find((machine) => machine.id === machineId);
+        // Uses the chosen machine cannot be booked for are cleared along with their fields
+        this.setState({
+            machineId,
+            numberOfWashingMachineUses: machineWashes(machine) ? this.state.numberOfWashingMachineUses : 0,
+            numberOfTumbleDryUses: machineTumbleDries(machine) ? this.state.numberOfTumbleDryUses : 0
+        });
+    }
+
     handleHourStartChange(event) {
         this.setState({startHour: event.target.value});
     }
@@ -96,7 +110,7 @@ class BookingModal extends React.Component {
             endTimeOfNewBooking.setMinutes(this.state.endMinutes);
 
             this.resetState();
-            this.props.onCreateBooking(startTimeOfNewBooking.getTime(), endTimeOfNewBooking.getTime(),
+            this.props.onCreateBooking(this.state.machineId, startTimeOfNewBooking.getTime(), endTimeOfNewBooking.getTime(),
                 this.state.numberOfWashingMachineUses, this.state.numberOfTumbleDryUses);
         }
     }
@@ -118,7 +132,7 @@ class BookingModal extends React.Component {
             endTimeOfNewBooking.setMinutes(this.state.endMinutes);
 
             this.resetState();
-            this.props.onEditBooking(this.props.editBookingProps.id, startTimeOfNewBooking.getTime(), endTimeOfNewBooking.getTime(),
+            this.props.onEditBooking(this.props.editBookingProps.id, this.state.machineId, startTimeOfNewBooking.getTime(), endTimeOfNewBooking.getTime(),
                 this.state.numberOfWashingMachineUses, this.state.numberOfTumbleDryUses);
         }
     }
@@ -135,22 +149,29 @@ class BookingModal extends React.Component {
         // Validations
         let errorMessages = [];
 
-        if (this.state.endHours >= 22 && this.state.endMinutes > 0) {
-            errorMessages.push(strings.bookingModal.errorsMessages.mustEndBefore22);
+        // Opening hours and minimum length are those the backend validates against
+        let startMinuteOfDay = Number(this.state.startHour) * 60 + Number(this.state.startMinutes);
+        let endMinuteOfDay = Number(this.state.endHours) * 60 + Number(this.state.endMinutes);
+        if (!isWithinOpeningHours(this.props.bookingPolicy, this.props.bookingDate, startMinuteOfDay, endMinuteOfDay)) {
+            errorMessages.push(strings.bookingModal.errorsMessages.mustBeWithinOpeningHours);
         }
 
-        let timeDifference = (this.state.endMinutes - this.state.startMinutes >= 0)
-            ? {hour: (this.state.endHours - this.state.startHour), minutes: (this.state.endMinutes - this.state.startMinutes)}
-            : {hour: (this.state.endHours - this.state.startHour - 1), minutes: (60 - (this.state.startMinutes + this.state.endMinutes))};
-
-        if (timeDifference.hour < 0 || (timeDifference.hour <= 0 && timeDifference.minutes < 30)) {
-            errorMessages.push(strings.bookingModal.errorsMessages.mustReserveAtLeast30Minutes);
+        if (endMinuteOfDay - startMinuteOfDay < this.props.bookingPolicy.minimumMinutes) {
+            errorMessages.push(strings.bookingModal.errorsMessages.mustReserveAtLeastMinutes(this.props.bookingPolicy.minimumMinutes));
         }
 
         if (this.state.numberOfWashingMachineUses <= 0 && this.state.numberOfTumbleDryUses <= 0) {
             errorMessages.push(strings.bookingModal.errorsMessages.mustReserveEitherTumbleDrierOrWashingMachine);
         }
 
+        let machine = this.props.machines.find((machine) => machine.id === this.state.machineId);
+        if (this.state.numberOfWashingMachineUses > 0 && !machineWashes(machine)) {
+            errorMessages.push(strings.bookingModal.errorsMessages.machineDoesNotWash);
+        }
+        if (this.state.numberOfTumbleDryUses > 0 && !machineTumbleDries(machine)) {
+            errorMessages.push(strings.bookingModal.errorsMessages.machineDoesNotTumbleDry);
+        }
+
         let startTimeOfNewBooking = new Date(this.props.bookingDate.getTime());
         startTimeOfNewBooking.setHours(this.state.startHour);
         startTimeOfNewBooking.setMinutes(this.state.startMinutes);
@@ -159,8 +180,9 @@ class BookingModal extends React.Component {
         endTimeOfNewBooking.setHours(this.state.endHours);
         endTimeOfNewBooking.setMinutes(this.state.endMinutes);
 
+        // Only bookings of the same machine can clash
         for (let booking of this.props.bookings) {
-            if (booking.startTime < endTimeOfNewBooking.getTime() && booking.endTime > startTimeOfNewBooking.getTime() && booking.id !== this.props.editBookingProps.id) {
+            if (booking.machineId === this.state.machineId && booking.startTime < endTimeOfNewBooking.getTime() && booking.endTime > startTimeOfNewBooking.getTime() && booking.id !== this.props.editBookingProps.id) {
                 errorMessages.push(strings.bookingModal.errorsMessages.bookingIsClashing);
             }
         }
@@ -174,6 +196,7 @@ class BookingModal extends React.Component {
 
     resetState() {
         this.setState({
+            machineId: 1,
             startHour: 8,
             startMinutes: 0,
             endHours: 8,
@@ -191,6 +214,7 @@ class BookingModal extends React.Component {
     }
 
     render() {
+        const machine = this.props.machines.find((machine) => machine.id === this.state.machineId);
         const createOrEditButton = (this.props.isEditMode)
             ? <EditButton handleClick={this.handleEditBooking} />
             : <CreateButton handleClick={this.handleCreateBooking} />;
@@ -209,6 +233,16 @@ class BookingModal extends React.Component {
                         {this.state.errorMessages}
                     </ErrorMessages>
                     <Form horizontal>
+                        <FormGroup controlId="formMachine">
+                            <Col componentClass={ControlLabel} sm={5}>
+                                {strings.bookingModal.machine}
+                            </Col>
+                            <Col sm={7}>
+                                {/* A booking stays on its machine when edited */}
+                                <MachinePicker machines={this.props.machines} machineId={this.state.machineId}
+                                               disabled={this.props.isEditMode} handleChange={this.handleMachineChange} />
+                            </Col>
+                        </FormGroup>
                         <FormGroup controlId="formStartTime">
                             <Col componentClass={ControlLabel} sm={5}>
                                 {strings.bookingModal.startTime}
@@ -231,24 +265,24 @@ class BookingModal extends React.Component {
                                 </div>
                             </Col>
                         </FormGroup>
-                        <FormGroup>
+                        {machineWashes(machine) ? <FormGroup>
                             <Col componentClass={ControlLabel} sm={5}>
                                 {strings.bookingModal.numberOfWashes}
                             </Col>
                             <Col sm={7}>
                                 <input onChange={this.handleNumberOfWashingsChange} className="numberOfWashingsPicker" value={this.state.numberOfWashingMachineUses} type="number" min="0" />
                             </Col>
-                        </FormGroup>
-                        <FormGroup>
+                        </FormGroup> : null}
+                        {machineTumbleDries(machine) ? <FormGroup>
                             <Col componentClass={ControlLabel} sm={5}>
                                 {strings.bookingModal.numberOfTumbleDries}
                             </Col>
                             <Col sm={7}>
                                 <input onChange={this.handleNumberOfTumbleDriesChange} className="numberOfTumbleDryPicker" value={this.state.numberOfTumbleDryUses} type="number" min="0" />
                             </Col>
-                        </FormGroup>
+                        </FormGroup> : null}
                     </Form>
-                    <CurrentBookingOverview bookings={getBookingsOfDate(this.props.bookings, this.props.bookingDate)} />
+                    <CurrentBookingOverview bookings={getBookingsOfDate(this.props.bookings, this.props.bookingDate)} machines={this.props.machines} />
                 </Modal.Body>
                 <Modal.Footer>
                     {this.props.isEditMode ? <Button className="deleteButton" bsStyle="danger" onClick={this.handleDeleteBooking}>{strings.bookingModal.delete}</Button> : null}
@@ -269,9 +303,10 @@ const CurrentBookingOverview = (props) => {
         let startHour, startMinutes, endHour, endMinutes;
         ({startHour, startMinutes, endHour, endMinutes} = getPrettyStartEndHoursAndMinutesFromBooking(booking));
         return (
-            <div className="booking-of-selected-day" key={`${startHour}${startMinutes}`}>
+            <div className="booking-of-selected-day" key={booking.id}>
                 <span>{booking.owner}: </span>
                 <span>{`${startHour}:${startMinutes} - ${endHour}:${endMinutes}`}</span>
+                <span> {getMachineName(props.machines, booking.machineId)}</span>
             </div>
         )
     });
@@ -309,6 +344,20 @@ const EditButton = (props) => {
     )
 };
 
+const MachinePicker = (props) => {
+    const selectOptions = props.machines.map((machine) => {
+        return (
+            <option key={machine.id} value={machine.id}>{machine.name}</option>
+        )
+    });
+
+    return (
+        <select className="machinePicker" value={props.machineId} disabled={props.disabled} onChange={props.handleChange}>
+            {selectOptions}
+        </select>
+    )
+};
+
 const HourTimePicker = (props) => {
     const hours = [8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22];
     const selectOptions = hours.map((hour) => {
@@ -23,6 +23,8 @@ class Calendar extends React.Component {
                               onCancelBookingCreation={this.props.onCancelBookingCreation}
                               bookingDate={this.props.bookingDate}
                               bookings={this.props.bookings}
+                              bookingPolicy={this.props.bookingPolicy}
+                              machines={this.props.machines}
                               isLoggedIn={this.props.isLoggedIn}
                               onCancelEditBookingCreation={this.props.onCancelEditBookingCreation}
                               isEditMode={this.props.isEditMode}
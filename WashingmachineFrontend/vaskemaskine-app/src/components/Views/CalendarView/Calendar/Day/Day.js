@@ -1,5 +1,5 @@
 import React from 'react';
-import {getPrettyStartEndHoursAndMinutesFromBooking, getBookingsOfDate} from '../../../../../commons/util';
+import {getPrettyStartEndHoursAndMinutesFromBooking, getBookingsOfDate, getMachineName} from '../../../../../commons/util';
 import './Day.css'
 
 export class Day extends React.Component {
@@ -42,6 +42,7 @@ export class Day extends React.Component {
                 <div onClick={(e) => this.handleBookingClick(e, booking)} key={booking.id} className={ownOrOthersBookingClass}>
                     <div>{`${booking.realName}, ${booking.apartment}`}</div>
                     <div>{`${startHour}:${startMinutes} - ${endHour}:${endMinutes}`}</div>
+                    <div>{getMachineName(this.props.machines, booking.machineId)}</div>
                 </div>
             )
         });
@@ -60,6 +61,7 @@ export class Day extends React.Component {
         if (booking.owner === this.props.username) {
             this.props.onBookingClick(
                 booking.id,
+                booking.machineId,
                 booking.owner,
                 booking.startTime,
                 booking.endTime,
@@ -101,6 +101,8 @@ class CalendarView extends React.Component {
                           weeks={weeks}
                           bookingDate={this.props.bookingDate}
                           bookings={this.props.bookings}
+                          bookingPolicy={this.props.bookingPolicy}
+                          machines={this.props.machines}
                           showBookingModal={this.props.showBookingModal}
                           onCreateBooking={this.props.onCreateBooking}
                           onCancelBookingCreation={this.props.onCancelBookingCreation}
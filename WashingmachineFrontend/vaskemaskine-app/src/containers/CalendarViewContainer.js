@@ -11,10 +11,13 @@ const mapStateToProps = (state) => {
         showBookingModal: state.bookingFlow.showBookingModal || state.editBookingFlow.showBookingModal,
         bookingDate: state.bookingFlow.date || state.editBookingFlow.date,
         bookings: state.bookings.bookings,
+        bookingPolicy: state.bookingPolicy,
+        machines: state.machines,
         isLoggedIn: !!state.login.username,
         isEditMode: !!state.editBookingFlow.date,
         editBookingProps: {
             id: state.editBookingFlow.id,
+            machineId: state.editBookingFlow.machineId,
             startTime: state.editBookingFlow.startTime,
             endTime: state.editBookingFlow.endTime,
             numberOfTumbleDryUses: state.editBookingFlow.numberOfTumbleDryUses,
@@ -28,8 +31,8 @@ const mapDispatchToProps = (dispatch) => {
         changeMonth: (selectedMonthAsDate) => {
             dispatch(changeMonth(selectedMonthAsDate));
         },
-        onCreateBooking: (startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses) => {
-            dispatch(createBooking(startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses));
+        onCreateBooking: (machineId, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses) => {
+            dispatch(createBooking(machineId, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses));
         },
         onCancelBookingCreation: () => {
             dispatch(endCreateBookingFlow());
@@ -37,8 +40,8 @@ const mapDispatchToProps = (dispatch) => {
         onCancelEditBookingCreation: () => {
             dispatch(endEditBookingFlow());
         },
-        onEditBooking: (id, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses) => {
-            dispatch(editBooking(id, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses));
+        onEditBooking: (id, machineId, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses) => {
+            dispatch(editBooking(id, machineId, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses));
         },
         onDeleteBooking: (id) => {
             dispatch(deleteBooking(id));
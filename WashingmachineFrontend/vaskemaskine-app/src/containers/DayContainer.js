@@ -6,6 +6,7 @@ import {startEditBookingFlow} from '../state/actions/editBookingFlow';
 const mapStateToProps = (state) => {
     return {
         bookings: state.bookings.bookings,
+        machines: state.machines,
         username: state.login.username,
         isLoggedIn: !!state.login.username
     }
@@ -16,8 +17,8 @@ const mapDispatchToProps = (dispatch) => {
         onClick: (date) => {
             dispatch(startCreateBookingFlow(date))
         },
-        onBookingClick: (id, owner, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses, date) => {
-            dispatch(startEditBookingFlow(id, owner, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses, date));
+        onBookingClick: (id, machineId, owner, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses, date) => {
+            dispatch(startEditBookingFlow(id, machineId, owner, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses, date));
         }
     }
 };
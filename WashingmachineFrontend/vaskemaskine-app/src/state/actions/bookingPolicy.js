@@ -0,0 +1,22 @@
+import fetch from 'isomorphic-fetch';
+import urls from '../../commons/urls';
+
+export const RECEIVE_BOOKING_POLICY = 'RECEIVE_BOOKING_POLICY';
+function receiveBookingPolicy(bookingPolicy) {
+    return {
+        type: RECEIVE_BOOKING_POLICY,
+        bookingPolicy
+    }
+}
+
+export function fetchBookingPolicy(startDateToFetchFor, endDateToFetchFor) {
+    return (dispatch) => {
+        fetch(`${urls.api.booking}/policy?startTime=${startDateToFetchFor.getTime()}&endTime=${endDateToFetchFor.getTime()}`, {
+            credentials: 'include'
+        }).then((response) => {
+            return response.json();
+        }).then((data) => {
+            dispatch(receiveBookingPolicy(data));
+        });
+    }
+}
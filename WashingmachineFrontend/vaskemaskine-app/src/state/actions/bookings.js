@@ -2,6 +2,8 @@ import fetch from 'isomorphic-fetch';
 import urls from '../../commons/urls';
 import {endCreateBookingFlow} from './createBookingFlow';
 import {endEditBookingFlow} from './editBookingFlow';
+import {fetchBookingPolicy} from './bookingPolicy';
+import {fetchMachines} from './machines';
 import {properModulo} from '../../commons/util';
 
 export const INSERT_BOOKING = 'INSERT_BOOKING';
@@ -33,37 +35,46 @@ function receiveBookings(bookings) {
     }
 }
 
-export function createBooking(startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses) {
+export function createBooking(machineId, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses) {
     return (dispatch) => {
         fetch(urls.api.booking, {
             method: 'POST',
-            body: `startTime=${startTime}&endTime=${endTime}&numberOfWashingMachineUses=${numberOfWashingMachineUses}&numberOfTumbleDryUses=${numberOfTumbleDryUses}`,
+            body: `machineId=${machineId}&startTime=${startTime}&endTime=${endTime}&numberOfWashingMachineUses=${numberOfWashingMachineUses}&numberOfTumbleDryUses=${numberOfTumbleDryUses}`,
             headers: new Headers({
                 'Content-Type': 'application/x-www-form-urlencoded'
             }),
             credentials: 'include'
         }).then((response) => {
-            return response.json();
-        }).then((data) => {
+            return response.json().then((data) => ({ok: response.ok, data}));
+        }).then(({ok, data}) => {
             dispatch(endCreateBookingFlow());
+            // Rejected bookings come back with the reason and a message to show
+            if (!ok) {
+                window.alert(data.error);
+                return;
+            }
             dispatch(insertBooking(data));
         });
     }
 }
 
-export function editBooking(id, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses) {
+export function editBooking(id, machineId, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses) {
     return (dispatch) => {
         fetch(urls.api.booking, {
             method: 'PUT',
-            body: `id=${id}&startTime=${startTime}&endTime=${endTime}&numberOfWashingMachineUses=${numberOfWashingMachineUses}&numberOfTumbleDryUses=${numberOfTumbleDryUses}`,
+            body: `id=${id}&machineId=${machineId}&startTime=${startTime}&endTime=${endTime}&numberOfWashingMachineUses=${numberOfWashingMachineUses}&numberOfTumbleDryUses=${numberOfTumbleDryUses}`,
             headers: new Headers({
                 'Content-Type': 'application/x-www-form-urlencoded'
             }),
             credentials: 'include'
         }).then((response) => {
-            return response.json();
-        }).then((data) => {
+            return response.json().then((data) => ({ok: response.ok, data}));
+        }).then(({ok, data}) => {
             dispatch(endEditBookingFlow());
+            if (!ok) {
+                window.alert(data.error);
+                return;
+            }
             dispatch(removeBooking(data.id));
             dispatch(insertBooking(data.id, data.startTime, data.endTime, data.owner, data.numberOfWashingMachineUses, data.numberOfTumbleDryUses));
         });
@@ -95,6 +106,8 @@ export function fetchBookingsForMonth(year, month) {
         }).then((data) => {
             dispatch(receiveBookings(data));
         });
+        dispatch(fetchBookingPolicy(startDateToFetchFor, endDateToFetchFor));
+        dispatch(fetchMachines());
     }
 }
 
@@ -1,8 +1,9 @@
 export const START_EDIT_BOOKING_FLOW = 'START_EDIT_BOOKING_FLOW';
-export function startEditBookingFlow(id, owner, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses, date) {
+export function startEditBookingFlow(id, machineId, owner, startTime, endTime, numberOfWashingMachineUses, numberOfTumbleDryUses, date) {
     return {
         type: START_EDIT_BOOKING_FLOW,
         id,
+        machineId,
         owner,
         startTime,
         endTime,
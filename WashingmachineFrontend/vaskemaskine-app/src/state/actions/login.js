@@ -58,8 +58,11 @@ export function fetchUserDataIfTokenIsPresent() {
         fetch(`${urls.api.user}/user_from_user_access_token`, {
             credentials: 'include'
         }).then((response) => {
+            // An expired or signed out token is answered with 401, the user then stays signed out
+            if (response.status !== 200) return null;
             return response.json();
         }).then((data) => {
+            if (data === null) return;
             dispatch(loginSuccessful(data.name, data.role, data.realName, data.apartment));
         });
     }
@@ -0,0 +1,22 @@
+import fetch from 'isomorphic-fetch';
+import urls from '../../commons/urls';
+
+export const RECEIVE_MACHINES = 'RECEIVE_MACHINES';
+function receiveMachines(machines) {
+    return {
+        type: RECEIVE_MACHINES,
+        machines
+    }
+}
+
+export function fetchMachines() {
+    return (dispatch) => {
+        fetch(urls.api.machine, {
+            credentials: 'include'
+        }).then((response) => {
+            return response.json();
+        }).then((data) => {
+            dispatch(receiveMachines(data));
+        });
+    }
+}
@@ -0,0 +1,13 @@
+import {RECEIVE_BOOKING_POLICY} from '../actions/bookingPolicy';
+
+// Until the policy of the month has been fetched, days fall back to the default opening hours
+function bookingPolicy(state = {slotMinutes: 5, minimumMinutes: 30, days: {}}, action) {
+    switch (action.type) {
+        case RECEIVE_BOOKING_POLICY:
+            return Object.assign({}, state, action.bookingPolicy);
+        default:
+            return state;
+    }
+}
+
+export default bookingPolicy;
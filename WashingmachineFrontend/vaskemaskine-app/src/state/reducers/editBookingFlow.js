@@ -1,11 +1,12 @@
 import {START_EDIT_BOOKING_FLOW, END_EDIT_BOOKING_FLOW} from '../actions/editBookingFlow';
 
-function bookingFlow(state = {showBookingModal: false, id: -1, owner: '', startTime: -1, endTime: -1, numberOfWashingMachineUses: -1, numberOfTumbleDryUses: -1, date: undefined}, action) {
+function bookingFlow(state = {showBookingModal: false, id: -1, machineId: -1, owner: '', startTime: -1, endTime: -1, numberOfWashingMachineUses: -1, numberOfTumbleDryUses: -1, date: undefined}, action) {
     switch (action.type) {
         case START_EDIT_BOOKING_FLOW:
             return Object.assign({}, state, {
                 showBookingModal: true,
                 id: action.id,
+                machineId: action.machineId,
                 owner: action.owner,
                 startTime: action.startTime,
                 endTime: action.endTime,
@@ -17,6 +18,7 @@ function bookingFlow(state = {showBookingModal: false, id: -1, owner: '', startT
             return Object.assign({}, state, {
                 showBookingModal: false,
                 id: -1,
+                machineId: -1,
                 owner: '',
                 startTime: -1,
                 endTime: -1,
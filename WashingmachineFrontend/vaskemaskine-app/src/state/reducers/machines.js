@@ -0,0 +1,13 @@
+import {RECEIVE_MACHINES} from '../actions/machines';
+
+// Until the machines have been fetched, everything is booked on the first one
+function machines(state = [{id: 1, name: 'Vaskemaskine', kind: 'WASHER_DRYER'}], action) {
+    switch (action.type) {
+        case RECEIVE_MACHINES:
+            return action.machines;
+        default:
+            return state;
+    }
+}
+
+export default machines;
@@ -6,6 +6,8 @@ import createUserFlow from './createUserFlow';
 import editBookingFlow from './editBookingFlow'
 import calendar from './calendar'
 import usage from "./usage";
+import bookingPolicy from "./bookingPolicy";
+import machines from "./machines";
 
 const washingMachineApp = combineReducers({
     bookings,
@@ -14,7 +16,9 @@ const washingMachineApp = combineReducers({
     createUserFlow,
     editBookingFlow,
     calendar,
-    usage
+    usage,
+    bookingPolicy,
+    machines
 });
 
 export default washingMachineApp;